@@ -0,0 +1,105 @@
+package com.ql.util.express.benchmark;
+
+import com.ql.util.express.DefaultContext;
+
+/**
+ * 各个 benchmark 共用的脚本和上下文对象
+ */
+public class BenchmarkScripts {
+    /**
+     * 一条典型的风控规则，覆盖属性访问、方法调用、in、like、算术和逻辑运算
+     */
+    public static final String RULE = "if (order.amount * 0.8 + order.user.level * 10 > 100"
+        + " && order.city in ('hangzhou', 'shanghai', 'beijing')"
+        + " && order.user.name like 'v%') { return order.getAmount() - 10; } else { return 0; }";
+
+    public static final String FIELD = "order.amount * 0.8 + order.user.level * 10 > 100"
+        + " && order.user.name == 'vip'";
+
+    public static final String METHOD = "order.getAmount() + order.getUser().getLevel()"
+        + " + order.getUser().getName().length()";
+
+    public static final String IN = "order.city in ('hangzhou', 'shanghai', 'beijing', 'shenzhen')"
+        + " && order.user.level in (1, 2, 3)";
+
+    public static final String LIKE = "order.user.name like 'v%' || order.city like '%zhou'";
+
+    public static final String LOOP = "int sum = 0; for (int i = 0; i < 100; i++) { sum = sum + i * 2; }"
+        + " return sum;";
+
+    public static final String FUNCTION = "function score(int amount, int level) { return amount * level + 1; }"
+        + " int total = 0; for (int i = 0; i < 10; i++) { total = total + score(i, 3); } return total;";
+
+    private BenchmarkScripts() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static String getScript(String scenario) {
+        switch (scenario) {
+            case "rule":
+                return RULE;
+            case "field":
+                return FIELD;
+            case "method":
+                return METHOD;
+            case "in":
+                return IN;
+            case "like":
+                return LIKE;
+            case "loop":
+                return LOOP;
+            case "function":
+                return FUNCTION;
+            default:
+                throw new IllegalArgumentException("unknown scenario:" + scenario);
+        }
+    }
+
+    public static DefaultContext<String, Object> createContext() {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("order", new Order(200, "hangzhou", new User("vip", 2)));
+        return context;
+    }
+
+    public static class Order {
+        private final int amount;
+        private final String city;
+        private final User user;
+
+        public Order(int amount, String city, User user) {
+            this.amount = amount;
+            this.city = city;
+            this.user = user;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public User getUser() {
+            return user;
+        }
+    }
+
+    public static class User {
+        private final String name;
+        private final int level;
+
+        public User(String name, int level) {
+            this.name = name;
+            this.level = level;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+    }
+}
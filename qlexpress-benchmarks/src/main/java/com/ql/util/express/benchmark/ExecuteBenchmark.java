@@ -0,0 +1,64 @@
+package com.ql.util.express.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ExpressRunner.execute 的几种调用方式：每次解析、使用指令集缓存、直接执行预先解析的指令集
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecuteBenchmark {
+    private ExpressRunner runner;
+    private InstructionSet instructionSet;
+
+    @Setup
+    public void setup() throws Exception {
+        runner = new ExpressRunner();
+        instructionSet = runner.parseInstructionSet(BenchmarkScripts.RULE);
+    }
+
+    @Benchmark
+    public Object executeCold() throws Exception {
+        return runner.execute(BenchmarkScripts.RULE, BenchmarkScripts.createContext(), null, false, false);
+    }
+
+    @Benchmark
+    public Object executeCached() throws Exception {
+        return runner.execute(BenchmarkScripts.RULE, BenchmarkScripts.createContext(), null, true, false);
+    }
+
+    @Benchmark
+    public Object executeInstructionSet() throws Exception {
+        return runner.execute(instructionSet, BenchmarkScripts.createContext(), null, false, false);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object executeCachedMultiThread() throws Exception {
+        return runner.execute(BenchmarkScripts.RULE, BenchmarkScripts.createContext(), null, true, false);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object executeInstructionSetMultiThread() throws Exception {
+        return runner.execute(instructionSet, BenchmarkScripts.createContext(), null, false, false);
+    }
+}
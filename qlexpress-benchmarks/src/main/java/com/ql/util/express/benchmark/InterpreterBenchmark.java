@@ -0,0 +1,64 @@
+package com.ql.util.express.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 解释执行各类指令的开销：OperateDataField 属性访问、OperatorMethod 方法调用、OperatorIn、OperatorLike、循环和自定义函数
+ * 指令集和 ExpressRunner 在线程间共享，上下文每个线程一份，多线程的结果可以反映 OperateDataCacheImpl 对象池的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+    @Param({"field", "method", "in", "like", "loop", "function"})
+    private String scenario;
+
+    private ExpressRunner runner;
+    private InstructionSet instructionSet;
+
+    @State(Scope.Thread)
+    public static class ThreadContext {
+        private DefaultContext<String, Object> context;
+
+        @Setup
+        public void setup() {
+            context = BenchmarkScripts.createContext();
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        runner = new ExpressRunner();
+        instructionSet = runner.parseInstructionSet(BenchmarkScripts.getScript(scenario));
+    }
+
+    @Benchmark
+    public Object execute(ThreadContext threadContext) throws Exception {
+        return runner.execute(instructionSet, threadContext.context, null, false, false);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object executeMultiThread(ThreadContext threadContext) throws Exception {
+        return runner.execute(instructionSet, threadContext.context, null, false, false);
+    }
+}
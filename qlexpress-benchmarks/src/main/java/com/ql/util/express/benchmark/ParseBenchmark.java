@@ -0,0 +1,75 @@
+package com.ql.util.express.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ql.util.express.DefaultExpressResourceLoader;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.parse.ExpressNode;
+import com.ql.util.express.parse.ExpressParse;
+import com.ql.util.express.parse.Word;
+import com.ql.util.express.parse.WordSplit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 解析和编译阶段：分词、语法匹配、生成指令集
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    private ExpressRunner runner;
+    private ExpressParse expressParse;
+    private String[] splitWord;
+    private ExpressNode root;
+
+    @Setup
+    public void setup() throws Exception {
+        runner = new ExpressRunner();
+        splitWord = runner.getNodeTypeManager().splitWord;
+        expressParse = new ExpressParse(runner.getNodeTypeManager(), new DefaultExpressResourceLoader(), false);
+        root = expressParse.parse(runner.getRootExpressPackage(), BenchmarkScripts.RULE, false, null);
+    }
+
+    @Benchmark
+    public Word[] wordSplit() throws Exception {
+        return WordSplit.parse(splitWord, BenchmarkScripts.RULE);
+    }
+
+    @Benchmark
+    public ExpressNode expressParse() throws Exception {
+        return expressParse.parse(runner.getRootExpressPackage(), BenchmarkScripts.RULE, false, null);
+    }
+
+    @Benchmark
+    public InstructionSet createInstructionSet() throws Exception {
+        return runner.createInstructionSet(root, "main");
+    }
+
+    /**
+     * 完整的解析，包括局部变量槽位分配和指令集优化
+     */
+    @Benchmark
+    public InstructionSet parseInstructionSet() throws Exception {
+        return runner.parseInstructionSet(BenchmarkScripts.RULE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public InstructionSet parseInstructionSetMultiThread() throws Exception {
+        return runner.parseInstructionSet(BenchmarkScripts.RULE);
+    }
+}
@@ -0,0 +1,90 @@
+package com.ql.util.express;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 批量执行的结果，和传入的上下文列表(或者规则集中的规则)一一对应
+ * 设置了遇到异常停止的时候，异常之后没有执行的记录 isExecuted 返回false
+ */
+public class BatchResult {
+    private final Object[] results;
+    private final Exception[] exceptions;
+    private final List<String>[] errorLists;
+    private final boolean[] executed;
+
+    private volatile boolean stopped = false;
+
+    @SuppressWarnings("unchecked")
+    public BatchResult(int size) {
+        this.results = new Object[size];
+        this.exceptions = new Exception[size];
+        this.errorLists = new List[size];
+        this.executed = new boolean[size];
+    }
+
+    void setResult(int index, Object result, List<String> errorList) {
+        this.results[index] = result;
+        this.errorLists[index] = errorList;
+        this.executed[index] = true;
+    }
+
+    void setException(int index, Exception exception, List<String> errorList) {
+        this.exceptions[index] = exception;
+        this.errorLists[index] = errorList;
+        this.executed[index] = true;
+    }
+
+    void stop() {
+        this.stopped = true;
+    }
+
+    public int size() {
+        return this.results.length;
+    }
+
+    /**
+     * 是否因为遇到异常提前停止
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    public boolean isExecuted(int index) {
+        return this.executed[index];
+    }
+
+    public boolean isSuccess(int index) {
+        return this.executed[index] && this.exceptions[index] == null;
+    }
+
+    public Object getResult(int index) {
+        return this.results[index];
+    }
+
+    public Exception getException(int index) {
+        return this.exceptions[index];
+    }
+
+    /**
+     * @param index
+     * @return 运算符输出的错误信息，没有执行的记录返回null
+     */
+    public List<String> getErrorList(int index) {
+        return this.errorLists[index];
+    }
+
+    public List<Object> getResults() {
+        return Arrays.asList(this.results);
+    }
+
+    public int getFailedCount() {
+        int count = 0;
+        for (Exception exception : this.exceptions) {
+            if (exception != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
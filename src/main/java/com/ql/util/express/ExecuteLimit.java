@@ -0,0 +1,50 @@
+package com.ql.util.express;
+
+/**
+ * 单次执行的资源限制，作为参数传给 ExpressRunner.execute，所有的限制 -1 表示不限制
+ * 1、timeoutMillis 运行时间，-1 的时候使用全局超时时间，参考 {@link com.ql.util.express.config.QLExpressTimer}
+ * 2、maxInstructionCount 执行的指令总数，包括调用的函数、宏和 lambda 中执行的指令
+ * 3、maxLoopCount 所有循环累计执行的次数
+ * 4、maxCollectionSize 脚本中创建的数组和集合常量的最大长度
+ */
+public class ExecuteLimit {
+    public static final ExecuteLimit NO_LIMIT = new ExecuteLimit(-1);
+
+    private final long timeoutMillis;
+    private final long maxInstructionCount;
+    private final long maxLoopCount;
+    private final int maxCollectionSize;
+
+    public ExecuteLimit(long timeoutMillis) {
+        this(timeoutMillis, -1, -1, -1);
+    }
+
+    public ExecuteLimit(long timeoutMillis, long maxInstructionCount, long maxLoopCount, int maxCollectionSize) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxInstructionCount = maxInstructionCount;
+        this.maxLoopCount = maxLoopCount;
+        this.maxCollectionSize = maxCollectionSize;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public long getMaxInstructionCount() {
+        return maxInstructionCount;
+    }
+
+    public long getMaxLoopCount() {
+        return maxLoopCount;
+    }
+
+    public int getMaxCollectionSize() {
+        return maxCollectionSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecuteLimit[timeoutMillis=" + timeoutMillis + ", maxInstructionCount=" + maxInstructionCount
+            + ", maxLoopCount=" + maxLoopCount + ", maxCollectionSize=" + maxCollectionSize + "]";
+    }
+}
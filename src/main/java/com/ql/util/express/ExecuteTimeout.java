@@ -1,6 +1,16 @@
 package com.ql.util.express;
 
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.exception.QLExecuteLimitException;
+import com.ql.util.express.exception.QLExecuteLimitException.LimitType;
+import com.ql.util.express.exception.QLTimeoutException;
+
 /**
+ * 单次执行的时间和资源限制，在调用的函数、宏、lambda 之间共享，累计整个执行过程中的指令数和循环次数
+ * 运行时间不是每条指令都检查：时间没有变化的时候逐步加大采样间隔，直到 {@link #MAX_TIME_CHECK_INTERVAL} 条指令检查一次；
+ * 一旦发现两次采样之间时间有变化(例如调用了比较慢的方法)，就恢复到每条指令都检查；
+ * 指令集(包括函数)执行结束的时候再检查一次，避免最后几条比较慢的指令落在两次采样之间
+ *
  * Author: DQinYuan
  */
 public class ExecuteTimeout {
@@ -9,20 +19,142 @@ public class ExecuteTimeout {
      */
     public static final ExecuteTimeout NO_TIMEOUT = new ExecuteTimeout(-1);
 
+    /**
+     * 运行时间的最大采样间隔(指令数)
+     */
+    static final int MAX_TIME_CHECK_INTERVAL = 1024;
+
     private final long timeoutMillis;
 
     private final long endTime;
 
+    private final long maxInstructionCount;
+
+    private final long maxLoopCount;
+
+    private final int maxCollectionSize;
+
+    /**
+     * 没有任何限制的时候不需要计数
+     */
+    private final boolean isUnlimited;
+
+    private long instructionCount;
+
+    private long loopCount;
+
+    private long nextTimeCheckCount = 1;
+
+    private int timeCheckInterval = 1;
+
+    private long lastCheckTime;
+
     public ExecuteTimeout(long timeoutMillis) {
+        this(timeoutMillis, -1, -1, -1);
+    }
+
+    public ExecuteTimeout(ExecuteLimit executeLimit) {
+        this(executeLimit.getTimeoutMillis(), executeLimit.getMaxInstructionCount(), executeLimit.getMaxLoopCount(),
+            executeLimit.getMaxCollectionSize());
+    }
+
+    public ExecuteTimeout(long timeoutMillis, long maxInstructionCount, long maxLoopCount, int maxCollectionSize) {
         this.timeoutMillis = timeoutMillis;
-        this.endTime = timeoutMillis != -1 ? System.currentTimeMillis() + timeoutMillis : -1;
+        this.lastCheckTime = System.currentTimeMillis();
+        this.endTime = timeoutMillis != -1 ? this.lastCheckTime + timeoutMillis : -1;
+        this.maxInstructionCount = maxInstructionCount;
+        this.maxLoopCount = maxLoopCount;
+        this.maxCollectionSize = maxCollectionSize;
+        this.isUnlimited = timeoutMillis == -1 && maxInstructionCount == -1 && maxLoopCount == -1
+            && maxCollectionSize == -1;
     }
 
     public boolean isExpired() {
         return endTime != -1 && System.currentTimeMillis() > endTime;
     }
 
+    /**
+     * 每条指令执行之前调用
+     *
+     * @throws QLException
+     */
+    public void checkInstruction() throws QLException {
+        if (this.isUnlimited) {
+            return;
+        }
+        long count = ++this.instructionCount;
+        if (this.maxInstructionCount != -1 && count > this.maxInstructionCount) {
+            throw new QLExecuteLimitException(LimitType.INSTRUCTION_COUNT, this.maxInstructionCount,
+                "运行QLExpress脚本执行的指令数超过了限制:" + this.maxInstructionCount);
+        }
+        if (this.endTime != -1 && count >= this.nextTimeCheckCount) {
+            this.checkTime(count);
+        }
+    }
+
+    /**
+     * 指令集执行结束的时候调用
+     *
+     * @throws QLTimeoutException
+     */
+    public void checkTimeout() throws QLTimeoutException {
+        if (this.isExpired()) {
+            throw this.createTimeoutException();
+        }
+    }
+
+    private QLTimeoutException createTimeoutException() {
+        return new QLTimeoutException("运行QLExpress脚本的下一条指令超过了限定时间:" + this.timeoutMillis + "ms");
+    }
+
+    private void checkTime(long count) throws QLTimeoutException {
+        long now = System.currentTimeMillis();
+        if (now > this.endTime) {
+            throw this.createTimeoutException();
+        }
+        if (now == this.lastCheckTime) {
+            this.timeCheckInterval = Math.min(this.timeCheckInterval << 1, MAX_TIME_CHECK_INTERVAL);
+        } else {
+            this.timeCheckInterval = 1;
+        }
+        this.lastCheckTime = now;
+        this.nextTimeCheckCount = count + this.timeCheckInterval;
+    }
+
+    /**
+     * 循环每执行一次调用
+     *
+     * @throws QLException
+     */
+    public void checkLoop() throws QLException {
+        if (this.maxLoopCount != -1 && ++this.loopCount > this.maxLoopCount) {
+            throw new QLExecuteLimitException(LimitType.LOOP_COUNT, this.maxLoopCount,
+                "运行QLExpress脚本的循环次数超过了限制:" + this.maxLoopCount);
+        }
+    }
+
+    /**
+     * 创建数组或集合之前调用
+     *
+     * @param size 元素个数
+     * @throws QLException
+     */
+    public void checkCollectionSize(long size) throws QLException {
+        if (this.maxCollectionSize != -1 && size > this.maxCollectionSize) {
+            throw new QLExecuteLimitException(LimitType.COLLECTION_SIZE, this.maxCollectionSize,
+                "运行QLExpress脚本创建的数组或集合长度" + size + "超过了限制:" + this.maxCollectionSize);
+        }
+    }
+
     public long getTimeoutMillis() {
         return timeoutMillis;
     }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    public long getLoopCount() {
+        return loopCount;
+    }
 }
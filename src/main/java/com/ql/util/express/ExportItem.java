@@ -62,6 +62,10 @@ public class ExportItem {
         return type;
     }
 
+    public String getDesc() {
+        return desc;
+    }
+
     public void setType(String type) {
         this.type = type;
     }
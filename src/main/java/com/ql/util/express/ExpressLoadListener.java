@@ -0,0 +1,16 @@
+package com.ql.util.express;
+
+/**
+ * 批量装载表达式的进度回调，在解析表达式的线程中调用，实现需要线程安全
+ */
+public interface ExpressLoadListener {
+    /**
+     * 一个表达式解析完成
+     *
+     * @param expressName 表达式名称
+     * @param exception   解析失败的异常，成功的时候为null
+     * @param parsedCount 已经解析完成的数量
+     * @param totalCount  总数量
+     */
+    void onParsed(String expressName, Exception exception, int parsedCount, int totalCount);
+}
@@ -1,23 +1,83 @@
 package com.ql.util.express;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ql.util.express.exception.QLException;
 import com.ql.util.express.instruction.FunctionInstructionSet;
+import com.ql.util.express.instruction.serialize.InstructionSetBundle;
+import com.ql.util.express.instruction.serialize.InstructionSetReader;
+import com.ql.util.express.parse.ScriptSourceSplitter;
+import com.ql.util.express.parse.ScriptSourceSplitter.Part;
+import com.ql.util.express.parse.ScriptSourceSplitter.SplitResult;
 
 /**
  * 表达式装载器
+ * 每次注册修改之后版本号加一，执行的时候通过 {@link #getSnapshot()} 固定当时的版本，
+ * 执行过程中重新装载的函数不影响正在执行的脚本；快照在注册之后第一次执行的时候才复制，同一个版本共用一个快照
  *
  * @author xuannan
  */
 public class ExpressLoader {
-    private final ConcurrentHashMap<String, InstructionSet> expressInstructionSetCache = new ConcurrentHashMap<>();
+    private final Object updateLock = new Object();
+    private final Object reloadLock = new Object();
+    private final Map<String, InstructionSet> expressInstructionSetCache;
+    /**
+     * 在 updateLock 中修改，快照的版本号是复制时的版本号
+     */
+    private volatile long version;
+    private volatile ExpressLoader snapshot;
+    private final boolean isSnapshot;
+    /**
+     * 通过 reloadInstructionSet 装载的表达式，记录每个定义的源码用于下一次重新装载时比较
+     */
+    private final Map<String, LoadedScript> loadedScripts = new HashMap<>();
     final ExpressRunner expressRunner;
 
     public ExpressLoader(ExpressRunner expressRunner) {
         this.expressRunner = expressRunner;
+        this.isSnapshot = false;
+        this.expressInstructionSetCache = new ConcurrentHashMap<>();
+    }
+
+    private ExpressLoader(ExpressRunner expressRunner, Map<String, InstructionSet> expressInstructionSetCache,
+        long version) {
+        this.expressRunner = expressRunner;
+        this.isSnapshot = true;
+        this.expressInstructionSetCache = expressInstructionSetCache;
+        this.version = version;
+        this.snapshot = this;
+    }
+
+    /**
+     * 当前注册的全部指令集的只读快照，之后的注册和重新装载不会改变快照中的内容
+     */
+    public ExpressLoader getSnapshot() {
+        ExpressLoader result = this.snapshot;
+        if (result != null && result.version == this.version) {
+            return result;
+        }
+        // 和注册互斥，不会复制到重新装载的中间状态
+        synchronized (this.updateLock) {
+            result = this.snapshot;
+            if (result == null || result.version != this.version) {
+                result = new ExpressLoader(this.expressRunner, new HashMap<>(this.expressInstructionSetCache),
+                    this.version);
+                this.snapshot = result;
+            }
+            return result;
+        }
     }
 
     public InstructionSet loadExpress(String expressName) throws Exception {
@@ -25,39 +85,344 @@ public class ExpressLoader {
     }
 
     public void addInstructionSet(String expressName, InstructionSet set) throws Exception {
-        synchronized (expressInstructionSetCache) {
-            if (expressInstructionSetCache.containsKey(expressName)) {
-                throw new QLException("表达式定义重复：" + expressName);
-            }
-            expressInstructionSetCache.put(expressName, set);
+        synchronized (this.updateLock) {
+            this.checkWritable();
+            addInstructionSet(this.expressInstructionSetCache, expressName, set);
+            this.version++;
+        }
+    }
+
+    private static void addInstructionSet(Map<String, InstructionSet> cache, String expressName, InstructionSet set)
+        throws QLException {
+        if (cache.containsKey(expressName)) {
+            throw new QLException("表达式定义重复：" + expressName);
+        }
+        cache.put(expressName, set);
+    }
+
+    private void checkWritable() throws QLException {
+        if (this.isSnapshot) {
+            throw new QLException("表达式装载器的快照不能修改");
         }
     }
 
     public InstructionSet parseInstructionSet(String expressName, String expressString) throws Exception {
-        InstructionSet parseResult;
         if (expressInstructionSetCache.containsKey(expressName)) {
             throw new QLException("表达式定义重复：" + expressName);
         }
-        synchronized (expressInstructionSetCache) {
-            parseResult = this.expressRunner.parseInstructionSet(expressString);
-            parseResult.setName(expressName);
-            parseResult.setGlobeName(expressName);
-            // 需要将函数和宏定义都提取出来
-            for (FunctionInstructionSet item : parseResult
-                .getFunctionInstructionSets()) {
-                this.addInstructionSet(item.name, item.instructionSet);
-                item.instructionSet.setName(item.name);
-                item.instructionSet.setGlobeName(expressName + "." + item.name);
+        // 解析不需要加锁，只有注册的时候加锁
+        InstructionSet parseResult = this.expressRunner.parseInstructionSet(expressString);
+        this.registerInstructionSet(expressName, parseResult);
+        return parseResult;
+    }
+
+    /**
+     * 批量装载表达式，在 executor 中并行解析，然后按照 expresses 的迭代顺序依次注册表达式和其中的函数、宏定义
+     * 解析失败或者名称重复的表达式不注册，不影响其它表达式；同一批表达式之间不能引用对方定义的 class
+     *
+     * @param expresses 表达式名称 -> 表达式文本
+     * @param executor  为null的时候使用 ForkJoinPool.commonPool()
+     * @param listener  解析进度回调，可以为null
+     * @return 和 expresses 的迭代顺序一一对应，结果是解析出来的指令集
+     * @throws Exception
+     */
+    public BatchResult parseInstructionSets(Map<String, String> expresses, Executor executor,
+        ExpressLoadListener listener) throws Exception {
+        int totalCount = expresses.size();
+        String[] names = expresses.keySet().toArray(new String[0]);
+        String[] texts = expresses.values().toArray(new String[0]);
+        InstructionSet[] instructionSets = new InstructionSet[totalCount];
+        Exception[] exceptions = new Exception[totalCount];
+        AtomicInteger parsedCount = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(totalCount);
+        Executor parseExecutor = executor == null ? ForkJoinPool.commonPool() : executor;
+        for (int i = 0; i < totalCount; i++) {
+            int index = i;
+            Runnable task = () -> {
+                try {
+                    if (expressInstructionSetCache.containsKey(names[index])) {
+                        throw new QLException("表达式定义重复：" + names[index]);
+                    }
+                    instructionSets[index] = this.expressRunner.parseInstructionSet(texts[index]);
+                } catch (Exception e) {
+                    exceptions[index] = e;
+                }
+                try {
+                    if (listener != null) {
+                        listener.onParsed(names[index], exceptions[index], parsedCount.incrementAndGet(), totalCount);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            };
+            try {
+                parseExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // executor 拒绝的任务在当前线程执行
+                task.run();
+            }
+        }
+        latch.await();
+
+        BatchResult batchResult = new BatchResult(totalCount);
+        synchronized (this.updateLock) {
+            this.checkWritable();
+            for (int i = 0; i < totalCount; i++) {
+                if (exceptions[i] == null) {
+                    try {
+                        registerInstructionSet(this.expressInstructionSetCache, names[i], instructionSets[i]);
+                        batchResult.setResult(i, instructionSets[i], null);
+                    } catch (Exception e) {
+                        batchResult.setException(i, e, null);
+                    }
+                } else {
+                    batchResult.setException(i, exceptions[i], null);
+                }
+            }
+            this.version++;
+        }
+        return batchResult;
+    }
+
+    /**
+     * 装载预编译的指令集(见 InstructionSetWriter)，不经过脚本解析，函数和宏定义的处理和 parseInstructionSet 一致
+     */
+    public InstructionSet loadPrecompiledInstructionSet(String expressName, byte[] data) throws Exception {
+        if (expressInstructionSetCache.containsKey(expressName)) {
+            throw new QLException("表达式定义重复：" + expressName);
+        }
+        InstructionSet instructionSet = new InstructionSetReader(this.expressRunner).read(data);
+        this.registerInstructionSet(expressName, instructionSet);
+        return instructionSet;
+    }
+
+    /**
+     * 装载预编译文件中的全部指令集，名称使用打包时的表达式名称
+     * 先读取全部指令集，再一次性检查名称并注册，读取失败或者名称重复的时候不注册任何指令集
+     */
+    public void loadPrecompiledInstructionSets(InstructionSetBundle bundle) throws Exception {
+        Map<String, InstructionSet> instructionSets = new LinkedHashMap<>();
+        for (String expressName : bundle.getNames()) {
+            instructionSets.put(expressName, bundle.read(expressName, this.expressRunner));
+        }
+        synchronized (this.updateLock) {
+            this.checkWritable();
+            Set<String> names = new HashSet<>();
+            for (Map.Entry<String, InstructionSet> entry : instructionSets.entrySet()) {
+                checkNames(this.expressInstructionSetCache, names, entry.getKey(), entry.getValue());
             }
-            if (parseResult.hasMain()) {
-                this.addInstructionSet(expressName, parseResult);
+            for (Map.Entry<String, InstructionSet> entry : instructionSets.entrySet()) {
+                registerInstructionSet(this.expressInstructionSetCache, entry.getKey(), entry.getValue());
             }
+            this.version++;
+        }
+    }
+
+    private void registerInstructionSet(String expressName, InstructionSet instructionSet) throws Exception {
+        synchronized (this.updateLock) {
+            this.checkWritable();
+            registerInstructionSet(this.expressInstructionSetCache, expressName, instructionSet);
+            this.version++;
+        }
+    }
+
+    private static void registerInstructionSet(Map<String, InstructionSet> cache, String expressName,
+        InstructionSet instructionSet) throws Exception {
+        // 先检查全部名称，避免重复定义的时候只注册了一部分函数
+        checkNames(cache, new HashSet<>(), expressName, instructionSet);
+        FunctionInstructionSet[] functionSets = instructionSet.getFunctionInstructionSets();
+        instructionSet.setName(expressName);
+        instructionSet.setGlobeName(expressName);
+        // 需要将函数和宏定义都提取出来
+        for (FunctionInstructionSet item : functionSets) {
+            addInstructionSet(cache, item.name, item.instructionSet);
+            item.instructionSet.setName(item.name);
+            item.instructionSet.setGlobeName(expressName + "." + item.name);
+        }
+        if (instructionSet.hasMain()) {
+            addInstructionSet(cache, expressName, instructionSet);
         }
-        return parseResult;
+    }
+
+    /**
+     * 检查指令集注册时使用的名称没有和已经注册的以及 names 中的名称重复，并且加入 names
+     */
+    private static void checkNames(Map<String, InstructionSet> cache, Set<String> names, String expressName,
+        InstructionSet instructionSet) throws QLException {
+        for (FunctionInstructionSet item : instructionSet.getFunctionInstructionSets()) {
+            if (cache.containsKey(item.name) || !names.add(item.name)) {
+                throw new QLException("表达式定义重复：" + item.name);
+            }
+        }
+        if (instructionSet.hasMain() && (cache.containsKey(expressName) || !names.add(expressName))) {
+            throw new QLException("表达式定义重复：" + expressName);
+        }
+    }
+
+    /**
+     * 增量重新装载表达式：按照最外层的 function、macro、class 定义切分脚本，和上一次重新装载时每个定义的源码比较，
+     * 只重新解析有变化的定义(加上开头的 import)，脚本主体和定义分开解析，函数之间通过装载器互相调用；
+     * 全部解析成功之后一次性替换这个表达式原来注册的主体和定义，删除脚本中已经去掉的定义，解析失败的时候不做任何修改。
+     * 正在执行的脚本使用开始执行时的快照，继续执行旧的版本。
+     * 第一次装载、import 或者 class 定义的名称有变化、脚本无法切分的时候完整解析整个脚本
+     *
+     * @param expressName   表达式名称，可以是已经通过 parseInstructionSet 装载过的表达式
+     * @param expressString 表达式文本
+     * @return 重新解析的定义名称，脚本主体使用 expressName
+     * @throws Exception
+     */
+    public Set<String> reloadInstructionSet(String expressName, String expressString) throws Exception {
+        synchronized (this.reloadLock) {
+            SplitResult splitResult = ScriptSourceSplitter.split(expressString);
+            LoadedScript oldScript;
+            synchronized (this.updateLock) {
+                oldScript = this.loadedScripts.get(expressName);
+            }
+            LoadedScript newScript = null;
+            Set<String> reparsedNames = new LinkedHashSet<>();
+            if (splitResult != null && oldScript != null && oldScript.isSameClasses(splitResult)) {
+                newScript = this.reparseChanged(expressName, splitResult, oldScript, reparsedNames);
+            }
+            if (newScript == null) {
+                reparsedNames.clear();
+                newScript = this.reparseAll(expressName, expressString, splitResult, reparsedNames);
+            }
+
+            synchronized (this.updateLock) {
+                this.checkWritable();
+                // 先检查全部名称，重复定义的时候不影响原来的版本
+                Set<String> oldNames = this.findInstructionSetNames(expressName);
+                for (String name : newScript.functionSets.keySet()) {
+                    if (this.expressInstructionSetCache.containsKey(name) && !oldNames.contains(name)) {
+                        throw new QLException("表达式定义重复：" + name);
+                    }
+                }
+                if (newScript.main != null && this.expressInstructionSetCache.containsKey(expressName)
+                    && !oldNames.contains(expressName)) {
+                    throw new QLException("表达式定义重复：" + expressName);
+                }
+                for (String name : oldNames) {
+                    this.expressInstructionSetCache.remove(name);
+                }
+                for (FunctionInstructionSet item : newScript.functionSets.values()) {
+                    this.expressInstructionSetCache.put(item.name, item.instructionSet);
+                }
+                if (newScript.main != null) {
+                    this.expressInstructionSetCache.put(expressName, newScript.main);
+                }
+                for (FunctionInstructionSet item : newScript.functionSets.values()) {
+                    item.instructionSet.setName(item.name);
+                    item.instructionSet.setGlobeName(expressName + "." + item.name);
+                }
+                if (newScript.main != null) {
+                    newScript.main.setName(expressName);
+                    newScript.main.setGlobeName(expressName);
+                }
+                this.version++;
+                if (newScript.sources == null) {
+                    this.loadedScripts.remove(expressName);
+                } else {
+                    this.loadedScripts.put(expressName, newScript);
+                }
+            }
+            return reparsedNames;
+        }
+    }
+
+    /**
+     * @return 切分出来的定义不能单独解析的时候返回null
+     */
+    private LoadedScript reparseChanged(String expressName, SplitResult splitResult, LoadedScript oldScript,
+        Set<String> reparsedNames) throws Exception {
+        boolean isSameImport = splitResult.getImportSource().equals(oldScript.sources.getImportSource());
+        Map<String, String> oldPartSources = new HashMap<>();
+        for (Part part : oldScript.sources.getParts()) {
+            oldPartSources.put(part.getName(), part.getSource());
+        }
+        Map<String, FunctionInstructionSet> functionSets = new LinkedHashMap<>();
+        for (Part part : splitResult.getParts()) {
+            FunctionInstructionSet item = null;
+            if (isSameImport && part.getSource().equals(oldPartSources.get(part.getName()))) {
+                item = oldScript.functionSets.get(part.getName());
+            }
+            if (item == null) {
+                InstructionSet parseResult = this.expressRunner.parseInstructionSet(
+                    splitResult.getImportSource() + part.getSource());
+                FunctionInstructionSet[] items = parseResult.getFunctionInstructionSets();
+                if (parseResult.hasMain() || items.length != 1 || !items[0].name.equals(part.getName())) {
+                    return null;
+                }
+                item = items[0];
+                reparsedNames.add(part.getName());
+            }
+            functionSets.put(part.getName(), item);
+        }
+
+        InstructionSet main = oldScript.main;
+        // 完整解析出来的主体中包含函数定义，执行的时候会优先使用其中旧的函数
+        if (!oldScript.isMainSeparated || !isSameImport
+            || !splitResult.getMainSource().equals(oldScript.sources.getMainSource())) {
+            main = null;
+            if (!splitResult.getMainSource().isEmpty()) {
+                InstructionSet parseResult = this.expressRunner.parseInstructionSet(
+                    splitResult.getImportSource() + splitResult.getMainSource());
+                if (parseResult.getFunctionInstructionSets().length > 0) {
+                    return null;
+                }
+                if (parseResult.hasMain()) {
+                    main = parseResult;
+                }
+            }
+            reparsedNames.add(expressName);
+        }
+        return new LoadedScript(splitResult, functionSets, main, true);
+    }
+
+    private LoadedScript reparseAll(String expressName, String expressString, SplitResult splitResult,
+        Set<String> reparsedNames) throws Exception {
+        InstructionSet parseResult = this.expressRunner.parseInstructionSet(expressString);
+        Map<String, FunctionInstructionSet> functionSets = new LinkedHashMap<>();
+        for (FunctionInstructionSet item : parseResult.getFunctionInstructionSets()) {
+            functionSets.put(item.name, item);
+            reparsedNames.add(item.name);
+        }
+        reparsedNames.add(expressName);
+        // 切分的结果和完整解析的定义一致的时候才记录源码，下一次重新装载的时候可以增量解析
+        boolean isSplitMatched = splitResult != null && splitResult.getParts().size() == functionSets.size();
+        if (isSplitMatched) {
+            for (Part part : splitResult.getParts()) {
+                isSplitMatched = isSplitMatched && functionSets.containsKey(part.getName());
+            }
+        }
+        return new LoadedScript(isSplitMatched ? splitResult : null, functionSets,
+            parseResult.hasMain() ? parseResult : null, false);
+    }
+
+    /**
+     * @return expressName 之前注册的主体和其中的定义的名称
+     */
+    private Set<String> findInstructionSetNames(String expressName) {
+        Set<String> result = new HashSet<>();
+        String prefix = expressName + ".";
+        for (Map.Entry<String, InstructionSet> entry : this.expressInstructionSetCache.entrySet()) {
+            String globeName = entry.getValue().getGlobeName();
+            if (entry.getKey().equals(expressName) ? expressName.equals(globeName)
+                : (prefix + entry.getKey()).equals(globeName)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
     }
 
     public void clear() {
-        this.expressInstructionSetCache.clear();
+        if (this.isSnapshot) {
+            throw new IllegalStateException("表达式装载器的快照不能修改");
+        }
+        synchronized (this.updateLock) {
+            this.expressInstructionSetCache.clear();
+            this.loadedScripts.clear();
+            this.version++;
+        }
     }
 
     public InstructionSet getInstructionSet(String expressName) {
@@ -78,4 +443,42 @@ public class ExpressLoader {
         }
         return result.values().toArray(new ExportItem[0]);
     }
+
+    private static final class LoadedScript {
+        /**
+         * 为null的时候下一次重新装载需要完整解析
+         */
+        private final SplitResult sources;
+        private final Map<String, FunctionInstructionSet> functionSets;
+        private final InstructionSet main;
+        /**
+         * 主体是否单独解析，不包含函数定义
+         */
+        private final boolean isMainSeparated;
+
+        private LoadedScript(SplitResult sources, Map<String, FunctionInstructionSet> functionSets,
+            InstructionSet main, boolean isMainSeparated) {
+            this.sources = sources;
+            this.functionSets = functionSets;
+            this.main = main;
+            this.isMainSeparated = isMainSeparated;
+        }
+
+        /**
+         * 单独解析定义的时候依赖装载器中已经注册的 class，class 的名称有变化需要完整解析
+         */
+        private boolean isSameClasses(SplitResult splitResult) {
+            return this.sources != null && getClassNames(this.sources).equals(getClassNames(splitResult));
+        }
+
+        private static Set<String> getClassNames(SplitResult splitResult) {
+            Set<String> result = new HashSet<>();
+            for (Part part : splitResult.getParts()) {
+                if (InstructionSet.TYPE_CLASS.equals(part.getType())) {
+                    result.add(part.getName());
+                }
+            }
+            return result;
+        }
+    }
 }
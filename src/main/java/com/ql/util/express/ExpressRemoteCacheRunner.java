@@ -2,6 +2,9 @@ package com.ql.util.express;
 
 import java.util.List;
 
+import com.ql.util.express.instruction.serialize.InstructionSetBundle;
+import com.ql.util.express.instruction.serialize.InstructionSetReader;
+
 /**
  * 远程缓存对象
  *
@@ -22,6 +25,42 @@ public abstract class ExpressRemoteCacheRunner {
         }
     }
 
+    /**
+     * 缓存预编译的指令集(见 InstructionSetWriter)，不经过脚本解析
+     *
+     * @param expressName
+     * @param data
+     */
+    public void loadCache(String expressName, byte[] data) {
+        try {
+            putPrecompiledCache(expressName, new InstructionSetReader(getExpressRunner()).read(data));
+        } catch (Exception e) {
+            throw new RuntimeException("读取预编译指令并缓存过程出现错误.", e);
+        }
+    }
+
+    /**
+     * 缓存预编译文件中的全部指令集
+     *
+     * @param bundle
+     */
+    public void loadCache(InstructionSetBundle bundle) {
+        try {
+            for (String expressName : bundle.getNames()) {
+                putPrecompiledCache(expressName, bundle.read(expressName, getExpressRunner()));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("读取预编译指令并缓存过程出现错误.", e);
+        }
+    }
+
+    private void putPrecompiledCache(String expressName, InstructionSet instructionSet) {
+        CacheObject cache = new CacheObject();
+        cache.setExpressName(expressName);
+        cache.setInstructionSet(instructionSet);
+        this.putCache(expressName, cache);
+    }
+
     public Object execute(String name, IExpressContext<String, Object> context, List<String> errorList, boolean isTrace,
         boolean isCatchException) {
         try {
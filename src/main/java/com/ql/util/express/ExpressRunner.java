@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.*;
 
@@ -14,7 +15,15 @@ import com.ql.util.express.exception.QLException;
 import com.ql.util.express.instruction.ForRelBreakContinue;
 import com.ql.util.express.instruction.IOperateDataCache;
 import com.ql.util.express.instruction.InstructionFactory;
+import com.ql.util.express.instruction.InstructionSetOptimizer;
+import com.ql.util.express.instruction.LocalVarSlotResolver;
+import com.ql.util.express.instruction.RuleSetCompiler;
+import com.ql.util.express.instruction.ScopeResolver;
 import com.ql.util.express.instruction.OperateDataCacheImpl;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.OperateDataCachePool;
+import com.ql.util.express.instruction.OperateDataCacheStatistics;
+import com.ql.util.express.instruction.compile.InstructionSetCompiler;
 import com.ql.util.express.instruction.op.OperatorBase;
 import com.ql.util.express.instruction.op.OperatorFactory;
 import com.ql.util.express.instruction.op.OperatorInstanceOf;
@@ -24,6 +33,7 @@ import com.ql.util.express.instruction.op.OperatorPrintln;
 import com.ql.util.express.instruction.op.OperatorRound;
 import com.ql.util.express.instruction.op.OperatorSelfDefineClassFunction;
 import com.ql.util.express.instruction.op.OperatorSelfDefineServiceFunction;
+import com.ql.util.express.instruction.serialize.InstructionSetBundle;
 import com.ql.util.express.parse.AppendingClassFieldManager;
 import com.ql.util.express.parse.AppendingClassMethodManager;
 import com.ql.util.express.parse.ExpressNode;
@@ -52,6 +62,16 @@ public class ExpressRunner {
      */
     private boolean isShortCircuit = true;
 
+    /**
+     * 是否把解析后的指令集编译成JVM类执行，需要classpath中存在ASM，无法编译的指令集仍然解释执行
+     */
+    private boolean isCompileInstructionSet = false;
+
+    /**
+     * 是否对解析后的指令集做常量折叠和无用分支消除
+     */
+    private boolean isOptimizeInstructionSet = true;
+
     /**
      * 是否需要高精度计算
      */
@@ -87,11 +107,6 @@ public class ExpressRunner {
      */
     final ExpressPackage rootExpressPackage = new ExpressPackage(null);
 
-    /**
-     * 线程重入次数
-     */
-    private final ThreadLocal<Integer> threadReentrantCount = ThreadLocal.withInitial(() -> 0);
-
     public AppendingClassMethodManager getAppendingClassMethodManager() {
         return appendingClassMethodManager;
     }
@@ -104,13 +119,76 @@ public class ExpressRunner {
 
     private AppendingClassFieldManager appendingClassFieldManager;
 
-    private final ThreadLocal<IOperateDataCache> operateDataCacheThreadLocal = ThreadLocal.withInitial(
-        () -> new OperateDataCacheImpl(30));
+    /**
+     * 对象池中每种对象的初始数量和最多保留的数量
+     */
+    private volatile int operateDataCacheInitLength = 30;
+    private volatile int operateDataCacheMaxLength = 1024;
+
+    private final OperateDataCacheStatistics operateDataCacheStatistics = new OperateDataCacheStatistics();
+
+    private volatile ThreadLocal<IOperateDataCache> operateDataCacheThreadLocal = ThreadLocal.withInitial(
+        this::createOperateDataCache);
+
+    /**
+     * 多个线程共享的对象池，为null的时候每个线程使用自己的对象池
+     */
+    private volatile OperateDataCachePool operateDataCachePool;
 
     public IOperateDataCache getOperateDataCache() {
         return this.operateDataCacheThreadLocal.get();
     }
 
+    public OperateDataCachePool getOperateDataCachePool() {
+        return operateDataCachePool;
+    }
+
+    private IOperateDataCache createOperateDataCache() {
+        return new OperateDataCacheImpl(this.operateDataCacheInitLength, this.operateDataCacheMaxLength,
+            this.operateDataCacheStatistics);
+    }
+
+    /**
+     * 设置执行时使用的对象池
+     * 默认每个线程创建一份对象池，线程复用的时候效率最高；
+     * 大于0的时候所有线程共享一个有界的对象池，最外层执行的时候借出、执行结束归还，线程上不保留任何数据，
+     * 适合虚拟线程这种线程数量很多、用完即弃的场景
+     *
+     * @param maxIdleCount 共享对象池中最多保留的空闲数量，小于等于0恢复为每个线程一份对象池
+     */
+    public void setOperateDataCachePoolSize(int maxIdleCount) {
+        this.operateDataCachePool = maxIdleCount > 0 ? new OperateDataCachePool(maxIdleCount,
+            this::createOperateDataCache) : null;
+    }
+
+    /**
+     * 设置对象池中每种对象的数量：从 initLength 开始，执行中不够用的时候增长，最多保留 maxLength 个，超过的部分临时创建
+     * 只影响之后新创建的对象池，可以参考 {@link #getOperateDataCacheStatistics()} 中的峰值设置
+     *
+     * @param initLength 初始数量
+     * @param maxLength 最多保留的数量
+     */
+    public void setOperateDataCacheLength(int initLength, int maxLength) {
+        if (initLength < 0 || maxLength < initLength) {
+            throw new IllegalArgumentException(
+                "对象池数量设置错误：initLength=" + initLength + ",maxLength=" + maxLength);
+        }
+        this.operateDataCacheInitLength = initLength;
+        this.operateDataCacheMaxLength = maxLength;
+        this.operateDataCacheThreadLocal = ThreadLocal.withInitial(this::createOperateDataCache);
+        OperateDataCachePool pool = this.operateDataCachePool;
+        if (pool != null) {
+            this.setOperateDataCachePoolSize(pool.getMaxIdleCount());
+        }
+    }
+
+    /**
+     * @return 这个 runner 所有对象池的使用统计：重用次数、增长和溢出创建的对象数、单次执行的峰值
+     */
+    public OperateDataCacheStatistics getOperateDataCacheStatistics() {
+        return operateDataCacheStatistics;
+    }
+
     public ExpressRunner() {
         this(false, false);
     }
@@ -247,6 +325,45 @@ public class ExpressRunner {
         this.loader.parseInstructionSet(expressName, express);
     }
 
+    /**
+     * 增量重新装载表达式，只重新解析有变化的函数、宏和 class 定义，见 ExpressLoader.reloadInstructionSet
+     *
+     * @param expressName
+     * @param express
+     * @return 重新解析的定义名称
+     * @throws Exception
+     */
+    public Set<String> reloadMultiExpress(String expressName, String express) throws Exception {
+        if (expressName == null || expressName.trim().length() == 0) {
+            expressName = GLOBAL_DEFINE_NAME;
+        }
+        return this.loader.reloadInstructionSet(expressName, express);
+    }
+
+    /**
+     * 批量装载表达式，并行解析之后按照 expresses 的迭代顺序注册，见 ExpressLoader.parseInstructionSets
+     *
+     * @param expresses 表达式名称 -> 表达式文本
+     * @param executor  为null的时候使用 ForkJoinPool.commonPool()
+     * @param listener  解析进度回调，可以为null
+     * @return 每个表达式的指令集或者异常
+     * @throws Exception
+     */
+    public BatchResult loadMultiExpress(Map<String, String> expresses, Executor executor,
+        ExpressLoadListener listener) throws Exception {
+        return this.loader.parseInstructionSets(expresses, executor, listener);
+    }
+
+    /**
+     * 装载预编译文件中的表达式(包括宏定义和自定义函数)，不需要解析脚本
+     *
+     * @param bundle
+     * @throws Exception
+     */
+    public void loadPrecompiledExpress(InstructionSetBundle bundle) throws Exception {
+        this.loader.loadPrecompiledInstructionSets(bundle);
+    }
+
     /**
      * 装载文件中定义的Express
      *
@@ -576,7 +693,8 @@ public class ExpressRunner {
      */
     public Object executeByExpressName(String name, IExpressContext<String, Object> context, List<String> errorList,
         boolean isTrace, boolean isCatchException) throws Exception {
-        return InstructionSetRunner.executeOuter(this, this.loader.getInstructionSet(name), this.loader, context,
+        ExpressLoader snapshot = this.loader.getSnapshot();
+        return InstructionSetRunner.executeOuter(this, snapshot.getInstructionSet(name), snapshot, context,
             errorList, isTrace, isCatchException, false, -1);
     }
 
@@ -593,7 +711,108 @@ public class ExpressRunner {
      */
     public Object execute(InstructionSet instructionSet, IExpressContext<String, Object> context,
         List<String> errorList, boolean isTrace, boolean isCatchException) throws Exception {
-        return executeReentrant(instructionSet, context, errorList, isTrace, isCatchException, -1);
+        return executeReentrant(instructionSet, context, errorList, isTrace, isCatchException, ExecuteLimit.NO_LIMIT);
+    }
+
+    /**
+     * 执行指令集
+     *
+     * @param instructionSet
+     * @param context
+     * @param errorList
+     * @param isTrace
+     * @param isCatchException
+     * @param executeLimit 本次执行的时间、指令数、循环次数和集合长度限制
+     * @return
+     * @throws Exception
+     */
+    public Object execute(InstructionSet instructionSet, IExpressContext<String, Object> context,
+        List<String> errorList, boolean isTrace, boolean isCatchException, ExecuteLimit executeLimit)
+        throws Exception {
+        return executeReentrant(instructionSet, context, errorList, isTrace, isCatchException, executeLimit);
+    }
+
+    /**
+     * 使用同一个指令集批量执行多个上下文，遇到异常继续执行后续记录
+     *
+     * @param instructionSet
+     * @param contextList
+     * @return 每条记录的结果、异常和错误信息
+     * @throws Exception
+     */
+    public BatchResult executeBatch(InstructionSet instructionSet,
+        List<? extends IExpressContext<String, Object>> contextList) throws Exception {
+        return executeBatch(instructionSet, contextList, false, null, contextList.size());
+    }
+
+    /**
+     * 使用同一个指令集批量执行多个上下文
+     * 运行期的准备工作只做一次，RunEnvironment 等对象在记录之间复用，比逐条调用 execute 开销更小
+     *
+     * @param instructionSet
+     * @param contextList
+     * @param isStopOnFailure 遇到异常是否停止执行后续记录
+     * @param executor        为null的时候在当前线程执行，否则按照 partitionSize 拆分后提交到 executor 并行执行
+     * @param partitionSize   每个并行任务执行的记录数量
+     * @return 每条记录的结果、异常和错误信息
+     * @throws Exception
+     */
+    public BatchResult executeBatch(InstructionSet instructionSet,
+        List<? extends IExpressContext<String, Object>> contextList, boolean isStopOnFailure, Executor executor,
+        int partitionSize) throws Exception {
+        if (partitionSize <= 0) {
+            throw new QLException("批量执行的分片大小必须大于0:" + partitionSize);
+        }
+        BatchResult batchResult = new BatchResult(contextList.size());
+        // 所有分片使用同一个版本的函数定义
+        ExpressLoader snapshot = this.loader.getSnapshot();
+        if (executor == null || contextList.size() <= partitionSize) {
+            executeBatchPartition(instructionSet, snapshot, contextList, 0, contextList.size(), isStopOnFailure,
+                batchResult);
+            return batchResult;
+        }
+
+        int partitionCount = (contextList.size() + partitionSize - 1) / partitionSize;
+        CountDownLatch latch = new CountDownLatch(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            int from = i * partitionSize;
+            int to = Math.min(from + partitionSize, contextList.size());
+            Runnable task = () -> {
+                try {
+                    executeBatchPartition(instructionSet, snapshot, contextList, from, to, isStopOnFailure,
+                        batchResult);
+                } finally {
+                    latch.countDown();
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // executor 拒绝的分片在当前线程执行
+                task.run();
+            }
+        }
+        latch.await();
+        return batchResult;
+    }
+
+    private void executeBatchPartition(InstructionSet instructionSet, ExpressLoader snapshot,
+        List<? extends IExpressContext<String, Object>> contextList, int from, int to, boolean isStopOnFailure,
+        BatchResult batchResult) {
+        InstructionSetRunner.executeBatch(this, instructionSet, snapshot, contextList, from, to,
+            !OperateDataCacheManager.isExecuting(this), isStopOnFailure, batchResult);
+    }
+
+    /**
+     * 把多条规则编译成规则集，规则之间重复的纯表达式(例如 user.age、amount * rate)在一次执行中只计算一次
+     * 被任意一条规则赋值的属性和字段不参与共享
+     *
+     * @param expressList 规则文本
+     * @return
+     * @throws Exception
+     */
+    public RuleSet compileRuleSet(List<String> expressList) throws Exception {
+        return RuleSetCompiler.compile(this, this.loader, expressList);
     }
 
     /**
@@ -610,7 +829,26 @@ public class ExpressRunner {
      */
     public Object execute(String expressString, IExpressContext<String, Object> context, List<String> errorList,
         boolean isCache, boolean isTrace, long timeoutMillis) throws Exception {
-        return this.executeInner(expressString, context, errorList, isCache, isTrace, timeoutMillis);
+        return this.executeInner(expressString, context, errorList, isCache, isTrace,
+            new ExecuteLimit(timeoutMillis));
+    }
+
+    /**
+     * 执行一段文本
+     *
+     * @param expressString 程序文本
+     * @param context       执行上下文
+     * @param errorList     输出的错误信息List
+     * @param isCache       是否使用Cache中的指令集
+     * @param isTrace       是否输出详细的执行指令信息
+     * @param executeLimit  本次执行的时间、指令数、循环次数和集合长度限制, 超过限制抛出 QLTimeoutException 或者
+     *                      QLExecuteLimitException
+     * @return
+     * @throws Exception
+     */
+    public Object execute(String expressString, IExpressContext<String, Object> context, List<String> errorList,
+        boolean isCache, boolean isTrace, ExecuteLimit executeLimit) throws Exception {
+        return this.executeInner(expressString, context, errorList, isCache, isTrace, executeLimit);
     }
 
     /**
@@ -626,11 +864,11 @@ public class ExpressRunner {
      */
     public Object execute(String expressString, IExpressContext<String, Object> context, List<String> errorList,
         boolean isCache, boolean isTrace) throws Exception {
-        return executeInner(expressString, context, errorList, isCache, isTrace, -1);
+        return executeInner(expressString, context, errorList, isCache, isTrace, ExecuteLimit.NO_LIMIT);
     }
 
     private Object executeInner(String expressString, IExpressContext<String, Object> context, List<String> errorList,
-                                boolean isCache, boolean isTrace, long timeoutMillis) throws Exception {
+                                boolean isCache, boolean isTrace, ExecuteLimit executeLimit) throws Exception {
         InstructionSet parseResult;
         if (isCache) {
             parseResult = getInstructionSetFromLocalCache(expressString);
@@ -638,25 +876,18 @@ public class ExpressRunner {
             parseResult = this.parseInstructionSet(expressString);
         }
 
-        return executeReentrant(parseResult, context, errorList, isTrace, false, timeoutMillis);
+        return executeReentrant(parseResult, context, errorList, isTrace, false, executeLimit);
     }
 
     private Object executeReentrant(InstructionSet parseResult, IExpressContext<String, Object> context, List<String> errorList,
-                                    boolean isTrace, boolean isCatchException, long timeoutMillis) throws Exception {
-        try {
-            int reentrantCount = threadReentrantCount.get() + 1;
-            threadReentrantCount.set(reentrantCount);
-
-            return reentrantCount > 1 ?
-                    // 线程重入
-                    InstructionSetRunner.execute(this, parseResult, this.loader, context, errorList, isTrace,
-                            isCatchException, true, false,
-                            new ExecuteTimeout(timeoutMillis)) :
-                    InstructionSetRunner.executeOuter(this, parseResult, this.loader, context, errorList, isTrace,
-                            isCatchException, false, timeoutMillis);
-        } finally {
-            threadReentrantCount.set(threadReentrantCount.get() - 1);
-        }
+                                    boolean isTrace, boolean isCatchException, ExecuteLimit executeLimit) throws Exception {
+        return OperateDataCacheManager.isExecuting(this) ?
+                // 线程重入
+                InstructionSetRunner.execute(this, parseResult, this.loader.getSnapshot(), context, errorList,
+                        isTrace, isCatchException, true, false,
+                        new ExecuteTimeout(executeLimit)) :
+                InstructionSetRunner.executeOuter(this, parseResult, this.loader.getSnapshot(), context, errorList,
+                        isTrace, isCatchException, false, executeLimit);
     }
 
     /**
@@ -677,6 +908,17 @@ public class ExpressRunner {
 
             ExpressNode root = this.parse.parse(this.rootExpressPackage, text, isTrace, selfDefineClass);
             InstructionSet result = createInstructionSet(root, "main");
+            LocalVarSlotResolver.resolve(result);
+            ScopeResolver.resolve(result);
+            if (this.isOptimizeInstructionSet) {
+                int removedCount = InstructionSetOptimizer.optimize(result);
+                if (this.isTrace && removedCount > 0) {
+                    System.out.println("指令集优化减少了" + removedCount + "条指令");
+                }
+            }
+            if (this.isCompileInstructionSet) {
+                InstructionSetCompiler.compile(result);
+            }
             if (this.isTrace) {
                 System.out.println(result);
             }
@@ -768,6 +1010,32 @@ public class ExpressRunner {
         this.isShortCircuit = isShortCircuit;
     }
 
+    public boolean isCompileInstructionSet() {
+        return isCompileInstructionSet;
+    }
+
+    /**
+     * 开启后新解析的指令集会被编译成JVM类执行，已经缓存的指令集不受影响
+     *
+     * @param isCompileInstructionSet
+     */
+    public void setCompileInstructionSet(boolean isCompileInstructionSet) {
+        this.isCompileInstructionSet = isCompileInstructionSet;
+    }
+
+    public boolean isOptimizeInstructionSet() {
+        return isOptimizeInstructionSet;
+    }
+
+    /**
+     * 关闭后新解析的指令集不再做常量折叠和无用分支消除，已经缓存的指令集不受影响
+     *
+     * @param isOptimizeInstructionSet
+     */
+    public void setOptimizeInstructionSet(boolean isOptimizeInstructionSet) {
+        this.isOptimizeInstructionSet = isOptimizeInstructionSet;
+    }
+
     /**
      * 是否忽略charset类型的数据，而识别为string，比如'a' -》 "a"
      * 默认为不忽略，正常识别为String
@@ -20,6 +20,7 @@ import java.util.regex.Pattern;
 import com.ql.util.express.annotation.QLAlias;
 import com.ql.util.express.config.QLExpressRunStrategy;
 import com.ql.util.express.exception.QLException;
+import com.ql.util.express.util.MethodCache;
 import com.ql.util.express.util.QLAliasUtils;
 
 /**
@@ -54,7 +55,12 @@ public class ExpressUtil {
     public static final String DT_char = "char";
     public static final String DT_boolean = "boolean";
 
-    private static final Map<String, Object> METHOD_CACHE = new ConcurrentHashMap<>();
+    /**
+     * 构造函数在 methodCache 中使用的名称
+     */
+    private static final String CONSTRUCTOR_NAME = "<init>";
+
+    private static volatile MethodCache methodCache = new MethodCache();
 
     private static final Class<?>[][] CLASS_MATCHES = new Class[][] {
         //原始数据类型
@@ -289,19 +295,28 @@ public class ExpressUtil {
         return builder.toString();
     }
 
+    /**
+     * 设置方法和构造函数查找缓存在每个类型上的容量上限，已经缓存的内容会被清空
+     *
+     * @param maximumSizePerClass -1 表示不限制
+     */
+    public static void setMethodCacheMaximumSize(long maximumSizePerClass) {
+        methodCache = new MethodCache(maximumSizePerClass);
+    }
+
     public static Method findMethodWithCache(Class<?> baseClass, String methodName,
         Class<?>[] types, boolean publicOnly, boolean isStatic) {
-        String key = createCacheKey(baseClass, methodName, types, publicOnly, isStatic);
-        Object result = METHOD_CACHE.get(key);
+        MethodCache cache = methodCache;
+        Object result = cache.get(baseClass, methodName, types, publicOnly, isStatic);
         if (result == null) {
             result = findMethod(baseClass, methodName, types, publicOnly, isStatic);
             if (result == null) {
-                METHOD_CACHE.put(key, void.class);
+                cache.put(baseClass, methodName, types, publicOnly, isStatic, MethodCache.NOT_FOUND);
             } else {
                 ((Method)result).setAccessible(true);
-                METHOD_CACHE.put(key, result);
+                cache.put(baseClass, methodName, types, publicOnly, isStatic, result);
             }
-        } else if (result == void.class) {
+        } else if (result == MethodCache.NOT_FOUND) {
             result = null;
         }
         return (Method)result;
@@ -315,13 +330,16 @@ public class ExpressUtil {
     }
 
     public static Constructor<?> findConstructorWithCache(Class<?> baseClass, Class<?>[] types) {
-        String key = createCacheKey(baseClass, "new", types, true, false);
-        Constructor<?> result = (Constructor<?>)METHOD_CACHE.get(key);
+        MethodCache cache = methodCache;
+        Object result = cache.get(baseClass, CONSTRUCTOR_NAME, types, true, false);
         if (result == null) {
             result = findConstructor(baseClass, types);
-            METHOD_CACHE.put(key, result);
+            cache.put(baseClass, CONSTRUCTOR_NAME, types, true, false,
+                result == null ? MethodCache.NOT_FOUND : result);
+        } else if (result == MethodCache.NOT_FOUND) {
+            result = null;
         }
-        return result;
+        return (Constructor<?>)result;
     }
 
     private static Constructor<?> findConstructor(Class<?> baseClass, Class<?>[] types) {
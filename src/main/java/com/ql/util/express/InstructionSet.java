@@ -8,9 +8,9 @@ import java.util.TreeMap;
 
 import com.ql.util.express.config.QLExpressTimer;
 import com.ql.util.express.exception.QLException;
-import com.ql.util.express.exception.QLTimeoutException;
 import com.ql.util.express.instruction.FunctionInstructionSet;
 import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.compile.CompiledInstructions;
 import com.ql.util.express.instruction.detail.Instruction;
 import com.ql.util.express.instruction.detail.InstructionCallSelfDefineFunction;
 import com.ql.util.express.instruction.detail.InstructionConstData;
@@ -38,6 +38,11 @@ public class InstructionSet {
      */
     private Instruction[] instructionList = new Instruction[0];
 
+    /**
+     * 编译后的指令集，为null的时候解释执行
+     */
+    private CompiledInstructions compiledInstructions;
+
     /**
      * 函数和宏定义
      */
@@ -53,6 +58,11 @@ public class InstructionSet {
      */
     private final List<OperateDataLocalVar> parameterList = new ArrayList<>();
 
+    /**
+     * 局部变量槽位的数量，执行时 RunEnvironment 按照这个数量分配局部变量数组
+     */
+    private int localVarCount = 0;
+
     public InstructionSet(String type) {
         this.type = type;
     }
@@ -124,6 +134,7 @@ public class InstructionSet {
         System.arraycopy(this.instructionList, 0, newArray, 0, this.instructionList.length);
         newArray[this.instructionList.length] = item;
         this.instructionList = newArray;
+        this.compiledInstructions = null;
     }
 
     /**
@@ -138,6 +149,7 @@ public class InstructionSet {
         System.arraycopy(this.instructionList, point, newArray, point + 1, this.instructionList.length - point);
         newArray[point] = item;
         this.instructionList = newArray;
+        this.compiledInstructions = null;
     }
 
     /**
@@ -189,25 +201,41 @@ public class InstructionSet {
 
     public void executeInnerOriginalInstruction(RunEnvironment environment, List<String> errorList)
         throws Exception {
+        if (this.compiledInstructions != null) {
+            this.compiledInstructions.execute(environment, errorList);
+            environment.checkExecuteTimeout();
+            return;
+        }
         Instruction instruction = null;
         try {
             while (environment.programPoint < this.instructionList.length) {
-                if (environment.isExecuteTimeout()) {
-                    throw new QLTimeoutException("运行QLExpress脚本的下一条指令超过了限定时间:"
-                        + environment.getExecuteTimeOut().getTimeoutMillis() + "ms");
-                }
+                environment.checkExecuteLimit();
                 instruction = this.instructionList[environment.programPoint];
                 instruction.execute(environment, errorList);
             }
         } catch (Exception e) {
             throw e;
         }
+        // 运行时间是采样检查的，结束的时候再检查一次
+        environment.checkExecuteTimeout();
     }
 
     public int getInstructionLength() {
         return this.instructionList.length;
     }
 
+    public CompiledInstructions getCompiledInstructions() {
+        return compiledInstructions;
+    }
+
+    public void setCompiledInstructions(CompiledInstructions compiledInstructions) {
+        this.compiledInstructions = compiledInstructions;
+    }
+
+    public boolean isCompiled() {
+        return this.compiledInstructions != null;
+    }
+
     public void addMacroDefine(String macroName, FunctionInstructionSet functionInstructionSet) {
         this.functionDefine.put(macroName, functionInstructionSet);
     }
@@ -236,6 +264,14 @@ public class InstructionSet {
         this.parameterList.add(localVar);
     }
 
+    public int getLocalVarCount() {
+        return localVarCount;
+    }
+
+    public void setLocalVarCount(int localVarCount) {
+        this.localVarCount = localVarCount;
+    }
+
     public void addInstruction(Instruction instruction) {
         this.addArrayItem(instruction);
     }
@@ -244,6 +280,21 @@ public class InstructionSet {
         this.insertArrayItem(point, instruction);
     }
 
+    /**
+     * 整体替换指令，指令集优化之后使用，跳转指令的偏移量需要调用方保证正确
+     *
+     * @param instructions
+     */
+    public void replaceInstructions(Instruction[] instructions) {
+        this.instructionList = instructions;
+        this.compiledInstructions = null;
+    }
+
+    public void replaceInstruction(int point, Instruction instruction) {
+        this.instructionList[point] = instruction;
+        this.compiledInstructions = null;
+    }
+
     public Instruction getInstruction(int point) {
         return this.instructionList[point];
     }
@@ -26,6 +26,11 @@ public class InstructionSetContext implements IExpressContext<String, Object> {
 
     private ExpressRunner runner;
 
+    /**
+     * 当前执行的时间和资源限制，由 InstructionSetRunner 在执行期间设置
+     */
+    private ExecuteTimeout executeTimeout;
+
     public ExpressRunner getRunner() {
         return runner;
     }
@@ -51,6 +56,7 @@ public class InstructionSetContext implements IExpressContext<String, Object> {
         expressLoader = null;
         isSupportDynamicFieldName = false;
         runner = null;
+        executeTimeout = null;
         symbolTable.clear();
     }
 
@@ -110,6 +116,26 @@ public class InstructionSetContext implements IExpressContext<String, Object> {
         return result;
     }
 
+    public ExecuteTimeout getExecuteTimeout() {
+        return executeTimeout;
+    }
+
+    public void setExecuteTimeout(ExecuteTimeout executeTimeout) {
+        this.executeTimeout = executeTimeout;
+    }
+
+    /**
+     * 创建数组或集合之前检查长度限制
+     *
+     * @param size 元素个数
+     * @throws QLException
+     */
+    public void checkCollectionSize(long size) throws QLException {
+        if (this.executeTimeout != null) {
+            this.executeTimeout.checkCollectionSize(size);
+        }
+    }
+
     public ExpressLoader getExpressLoader() {
         return expressLoader;
     }
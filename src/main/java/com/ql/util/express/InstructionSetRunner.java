@@ -1,5 +1,6 @@
 package com.ql.util.express;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.ql.util.express.config.QLExpressTimer;
@@ -14,22 +15,84 @@ public class InstructionSetRunner {
     public static Object executeOuter(ExpressRunner runner, InstructionSet instructionSet, ExpressLoader loader,
         IExpressContext<String, Object> iExpressContext, List<String> errorList, boolean isTrace,
         boolean isCatchException, boolean isSupportDynamicFieldName, long timeoutMills) throws Exception {
+        return executeOuter(runner, instructionSet, loader, iExpressContext, errorList, isTrace, isCatchException,
+            isSupportDynamicFieldName, new ExecuteLimit(timeoutMills));
+    }
+
+    public static Object executeOuter(ExpressRunner runner, InstructionSet instructionSet, ExpressLoader loader,
+        IExpressContext<String, Object> iExpressContext, List<String> errorList, boolean isTrace,
+        boolean isCatchException, boolean isSupportDynamicFieldName, ExecuteLimit executeLimit) throws Exception {
         try {
             OperateDataCacheManager.push(runner);
             return execute(runner, instructionSet, loader, iExpressContext, errorList, isTrace, isCatchException,
-                    true, isSupportDynamicFieldName,
-                    timeoutMills != -1?
-                        // 优先使用参数传入
-                        new ExecuteTimeout(timeoutMills):
-                        // 如果参数未传入, 则看一下是否有全局设置
-                        QLExpressTimer.getTimeout() != -1?
-                            new ExecuteTimeout(QLExpressTimer.getTimeout()):
-                            ExecuteTimeout.NO_TIMEOUT);
+                    true, isSupportDynamicFieldName, createExecuteTimeout(executeLimit));
         } finally {
             OperateDataCacheManager.resetCache();
         }
     }
 
+    private static ExecuteTimeout createExecuteTimeout(long timeoutMills) {
+        return createExecuteTimeout(new ExecuteLimit(timeoutMills));
+    }
+
+    private static ExecuteTimeout createExecuteTimeout(ExecuteLimit executeLimit) {
+        // 优先使用参数传入的超时时间, 如果参数未传入, 则看一下是否有全局设置
+        long timeoutMills = executeLimit.getTimeoutMillis() != -1 ? executeLimit.getTimeoutMillis()
+            : QLExpressTimer.getTimeout();
+        if (timeoutMills == -1 && executeLimit.getMaxInstructionCount() == -1 && executeLimit.getMaxLoopCount() == -1
+            && executeLimit.getMaxCollectionSize() == -1) {
+            return ExecuteTimeout.NO_TIMEOUT;
+        }
+        return new ExecuteTimeout(timeoutMills, executeLimit.getMaxInstructionCount(), executeLimit.getMaxLoopCount(),
+            executeLimit.getMaxCollectionSize());
+    }
+
+    /**
+     * 使用同一个指令集依次执行 [from, to) 范围内的上下文，结果写入 batchResult
+     * 最外层执行的时候只入栈一次 runner，每条记录执行完只重置对象池，RunEnvironment 和 InstructionSetContext 在记录之间复用；
+     * 嵌套在其它脚本中执行的时候对象池还在被外层使用，不能重置
+     *
+     * @param runner 解释器
+     * @param instructionSet 指令集
+     * @param loader 加载器
+     * @param contextList 上下文列表
+     * @param from 开始下标
+     * @param to 结束下标(不包含)
+     * @param isOuter 是否是最外层的执行
+     * @param isStopOnFailure 遇到异常是否停止
+     * @param batchResult 执行结果
+     */
+    public static void executeBatch(ExpressRunner runner, InstructionSet instructionSet, ExpressLoader loader,
+        List<? extends IExpressContext<String, Object>> contextList, int from, int to, boolean isOuter,
+        boolean isStopOnFailure, BatchResult batchResult) {
+        if (isOuter) {
+            OperateDataCacheManager.push(runner);
+        }
+        try {
+            for (int i = from; i < to && !batchResult.isStopped(); i++) {
+                List<String> errorList = new ArrayList<>();
+                try {
+                    Object result = execute(runner, instructionSet, loader, contextList.get(i), errorList, false,
+                        false, true, false, isOuter ? createExecuteTimeout(-1) : ExecuteTimeout.NO_TIMEOUT);
+                    batchResult.setResult(i, result, errorList);
+                } catch (Exception e) {
+                    batchResult.setException(i, e, errorList);
+                    if (isStopOnFailure) {
+                        batchResult.stop();
+                    }
+                } finally {
+                    if (isOuter) {
+                        OperateDataCacheManager.getOperateDataCache().resetCache();
+                    }
+                }
+            }
+        } finally {
+            if (isOuter) {
+                OperateDataCacheManager.resetCache();
+            }
+        }
+    }
+
     /**
      * 批量执行指令集合，指令集间可以共享 变量和函数
      *
@@ -60,6 +123,8 @@ public class InstructionSetRunner {
         RunEnvironment environment;
         Object result = null;
         environment = OperateDataCacheManager.fetRunEnvironment(set, context, isTrace, executeTimeOut);
+        ExecuteTimeout parentExecuteTimeout = context.getExecuteTimeout();
+        context.setExecuteTimeout(executeTimeOut);
         try {
             CallResult tempResult = set.execute(environment, context, errorList, isReturnLastData);
             if (tempResult.isExit()) {
@@ -69,6 +134,8 @@ public class InstructionSetRunner {
             if (!isCatchException) {
                 throw e;
             }
+        } finally {
+            context.setExecuteTimeout(parentExecuteTimeout);
         }
         return result;
     }
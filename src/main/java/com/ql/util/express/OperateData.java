@@ -73,16 +73,25 @@ public class OperateData {
         if (!this.getClass().equals(OperateData.class)) {
             throw new RuntimeException(this.getClass().getName() + "没有实现：toJavaCode()");
         }
-        String result = "new " + OperateData.class.getName() + "(";
-        if (String.class.equals(this.type)) {
+        return toJavaCode(OperateData.class);
+    }
+
+    /**
+     * 生成创建 dataClass 的代码，dataClass 需要有 (Object, Class) 的构造函数
+     */
+    protected String toJavaCode(Class<? extends OperateData> dataClass) {
+        String result = "new " + dataClass.getName() + "(";
+        if (this.dataObject == null) {
+            result = result + "null";
+        } else if (String.class.equals(this.type)) {
             result = result + "\"" + this.dataObject + "\"";
-        } else if (this.type.isPrimitive()) {
+        } else if (this.type != null && this.type.isPrimitive()) {
             result = result + this.dataObject.getClass().getName() + ".valueOf(\"" + this.dataObject + "\")";
         } else {
             result = result + "new " + this.dataObject.getClass().getName() + "(\"" + this.dataObject
                 + "\")";
         }
-        result = result + "," + type.getName() + ".class";
+        result = result + "," + (this.type == null ? "null" : this.type.getName() + ".class");
         result = result + ")";
         return result;
     }
@@ -6,6 +6,7 @@ import com.ql.util.express.config.QLExpressRunStrategy;
 import com.ql.util.express.exception.QLException;
 import com.ql.util.express.instruction.OperateDataCacheManager;
 import com.ql.util.express.instruction.op.OperatorBase;
+import com.ql.util.express.instruction.opdata.OperateDataConst;
 
 /**
  * 操作符的基类
@@ -17,10 +18,11 @@ public abstract class Operator extends OperatorBase {
     public OperateData executeInner(InstructionSetContext parent, ArraySwap list) throws Exception {
         Object[] parameters = new Object[list.length];
         for (int i = 0; i < list.length; i++) {
-            if (list.get(i) == null && QLExpressRunStrategy.isAvoidNullPointer()) {
+            OperateData operateData = list.get(i);
+            if (operateData == null && QLExpressRunStrategy.isAvoidNullPointer()) {
                 parameters[i] = null;
             } else {
-                parameters[i] = list.get(i).getObject(parent);
+                parameters[i] = OperateDataConst.getObject(operateData, parent);
             }
         }
         Object result = this.executeInner(parameters);
@@ -135,6 +135,15 @@ public class OperatorOfNumber {
     }
 
     public static int compareNumber(Number op1, Number op2) {
+        if (op1 instanceof Integer && op2 instanceof Integer) {
+            return Integer.compare((Integer)op1, (Integer)op2);
+        }
+        if (PrimitiveNumberOperator.isIntegral(op1) && PrimitiveNumberOperator.isIntegral(op2)) {
+            return Long.compare(op1.longValue(), op2.longValue());
+        }
+        if (op1 instanceof Double && op2 instanceof Double) {
+            return Double.compare((Double)op1, (Double)op2);
+        }
         int type1 = OperatorOfNumber.getSeq(op1.getClass());
         int type2 = OperatorOfNumber.getSeq(op2.getClass());
         int type = Math.max(type1, type2);
@@ -186,6 +195,10 @@ public class OperatorOfNumber {
         if (op1 instanceof String || op2 instanceof String) {
             return op1.toString() + op2;
         }
+        Number result = PrimitiveNumberOperator.add(op1, op2, isPrecise);
+        if (result != null) {
+            return result;
+        }
         if (isPrecise) {
             return PreciseNumberOperator.addPrecise((Number)op1, (Number)op2);
         } else {
@@ -194,6 +207,10 @@ public class OperatorOfNumber {
     }
 
     public static Number subtract(Object op1, Object op2, boolean isPrecise) throws Exception {
+        Number result = PrimitiveNumberOperator.subtract(op1, op2, isPrecise);
+        if (result != null) {
+            return result;
+        }
         if (isPrecise) {
             return PreciseNumberOperator.subtractPrecise((Number)op1, (Number)op2);
         } else {
@@ -202,6 +219,10 @@ public class OperatorOfNumber {
     }
 
     public static Number multiply(Object op1, Object op2, boolean isPrecise) throws Exception {
+        Number result = PrimitiveNumberOperator.multiply(op1, op2, isPrecise);
+        if (result != null) {
+            return result;
+        }
         if (isPrecise) {
             return PreciseNumberOperator.multiplyPrecise((Number)op1, (Number)op2);
         } else {
@@ -222,6 +243,107 @@ public class OperatorOfNumber {
     }
 }
 
+/**
+ * int、long、double 的快速计算，不经过 getSeq 判断和 BigDecimal 转换
+ * 结果和 NormalNumberOperator、PreciseNumberOperator 完全一致：普通模式按照 java 的规则计算(溢出不提升)，
+ * 高精度模式下整数计算结果按照 basicNumberFormatTransfer 的规则收缩为 int 或者 long，long 溢出的时候返回null，交给 BigDecimal 计算
+ */
+class PrimitiveNumberOperator {
+    private PrimitiveNumberOperator() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static boolean isIntegral(Object op) {
+        return op instanceof Integer || op instanceof Long;
+    }
+
+    private static boolean isDoubleOperand(Object op1, Object op2) {
+        return (op1 instanceof Double || isIntegral(op1)) && (op2 instanceof Double || isIntegral(op2));
+    }
+
+    private static Number narrow(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int)value;
+        }
+        return value;
+    }
+
+    /**
+     * @return 不能快速计算的时候返回null
+     */
+    public static Number add(Object op1, Object op2, boolean isPrecise) {
+        if (op1 instanceof Integer && op2 instanceof Integer) {
+            if (isPrecise) {
+                return narrow((long)(Integer)op1 + (Integer)op2);
+            }
+            return (Integer)op1 + (Integer)op2;
+        }
+        if (isIntegral(op1) && isIntegral(op2)) {
+            long a = ((Number)op1).longValue();
+            long b = ((Number)op2).longValue();
+            if (isPrecise) {
+                long r = a + b;
+                return ((a ^ r) & (b ^ r)) < 0 ? null : narrow(r);
+            }
+            return a + b;
+        }
+        if (!isPrecise && isDoubleOperand(op1, op2)) {
+            return ((Number)op1).doubleValue() + ((Number)op2).doubleValue();
+        }
+        return null;
+    }
+
+    public static Number subtract(Object op1, Object op2, boolean isPrecise) {
+        if (op1 instanceof Integer && op2 instanceof Integer) {
+            if (isPrecise) {
+                return narrow((long)(Integer)op1 - (Integer)op2);
+            }
+            return (Integer)op1 - (Integer)op2;
+        }
+        if (isIntegral(op1) && isIntegral(op2)) {
+            long a = ((Number)op1).longValue();
+            long b = ((Number)op2).longValue();
+            if (isPrecise) {
+                long r = a - b;
+                return ((a ^ b) & (a ^ r)) < 0 ? null : narrow(r);
+            }
+            return a - b;
+        }
+        if (!isPrecise && isDoubleOperand(op1, op2)) {
+            return ((Number)op1).doubleValue() - ((Number)op2).doubleValue();
+        }
+        return null;
+    }
+
+    public static Number multiply(Object op1, Object op2, boolean isPrecise) {
+        if (op1 instanceof Integer && op2 instanceof Integer) {
+            if (isPrecise) {
+                return narrow((long)(Integer)op1 * (Integer)op2);
+            }
+            return (Integer)op1 * (Integer)op2;
+        }
+        if (isIntegral(op1) && isIntegral(op2)) {
+            long a = ((Number)op1).longValue();
+            long b = ((Number)op2).longValue();
+            if (isPrecise) {
+                long r = a * b;
+                long absA = Math.abs(a);
+                long absB = Math.abs(b);
+                if (((absA | absB) >>> 31 != 0)
+                    && ((b != 0 && r / b != a) || (a == Long.MIN_VALUE && b == -1))) {
+                    return null;
+                }
+                return narrow(r);
+            }
+            return a * b;
+        }
+        if (!isPrecise && isDoubleOperand(op1, op2)) {
+            return ((Number)op1).doubleValue() * ((Number)op2).doubleValue();
+        }
+        return null;
+    }
+}
+
 class NormalNumberOperator {
     private NormalNumberOperator() {
         throw new IllegalStateException("Utility class");
@@ -0,0 +1,70 @@
+package com.ql.util.express;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 规则集编译的结果，由 {@link ExpressRunner#compileRuleSet(List)} 生成
+ * 规则按照顺序执行，公共子表达式在一次执行中只计算一次，执行结果和规则一一对应
+ */
+public class RuleSet {
+    private final ExpressRunner runner;
+    private final InstructionSet[] instructionSets;
+    private final int sharedValueCount;
+
+    public RuleSet(ExpressRunner runner, InstructionSet[] instructionSets, int sharedValueCount) {
+        this.runner = runner;
+        this.instructionSets = instructionSets;
+        this.sharedValueCount = sharedValueCount;
+    }
+
+    public int size() {
+        return this.instructionSets.length;
+    }
+
+    public InstructionSet getInstructionSet(int index) {
+        return this.instructionSets[index];
+    }
+
+    /**
+     * @return 规则之间共享的子表达式数量
+     */
+    public int getSharedValueCount() {
+        return this.sharedValueCount;
+    }
+
+    /**
+     * 执行全部规则，某条规则异常的时候继续执行后续规则
+     *
+     * @param context
+     * @return 每条规则的结果、异常和错误信息
+     */
+    public BatchResult execute(IExpressContext<String, Object> context) {
+        return execute(context, false);
+    }
+
+    /**
+     * @param context
+     * @param isStopOnFailure 遇到异常是否停止执行后续规则
+     * @return 每条规则的结果、异常和错误信息
+     */
+    public BatchResult execute(IExpressContext<String, Object> context, boolean isStopOnFailure) {
+        RuleSetContext ruleSetContext = new RuleSetContext(context, this.sharedValueCount);
+        BatchResult batchResult = new BatchResult(this.instructionSets.length);
+        for (int i = 0; i < this.instructionSets.length; i++) {
+            List<String> errorList = new ArrayList<>();
+            try {
+                Object result = this.runner.execute(this.instructionSets[i], ruleSetContext, errorList, false,
+                    false);
+                batchResult.setResult(i, result, errorList);
+            } catch (Exception e) {
+                batchResult.setException(i, e, errorList);
+                if (isStopOnFailure) {
+                    batchResult.stop();
+                    break;
+                }
+            }
+        }
+        return batchResult;
+    }
+}
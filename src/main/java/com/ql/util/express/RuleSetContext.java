@@ -0,0 +1,69 @@
+package com.ql.util.express;
+
+/**
+ * 规则集执行时的上下文，读写都委托给调用方传入的上下文，
+ * 同时保存本次执行中已经计算过的公共子表达式的值，供后续规则直接使用
+ */
+public class RuleSetContext implements IExpressContext<String, Object> {
+    private final IExpressContext<String, Object> context;
+    private final Object[] values;
+    private final Class<?>[] types;
+    private final boolean[] computed;
+
+    public RuleSetContext(IExpressContext<String, Object> context, int sharedValueCount) {
+        this.context = context;
+        this.values = new Object[sharedValueCount];
+        this.types = new Class<?>[sharedValueCount];
+        this.computed = new boolean[sharedValueCount];
+    }
+
+    /**
+     * 从指令的执行上下文向上查找规则集上下文
+     *
+     * @param context
+     * @return 不是在规则集中执行的时候返回null
+     */
+    public static RuleSetContext find(IExpressContext<String, Object> context) {
+        while (context instanceof InstructionSetContext) {
+            context = ((InstructionSetContext)context).getParent();
+        }
+        return context instanceof RuleSetContext ? (RuleSetContext)context : null;
+    }
+
+    /**
+     * @return 调用方传入的原始上下文
+     */
+    public IExpressContext<String, Object> getContext() {
+        return this.context;
+    }
+
+    public boolean isComputed(int slot) {
+        return slot < this.computed.length && this.computed[slot];
+    }
+
+    public Object getValue(int slot) {
+        return this.values[slot];
+    }
+
+    public Class<?> getType(int slot) {
+        return this.types[slot];
+    }
+
+    public void setValue(int slot, Object value, Class<?> type) {
+        if (slot < this.computed.length) {
+            this.values[slot] = value;
+            this.types[slot] = type;
+            this.computed[slot] = true;
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        return this.context.get(key);
+    }
+
+    @Override
+    public Object put(String name, Object object) {
+        return this.context.put(name, object);
+    }
+}
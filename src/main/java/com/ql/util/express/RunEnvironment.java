@@ -1,19 +1,42 @@
 package com.ql.util.express;
 
+import java.util.Arrays;
+
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.opdata.OperateDataLocalVar;
+
 public final class RunEnvironment {
     private static final int INIT_DATA_LENGTH = 15;
+    private static final int INIT_SCOPE_DEPTH = 4;
+    private static final OperateDataLocalVar[] EMPTY_LOCAL_VARS = new OperateDataLocalVar[0];
     private boolean isTrace;
     private int point = -1;
     int programPoint = 0;
     private OperateData[] dataContainer;
     private final ArraySwap arraySwap = new ArraySwap();
 
+    /**
+     * 局部变量槽位，下标在解析的时候分配，参见 LocalVarSlotResolver
+     */
+    private OperateDataLocalVar[] localVars = EMPTY_LOCAL_VARS;
+
     private boolean isExit = false;
     private Object returnValue = null;
 
     private InstructionSet instructionSet;
     private InstructionSetContext context;
 
+    /**
+     * 每一层作用域当前的上下文，下标0是指令集执行的上下文，参见 ScopeResolver
+     */
+    private InstructionSetContext[] scopeContexts = new InstructionSetContext[INIT_SCOPE_DEPTH];
+
+    /**
+     * 对应层次的上下文离开作用域之后是否可以重用
+     */
+    private boolean[] scopeReusable = new boolean[INIT_SCOPE_DEPTH];
+
     /**
      * 脚本运行时间限制
      */
@@ -26,6 +49,8 @@ public final class RunEnvironment {
         this.context = instructionSetContext;
         this.isTrace = isTrace;
         this.executeTimeOut = executeTimeOut;
+        this.initialLocalVars(instructionSet);
+        this.scopeContexts[0] = instructionSetContext;
     }
 
     public void initial(InstructionSet instructionSet, InstructionSetContext instructionSetContext,
@@ -34,6 +59,18 @@ public final class RunEnvironment {
         this.context = instructionSetContext;
         this.isTrace = isTrace;
         this.executeTimeOut = executeTimeOut;
+        this.initialLocalVars(instructionSet);
+        Arrays.fill(this.scopeContexts, null);
+        this.scopeContexts[0] = instructionSetContext;
+    }
+
+    private void initialLocalVars(InstructionSet instructionSet) {
+        int localVarCount = instructionSet == null ? 0 : instructionSet.getLocalVarCount();
+        if (localVarCount > this.localVars.length) {
+            this.localVars = new OperateDataLocalVar[localVarCount];
+        } else {
+            Arrays.fill(this.localVars, null);
+        }
     }
 
     public void clear() {
@@ -46,6 +83,8 @@ public final class RunEnvironment {
 
         instructionSet = null;
         context = null;
+        Arrays.fill(localVars, null);
+        Arrays.fill(scopeContexts, null);
 
         executeTimeOut = null;
     }
@@ -162,10 +201,99 @@ public final class RunEnvironment {
         }
     }
 
+    public OperateDataLocalVar getLocalVar(int slot) {
+        return this.localVars[slot];
+    }
+
+    public void setLocalVar(int slot, OperateDataLocalVar localVar) {
+        this.localVars[slot] = localVar;
+    }
+
+    /**
+     * 进入作用域的时候清除作用域内定义的变量，避免读到上一次进入时的变量
+     *
+     * @param fromSlot
+     * @param toSlot
+     */
+    public void clearLocalVars(int fromSlot, int toSlot) {
+        Arrays.fill(this.localVars, fromSlot, toSlot, null);
+    }
+
+    /**
+     * 进入第 depth 层作用域，父上下文是第 depth - 1 层作用域当前的上下文；
+     * 这一层上一次使用的上下文可以重用的时候清空之后重用，不再从缓存中获取新的上下文
+     *
+     * @param depth
+     * @param isReuseContext 本次创建的上下文离开作用域之后是否可以重用
+     */
+    public void openScope(int depth, boolean isReuseContext) {
+        if (depth >= this.scopeContexts.length) {
+            int newLength = Math.max(depth + 1, this.scopeContexts.length * 2);
+            this.scopeContexts = Arrays.copyOf(this.scopeContexts, newLength);
+            this.scopeReusable = Arrays.copyOf(this.scopeReusable, newLength);
+        }
+        InstructionSetContext parent = this.scopeContexts[depth - 1];
+        InstructionSetContext result = this.scopeContexts[depth];
+        if (result != null && this.scopeReusable[depth]) {
+            result.clear();
+            result.initial(true, parent.getExpressRunner(), parent, parent.getExpressLoader(),
+                parent.isSupportDynamicFieldName());
+        } else {
+            result = OperateDataCacheManager.fetchInstructionSetContext(true, parent.getExpressRunner(), parent,
+                parent.getExpressLoader(), parent.isSupportDynamicFieldName());
+        }
+        result.setExecuteTimeout(parent.getExecuteTimeout());
+        this.scopeContexts[depth] = result;
+        this.scopeReusable[depth] = isReuseContext;
+        this.context = result;
+    }
+
+    /**
+     * 离开第 depth 层作用域，即使 break、continue 跳过了内层作用域的结束指令也能回到正确的上下文
+     *
+     * @param depth
+     */
+    public void closeScope(int depth) {
+        this.context = this.scopeContexts[depth - 1];
+    }
+
     public boolean isExecuteTimeout() {
         return executeTimeOut != null && executeTimeOut.isExpired();
     }
 
+    /**
+     * 每条指令执行之前调用，检查执行时间和指令数限制
+     *
+     * @throws QLException
+     */
+    public void checkExecuteLimit() throws QLException {
+        if (executeTimeOut != null) {
+            executeTimeOut.checkInstruction();
+        }
+    }
+
+    /**
+     * 指令集执行结束的时候调用，检查执行时间
+     *
+     * @throws QLException
+     */
+    public void checkExecuteTimeout() throws QLException {
+        if (executeTimeOut != null) {
+            executeTimeOut.checkTimeout();
+        }
+    }
+
+    /**
+     * 循环向回跳转的时候调用，检查循环次数限制
+     *
+     * @throws QLException
+     */
+    public void checkLoopLimit() throws QLException {
+        if (executeTimeOut != null) {
+            executeTimeOut.checkLoop();
+        }
+    }
+
     public ExecuteTimeout getExecuteTimeOut() {
         return executeTimeOut;
     }
@@ -34,6 +34,12 @@ public class QLExpressRunStrategy {
      */
     private static boolean compareNullLessMoreAsFalse = false;
 
+    /**
+     * in 的右操作数是集合或数组变量时，按照对象地址缓存构建好的哈希集合
+     * 集合在两次执行之间原地修改并且大小不变的时候无法感知，所以默认关闭
+     */
+    private static boolean cacheInCollection = false;
+
     private static ClassLoader customClassLoader = null;
 
     /**
@@ -124,6 +130,14 @@ public class QLExpressRunStrategy {
         QLExpressRunStrategy.avoidNullPointer = avoidNullPointer;
     }
 
+    public static boolean isCacheInCollection() {
+        return cacheInCollection;
+    }
+
+    public static void setCacheInCollection(boolean cacheInCollection) {
+        QLExpressRunStrategy.cacheInCollection = cacheInCollection;
+    }
+
     public static ClassLoader getCustomClassLoader() {
         return customClassLoader;
     }
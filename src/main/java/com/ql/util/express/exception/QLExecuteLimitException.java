@@ -0,0 +1,41 @@
+package com.ql.util.express.exception;
+
+/**
+ * 超过了 ExecuteLimit 中设置的指令数、循环次数或者集合长度限制
+ * 超时仍然抛出 {@link QLTimeoutException}
+ */
+public class QLExecuteLimitException extends QLException {
+    private static final long serialVersionUID = -4190381962741528135L;
+
+    public enum LimitType {
+        /**
+         * 执行的指令总数
+         */
+        INSTRUCTION_COUNT,
+        /**
+         * 循环累计执行的次数
+         */
+        LOOP_COUNT,
+        /**
+         * 创建的数组或集合的长度
+         */
+        COLLECTION_SIZE
+    }
+
+    private final LimitType limitType;
+    private final long limit;
+
+    public QLExecuteLimitException(LimitType limitType, long limit, String message) {
+        super(message);
+        this.limitType = limitType;
+        this.limit = limit;
+    }
+
+    public LimitType getLimitType() {
+        return limitType;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+}
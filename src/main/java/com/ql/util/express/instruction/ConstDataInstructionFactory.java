@@ -7,6 +7,7 @@ import com.ql.util.express.InstructionSet;
 import com.ql.util.express.OperateData;
 import com.ql.util.express.instruction.detail.InstructionConstData;
 import com.ql.util.express.instruction.opdata.OperateClass;
+import com.ql.util.express.instruction.opdata.OperateDataConst;
 import com.ql.util.express.parse.ExpressNode;
 
 public class ConstDataInstructionFactory extends InstructionFactory {
@@ -14,7 +15,7 @@ public class ConstDataInstructionFactory extends InstructionFactory {
         if (node.isTypeEqualsOrChild("CONST_CLASS")) {
             return new OperateClass(node.getValue(), (Class<?>)node.getObjectValue());
         } else {
-            return new OperateData(node.getObjectValue(), node.getObjectValue().getClass());
+            return new OperateDataConst(node.getObjectValue(), node.getObjectValue().getClass());
         }
     }
 
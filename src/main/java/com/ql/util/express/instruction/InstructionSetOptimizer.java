@@ -0,0 +1,439 @@
+package com.ql.util.express.instruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ql.util.express.ExpressUtil;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.Operator;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionConstData;
+import com.ql.util.express.instruction.detail.InstructionGoTo;
+import com.ql.util.express.instruction.detail.InstructionGoToWithCondition;
+import com.ql.util.express.instruction.detail.InstructionGoToWithNotNull;
+import com.ql.util.express.instruction.detail.InstructionInConstSet;
+import com.ql.util.express.instruction.detail.InstructionLikeWithPattern;
+import com.ql.util.express.instruction.detail.InstructionLoadAttr;
+import com.ql.util.express.instruction.detail.InstructionLoadLambda;
+import com.ql.util.express.instruction.detail.InstructionLoadLocalVar;
+import com.ql.util.express.instruction.detail.InstructionOperator;
+import com.ql.util.express.instruction.detail.InstructionOperatorWithConst;
+import com.ql.util.express.instruction.detail.InstructionReturn;
+import com.ql.util.express.instruction.op.InSet;
+import com.ql.util.express.instruction.op.LikePattern;
+import com.ql.util.express.instruction.op.OperatorAdd;
+import com.ql.util.express.instruction.op.OperatorAnd;
+import com.ql.util.express.instruction.op.OperatorBase;
+import com.ql.util.express.instruction.op.OperatorBit;
+import com.ql.util.express.instruction.op.OperatorEqualsLessMore;
+import com.ql.util.express.instruction.op.OperatorIn;
+import com.ql.util.express.instruction.op.OperatorLike;
+import com.ql.util.express.instruction.op.OperatorMultiplyDivide;
+import com.ql.util.express.instruction.op.OperatorNot;
+import com.ql.util.express.instruction.op.OperatorOr;
+import com.ql.util.express.instruction.op.OperatorReduce;
+import com.ql.util.express.instruction.opdata.OperateDataConst;
+
+/**
+ * 指令集优化，在 ExpressRunner.createInstructionSet 之后执行
+ * 1、常量折叠：操作数全部是常量的纯运算符在编译期计算，例如 1000 * 60 * 60、"A" + "B"
+ * 2、无用分支消除：条件为常量的跳转改写成无条件跳转或者直接删除，并删除执行不到的指令
+ * 运算符使用解析时绑定的实例计算，高精度(isPrecise)的设置保持不变；
+ * 短路(isShortCircuit)生成的条件跳转同样按照常量条件处理，运行结果和优化前一致
+ * 3、常量操作数合并：一个操作数是常量的四则运算合并为 InstructionOperatorWithConst，常量不再入栈；
+ * 模式是常量的 like 合并为 InstructionLikeWithPattern，模式在优化时编译；
+ * 候选值全部是常量的 in 合并为 InstructionInConstSet，候选值在优化时构建成哈希集合
+ */
+public class InstructionSetOptimizer {
+    /**
+     * 没有副作用，只依赖操作数的运算符；用户替换或者设置了错误信息的运算符不参与折叠
+     */
+    private static final Set<Class<?>> PURE_OPERATOR_CLASSES = new HashSet<>(Arrays.asList(
+        OperatorAdd.class, OperatorReduce.class, OperatorMultiplyDivide.class, OperatorEqualsLessMore.class,
+        OperatorAnd.class, OperatorOr.class, OperatorNot.class, OperatorBit.class, OperatorIn.class,
+        OperatorLike.class));
+
+    private InstructionSetOptimizer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 优化指令集，包括其中定义的函数、宏和lambda
+     *
+     * @param instructionSet
+     * @return 减少的指令数量
+     * @throws Exception
+     */
+    public static int optimize(InstructionSet instructionSet) throws Exception {
+        int removedCount = 0;
+        for (FunctionInstructionSet functionInstructionSet : instructionSet.getFunctionInstructionSets()) {
+            removedCount = removedCount + optimize(functionInstructionSet.instructionSet);
+        }
+        List<Instruction> instructions = new ArrayList<>(instructionSet.getInstructionLength());
+        for (int i = 0; i < instructionSet.getInstructionLength(); i++) {
+            Instruction instruction = instructionSet.getInstruction(i);
+            if (instruction instanceof InstructionLoadLambda) {
+                removedCount = removedCount + optimize(((InstructionLoadLambda)instruction).getLambdaSet());
+            }
+            instructions.add(instruction);
+        }
+
+        int originalLength = instructions.size();
+        boolean changed = true;
+        while (changed) {
+            Instruction[] array = instructions.toArray(new Instruction[0]);
+            boolean[] removed = new boolean[array.length];
+            changed = foldConstant(array, removed);
+            changed = eliminateConstantCondition(array, removed) || changed;
+            changed = eliminateUnreachable(array, removed) || changed;
+            if (changed) {
+                instructions = compact(array, removed);
+            }
+        }
+        Instruction[] array = instructions.toArray(new Instruction[0]);
+        boolean[] removed = new boolean[array.length];
+        if (fuseConstOperand(array, removed)) {
+            instructions = compact(array, removed);
+        }
+        if (instructions.isEmpty() && originalLength > 0) {
+            // 保留一条空跳转，ExpressLoader 依赖 hasMain 判断是否有主体
+            instructions.add(new InstructionGoTo(1));
+        }
+        if (instructions.size() < originalLength) {
+            instructionSet.replaceInstructions(instructions.toArray(new Instruction[0]));
+        }
+        return removedCount + originalLength - instructions.size();
+    }
+
+    /**
+     * 常量 常量 ... 运算符 => 常量
+     */
+    private static boolean foldConstant(Instruction[] array, boolean[] removed) throws Exception {
+        boolean[] targets = findJumpTargets(array);
+        boolean changed = false;
+        for (int i = 0; i < array.length; i++) {
+            if (!(array[i] instanceof InstructionOperator)) {
+                continue;
+            }
+            InstructionOperator instructionOperator = (InstructionOperator)array[i];
+            int opDataNumber = instructionOperator.getOpDataNumber();
+            OperatorBase operator = instructionOperator.getOperator();
+            if (opDataNumber == 0 || opDataNumber > i || !isPureOperator(operator)) {
+                continue;
+            }
+            Object[] parameters = new Object[opDataNumber];
+            boolean isConstant = true;
+            for (int j = 0; j < opDataNumber && isConstant; j++) {
+                int point = i - opDataNumber + j;
+                // 除了第一个操作数，中间不能有其它指令跳入
+                isConstant = !removed[point] && (j == 0 || !targets[point]) && isConstData(array[point]);
+                if (isConstant) {
+                    parameters[j] = ((InstructionConstData)array[point]).getOperateData().getObject(null);
+                }
+            }
+            if (!isConstant || targets[i]) {
+                continue;
+            }
+            Object result;
+            try {
+                result = ((Operator)operator).executeInner(parameters);
+            } catch (Exception e) {
+                // 保留到运行期抛出异常
+                continue;
+            }
+            if (result instanceof OperateData) {
+                continue;
+            }
+            OperateData operateData = result == null ? new OperateDataConst(null, null)
+                : new OperateDataConst(result, ExpressUtil.getSimpleDataType(result.getClass()));
+            array[i] = new InstructionConstData(operateData).setLine(instructionOperator.getLine());
+            for (int j = i - opDataNumber; j < i; j++) {
+                removed[j] = true;
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * X 常量 运算符 => X 运算符(常量在右)
+     * 常量 LoadAttr 运算符 => LoadAttr 运算符(常量在左)
+     */
+    private static boolean fuseConstOperand(Instruction[] array, boolean[] removed) throws Exception {
+        boolean[] targets = findJumpTargets(array);
+        boolean changed = false;
+        for (int i = 1; i < array.length; i++) {
+            if (array[i].getClass() != InstructionOperator.class || targets[i]) {
+                continue;
+            }
+            InstructionOperator instructionOperator = (InstructionOperator)array[i];
+            if (isConstPatternLike(array, removed, targets, i)) {
+                String pattern = (String)((InstructionConstData)array[i - 1]).getOperateData().getObject(null);
+                array[i] = new InstructionLikeWithPattern((OperatorLike)instructionOperator.getOperator(),
+                    LikePattern.compile(pattern)).setLine(instructionOperator.getLine());
+                removed[i - 1] = true;
+                changed = true;
+                continue;
+            }
+            if (isConstCandidateIn(array, removed, targets, i)) {
+                int opDataNumber = instructionOperator.getOpDataNumber();
+                List<Object> values = new ArrayList<>(opDataNumber - 1);
+                for (int j = i - opDataNumber + 1; j < i; j++) {
+                    values.add(((InstructionConstData)array[j]).getOperateData().getObject(null));
+                    removed[j] = true;
+                }
+                array[i] = new InstructionInConstSet((OperatorIn)instructionOperator.getOperator(),
+                    new InSet(values)).setLine(instructionOperator.getLine());
+                changed = true;
+                continue;
+            }
+            char opCode = getArithmeticOpCode(instructionOperator.getOperator());
+            if (instructionOperator.getOpDataNumber() != 2 || opCode == 0) {
+                continue;
+            }
+            if (!targets[i - 1] && isConstData(array[i - 1]) && !removed[i - 1]) {
+                Object constValue = ((InstructionConstData)array[i - 1]).getOperateData().getObject(null);
+                array[i] = new InstructionOperatorWithConst(instructionOperator.getOperator(), opCode, constValue,
+                    true).setLine(instructionOperator.getLine());
+                removed[i - 1] = true;
+                changed = true;
+            } else if (i >= 2 && !targets[i - 1] && isLoadAttr(array[i - 1]) && isConstData(array[i - 2])
+                && !removed[i - 2]) {
+                Object constValue = ((InstructionConstData)array[i - 2]).getOperateData().getObject(null);
+                array[i] = new InstructionOperatorWithConst(instructionOperator.getOperator(), opCode, constValue,
+                    false).setLine(instructionOperator.getLine());
+                removed[i - 2] = true;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * X 常量字符串 like => X like(编译好的模式)
+     */
+    private static boolean isConstPatternLike(Instruction[] array, boolean[] removed, boolean[] targets, int point)
+        throws Exception {
+        InstructionOperator instructionOperator = (InstructionOperator)array[point];
+        OperatorBase operator = instructionOperator.getOperator();
+        if (operator.getClass() != OperatorLike.class || operator.getErrorInfo() != null
+            || instructionOperator.getOpDataNumber() != 2 || targets[point - 1] || removed[point - 1]
+            || !isConstData(array[point - 1])) {
+            return false;
+        }
+        return ((InstructionConstData)array[point - 1]).getOperateData().getObject(null) instanceof String;
+    }
+
+    /**
+     * X 常量... in => X in(常量集合)
+     */
+    private static boolean isConstCandidateIn(Instruction[] array, boolean[] removed, boolean[] targets,
+        int point) throws Exception {
+        InstructionOperator instructionOperator = (InstructionOperator)array[point];
+        OperatorBase operator = instructionOperator.getOperator();
+        int opDataNumber = instructionOperator.getOpDataNumber();
+        if (operator.getClass() != OperatorIn.class || operator.getErrorInfo() != null || opDataNumber < 2
+            || opDataNumber > point) {
+            return false;
+        }
+        for (int j = point - opDataNumber + 1; j < point; j++) {
+            if (targets[j] || removed[j] || !isConstData(array[j])) {
+                return false;
+            }
+            // 单个常量是数组或者集合的时候按照集合展开，保持原来的逻辑
+            Object value = ((InstructionConstData)array[j]).getOperateData().getObject(null);
+            if (value == null || value.getClass().isArray() || value instanceof List) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char getArithmeticOpCode(OperatorBase operator) {
+        if (operator.getErrorInfo() != null) {
+            return 0;
+        }
+        Class<?> operatorClass = operator.getClass();
+        if (operatorClass == OperatorAdd.class) {
+            return InstructionOperatorWithConst.OP_ADD;
+        } else if (operatorClass == OperatorReduce.class) {
+            return InstructionOperatorWithConst.OP_SUBTRACT;
+        } else if (operatorClass == OperatorMultiplyDivide.class) {
+            switch (operator.getName()) {
+                case "*":
+                    return InstructionOperatorWithConst.OP_MULTIPLY;
+                case "/":
+                    return InstructionOperatorWithConst.OP_DIVIDE;
+                case "%":
+                case "mod":
+                    return InstructionOperatorWithConst.OP_MODULO;
+                default:
+                    return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isLoadAttr(Instruction instruction) {
+        return instruction.getClass() == InstructionLoadAttr.class
+            || instruction.getClass() == InstructionLoadLocalVar.class;
+    }
+
+    /**
+     * 常量条件的跳转：条件成立改写成无条件跳转，不成立直接删除
+     */
+    private static boolean eliminateConstantCondition(Instruction[] array, boolean[] removed)
+        throws Exception {
+        boolean[] targets = findJumpTargets(array);
+        boolean changed = false;
+        for (int i = 1; i < array.length; i++) {
+            if (!(array[i] instanceof InstructionGoToWithCondition) || removed[i] || removed[i - 1] || targets[i]
+                || !isConstData(array[i - 1])) {
+                continue;
+            }
+            Object value = ((InstructionConstData)array[i - 1]).getOperateData().getObject(null);
+            if (!(value instanceof Boolean)) {
+                continue;
+            }
+            InstructionGoToWithCondition goTo = (InstructionGoToWithCondition)array[i];
+            boolean isJump = (Boolean)value == goTo.isCondition();
+            if (isJump) {
+                array[i] = new InstructionGoTo(goTo.getOffset()).setLine(goTo.getLine());
+            } else {
+                removed[i] = true;
+            }
+            if (goTo.isPopStackData()) {
+                removed[i - 1] = true;
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * 删除执行不到的指令和跳转到下一条指令的无条件跳转
+     */
+    private static boolean eliminateUnreachable(Instruction[] array, boolean[] removed) {
+        boolean[] reachable = new boolean[array.length];
+        int[] stack = new int[array.length + 1];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int point = stack[--top];
+            // 跳过已经删除的指令，和运行期的效果一致
+            while (point < array.length && removed[point]) {
+                point++;
+            }
+            if (point >= array.length || reachable[point]) {
+                continue;
+            }
+            reachable[point] = true;
+            Instruction instruction = array[point];
+            int offset = getJumpOffset(instruction);
+            if (offset != 0) {
+                stack[top++] = point + offset;
+            }
+            if (!(instruction instanceof InstructionGoTo) && !(instruction instanceof InstructionReturn)) {
+                stack[top++] = point + 1;
+            }
+        }
+        boolean changed = false;
+        for (int i = 0; i < array.length; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            if (!reachable[i] || (array[i] instanceof InstructionGoTo && isJumpToNext(array, removed, i))) {
+                removed[i] = true;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isJumpToNext(Instruction[] array, boolean[] removed, int point) {
+        int target = point + ((InstructionGoTo)array[point]).getOffset();
+        if (target <= point) {
+            return false;
+        }
+        for (int i = point + 1; i < target && i < array.length; i++) {
+            if (!removed[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除指令并重新计算跳转的偏移量，跳到被删除指令的改为跳到其后第一条保留的指令
+     */
+    static List<Instruction> compact(Instruction[] array, boolean[] removed) {
+        int[] newPoint = new int[array.length + 1];
+        int count = 0;
+        for (int i = 0; i < array.length; i++) {
+            newPoint[i] = count;
+            if (!removed[i]) {
+                count++;
+            }
+        }
+        newPoint[array.length] = count;
+
+        List<Instruction> result = new ArrayList<>(count);
+        for (int i = 0; i < array.length; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            int offset = getJumpOffset(array[i]);
+            if (offset != 0) {
+                int target = Math.max(0, Math.min(array.length, i + offset));
+                setJumpOffset(array[i], newPoint[target] - newPoint[i]);
+            }
+            result.add(array[i]);
+        }
+        return result;
+    }
+
+    static boolean[] findJumpTargets(Instruction[] array) {
+        boolean[] targets = new boolean[array.length + 1];
+        for (int i = 0; i < array.length; i++) {
+            int offset = getJumpOffset(array[i]);
+            if (offset != 0) {
+                targets[Math.max(0, Math.min(array.length, i + offset))] = true;
+            }
+        }
+        return targets;
+    }
+
+    static int getJumpOffset(Instruction instruction) {
+        if (instruction instanceof InstructionGoTo) {
+            return ((InstructionGoTo)instruction).getOffset();
+        } else if (instruction instanceof InstructionGoToWithCondition) {
+            return ((InstructionGoToWithCondition)instruction).getOffset();
+        } else if (instruction instanceof InstructionGoToWithNotNull) {
+            return ((InstructionGoToWithNotNull)instruction).getOffset();
+        }
+        return 0;
+    }
+
+    static void setJumpOffset(Instruction instruction, int offset) {
+        if (instruction instanceof InstructionGoTo) {
+            ((InstructionGoTo)instruction).setOffset(offset);
+        } else if (instruction instanceof InstructionGoToWithCondition) {
+            ((InstructionGoToWithCondition)instruction).setOffset(offset);
+        } else if (instruction instanceof InstructionGoToWithNotNull) {
+            ((InstructionGoToWithNotNull)instruction).setOffset(offset);
+        }
+    }
+
+    private static boolean isConstData(Instruction instruction) {
+        return instruction.getClass() == InstructionConstData.class
+            && OperateDataConst.isConstValue(((InstructionConstData)instruction).getOperateData());
+    }
+
+    static boolean isPureOperator(OperatorBase operator) {
+        return PURE_OPERATOR_CLASSES.contains(operator.getClass()) && operator.getErrorInfo() == null;
+    }
+}
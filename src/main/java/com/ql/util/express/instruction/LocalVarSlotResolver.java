@@ -0,0 +1,120 @@
+package com.ql.util.express.instruction;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionCloseNewArea;
+import com.ql.util.express.instruction.detail.InstructionConstData;
+import com.ql.util.express.instruction.detail.InstructionDefineLocalVar;
+import com.ql.util.express.instruction.detail.InstructionLoadAttr;
+import com.ql.util.express.instruction.detail.InstructionLoadLambda;
+import com.ql.util.express.instruction.detail.InstructionLoadLocalVar;
+import com.ql.util.express.instruction.detail.InstructionOpenNewArea;
+import com.ql.util.express.instruction.detail.InstructionOperator;
+import com.ql.util.express.instruction.op.OperatorDef;
+import com.ql.util.express.instruction.opdata.OperateDataLocalVar;
+
+/**
+ * 在解析时给函数参数和 def 定义的局部变量分配槽位
+ * 按照 openNewArea/closeNewArea 确定作用域，在变量定义之后、作用域之内读取变量的 LoadAttr 改成按照槽位读取；
+ * 其它名称仍然在运行期通过符号表和外部的 IExpressContext 查找
+ * 局部变量仍然会加入符号表，宏、lambda、export 等按照名称查找的场景不受影响
+ */
+public class LocalVarSlotResolver {
+    private LocalVarSlotResolver() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 分配指令集的局部变量槽位，包括其中定义的函数、宏和lambda
+     * 需要在指令集优化之前执行，此时作用域的开始和结束指令是成对的
+     *
+     * @param instructionSet
+     */
+    public static void resolve(InstructionSet instructionSet) {
+        for (FunctionInstructionSet functionInstructionSet : instructionSet.getFunctionInstructionSets()) {
+            resolve(functionInstructionSet.instructionSet);
+        }
+
+        int slotCount = 0;
+        Deque<Map<String, Integer>> scopeStack = new ArrayDeque<>();
+        Deque<InstructionOpenNewArea> openStack = new ArrayDeque<>();
+        Deque<Integer> openSlotStack = new ArrayDeque<>();
+        scopeStack.push(new HashMap<>());
+        for (OperateDataLocalVar parameter : instructionSet.getParameters()) {
+            scopeStack.peek().put(parameter.getName(), slotCount++);
+        }
+
+        for (int i = 0; i < instructionSet.getInstructionLength(); i++) {
+            Instruction instruction = instructionSet.getInstruction(i);
+            Class<?> instructionClass = instruction.getClass();
+            if (instructionClass == InstructionOpenNewArea.class) {
+                scopeStack.push(new HashMap<>());
+                openStack.push((InstructionOpenNewArea)instruction);
+                openSlotStack.push(slotCount);
+            } else if (instructionClass == InstructionCloseNewArea.class) {
+                if (!openStack.isEmpty()) {
+                    scopeStack.pop();
+                    openStack.pop().setLocalVarRange(openSlotStack.pop(), slotCount);
+                }
+            } else if (instructionClass == InstructionLoadAttr.class) {
+                String name = ((InstructionLoadAttr)instruction).getAttrName();
+                Integer slot = findSlot(scopeStack, name);
+                if (slot != null) {
+                    instructionSet.replaceInstruction(i,
+                        new InstructionLoadLocalVar(name, slot).setLine(instruction.getLine()));
+                }
+            } else if (instructionClass == InstructionOperator.class) {
+                String name = getDefineName(instructionSet, i);
+                if (name != null) {
+                    InstructionOperator instructionOperator = (InstructionOperator)instruction;
+                    int slot = slotCount++;
+                    scopeStack.peek().put(name, slot);
+                    instructionSet.replaceInstruction(i, new InstructionDefineLocalVar(
+                        instructionOperator.getOperator(), instructionOperator.getOpDataNumber(), slot).setLine(
+                        instruction.getLine()));
+                }
+            } else if (instructionClass == InstructionLoadLambda.class) {
+                resolve(((InstructionLoadLambda)instruction).getLambdaSet());
+            }
+        }
+        instructionSet.setLocalVarCount(slotCount);
+    }
+
+    private static Integer findSlot(Deque<Map<String, Integer>> scopeStack, String name) {
+        Iterator<Map<String, Integer>> iterator = scopeStack.iterator();
+        while (iterator.hasNext()) {
+            Integer slot = iterator.next().get(name);
+            if (slot != null) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * def 指令的前一条指令是变量名称常量
+     */
+    private static String getDefineName(InstructionSet instructionSet, int point) {
+        InstructionOperator instructionOperator = (InstructionOperator)instructionSet.getInstruction(point);
+        if (instructionOperator.getOperator().getClass() != OperatorDef.class
+            || instructionOperator.getOpDataNumber() != 2 || point < 1) {
+            return null;
+        }
+        Instruction nameInstruction = instructionSet.getInstruction(point - 1);
+        if (!(nameInstruction instanceof InstructionConstData)) {
+            return null;
+        }
+        try {
+            Object name = ((InstructionConstData)nameInstruction).getOperateData().getObject(null);
+            return name instanceof String ? (String)name : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.ql.util.express.instruction;
 
+import java.util.Arrays;
+import java.util.function.Consumer;
+
 import com.ql.util.express.*;
 import com.ql.util.express.instruction.opdata.OperateDataArrayItem;
 import com.ql.util.express.instruction.opdata.OperateDataAttr;
@@ -7,104 +10,81 @@ import com.ql.util.express.instruction.opdata.OperateDataField;
 import com.ql.util.express.instruction.opdata.OperateDataKeyValue;
 import com.ql.util.express.instruction.opdata.OperateDataLocalVar;
 
+/**
+ * 单个线程(或者一次执行)使用的对象池
+ * 每种对象的数组从 initLength 开始，不够用的时候按照实际使用量翻倍增长，直到 maxLength；
+ * 数组中的对象在第一次使用的时候创建，超过 maxLength 之后临时创建，不放入对象池；
+ * resetCache 只清理本次执行用到的对象
+ */
 public class OperateDataCacheImpl implements IOperateDataCache {
-    private final OperateData[] dataList;
-    private final OperateDataAttr[] attrList;
-    private final OperateDataLocalVar[] localVarList;
-    private final OperateDataField[] fieldList;
-    private final OperateDataArrayItem[] arrayList;
-    private final OperateDataKeyValue[] keyValueList;
-    private final RunEnvironment[] environmentList;
-    private final CallResult[] callResultList;
-    private final InstructionSetContext[] contextList;
-
-    private int dataPoint = 0;
-    private int attrPoint = 0;
-    private int localVarPoint = 0;
-    private int fieldPoint = 0;
-    private int arrayPoint = 0;
-    private int keyValuePoint = 0;
-    private int environmentPoint = 0;
-    private int callResultPoint = 0;
-    private int contextPoint = 0;
-    private final int length;
+    private final Pool<OperateData> dataPool;
+    private final Pool<OperateDataAttr> attrPool;
+    private final Pool<OperateDataLocalVar> localVarPool;
+    private final Pool<OperateDataField> fieldPool;
+    private final Pool<OperateDataArrayItem> arrayPool;
+    private final Pool<OperateDataKeyValue> keyValuePool;
+    private final Pool<RunEnvironment> environmentPool;
+    private final Pool<CallResult> callResultPool;
+    private final Pool<InstructionSetContext> contextPool;
+    private final Pool<?>[] pools;
+
+    /**
+     * 为null的时候不统计
+     */
+    private final OperateDataCacheStatistics statistics;
 
     public OperateDataCacheImpl(int len) {
-        length = len;
-        dataList = new OperateData[len];
-        attrList = new OperateDataAttr[len];
-        localVarList = new OperateDataLocalVar[len];
-        fieldList = new OperateDataField[len];
-        arrayList = new OperateDataArrayItem[len];
-        keyValueList = new OperateDataKeyValue[len];
-        callResultList = new CallResult[len];
-        environmentList = new RunEnvironment[len];
-        contextList = new InstructionSetContext[len];
-        for (int i = 0; i < len; i++) {
-            dataList[i] = new OperateData(null, null);
-            attrList[i] = new OperateDataAttr(null, null);
-            localVarList[i] = new OperateDataLocalVar(null, null);
-            fieldList[i] = new OperateDataField(null, null);
-            arrayList[i] = new OperateDataArrayItem(null, -1);
-            keyValueList[i] = new OperateDataKeyValue(null, null);
-            callResultList[i] = new CallResult(null, false);
-            environmentList[i] = new RunEnvironment(null, null, false, ExecuteTimeout.NO_TIMEOUT);
-            contextList[i] = new InstructionSetContext(false, null, null, null, false);
-        }
+        this(len, len, null);
+    }
+
+    /**
+     * @param initLength 每种对象的初始数量
+     * @param maxLength 每种对象最多保留的数量
+     * @param statistics 使用统计，可以为null
+     */
+    public OperateDataCacheImpl(int initLength, int maxLength, OperateDataCacheStatistics statistics) {
+        this.statistics = statistics;
+        dataPool = new Pool<>(initLength, maxLength, OperateData::clear);
+        attrPool = new Pool<>(initLength, maxLength, OperateDataAttr::clearDataAttr);
+        localVarPool = new Pool<>(initLength, maxLength, OperateDataLocalVar::clearDataLocalVar);
+        fieldPool = new Pool<>(initLength, maxLength, OperateDataField::clearDataField);
+        arrayPool = new Pool<>(initLength, maxLength, OperateDataArrayItem::clearDataArrayItem);
+        keyValuePool = new Pool<>(initLength, maxLength, OperateDataKeyValue::clearDataKeyValue);
+        environmentPool = new Pool<>(initLength, maxLength, RunEnvironment::clear);
+        callResultPool = new Pool<>(initLength, maxLength, CallResult::clear);
+        contextPool = new Pool<>(initLength, maxLength, InstructionSetContext::clear);
+        pools = new Pool<?>[] {dataPool, attrPool, localVarPool, fieldPool, arrayPool, keyValuePool,
+            environmentPool, callResultPool, contextPool};
     }
 
     @Override
     public void resetCache() {
-        for (int i = 0; i <= dataPoint && i < length; i++) {
-            dataList[i].clear();
-        }
-        for (int i = 0; i <= attrPoint && i < length; i++) {
-            attrList[i].clearDataAttr();
-        }
-        for (int i = 0; i <= localVarPoint && i < length; i++) {
-            localVarList[i].clearDataLocalVar();
-        }
-        for (int i = 0; i <= fieldPoint && i < length; i++) {
-            fieldList[i].clearDataField();
+        long hit = 0;
+        long grow = 0;
+        long overflow = 0;
+        int peak = 0;
+        for (Pool<?> pool : pools) {
+            hit = hit + pool.point - pool.growCount;
+            grow = grow + pool.growCount;
+            overflow = overflow + pool.overflowCount;
+            peak = Math.max(peak, pool.point + pool.overflowCount);
+            pool.reset();
         }
-        for (int i = 0; i <= arrayPoint && i < length; i++) {
-            arrayList[i].clearDataArrayItem();
+        if (this.statistics != null && peak > 0) {
+            this.statistics.record(hit, grow, overflow, peak);
         }
-        for (int i = 0; i <= keyValuePoint && i < length; i++) {
-            keyValueList[i].clearDataKeyValue();
-        }
-        for (int i = 0; i <= callResultPoint && i < length; i++) {
-            callResultList[i].clear();
-        }
-        for (int i = 0; i <= environmentPoint && i < length; i++) {
-            environmentList[i].clear();
-        }
-        for (int i = 0; i <= contextPoint && i < length; i++) {
-            contextList[i].clear();
-        }
-
-        dataPoint = 0;
-        attrPoint = 0;
-        localVarPoint = 0;
-        fieldPoint = 0;
-        arrayPoint = 0;
-        keyValuePoint = 0;
-        callResultPoint = 0;
-        environmentPoint = 0;
-        contextPoint = 0;
     }
 
     @Override
     public InstructionSetContext fetchInstructionSetContext(boolean isExpandToParent, ExpressRunner expressRunner,
         IExpressContext<String, Object> parent, ExpressLoader expressLoader, boolean isSupportDynamicFieldName) {
-        InstructionSetContext result;
-        if (contextPoint < length) {
-            result = contextList[contextPoint];
-            result.initial(isExpandToParent, expressRunner, parent, expressLoader, isSupportDynamicFieldName);
-            contextPoint = contextPoint + 1;
-        } else {
+        InstructionSetContext result = contextPool.fetch();
+        if (result == null) {
             result = new InstructionSetContext(isExpandToParent, expressRunner, parent, expressLoader,
                 isSupportDynamicFieldName);
+            contextPool.add(result);
+        } else {
+            result.initial(isExpandToParent, expressRunner, parent, expressLoader, isSupportDynamicFieldName);
         }
         return result;
     }
@@ -112,110 +92,177 @@ public class OperateDataCacheImpl implements IOperateDataCache {
     @Override
     public RunEnvironment fetRunEnvironment(InstructionSet instructionSet, InstructionSetContext instructionSetContext,
         boolean isTrace, ExecuteTimeout executeTimeOut) {
-        RunEnvironment result;
-        if (environmentPoint < length) {
-            result = environmentList[environmentPoint];
-            result.initial(instructionSet, instructionSetContext, isTrace, executeTimeOut);
-            environmentPoint = environmentPoint + 1;
-        } else {
+        RunEnvironment result = environmentPool.fetch();
+        if (result == null) {
             result = new RunEnvironment(instructionSet, instructionSetContext, isTrace, executeTimeOut);
+            environmentPool.add(result);
+        } else {
+            result.initial(instructionSet, instructionSetContext, isTrace, executeTimeOut);
         }
         return result;
     }
 
     @Override
     public CallResult fetchCallResult(Object returnValue, boolean isExit) {
-        CallResult result;
-        if (callResultPoint < length) {
-            result = callResultList[callResultPoint];
-            result.initial(returnValue, isExit);
-            callResultPoint = callResultPoint + 1;
-        } else {
+        CallResult result = callResultPool.fetch();
+        if (result == null) {
             result = new CallResult(returnValue, isExit);
+            callResultPool.add(result);
+        } else {
+            result.initial(returnValue, isExit);
         }
         return result;
     }
 
     @Override
     public OperateData fetchOperateData(Object obj, Class<?> type) {
-        OperateData result;
-        if (dataPoint < length) {
-            result = dataList[dataPoint];
-            result.initial(obj, type);
-            dataPoint = dataPoint + 1;
-        } else {
+        OperateData result = dataPool.fetch();
+        if (result == null) {
             result = new OperateData(obj, type);
+            dataPool.add(result);
+        } else {
+            result.initial(obj, type);
         }
         return result;
     }
 
     @Override
     public OperateDataAttr fetchOperateDataAttr(String name, Class<?> type) {
-        OperateDataAttr result;
-        if (attrPoint < length) {
-            result = attrList[attrPoint];
-            result.initialDataAttr(name, type);
-            attrPoint = attrPoint + 1;
-        } else {
+        OperateDataAttr result = attrPool.fetch();
+        if (result == null) {
             result = new OperateDataAttr(name, type);
+            attrPool.add(result);
+        } else {
+            result.initialDataAttr(name, type);
         }
         return result;
     }
 
     @Override
     public OperateDataLocalVar fetchOperateDataLocalVar(String name, Class<?> type) {
-        OperateDataLocalVar result;
-        if (localVarPoint < length) {
-            result = localVarList[localVarPoint];
-            result.initialDataLocalVar(name, type);
-            localVarPoint = localVarPoint + 1;
-        } else {
+        OperateDataLocalVar result = localVarPool.fetch();
+        if (result == null) {
             result = new OperateDataLocalVar(name, type);
+            localVarPool.add(result);
+        } else {
+            result.initialDataLocalVar(name, type);
         }
         return result;
     }
 
     @Override
     public OperateDataField fetchOperateDataField(Object fieldObject, String fieldName) {
-        OperateDataField result;
-        if (fieldPoint < length) {
-            result = fieldList[fieldPoint];
-            result.initialDataField(fieldObject, fieldName);
-            fieldPoint = fieldPoint + 1;
-        } else {
+        OperateDataField result = fieldPool.fetch();
+        if (result == null) {
             result = new OperateDataField(fieldObject, fieldName);
+            fieldPool.add(result);
+        } else {
+            result.initialDataField(fieldObject, fieldName);
         }
         return result;
     }
 
     @Override
     public OperateDataArrayItem fetchOperateDataArrayItem(OperateData operateData, int index) {
-        OperateDataArrayItem result;
-        if (arrayPoint < length) {
-            result = arrayList[arrayPoint];
-            result.initialDataArrayItem(operateData, index);
-            arrayPoint = arrayPoint + 1;
-        } else {
+        OperateDataArrayItem result = arrayPool.fetch();
+        if (result == null) {
             result = new OperateDataArrayItem(operateData, index);
+            arrayPool.add(result);
+        } else {
+            result.initialDataArrayItem(operateData, index);
         }
         return result;
     }
 
     @Override
     public OperateDataKeyValue fetchOperateDataKeyValue(OperateData key, OperateData value) {
-        OperateDataKeyValue result;
-        if (this.keyValuePoint < length) {
-            result = this.keyValueList[keyValuePoint];
-            result.initialDataKeyValue(key, value);
-            keyValuePoint = keyValuePoint + 1;
-        } else {
+        OperateDataKeyValue result = keyValuePool.fetch();
+        if (result == null) {
             result = new OperateDataKeyValue(key, value);
+            keyValuePool.add(result);
+        } else {
+            result.initialDataKeyValue(key, value);
         }
         return result;
     }
 
+    /**
+     * @return 上次 resetCache 之后获取对象的次数，包括临时创建的对象
+     */
     @Override
     public long getFetchCount() {
-        return 0;
+        long count = 0;
+        for (Pool<?> pool : pools) {
+            count = count + pool.point + pool.overflowCount;
+        }
+        return count;
+    }
+
+    /**
+     * @return 每种对象当前保留的数组长度之和
+     */
+    public int getCapacity() {
+        int capacity = 0;
+        for (Pool<?> pool : pools) {
+            capacity = capacity + pool.items.length;
+        }
+        return capacity;
+    }
+
+    private static final class Pool<T> {
+        private final int maxLength;
+        private final Consumer<T> cleaner;
+        private Object[] items;
+
+        /**
+         * 本次执行已经使用的数量，[0, point) 之间的对象在 reset 的时候需要清理
+         */
+        private int point;
+        private int growCount;
+        private int overflowCount;
+
+        private Pool(int initLength, int maxLength, Consumer<T> cleaner) {
+            this.maxLength = Math.max(initLength, maxLength);
+            this.cleaner = cleaner;
+            this.items = new Object[initLength];
+        }
+
+        /**
+         * @return 对象池中下一个可以重用的对象，没有的时候返回null，由调用方创建之后调用 add
+         */
+        @SuppressWarnings("unchecked")
+        private T fetch() {
+            if (this.point < this.items.length) {
+                Object item = this.items[this.point];
+                if (item != null) {
+                    this.point++;
+                    return (T)item;
+                }
+            }
+            return null;
+        }
+
+        private void add(T item) {
+            if (this.point == this.items.length) {
+                if (this.items.length >= this.maxLength) {
+                    this.overflowCount++;
+                    return;
+                }
+                int newLength = Math.min(this.maxLength, Math.max(this.items.length * 2, 16));
+                this.items = Arrays.copyOf(this.items, newLength);
+            }
+            this.items[this.point++] = item;
+            this.growCount++;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void reset() {
+            for (int i = 0; i < this.point; i++) {
+                this.cleaner.accept((T)this.items[i]);
+            }
+            this.point = 0;
+            this.growCount = 0;
+            this.overflowCount = 0;
+        }
     }
 }
@@ -1,6 +1,7 @@
 package com.ql.util.express.instruction;
 
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 import com.ql.util.express.CallResult;
 import com.ql.util.express.ExecuteTimeout;
@@ -18,19 +19,35 @@ import com.ql.util.express.instruction.opdata.OperateDataKeyValue;
 import com.ql.util.express.instruction.opdata.OperateDataLocalVar;
 
 public class OperateDataCacheManager {
-    private static final ThreadLocal<RunnerDataCache> RUNNER_DATA_CACHE_THREAD_LOCAL = ThreadLocal.withInitial(
-        RunnerDataCache::new);
+    /**
+     * 当前线程正在执行的 runner 和对象池，没有执行的线程不创建
+     */
+    private static final ThreadLocal<RunnerDataCache> RUNNER_DATA_CACHE_THREAD_LOCAL = new ThreadLocal<>();
 
     private OperateDataCacheManager() {
         throw new IllegalStateException("Utility class");
     }
 
     public static void push(ExpressRunner expressRunner) {
-        RUNNER_DATA_CACHE_THREAD_LOCAL.get().push(expressRunner);
+        RunnerDataCache runnerDataCache = RUNNER_DATA_CACHE_THREAD_LOCAL.get();
+        if (runnerDataCache == null) {
+            runnerDataCache = new RunnerDataCache();
+            RUNNER_DATA_CACHE_THREAD_LOCAL.set(runnerDataCache);
+        }
+        runnerDataCache.push(expressRunner);
+    }
+
+    /**
+     * @return 当前线程是否正在执行 expressRunner 的脚本(线程重入)
+     */
+    public static boolean isExecuting(ExpressRunner expressRunner) {
+        RunnerDataCache runnerDataCache = RUNNER_DATA_CACHE_THREAD_LOCAL.get();
+        return runnerDataCache != null && runnerDataCache.contains(expressRunner);
     }
 
     public static IOperateDataCache getOperateDataCache() {
-        return RUNNER_DATA_CACHE_THREAD_LOCAL.get().getCache();
+        RunnerDataCache runnerDataCache = RUNNER_DATA_CACHE_THREAD_LOCAL.get();
+        return runnerDataCache == null ? null : runnerDataCache.getCache();
     }
 
     public static OperateData fetchOperateData(Object obj, Class<?> type) {
@@ -78,35 +95,65 @@ public class OperateDataCacheManager {
     }
 
     public static void resetCache() {
-        getOperateDataCache().resetCache();
-        RUNNER_DATA_CACHE_THREAD_LOCAL.get().pop();
+        RunnerDataCache runnerDataCache = RUNNER_DATA_CACHE_THREAD_LOCAL.get();
+        runnerDataCache.getCache().resetCache();
+        if (runnerDataCache.pop()) {
+            // 使用共享对象池的时候线程上不保留任何数据，线程结束之后没有可回收的对象
+            RUNNER_DATA_CACHE_THREAD_LOCAL.remove();
+        }
     }
 }
 
 class RunnerDataCache {
     private IOperateDataCache cache;
 
-    private final Stack<ExpressRunner> stack = new Stack<>();
+    private final Deque<Frame> stack = new ArrayDeque<>();
 
     public void push(ExpressRunner expressRunner) {
-        this.cache = expressRunner.getOperateDataCache();
-        this.stack.push(expressRunner);
+        OperateDataCachePool pool = expressRunner.getOperateDataCachePool();
+        this.cache = pool == null ? expressRunner.getOperateDataCache() : pool.borrow();
+        this.stack.push(new Frame(expressRunner, this.cache, pool));
     }
 
-    public void pop() {
-        //原有的逻辑
-        //this.cache = this.stack.pop().getOperateDataCache();
-
+    /**
+     * @return 栈为空，并且最后一层使用的是共享对象池
+     */
+    public boolean pop() {
         //bugfix处理ExpressRunner嵌套情况下，cache还原的问题
-        this.stack.pop();
+        Frame frame = this.stack.pop();
+        if (frame.pool != null) {
+            frame.pool.giveBack(frame.cache);
+        }
         if (!this.stack.isEmpty()) {
-            this.cache = this.stack.peek().getOperateDataCache();
-        } else {
-            this.cache = null;
+            this.cache = this.stack.peek().cache;
+            return false;
+        }
+        this.cache = null;
+        return frame.pool != null;
+    }
+
+    public boolean contains(ExpressRunner expressRunner) {
+        for (Frame frame : this.stack) {
+            if (frame.runner == expressRunner) {
+                return true;
+            }
         }
+        return false;
     }
 
     public IOperateDataCache getCache() {
         return cache;
     }
-}
\ No newline at end of file
+
+    private static class Frame {
+        private final ExpressRunner runner;
+        private final IOperateDataCache cache;
+        private final OperateDataCachePool pool;
+
+        Frame(ExpressRunner runner, IOperateDataCache cache, OperateDataCachePool pool) {
+            this.runner = runner;
+            this.cache = cache;
+            this.pool = pool;
+        }
+    }
+}
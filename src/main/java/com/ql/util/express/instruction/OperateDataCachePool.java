@@ -0,0 +1,63 @@
+package com.ql.util.express.instruction;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 多个线程共享的有界对象池缓存：最外层执行开始的时候借出一份，执行结束重置之后归还
+ * 用于虚拟线程这种线程数量很多、线程不复用的场景，对象池的数量只和同时执行的数量有关，而不是和线程数量有关
+ * 同时执行的数量超过空闲的对象池时临时创建，归还的时候空闲数量已经达到上限就直接丢弃
+ */
+public class OperateDataCachePool {
+    private final Queue<IOperateDataCache> idleCaches = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maxIdleCount;
+    private final Supplier<IOperateDataCache> cacheFactory;
+
+    /**
+     * @param maxIdleCount 最多保留的空闲对象池数量
+     * @param cacheLength 每个对象池中每种对象的数量
+     */
+    public OperateDataCachePool(int maxIdleCount, int cacheLength) {
+        this(maxIdleCount, () -> new OperateDataCacheImpl(cacheLength));
+    }
+
+    /**
+     * @param maxIdleCount 最多保留的空闲对象池数量
+     * @param cacheFactory 空闲对象池不够的时候创建新的对象池
+     */
+    public OperateDataCachePool(int maxIdleCount, Supplier<IOperateDataCache> cacheFactory) {
+        this.maxIdleCount = maxIdleCount;
+        this.cacheFactory = cacheFactory;
+    }
+
+    public IOperateDataCache borrow() {
+        IOperateDataCache cache = this.idleCaches.poll();
+        if (cache == null) {
+            return this.cacheFactory.get();
+        }
+        this.idleCount.decrementAndGet();
+        return cache;
+    }
+
+    /**
+     * @param cache 已经 resetCache 的对象池
+     */
+    public void giveBack(IOperateDataCache cache) {
+        if (this.idleCount.incrementAndGet() > this.maxIdleCount) {
+            this.idleCount.decrementAndGet();
+            return;
+        }
+        this.idleCaches.offer(cache);
+    }
+
+    public int getIdleCount() {
+        return this.idleCount.get();
+    }
+
+    public int getMaxIdleCount() {
+        return this.maxIdleCount;
+    }
+}
@@ -0,0 +1,73 @@
+package com.ql.util.express.instruction;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对象池的使用统计，同一个 ExpressRunner 的所有对象池共享
+ * 对象池在每次执行结束 resetCache 的时候汇总一次，执行过程中不访问共享的计数器
+ */
+public class OperateDataCacheStatistics {
+    private final LongAdder resetCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder growCount = new LongAdder();
+    private final LongAdder overflowCount = new LongAdder();
+    private final LongAccumulator peakUsage = new LongAccumulator(Math::max, 0);
+
+    void record(long hit, long grow, long overflow, int peak) {
+        this.resetCount.increment();
+        this.hitCount.add(hit);
+        this.growCount.add(grow);
+        this.overflowCount.add(overflow);
+        this.peakUsage.accumulate(peak);
+    }
+
+    /**
+     * @return 汇总的执行次数
+     */
+    public long getResetCount() {
+        return resetCount.sum();
+    }
+
+    /**
+     * @return 重用对象池中已有对象的次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return 对象池增长时新创建并保留下来的对象数
+     */
+    public long getGrowCount() {
+        return growCount.sum();
+    }
+
+    /**
+     * @return 对象池达到上限之后临时创建的对象数
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * @return 单次执行中同一种对象的最大使用数量，可以作为对象池上限的参考
+     */
+    public long getPeakUsage() {
+        return peakUsage.get();
+    }
+
+    public void reset() {
+        resetCount.reset();
+        hitCount.reset();
+        growCount.reset();
+        overflowCount.reset();
+        peakUsage.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "resetCount=" + getResetCount() + ",hitCount=" + getHitCount() + ",growCount=" + getGrowCount()
+            + ",overflowCount=" + getOverflowCount() + ",peakUsage=" + getPeakUsage();
+    }
+}
@@ -0,0 +1,481 @@
+package com.ql.util.express.instruction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ql.util.express.ExpressLoader;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.RuleSet;
+import com.ql.util.express.instruction.compile.InstructionSetCompiler;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionCallMacro;
+import com.ql.util.express.instruction.detail.InstructionCallSelfDefineFunction;
+import com.ql.util.express.instruction.detail.InstructionCloseNewArea;
+import com.ql.util.express.instruction.detail.InstructionConstData;
+import com.ql.util.express.instruction.detail.InstructionDefineLocalVar;
+import com.ql.util.express.instruction.detail.InstructionGoToWithCondition;
+import com.ql.util.express.instruction.detail.InstructionInConstSet;
+import com.ql.util.express.instruction.detail.InstructionLikeWithPattern;
+import com.ql.util.express.instruction.detail.InstructionLoadAttr;
+import com.ql.util.express.instruction.detail.InstructionLoadLambda;
+import com.ql.util.express.instruction.detail.InstructionLoadLocalVar;
+import com.ql.util.express.instruction.detail.InstructionLoadSharedValue;
+import com.ql.util.express.instruction.detail.InstructionNewVirClass;
+import com.ql.util.express.instruction.detail.InstructionOpenNewArea;
+import com.ql.util.express.instruction.detail.InstructionOperator;
+import com.ql.util.express.instruction.detail.InstructionOperatorWithConst;
+import com.ql.util.express.instruction.detail.InstructionStoreSharedValue;
+import com.ql.util.express.instruction.op.OperatorAlias;
+import com.ql.util.express.instruction.op.OperatorBase;
+import com.ql.util.express.instruction.op.OperatorDef;
+import com.ql.util.express.instruction.op.OperatorDoubleAddReduce;
+import com.ql.util.express.instruction.op.OperatorEvaluate;
+import com.ql.util.express.instruction.op.OperatorExportAlias;
+import com.ql.util.express.instruction.op.OperatorExportDef;
+import com.ql.util.express.instruction.op.OperatorField;
+import com.ql.util.express.instruction.opdata.OperateDataConst;
+
+/**
+ * 规则集编译：找出多条规则之间(以及单条规则内部)重复出现的纯表达式，同一个上下文中只计算一次
+ * 1、模拟操作数栈，把 常量、属性、纯运算符、属性访问(FieldCall) 组成的连续指令片段还原成表达式树
+ * 2、任意规则中被赋值(=、++、--、def)的属性和字段不参与共享；出现 alias 的时候不做任何共享
+ * 3、从大到小选择至少会被复用一次的片段，在片段前插入 InstructionLoadSharedValue，片段后插入 InstructionStoreSharedValue
+ * 方法调用和自定义运算符不参与共享，但是假定它们不会修改共享片段读取的属性
+ */
+public class RuleSetCompiler {
+    private RuleSetCompiler() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @param runner
+     * @param loader     用于排除和已经加载的宏同名的属性，编译之后再加载的宏不在检查范围内
+     * @param expressList
+     * @return
+     * @throws Exception
+     */
+    public static RuleSet compile(ExpressRunner runner, ExpressLoader loader, List<String> expressList)
+        throws Exception {
+        InstructionSet[] instructionSets = new InstructionSet[expressList.size()];
+        for (int i = 0; i < instructionSets.length; i++) {
+            instructionSets[i] = runner.parseInstructionSet(expressList.get(i));
+        }
+
+        Analysis analysis = new Analysis(loader);
+        for (InstructionSet instructionSet : instructionSets) {
+            analysis.collectMacroNames(instructionSet);
+        }
+        List<List<Fragment>> fragmentsList = new ArrayList<>(instructionSets.length);
+        for (InstructionSet instructionSet : instructionSets) {
+            List<Fragment> fragments = new ArrayList<>();
+            analysis.simulate(toArray(instructionSet), fragments);
+            analysis.scanNested(instructionSet);
+            fragmentsList.add(fragments);
+        }
+        if (analysis.unsafe) {
+            return new RuleSet(runner, instructionSets, 0);
+        }
+
+        int sharedValueCount = selectShared(analysis, fragmentsList);
+        if (sharedValueCount > 0) {
+            for (int i = 0; i < instructionSets.length; i++) {
+                if (rewrite(instructionSets[i], fragmentsList.get(i)) && runner.isCompileInstructionSet()) {
+                    InstructionSetCompiler.compile(instructionSets[i]);
+                }
+            }
+        }
+        return new RuleSet(runner, instructionSets, sharedValueCount);
+    }
+
+    private static Instruction[] toArray(InstructionSet instructionSet) {
+        Instruction[] array = new Instruction[instructionSet.getInstructionLength()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = instructionSet.getInstruction(i);
+        }
+        return array;
+    }
+
+    /**
+     * 按照片段从大到小选择需要共享的表达式，返回共享值的数量
+     */
+    private static int selectShared(Analysis analysis, List<List<Fragment>> fragmentsList) {
+        Map<String, List<Fragment>> fragmentMap = new LinkedHashMap<>();
+        for (List<Fragment> fragments : fragmentsList) {
+            for (Fragment fragment : fragments) {
+                if (!analysis.isWritten(fragment.node)) {
+                    fragmentMap.computeIfAbsent(fragment.node.key, k -> new ArrayList<>()).add(fragment);
+                }
+            }
+        }
+        List<List<Fragment>> groups = new ArrayList<>(fragmentMap.values());
+        groups.sort((o1, o2) -> o2.get(0).size() - o1.get(0).size());
+
+        int slot = 0;
+        for (List<Fragment> group : groups) {
+            if (group.size() < 2) {
+                continue;
+            }
+            int uncoveredCount = 0;
+            boolean isAnyCovered = false;
+            for (Fragment fragment : group) {
+                if (isCovered(fragmentsList, fragment)) {
+                    isAnyCovered = true;
+                } else {
+                    uncoveredCount++;
+                }
+            }
+            // 被其它共享片段包含的出现位置最多计算一次
+            if (uncoveredCount + (isAnyCovered ? 1 : 0) < 2) {
+                continue;
+            }
+            for (Fragment fragment : group) {
+                fragment.slot = slot;
+            }
+            slot++;
+        }
+        return slot;
+    }
+
+    private static boolean isCovered(List<List<Fragment>> fragmentsList, Fragment fragment) {
+        for (Fragment other : fragmentsList.get(fragment.ruleIndex)) {
+            if (other != fragment && other.slot >= 0 && other.node.start <= fragment.node.start
+                && other.node.end >= fragment.node.end) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean rewrite(InstructionSet instructionSet, List<Fragment> fragments) {
+        List<Fragment> selected = new ArrayList<>();
+        for (Fragment fragment : fragments) {
+            if (fragment.slot >= 0) {
+                selected.add(fragment);
+            }
+        }
+        if (selected.isEmpty()) {
+            return false;
+        }
+        Instruction[] array = toArray(instructionSet);
+        // 同一位置开始的片段外层在前，同一位置结束的片段内层在前
+        selected.sort((o1, o2) -> o2.size() - o1.size());
+        List<Fragment> endOrder = new ArrayList<>(selected);
+        Collections.reverse(endOrder);
+
+        List<Instruction> result = new ArrayList<>(array.length + selected.size() * 2);
+        int[] newTarget = new int[array.length + 1];
+        int[] newIndex = new int[array.length];
+        Map<Fragment, InstructionLoadSharedValue> loadMap = new LinkedHashMap<>();
+        Map<Fragment, Integer> loadPoint = new LinkedHashMap<>();
+        for (int i = 0; i < array.length; i++) {
+            newTarget[i] = result.size();
+            for (Fragment fragment : selected) {
+                if (fragment.node.start == i) {
+                    InstructionLoadSharedValue load = new InstructionLoadSharedValue(fragment.slot);
+                    load.setLine(array[i].getLine());
+                    loadMap.put(fragment, load);
+                    loadPoint.put(fragment, result.size());
+                    result.add(load);
+                }
+            }
+            newIndex[i] = result.size();
+            result.add(array[i]);
+            for (Fragment fragment : endOrder) {
+                if (fragment.node.end == i) {
+                    result.add(new InstructionStoreSharedValue(fragment.slot).setLine(array[i].getLine()));
+                    loadMap.get(fragment).setOffset(result.size() - loadPoint.get(fragment));
+                }
+            }
+        }
+        newTarget[array.length] = result.size();
+
+        for (int i = 0; i < array.length; i++) {
+            int offset = InstructionSetOptimizer.getJumpOffset(array[i]);
+            if (offset != 0) {
+                int target = Math.max(0, Math.min(array.length, i + offset));
+                InstructionSetOptimizer.setJumpOffset(array[i], newTarget[target] - newIndex[i]);
+            }
+        }
+        instructionSet.replaceInstructions(result.toArray(new Instruction[0]));
+        return true;
+    }
+
+    /**
+     * 操作数栈上的表达式节点
+     */
+    private static class Node {
+        private final int start;
+        private final int end;
+        /**
+         * 可以共享的节点的规范化表示，不能共享的时候为null
+         */
+        private final String key;
+        private final Set<String> attrNames;
+        private final Set<String> fieldNames;
+        /**
+         * 作为赋值目标时修改的属性或者字段
+         */
+        private String writeAttrName;
+        private String writeFieldName;
+        private boolean isLocalVar;
+
+        private Node(int start, int end, String key, Set<String> attrNames, Set<String> fieldNames) {
+            this.start = start;
+            this.end = end;
+            this.key = key;
+            this.attrNames = attrNames;
+            this.fieldNames = fieldNames;
+        }
+
+        private static Node opaque(int point) {
+            return new Node(point, point, null, Collections.emptySet(), Collections.emptySet());
+        }
+
+        private boolean isPure() {
+            return this.key != null;
+        }
+    }
+
+    private static class Fragment {
+        private final int ruleIndex;
+        private final Node node;
+        private int slot = -1;
+
+        private Fragment(int ruleIndex, Node node) {
+            this.ruleIndex = ruleIndex;
+            this.node = node;
+        }
+
+        private int size() {
+            return this.node.end - this.node.start + 1;
+        }
+    }
+
+    private static class Analysis {
+        private final ExpressLoader loader;
+        private final Set<String> macroNames = new HashSet<>();
+        private final Set<String> writtenAttrNames = new HashSet<>();
+        private final Set<String> writtenFieldNames = new HashSet<>();
+        private boolean unsafe = false;
+        private int ruleIndex = 0;
+
+        private Analysis(ExpressLoader loader) {
+            this.loader = loader;
+        }
+
+        private void collectMacroNames(InstructionSet instructionSet) {
+            for (FunctionInstructionSet functionInstructionSet : instructionSet.getFunctionInstructionSets()) {
+                this.macroNames.add(functionInstructionSet.name);
+                collectMacroNames(functionInstructionSet.instructionSet);
+            }
+        }
+
+        private boolean isWritten(Node node) {
+            for (String name : node.attrNames) {
+                if (this.writtenAttrNames.contains(name)) {
+                    return true;
+                }
+            }
+            for (String name : node.fieldNames) {
+                if (this.writtenFieldNames.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 函数、宏和lambda只收集赋值信息，其中的属性可能是参数，不参与共享
+         */
+        private void scanNested(InstructionSet instructionSet) throws Exception {
+            for (FunctionInstructionSet functionInstructionSet : instructionSet.getFunctionInstructionSets()) {
+                simulate(toArray(functionInstructionSet.instructionSet), null);
+                scanNested(functionInstructionSet.instructionSet);
+            }
+            for (int i = 0; i < instructionSet.getInstructionLength(); i++) {
+                Instruction instruction = instructionSet.getInstruction(i);
+                if (instruction instanceof InstructionLoadLambda) {
+                    InstructionSet lambdaSet = ((InstructionLoadLambda)instruction).getLambdaSet();
+                    simulate(toArray(lambdaSet), null);
+                    scanNested(lambdaSet);
+                }
+            }
+        }
+
+        /**
+         * @param array
+         * @param fragments 为null的时候只收集赋值信息
+         */
+        private void simulate(Instruction[] array, List<Fragment> fragments) throws Exception {
+            boolean[] targets = InstructionSetOptimizer.findJumpTargets(array);
+            List<Node> stack = new ArrayList<>();
+            for (int i = 0; i < array.length; i++) {
+                Instruction instruction = array[i];
+                if (targets[i]) {
+                    // 多条路径汇合，之前的栈数据不能再组成片段
+                    for (int j = 0; j < stack.size(); j++) {
+                        stack.set(j, Node.opaque(stack.get(j).start));
+                    }
+                }
+                if (instruction.getClass() == InstructionConstData.class) {
+                    stack.add(createConstNode(i, ((InstructionConstData)instruction).getOperateData()));
+                } else if (instruction.getClass() == InstructionLoadAttr.class) {
+                    String attrName = ((InstructionLoadAttr)instruction).getAttrName();
+                    Node node;
+                    if (this.macroNames.contains(attrName) || this.loader.getInstructionSet(attrName) != null) {
+                        node = Node.opaque(i);
+                    } else {
+                        node = new Node(i, i, "A:" + attrName, Collections.singleton(attrName),
+                            Collections.emptySet());
+                    }
+                    node.writeAttrName = attrName;
+                    stack.add(node);
+                } else if (instruction instanceof InstructionLoadLocalVar) {
+                    Node node = Node.opaque(i);
+                    node.isLocalVar = true;
+                    stack.add(node);
+                } else if (instruction instanceof InstructionDefineLocalVar) {
+                    InstructionDefineLocalVar defineLocalVar = (InstructionDefineLocalVar)instruction;
+                    checkWrite(defineLocalVar.getOperator(), pop(stack, defineLocalVar.getOpDataNumber(), i));
+                    Node node = Node.opaque(i);
+                    node.isLocalVar = true;
+                    stack.add(node);
+                } else if (instruction.getClass() == InstructionOperator.class) {
+                    InstructionOperator instructionOperator = (InstructionOperator)instruction;
+                    Node[] operands = pop(stack, instructionOperator.getOpDataNumber(), i);
+                    checkWrite(instructionOperator.getOperator(), operands);
+                    Node node = createOperatorNode(i, instructionOperator.getOperator(), instruction.toString(),
+                        operands);
+                    if (instructionOperator.getOperator() instanceof OperatorField) {
+                        node.writeFieldName = ((OperatorField)instructionOperator.getOperator()).getFieldName();
+                    }
+                    pushOperatorNode(stack, fragments, node);
+                } else if (instruction.getClass() == InstructionOperatorWithConst.class) {
+                    InstructionOperatorWithConst withConst = (InstructionOperatorWithConst)instruction;
+                    Object constValue = withConst.getConstValue();
+                    String description = instruction + ":"
+                        + (constValue == null ? "null" : constValue.getClass().getName());
+                    Node node = createOperatorNode(i, withConst.getOperator(), description, pop(stack, 1, i));
+                    pushOperatorNode(stack, fragments, node);
+                } else if (instruction.getClass() == InstructionLikeWithPattern.class) {
+                    Node node = createOperatorNode(i, ((InstructionLikeWithPattern)instruction).getOperator(),
+                        instruction.toString(), pop(stack, 1, i));
+                    pushOperatorNode(stack, fragments, node);
+                } else if (instruction.getClass() == InstructionInConstSet.class) {
+                    InstructionInConstSet inConstSet = (InstructionInConstSet)instruction;
+                    StringBuilder description = new StringBuilder(instruction.toString());
+                    for (Object value : inConstSet.getInSet().getValues()) {
+                        description.append(':').append(value.getClass().getName());
+                    }
+                    Node node = createOperatorNode(i, inConstSet.getOperator(), description.toString(),
+                        pop(stack, 1, i));
+                    pushOperatorNode(stack, fragments, node);
+                } else if (instruction instanceof InstructionCallSelfDefineFunction) {
+                    pop(stack, ((InstructionCallSelfDefineFunction)instruction).getOpDataNumber(), i);
+                    stack.add(Node.opaque(i));
+                } else if (instruction instanceof InstructionNewVirClass) {
+                    pop(stack, ((InstructionNewVirClass)instruction).getOpDataNumber(), i);
+                    stack.add(Node.opaque(i));
+                } else if (instruction instanceof InstructionLoadLambda || instruction instanceof InstructionCallMacro) {
+                    stack.add(Node.opaque(i));
+                } else if (instruction instanceof InstructionGoToWithCondition) {
+                    if (((InstructionGoToWithCondition)instruction).isPopStackData()) {
+                        pop(stack, 1, i);
+                    }
+                } else if (!(instruction instanceof InstructionOpenNewArea)
+                    && !(instruction instanceof InstructionCloseNewArea)) {
+                    stack.clear();
+                }
+            }
+            if (fragments != null) {
+                this.ruleIndex++;
+            }
+        }
+
+        private void pushOperatorNode(List<Node> stack, List<Fragment> fragments, Node node) {
+            if (fragments != null && node.isPure()) {
+                fragments.add(new Fragment(this.ruleIndex, node));
+            }
+            stack.add(node);
+        }
+
+        private void checkWrite(OperatorBase operator, Node[] operands) {
+            if (operator instanceof OperatorAlias || operator instanceof OperatorExportAlias) {
+                this.unsafe = true;
+            } else if (operator instanceof OperatorDef || operator instanceof OperatorExportDef) {
+                if (operands.length > 1 && operands[1].key != null && operands[1].key.startsWith("C:")) {
+                    this.writtenAttrNames.add(operands[1].key.substring(operands[1].key.lastIndexOf(':') + 1));
+                } else {
+                    this.unsafe = true;
+                }
+            } else if (operator instanceof OperatorEvaluate || operator instanceof OperatorDoubleAddReduce) {
+                Node target = operands.length > 0 ? operands[0] : null;
+                if (target == null) {
+                    this.unsafe = true;
+                } else if (target.writeAttrName != null) {
+                    this.writtenAttrNames.add(target.writeAttrName);
+                } else if (target.writeFieldName != null) {
+                    this.writtenFieldNames.add(target.writeFieldName);
+                } else if (!target.isLocalVar) {
+                    this.unsafe = true;
+                }
+            }
+        }
+
+        private static Node createConstNode(int point, OperateData operateData) throws Exception {
+            if (!OperateDataConst.isConstValue(operateData)) {
+                return Node.opaque(point);
+            }
+            Object value = operateData.getObject(null);
+            String key = value == null ? "C:null" : "C:" + value.getClass().getName() + ":" + value;
+            return new Node(point, point, key, Collections.emptySet(), Collections.emptySet());
+        }
+
+        /**
+         * 操作数都可以共享，并且在指令中连续排列的时候，运算结果才可以共享
+         */
+        private static Node createOperatorNode(int point, OperatorBase operator, String description,
+            Node[] operands) {
+            boolean isPure = operands.length > 0 && (InstructionSetOptimizer.isPureOperator(operator)
+                || (operator.getClass() == OperatorField.class && operator.getErrorInfo() == null));
+            int expectStart = operands.length > 0 ? operands[0].start : point;
+            for (int j = 0; j < operands.length && isPure; j++) {
+                isPure = operands[j].isPure() && operands[j].start == expectStart;
+                expectStart = operands[j].end + 1;
+            }
+            isPure = isPure && expectStart == point;
+            if (!isPure) {
+                return Node.opaque(operands.length > 0 ? Math.min(operands[0].start, point) : point);
+            }
+            StringBuilder key = new StringBuilder("O:").append(operator.getClass().getName()).append(':')
+                .append(operator.getName()).append(':').append(description).append('(');
+            Set<String> attrNames = new HashSet<>();
+            Set<String> fieldNames = new HashSet<>();
+            if (operator instanceof OperatorField) {
+                fieldNames.add(((OperatorField)operator).getFieldName());
+            }
+            for (Node operand : operands) {
+                key.append(operand.key).append(',');
+                attrNames.addAll(operand.attrNames);
+                fieldNames.addAll(operand.fieldNames);
+            }
+            key.append(')');
+            return new Node(operands[0].start, point, key.toString(), attrNames, fieldNames);
+        }
+
+        private static Node[] pop(List<Node> stack, int count, int point) {
+            Node[] result = new Node[count];
+            for (int j = count - 1; j >= 0; j--) {
+                result[j] = stack.isEmpty() ? Node.opaque(point) : stack.remove(stack.size() - 1);
+            }
+            return result;
+        }
+    }
+}
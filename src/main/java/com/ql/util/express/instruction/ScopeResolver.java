@@ -0,0 +1,163 @@
+package com.ql.util.express.instruction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionCloseNewArea;
+import com.ql.util.express.instruction.detail.InstructionGoTo;
+import com.ql.util.express.instruction.detail.InstructionLoadLambda;
+import com.ql.util.express.instruction.detail.InstructionNewVirClass;
+import com.ql.util.express.instruction.detail.InstructionOpenNewArea;
+import com.ql.util.express.instruction.detail.InstructionOperator;
+import com.ql.util.express.instruction.op.OperatorAlias;
+import com.ql.util.express.instruction.op.OperatorBase;
+import com.ql.util.express.instruction.op.OperatorDef;
+import com.ql.util.express.instruction.op.OperatorMacro;
+
+/**
+ * 在解析时分析 openNewArea/closeNewArea 作用域：
+ * 1、作用域内没有直接定义变量、宏、别名的，删除作用域的开始和结束指令，不再创建新的上下文；
+ * 2、保留的作用域记录嵌套层次，运行时按照层次找到父上下文，循环再次进入同一层作用域的时候重用上一次的上下文；
+ * 作用域内有 lambda 或者虚拟类的，上下文可能在离开作用域之后仍然被引用，不重用
+ */
+public class ScopeResolver {
+    private ScopeResolver() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static final class Scope {
+        private final int openPoint;
+        private final Scope parent;
+        private int closePoint;
+        private boolean hasDefine;
+        private boolean hasCapture;
+        private boolean isKeep;
+        private boolean isKeepByChild;
+
+        private Scope(int openPoint, Scope parent) {
+            this.openPoint = openPoint;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * 分析指令集的作用域，包括其中定义的函数、宏和lambda
+     * 需要在 LocalVarSlotResolver 之后、指令集优化之前执行，此时作用域的开始和结束指令是成对的
+     *
+     * @param instructionSet
+     * @return 删除的指令数量
+     */
+    public static int resolve(InstructionSet instructionSet) {
+        int removedCount = 0;
+        for (FunctionInstructionSet functionInstructionSet : instructionSet.getFunctionInstructionSets()) {
+            removedCount = removedCount + resolve(functionInstructionSet.instructionSet);
+        }
+
+        Instruction[] array = new Instruction[instructionSet.getInstructionLength()];
+        List<Scope> scopes = new ArrayList<>();
+        Deque<Scope> openStack = new ArrayDeque<>();
+        boolean isPaired = true;
+        for (int i = 0; i < array.length; i++) {
+            Instruction instruction = instructionSet.getInstruction(i);
+            array[i] = instruction;
+            if (instruction instanceof InstructionOpenNewArea) {
+                openStack.push(new Scope(i, openStack.peek()));
+            } else if (instruction instanceof InstructionCloseNewArea) {
+                if (openStack.isEmpty()) {
+                    isPaired = false;
+                } else {
+                    Scope scope = openStack.pop();
+                    scope.closePoint = i;
+                    scopes.add(scope);
+                }
+            } else if (instruction instanceof InstructionOperator) {
+                if (!openStack.isEmpty() && isDefine(((InstructionOperator)instruction).getOperator())) {
+                    openStack.peek().hasDefine = true;
+                }
+            } else if (instruction instanceof InstructionLoadLambda
+                || instruction instanceof InstructionNewVirClass) {
+                for (Scope scope : openStack) {
+                    scope.hasCapture = true;
+                }
+                if (instruction instanceof InstructionLoadLambda) {
+                    removedCount = removedCount + resolve(((InstructionLoadLambda)instruction).getLambdaSet());
+                }
+            }
+        }
+        if (!isPaired || !openStack.isEmpty()) {
+            return removedCount;
+        }
+
+        // scopes 按照结束的顺序排列，内层的作用域在前面
+        for (Scope scope : scopes) {
+            scope.isKeep = scope.hasDefine || scope.isKeepByChild;
+            // break、continue 等跳出保留作用域的时候不会执行结束指令，需要外层的作用域结束时恢复上下文
+            if (scope.isKeep && scope.parent != null && isJumpOut(array, scope)) {
+                scope.parent.isKeepByChild = true;
+            }
+        }
+
+        boolean[] removed = new boolean[array.length];
+        for (Scope scope : scopes) {
+            if (scope.isKeep) {
+                ((InstructionOpenNewArea)array[scope.openPoint]).setReuseContext(!scope.hasCapture);
+            } else {
+                removed[scope.openPoint] = true;
+                removed[scope.closePoint] = true;
+            }
+        }
+        int depth = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            if (array[i] instanceof InstructionOpenNewArea) {
+                depth++;
+                ((InstructionOpenNewArea)array[i]).setDepth(depth);
+            } else if (array[i] instanceof InstructionCloseNewArea) {
+                ((InstructionCloseNewArea)array[i]).setDepth(depth);
+                depth--;
+            }
+        }
+
+        int count = 0;
+        for (boolean isRemoved : removed) {
+            if (isRemoved) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            List<Instruction> instructions = InstructionSetOptimizer.compact(array, removed);
+            if (instructions.isEmpty()) {
+                // 保留一条空跳转，ExpressLoader 依赖 hasMain 判断是否有主体
+                instructions.add(new InstructionGoTo(1));
+                count--;
+            }
+            instructionSet.replaceInstructions(instructions.toArray(new Instruction[0]));
+        }
+        return removedCount + count;
+    }
+
+    private static boolean isDefine(OperatorBase operator) {
+        return operator instanceof OperatorDef || operator instanceof OperatorMacro
+            || operator instanceof OperatorAlias;
+    }
+
+    private static boolean isJumpOut(Instruction[] array, Scope scope) {
+        for (int i = scope.openPoint + 1; i < scope.closePoint; i++) {
+            int offset = InstructionSetOptimizer.getJumpOffset(array[i]);
+            if (offset == 0) {
+                continue;
+            }
+            int target = i + offset;
+            if (target <= scope.openPoint || target > scope.closePoint) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,90 @@
+package com.ql.util.express.instruction.compile;
+
+import java.util.List;
+
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.exception.QLBizException;
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionCallSelfDefineFunction;
+
+/**
+ * 由 {@link InstructionSetCompiler} 生成的指令集执行类的基类
+ * 子类把指令的分派展开成 tableswitch, 跳转、常量、操作符和自定义函数调用直接生成在分支中, 跳转直接转到目标分支,
+ * 其它指令调用具体指令类型的 execute, 语义和解释执行完全一致; 下面的静态方法供生成的代码调用
+ */
+public abstract class CompiledInstructions {
+    protected final Instruction[] instructions;
+
+    protected CompiledInstructions(Instruction[] instructions) {
+        this.instructions = instructions;
+    }
+
+    /**
+     * 从 environment 当前的指令位置开始执行, 直到指令全部执行完毕或者 return
+     *
+     * @param environment
+     * @param errorList
+     * @throws Exception
+     */
+    public abstract void execute(RunEnvironment environment, List<String> errorList) throws Exception;
+
+    public int getInstructionLength() {
+        return this.instructions.length;
+    }
+
+    /**
+     * 生成代码在每条指令执行之前调用, 与解释执行的超时和执行限制检查保持一致
+     *
+     * @param environment
+     * @throws QLException
+     */
+    public static void checkTimeout(RunEnvironment environment) throws QLException {
+        environment.checkExecuteLimit();
+    }
+
+    /**
+     * 和 InstructionGoToWithCondition 一致，null 作为 false
+     *
+     * @param o           条件的值
+     * @param instruction 条件跳转指令，用于异常信息
+     * @return
+     * @throws QLException
+     */
+    public static boolean toCondition(Object o, Instruction instruction) throws QLException {
+        if (o == null) {
+            return false;
+        } else if (o instanceof Boolean) {
+            return (Boolean)o;
+        }
+        throw new QLException(instruction.getExceptionPrefix() + "指令错误:" + o + " 不是Boolean");
+    }
+
+    /**
+     * 条件不出栈的条件跳转，栈顶是 null 的时候替换成 false，和 InstructionGoToWithCondition 一致
+     */
+    public static boolean peekCondition(RunEnvironment environment, Instruction instruction) throws Exception {
+        Object o = environment.peek().getObject(environment.getContext());
+        if (o == null) {
+            environment.pop();
+            environment.push(OperateDataCacheManager.fetchOperateData(false, boolean.class));
+        }
+        return toCondition(o, instruction);
+    }
+
+    /**
+     * 和 InstructionOperator 一致，包装操作符执行的异常
+     */
+    public static Exception wrapOperatorException(Throwable t, Instruction instruction) {
+        if (t instanceof QLException) {
+            return new QLException(instruction.getExceptionPrefix(), t);
+        }
+        return new QLBizException(instruction.getExceptionPrefix(), t);
+    }
+
+    public static QLException functionNotFound(Instruction instruction) {
+        return new QLException(instruction.getExceptionPrefix() + "在Runner的操作符定义和自定义函数中都没有找到"
+            + ((InstructionCallSelfDefineFunction)instruction).getFunctionName() + "的定义");
+    }
+}
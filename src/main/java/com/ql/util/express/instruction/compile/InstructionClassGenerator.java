@@ -0,0 +1,404 @@
+package com.ql.util.express.instruction.compile;
+
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ql.util.express.ArraySwap;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.InstructionSetContext;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionCallSelfDefineFunction;
+import com.ql.util.express.instruction.detail.InstructionClearDataStack;
+import com.ql.util.express.instruction.detail.InstructionConstData;
+import com.ql.util.express.instruction.detail.InstructionGoTo;
+import com.ql.util.express.instruction.detail.InstructionGoToWithCondition;
+import com.ql.util.express.instruction.detail.InstructionGoToWithNotNull;
+import com.ql.util.express.instruction.detail.InstructionOperator;
+import com.ql.util.express.instruction.op.OperatorBase;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * 使用ASM生成 {@link CompiledInstructions} 的子类，只有在classpath中存在ASM的时候才会被加载
+ * 每个分支执行之前检查执行限制；跳转、常量、操作符、自定义函数调用直接生成代码，程序指针仍然同步修改，
+ * 下一条指令确定的时候直接跳到对应的分支，不再经过 tableswitch；其它指令调用 execute 之后回到 tableswitch
+ */
+final class InstructionClassGenerator implements Opcodes {
+    private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+    private static final String BASE_NAME = Type.getInternalName(CompiledInstructions.class);
+    private static final String INSTRUCTION_NAME = Type.getInternalName(Instruction.class);
+    private static final String ENVIRONMENT_NAME = Type.getInternalName(RunEnvironment.class);
+    private static final String EXECUTE_DESC = "(L" + ENVIRONMENT_NAME + ";Ljava/util/List;)V";
+    private static final String OPERATOR_NAME = Type.getInternalName(OperatorBase.class);
+    private static final String OPERATE_DATA_DESC = Type.getDescriptor(OperateData.class);
+    private static final String CONTEXT_NAME = Type.getInternalName(InstructionSetContext.class);
+    private static final String ARRAY_SWAP_DESC = Type.getDescriptor(ArraySwap.class);
+    private static final String INSTRUCTION_DESC = Type.getDescriptor(Instruction.class);
+
+    private static final int LOCAL_ENVIRONMENT = 1;
+    private static final int LOCAL_ERROR_LIST = 2;
+    private static final int LOCAL_INSTRUCTIONS = 3;
+    private static final int LOCAL_POINT = 4;
+    private static final int LOCAL_PARAMETERS = 5;
+
+    private InstructionClassGenerator() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static CompiledInstructions generate(Instruction[] instructions) throws Exception {
+        String className = BASE_NAME + "$Generated" + CLASS_COUNTER.incrementAndGet();
+        GeneratedClassLoader classLoader = new GeneratedClassLoader(CompiledInstructions.class.getClassLoader());
+
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // 分支汇合处的局部变量类型都是一致的，不需要加载类来计算公共父类
+                return "java/lang/Object";
+            }
+        };
+        classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, BASE_NAME, null);
+
+        String constructorDesc = "([L" + INSTRUCTION_NAME + ";)V";
+        MethodVisitor constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>", constructorDesc, null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ALOAD, 1);
+        constructor.visitMethodInsn(INVOKESPECIAL, BASE_NAME, "<init>", constructorDesc, false);
+        // 操作符绑定到字段上，字段使用具体的操作符类型，调用点是单态的
+        String[] operatorOwners = new String[instructions.length];
+        for (int i = 0; i < instructions.length; i++) {
+            if (instructions[i].getClass() != InstructionOperator.class) {
+                continue;
+            }
+            Class<?> operatorClass = ((InstructionOperator)instructions[i]).getOperator().getClass();
+            operatorOwners[i] = isAccessible(operatorClass, classLoader) ? Type.getInternalName(operatorClass)
+                : OPERATOR_NAME;
+            String fieldDesc = "L" + operatorOwners[i] + ";";
+            classWriter.visitField(ACC_PRIVATE | ACC_FINAL, "operator" + i, fieldDesc, null, null).visitEnd();
+            constructor.visitVarInsn(ALOAD, 0);
+            constructor.visitVarInsn(ALOAD, 1);
+            pushInt(constructor, i);
+            constructor.visitInsn(AALOAD);
+            constructor.visitTypeInsn(CHECKCAST, Type.getInternalName(InstructionOperator.class));
+            constructor.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(InstructionOperator.class),
+                "getOperator", "()L" + OPERATOR_NAME + ";", false);
+            if (!OPERATOR_NAME.equals(operatorOwners[i])) {
+                constructor.visitTypeInsn(CHECKCAST, operatorOwners[i]);
+            }
+            constructor.visitFieldInsn(PUTFIELD, className, "operator" + i, fieldDesc);
+        }
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC, "execute", EXECUTE_DESC, null,
+            new String[] {"java/lang/Exception"});
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, BASE_NAME, "instructions", "[L" + INSTRUCTION_NAME + ";");
+        mv.visitVarInsn(ASTORE, LOCAL_INSTRUCTIONS);
+
+        Label loop = new Label();
+        Label end = new Label();
+        Label[] cases = new Label[instructions.length];
+        for (int i = 0; i < cases.length; i++) {
+            cases[i] = new Label();
+        }
+
+        // while (environment.getProgramPoint() < length)
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "getProgramPoint", "()I", false);
+        mv.visitVarInsn(ISTORE, LOCAL_POINT);
+        mv.visitVarInsn(ILOAD, LOCAL_POINT);
+        pushInt(mv, instructions.length);
+        mv.visitJumpInsn(IF_ICMPGE, end);
+        mv.visitVarInsn(ILOAD, LOCAL_POINT);
+        mv.visitTableSwitchInsn(0, instructions.length - 1, end, cases);
+
+        Jumps jumps = new Jumps(loop, end, cases);
+        for (int i = 0; i < instructions.length; i++) {
+            mv.visitLabel(cases[i]);
+            mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+            mv.visitMethodInsn(INVOKESTATIC, BASE_NAME, "checkTimeout", "(L" + ENVIRONMENT_NAME + ";)V", false);
+            generateInstruction(mv, className, instructions[i], i, operatorOwners[i], jumps, classLoader);
+        }
+
+        mv.visitLabel(end);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        classWriter.visitEnd();
+
+        Class<?> generatedClass = classLoader.define(className.replace('/', '.'), classWriter.toByteArray());
+        return (CompiledInstructions)generatedClass.getConstructor(Instruction[].class).newInstance(
+            (Object)instructions);
+    }
+
+    private static void generateInstruction(MethodVisitor mv, String className, Instruction instruction, int index,
+        String operatorOwner, Jumps jumps, ClassLoader classLoader) {
+        Class<?> instructionClass = instruction.getClass();
+        if (instructionClass == InstructionGoTo.class) {
+            // 无条件跳转直接修改程序指针，向回跳转的时候检查循环次数
+            int offset = ((InstructionGoTo)instruction).getOffset();
+            if (offset < 0) {
+                mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+                mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "checkLoopLimit", "()V", false);
+            }
+            gotoWithOffset(mv, index, offset, jumps);
+        } else if (instructionClass == InstructionClearDataStack.class) {
+            mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+            mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "clearDataStack", "()V", false);
+            gotoNext(mv, index, jumps);
+        } else if (instructionClass == InstructionConstData.class) {
+            String constName = Type.getInternalName(InstructionConstData.class);
+            mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+            loadInstruction(mv, index);
+            mv.visitTypeInsn(CHECKCAST, constName);
+            mv.visitMethodInsn(INVOKEVIRTUAL, constName, "getOperateData", "()" + OPERATE_DATA_DESC, false);
+            push(mv);
+            gotoNext(mv, index, jumps);
+        } else if (instructionClass == InstructionGoToWithCondition.class) {
+            InstructionGoToWithCondition goTo = (InstructionGoToWithCondition)instruction;
+            if (goTo.isPopStackData()) {
+                popObject(mv);
+                loadInstruction(mv, index);
+                mv.visitMethodInsn(INVOKESTATIC, BASE_NAME, "toCondition", "(Ljava/lang/Object;" + INSTRUCTION_DESC
+                    + ")Z", false);
+            } else {
+                mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+                loadInstruction(mv, index);
+                mv.visitMethodInsn(INVOKESTATIC, BASE_NAME, "peekCondition", "(L" + ENVIRONMENT_NAME + ";"
+                    + INSTRUCTION_DESC + ")Z", false);
+            }
+            Label notJump = new Label();
+            mv.visitJumpInsn(goTo.isCondition() ? IFEQ : IFNE, notJump);
+            gotoWithOffset(mv, index, goTo.getOffset(), jumps);
+            mv.visitLabel(notJump);
+            gotoNext(mv, index, jumps);
+        } else if (instructionClass == InstructionGoToWithNotNull.class) {
+            InstructionGoToWithNotNull goTo = (InstructionGoToWithNotNull)instruction;
+            if (goTo.isPopStackData()) {
+                popObject(mv);
+            } else {
+                mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+                mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "peek", "()" + OPERATE_DATA_DESC, false);
+                getObject(mv);
+            }
+            Label notJump = new Label();
+            mv.visitJumpInsn(IFNULL, notJump);
+            gotoWithOffset(mv, index, goTo.getOffset(), jumps);
+            mv.visitLabel(notJump);
+            gotoNext(mv, index, jumps);
+        } else if (instructionClass == InstructionOperator.class) {
+            generateOperator(mv, className, (InstructionOperator)instruction, index, operatorOwner, jumps);
+        } else if (instructionClass == InstructionCallSelfDefineFunction.class) {
+            generateCallFunction(mv, (InstructionCallSelfDefineFunction)instruction, index, jumps);
+        } else {
+            // 用具体的指令类型调用，每个调用点都是单态的
+            String ownerName = isAccessible(instructionClass, classLoader) ? Type.getInternalName(instructionClass)
+                : INSTRUCTION_NAME;
+            loadInstruction(mv, index);
+            if (!INSTRUCTION_NAME.equals(ownerName)) {
+                mv.visitTypeInsn(CHECKCAST, ownerName);
+            }
+            mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+            mv.visitVarInsn(ALOAD, LOCAL_ERROR_LIST);
+            mv.visitMethodInsn(INVOKEVIRTUAL, ownerName, "execute", EXECUTE_DESC, false);
+            // 下一条指令由 execute 修改的程序指针决定
+            mv.visitJumpInsn(GOTO, jumps.loop);
+        }
+    }
+
+    /**
+     * environment.push(operator.execute(context, environment.popArray(n), errorList))，
+     * 异常的包装和 InstructionOperator 一致
+     */
+    private static void generateOperator(MethodVisitor mv, String className, InstructionOperator instruction,
+        int index, String operatorOwner, Jumps jumps) {
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/Throwable");
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        pushInt(mv, instruction.getOpDataNumber());
+        mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "popArray", "(I)" + ARRAY_SWAP_DESC, false);
+        mv.visitVarInsn(ASTORE, LOCAL_PARAMETERS);
+        mv.visitLabel(tryStart);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, "operator" + index, "L" + operatorOwner + ";");
+        getContext(mv);
+        mv.visitVarInsn(ALOAD, LOCAL_PARAMETERS);
+        mv.visitVarInsn(ALOAD, LOCAL_ERROR_LIST);
+        mv.visitMethodInsn(INVOKEVIRTUAL, operatorOwner, "execute", "(L" + CONTEXT_NAME + ";" + ARRAY_SWAP_DESC
+            + "Ljava/util/List;)" + OPERATE_DATA_DESC, false);
+        mv.visitLabel(tryEnd);
+        push(mv);
+        gotoNext(mv, index, jumps);
+
+        mv.visitLabel(handler);
+        loadInstruction(mv, index);
+        mv.visitMethodInsn(INVOKESTATIC, BASE_NAME, "wrapOperatorException", "(Ljava/lang/Throwable;"
+            + INSTRUCTION_DESC + ")Ljava/lang/Exception;", false);
+        mv.visitInsn(ATHROW);
+    }
+
+    /**
+     * 和 InstructionCallSelfDefineFunction 一致，按照名称查找函数之后调用 executeSelfFunction
+     */
+    private static void generateCallFunction(MethodVisitor mv, InstructionCallSelfDefineFunction instruction,
+        int index, Jumps jumps) {
+        String instructionSetName = Type.getInternalName(InstructionSet.class);
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        pushInt(mv, instruction.getOpDataNumber());
+        mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "popArray", "(I)" + ARRAY_SWAP_DESC, false);
+        mv.visitVarInsn(ASTORE, LOCAL_PARAMETERS);
+
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        getContext(mv);
+        mv.visitLdcInsn(instruction.getFunctionName());
+        mv.visitMethodInsn(INVOKEVIRTUAL, CONTEXT_NAME, "getSymbol", "(Ljava/lang/String;)Ljava/lang/Object;",
+            false);
+        mv.visitInsn(DUP);
+        mv.visitTypeInsn(INSTANCEOF, instructionSetName);
+        Label found = new Label();
+        mv.visitJumpInsn(IFNE, found);
+        loadInstruction(mv, index);
+        mv.visitMethodInsn(INVOKESTATIC, BASE_NAME, "functionNotFound", "(" + INSTRUCTION_DESC
+            + ")Lcom/ql/util/express/exception/QLException;", false);
+        mv.visitInsn(ATHROW);
+
+        mv.visitLabel(found);
+        mv.visitTypeInsn(CHECKCAST, instructionSetName);
+        mv.visitVarInsn(ALOAD, LOCAL_PARAMETERS);
+        mv.visitVarInsn(ALOAD, LOCAL_ERROR_LIST);
+        mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(InstructionCallSelfDefineFunction.class),
+            "executeSelfFunction", "(L" + ENVIRONMENT_NAME + ";L" + instructionSetName + ";" + ARRAY_SWAP_DESC
+                + "Ljava/util/List;)" + OPERATE_DATA_DESC, false);
+        push(mv);
+        gotoNext(mv, index, jumps);
+    }
+
+    /**
+     * 栈顶是 environment 和 OperateData
+     */
+    private static void push(MethodVisitor mv) {
+        mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "push", "(" + OPERATE_DATA_DESC + ")V", false);
+    }
+
+    /**
+     * environment.pop().getObject(environment.getContext())
+     */
+    private static void popObject(MethodVisitor mv) {
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "pop", "()" + OPERATE_DATA_DESC, false);
+        getObject(mv);
+    }
+
+    /**
+     * 栈顶是 OperateData，替换成 getObject(environment.getContext()) 的结果
+     */
+    private static void getObject(MethodVisitor mv) {
+        getContext(mv);
+        mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(OperateData.class), "getObject",
+            "(L" + CONTEXT_NAME + ";)Ljava/lang/Object;", false);
+    }
+
+    private static void getContext(MethodVisitor mv) {
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "getContext", "()L" + CONTEXT_NAME + ";", false);
+    }
+
+    private static void gotoNext(MethodVisitor mv, int index, Jumps jumps) {
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "programPointAddOne", "()V", false);
+        jumps.jumpTo(mv, index + 1);
+    }
+
+    private static void gotoWithOffset(MethodVisitor mv, int index, int offset, Jumps jumps) {
+        mv.visitVarInsn(ALOAD, LOCAL_ENVIRONMENT);
+        pushInt(mv, offset);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT_NAME, "gotoWithOffset", "(I)V", false);
+        jumps.jumpTo(mv, index + offset);
+    }
+
+    private static void loadInstruction(MethodVisitor mv, int index) {
+        mv.visitVarInsn(ALOAD, LOCAL_INSTRUCTIONS);
+        pushInt(mv, index);
+        mv.visitInsn(AALOAD);
+    }
+
+    /**
+     * 生成的类在独立的ClassLoader中，只能访问父ClassLoader可见的public类
+     */
+    private static boolean isAccessible(Class<?> instructionClass, ClassLoader classLoader) {
+        for (Class<?> c = instructionClass; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            return Class.forName(instructionClass.getName(), false, classLoader) == instructionClass;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static final class Jumps {
+        private final Label loop;
+        private final Label end;
+        private final Label[] cases;
+
+        private Jumps(Label loop, Label end, Label[] cases) {
+            this.loop = loop;
+            this.end = end;
+            this.cases = cases;
+        }
+
+        /**
+         * 程序指针已经修改为 target，直接跳到对应的分支；超出指令集结束执行
+         */
+        private void jumpTo(MethodVisitor mv, int target) {
+            if (target >= this.cases.length) {
+                mv.visitJumpInsn(GOTO, this.end);
+            } else if (target >= 0) {
+                mv.visitJumpInsn(GOTO, this.cases[target]);
+            } else {
+                mv.visitJumpInsn(GOTO, this.loop);
+            }
+        }
+    }
+
+    /**
+     * 每个生成的类使用独立的ClassLoader，指令集不再使用的时候可以被回收
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ql.util.express.instruction.compile;
+
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.instruction.FunctionInstructionSet;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionLoadLambda;
+
+/**
+ * 把解析好的指令集编译成JVM类，减少解释执行时指令分派的开销
+ * 依赖 org.ow2.asm:asm(可选依赖)，classpath中没有ASM或者指令集无法编译的时候，指令集继续解释执行
+ */
+public class InstructionSetCompiler {
+    /**
+     * 超过这个长度的指令集生成的方法可能超过JVM单个方法64K字节码的限制，直接解释执行
+     */
+    public static final int MAX_COMPILE_INSTRUCTION_LENGTH = 2000;
+
+    private static final boolean ASM_AVAILABLE = isAsmAvailable();
+
+    private InstructionSetCompiler() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static boolean isAsmAvailable() {
+        try {
+            Class.forName("org.objectweb.asm.ClassWriter", false, InstructionSetCompiler.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * 编译指令集，包括其中定义的函数、宏和lambda
+     *
+     * @param instructionSet
+     * @return 主指令集是否编译成功，失败的时候继续解释执行
+     */
+    public static boolean compile(InstructionSet instructionSet) {
+        for (FunctionInstructionSet functionInstructionSet : instructionSet.getFunctionInstructionSets()) {
+            compile(functionInstructionSet.instructionSet);
+        }
+        Instruction[] instructions = new Instruction[instructionSet.getInstructionLength()];
+        for (int i = 0; i < instructions.length; i++) {
+            instructions[i] = instructionSet.getInstruction(i);
+            if (instructions[i] instanceof InstructionLoadLambda) {
+                compile(((InstructionLoadLambda)instructions[i]).getLambdaSet());
+            }
+        }
+        CompiledInstructions compiledInstructions = compileInstructions(instructions);
+        instructionSet.setCompiledInstructions(compiledInstructions);
+        return compiledInstructions != null;
+    }
+
+    private static CompiledInstructions compileInstructions(Instruction[] instructions) {
+        if (!ASM_AVAILABLE || instructions.length == 0 || instructions.length > MAX_COMPILE_INSTRUCTION_LENGTH) {
+            return null;
+        }
+        try {
+            return InstructionClassGenerator.generate(instructions);
+        } catch (Exception | LinkageError e) {
+            // 编译失败不影响执行，回退到解释执行
+            return null;
+        }
+    }
+}
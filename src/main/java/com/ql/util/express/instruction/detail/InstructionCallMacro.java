@@ -16,6 +16,10 @@ public class InstructionCallMacro extends Instruction {
         this.name = name;
     }
 
+    public String getName() {
+        return this.name;
+    }
+
     @Override
     public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
         InstructionSetContext context = environment.getContext();
@@ -6,10 +6,26 @@ import com.ql.util.express.InstructionSetContext;
 import com.ql.util.express.RunEnvironment;
 
 public class InstructionCloseNewArea extends Instruction {
+    /**
+     * 对应的 openNewArea 的嵌套层次，0表示直接回到当前上下文的父上下文
+     */
+    private int depth = 0;
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
     @Override
     public void execute(RunEnvironment environment, List<String> errorList) {
-        //目前的模式，不需要执行任何操作
-        environment.setContext((InstructionSetContext)environment.getContext().getParent());
+        if (this.depth > 0) {
+            environment.closeScope(this.depth);
+        } else {
+            environment.setContext((InstructionSetContext)environment.getContext().getParent());
+        }
         environment.programPointAddOne();
     }
 
@@ -0,0 +1,34 @@
+package com.ql.util.express.instruction.detail;
+
+import java.util.List;
+
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.instruction.op.OperatorBase;
+import com.ql.util.express.instruction.opdata.OperateDataLocalVar;
+
+/**
+ * 局部变量定义，除了加入符号表之外，同时把变量放入解析时分配的槽位
+ */
+public class InstructionDefineLocalVar extends InstructionOperator {
+    private final int slot;
+
+    public InstructionDefineLocalVar(OperatorBase operator, int opDataNumber, int slot) {
+        super(operator, opDataNumber);
+        this.slot = slot;
+    }
+
+    public int getSlot() {
+        return this.slot;
+    }
+
+    @Override
+    public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
+        super.execute(environment, errorList);
+        environment.setLocalVar(this.slot, (OperateDataLocalVar)environment.peek());
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " SLOT[" + this.slot + "]";
+    }
+}
@@ -16,7 +16,11 @@ public class InstructionGoTo extends Instruction {
     }
 
     @Override
-    public void execute(RunEnvironment environment, List<String> errorList) {
+    public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
+        if (this.offset < 0) {
+            // 向回跳转表示循环执行了一次
+            environment.checkLoopLimit();
+        }
         environment.gotoWithOffset(this.offset);
     }
 
@@ -47,10 +47,22 @@ public class InstructionGoToWithCondition extends Instruction {
         }
     }
 
+    public int getOffset() {
+        return offset;
+    }
+
     public void setOffset(int offset) {
         this.offset = offset;
     }
 
+    public boolean isCondition() {
+        return condition;
+    }
+
+    public boolean isPopStackData() {
+        return isPopStackData;
+    }
+
     @Override
     public String toString() {
         String result = "GoToIf[" + this.condition + ",isPop=" + this.isPopStackData + "] ";
@@ -8,7 +8,7 @@ public class InstructionGoToWithNotNull extends Instruction {
     /**
      * 跳转指令的偏移量
      */
-    private final int offset;
+    private int offset;
     private final boolean isPopStackData;
 
     public InstructionGoToWithNotNull(int offset, boolean isPopStackData) {
@@ -31,6 +31,18 @@ public class InstructionGoToWithNotNull extends Instruction {
         }
     }
 
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public boolean isPopStackData() {
+        return this.isPopStackData;
+    }
+
     @Override
     public String toString() {
         String result = "GoToIf[NOTNULL,isPop=" + this.isPopStackData + "] ";
@@ -0,0 +1,61 @@
+package com.ql.util.express.instruction.detail;
+
+import java.util.List;
+
+import com.ql.util.express.ExpressUtil;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.config.QLExpressRunStrategy;
+import com.ql.util.express.exception.QLBizException;
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.op.InSet;
+import com.ql.util.express.instruction.op.OperatorIn;
+
+/**
+ * 候选值全部是常量的 in，由指令集优化把 "LoadData 常量... + OP in" 合并而来，例如 code in ('A01', 'A02', 'B07')
+ * 候选值在优化时构建成哈希集合，常量不再入栈，运行期只需要一次查找
+ */
+public class InstructionInConstSet extends Instruction {
+    private final OperatorIn operator;
+    private final InSet inSet;
+
+    public InstructionInConstSet(OperatorIn operator, InSet inSet) {
+        this.operator = operator;
+        this.inSet = inSet;
+    }
+
+    public OperatorIn getOperator() {
+        return this.operator;
+    }
+
+    public InSet getInSet() {
+        return this.inSet;
+    }
+
+    @Override
+    public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
+        OperateData operateData = environment.pop();
+        try {
+            Object value;
+            if (operateData == null && QLExpressRunStrategy.isAvoidNullPointer()) {
+                value = null;
+            } else {
+                value = operateData.getObject(environment.getContext());
+            }
+            Object result = this.operator.executeInner(value, this.inSet);
+            environment.push(
+                OperateDataCacheManager.fetchOperateData(result, ExpressUtil.getSimpleDataType(Boolean.class)));
+            environment.programPointAddOne();
+        } catch (QLException e) {
+            throw new QLException(getExceptionPrefix(), e);
+        } catch (Throwable t) {
+            throw new QLBizException(getExceptionPrefix(), t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OP : " + this.operator.toString() + " CONST" + this.inSet;
+    }
+}
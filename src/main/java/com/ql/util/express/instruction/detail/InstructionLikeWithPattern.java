@@ -0,0 +1,60 @@
+package com.ql.util.express.instruction.detail;
+
+import java.util.List;
+
+import com.ql.util.express.ExpressUtil;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.config.QLExpressRunStrategy;
+import com.ql.util.express.exception.QLBizException;
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.op.LikePattern;
+import com.ql.util.express.instruction.op.OperatorLike;
+
+/**
+ * 模式是常量的 like，由指令集优化把 "LoadData 模式 + OP like" 合并而来，例如 name like 'abc%'
+ * 模式在优化时编译，运行期不再解析模式也不再查询模式缓存
+ */
+public class InstructionLikeWithPattern extends Instruction {
+    private final OperatorLike operator;
+    private final LikePattern likePattern;
+
+    public InstructionLikeWithPattern(OperatorLike operator, LikePattern likePattern) {
+        this.operator = operator;
+        this.likePattern = likePattern;
+    }
+
+    public OperatorLike getOperator() {
+        return this.operator;
+    }
+
+    public LikePattern getLikePattern() {
+        return this.likePattern;
+    }
+
+    @Override
+    public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
+        OperateData operateData = environment.pop();
+        try {
+            Object value;
+            if (operateData == null && QLExpressRunStrategy.isAvoidNullPointer()) {
+                value = null;
+            } else {
+                value = operateData.getObject(environment.getContext());
+            }
+            Object result = this.operator.executeInner(value, this.likePattern);
+            environment.push(OperateDataCacheManager.fetchOperateData(result, ExpressUtil.getSimpleDataType(Boolean.class)));
+            environment.programPointAddOne();
+        } catch (QLException e) {
+            throw new QLException(getExceptionPrefix(), e);
+        } catch (Throwable t) {
+            throw new QLBizException(getExceptionPrefix(), t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OP : " + this.operator.toString() + " PATTERN[" + this.likePattern + "]";
+    }
+}
@@ -17,6 +17,10 @@ public class InstructionLoadLambda extends Instruction {
         this.lambdaSet = lambdaSet;
     }
 
+    public InstructionSet getLambdaSet() {
+        return lambdaSet;
+    }
+
     @Override
     public void execute(RunEnvironment environment, List<String> errorList) {
         environment.push(
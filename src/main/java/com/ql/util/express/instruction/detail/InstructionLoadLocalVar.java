@@ -0,0 +1,44 @@
+package com.ql.util.express.instruction.detail;
+
+import java.util.List;
+
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.instruction.opdata.OperateDataLocalVar;
+
+/**
+ * 读取解析时已经确定槽位的局部变量或者函数参数，不需要按照名称逐级查找符号表
+ * 槽位中还没有变量的时候(变量定义没有执行，或者是第一次读取参数)按照 InstructionLoadAttr 的方式查找，
+ * 找到的局部变量放入槽位，后续直接按照下标读取
+ */
+public class InstructionLoadLocalVar extends InstructionLoadAttr {
+    private final int slot;
+
+    public InstructionLoadLocalVar(String name, int slot) {
+        super(name);
+        this.slot = slot;
+    }
+
+    public int getSlot() {
+        return this.slot;
+    }
+
+    @Override
+    public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
+        OperateDataLocalVar localVar = environment.getLocalVar(this.slot);
+        if (localVar != null) {
+            environment.push(localVar);
+            environment.programPointAddOne();
+            return;
+        }
+        Object o = environment.getContext().getSymbol(this.getAttrName());
+        if (o instanceof OperateDataLocalVar) {
+            environment.setLocalVar(this.slot, (OperateDataLocalVar)o);
+        }
+        super.execute(environment, errorList);
+    }
+
+    @Override
+    public String toString() {
+        return "LoadLocalVar:" + this.getAttrName() + "[" + this.slot + "]";
+    }
+}
@@ -0,0 +1,52 @@
+package com.ql.util.express.instruction.detail;
+
+import java.util.List;
+
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.RuleSetContext;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+
+/**
+ * 规则集中公共子表达式的开始：本次执行已经计算过的时候直接压入保存的值，并跳过子表达式和保存指令
+ */
+public class InstructionLoadSharedValue extends Instruction {
+    private final int slot;
+
+    /**
+     * 跳过子表达式的偏移量
+     */
+    private int offset;
+
+    public InstructionLoadSharedValue(int slot) {
+        this.slot = slot;
+    }
+
+    public int getSlot() {
+        return this.slot;
+    }
+
+    public int getOffset() {
+        return this.offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    @Override
+    public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
+        RuleSetContext ruleSetContext = RuleSetContext.find(environment.getContext());
+        if (ruleSetContext != null && ruleSetContext.isComputed(this.slot)) {
+            environment.push(OperateDataCacheManager.fetchOperateData(ruleSetContext.getValue(this.slot),
+                ruleSetContext.getType(this.slot)));
+            environment.gotoWithOffset(this.offset);
+        } else {
+            environment.programPointAddOne();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LoadSharedValue[" + this.slot + "] +" + this.offset;
+    }
+}
@@ -21,6 +21,10 @@ public class InstructionNewVirClass extends Instruction {
         return className;
     }
 
+    public int getOpDataNumber() {
+        return opDataNumber;
+    }
+
     @Override
     public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
         ArraySwap parameters = environment.popArray(this.opDataNumber);
@@ -7,16 +7,67 @@ import com.ql.util.express.RunEnvironment;
 import com.ql.util.express.instruction.OperateDataCacheManager;
 
 public class InstructionOpenNewArea extends Instruction {
+    /**
+     * 作用域内定义的局部变量槽位范围[localVarStart, localVarEnd)
+     */
+    private int localVarStart = 0;
+    private int localVarEnd = 0;
+
+    /**
+     * 作用域的嵌套层次，从1开始，0表示没有经过 ScopeResolver 分析，直接使用当前上下文作为父上下文
+     */
+    private int depth = 0;
+
+    /**
+     * 离开作用域之后上下文不会再被引用，下次进入同一层作用域的时候可以重用
+     */
+    private boolean isReuseContext = false;
+
+    public void setLocalVarRange(int localVarStart, int localVarEnd) {
+        this.localVarStart = localVarStart;
+        this.localVarEnd = localVarEnd;
+    }
+
+    public int getLocalVarStart() {
+        return this.localVarStart;
+    }
+
+    public int getLocalVarEnd() {
+        return this.localVarEnd;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public boolean isReuseContext() {
+        return isReuseContext;
+    }
+
+    public void setReuseContext(boolean isReuseContext) {
+        this.isReuseContext = isReuseContext;
+    }
+
     @Override
     public void execute(RunEnvironment environment, List<String> errorList) {
-        //目前的模式，不需要执行任何操作
-        InstructionSetContext parentContext = environment.getContext();
-        environment.setContext(OperateDataCacheManager.fetchInstructionSetContext(
-            true,
-            parentContext.getExpressRunner(),
-            parentContext,
-            parentContext.getExpressLoader(),
-            parentContext.isSupportDynamicFieldName()));
+        if (this.depth > 0) {
+            environment.openScope(this.depth, this.isReuseContext);
+        } else {
+            InstructionSetContext parentContext = environment.getContext();
+            environment.setContext(OperateDataCacheManager.fetchInstructionSetContext(
+                true,
+                parentContext.getExpressRunner(),
+                parentContext,
+                parentContext.getExpressLoader(),
+                parentContext.isSupportDynamicFieldName()));
+        }
+        if (this.localVarEnd > this.localVarStart) {
+            environment.clearLocalVars(this.localVarStart, this.localVarEnd);
+        }
         environment.programPointAddOne();
     }
 
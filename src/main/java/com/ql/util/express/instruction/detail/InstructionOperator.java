@@ -24,6 +24,10 @@ public class InstructionOperator extends Instruction {
         return this.operator;
     }
 
+    public int getOpDataNumber() {
+        return this.opDataNumber;
+    }
+
     @Override
     public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
         InstructionSetContext instructionSetContext = environment.getContext();
@@ -0,0 +1,111 @@
+package com.ql.util.express.instruction.detail;
+
+import java.util.List;
+
+import com.ql.util.express.ExpressUtil;
+import com.ql.util.express.InstructionSetContext;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.OperatorOfNumber;
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.config.QLExpressRunStrategy;
+import com.ql.util.express.exception.QLBizException;
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.op.OperatorBase;
+
+/**
+ * 一个操作数是常量的四则运算，由指令集优化把 "LoadData 常量 + OP" 合并而来，例如 a * 100、1 - rate
+ * 常量不再入栈，只从堆栈中取另一个操作数，直接调用 OperatorOfNumber 计算，不需要构造参数数组
+ */
+public class InstructionOperatorWithConst extends Instruction {
+    public static final char OP_ADD = '+';
+    public static final char OP_SUBTRACT = '-';
+    public static final char OP_MULTIPLY = '*';
+    public static final char OP_DIVIDE = '/';
+    public static final char OP_MODULO = '%';
+
+    private final OperatorBase operator;
+    private final char opCode;
+    private final Object constValue;
+
+    /**
+     * 常量是否是右操作数
+     */
+    private final boolean isConstRight;
+
+    public InstructionOperatorWithConst(OperatorBase operator, char opCode, Object constValue,
+        boolean isConstRight) {
+        this.operator = operator;
+        this.opCode = opCode;
+        this.constValue = constValue;
+        this.isConstRight = isConstRight;
+    }
+
+    public OperatorBase getOperator() {
+        return this.operator;
+    }
+
+    public char getOpCode() {
+        return this.opCode;
+    }
+
+    public Object getConstValue() {
+        return this.constValue;
+    }
+
+    public boolean isConstRight() {
+        return this.isConstRight;
+    }
+
+    @Override
+    public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
+        InstructionSetContext instructionSetContext = environment.getContext();
+        OperateData operateData = environment.pop();
+        try {
+            Object value;
+            if (operateData == null && QLExpressRunStrategy.isAvoidNullPointer()) {
+                value = null;
+            } else {
+                value = operateData.getObject(instructionSetContext);
+            }
+            Object result = this.isConstRight ? calculate(value, this.constValue) : calculate(this.constValue, value);
+            if (result == null) {
+                environment.push(OperateDataCacheManager.fetchOperateData(null, null));
+            } else {
+                environment.push(
+                    OperateDataCacheManager.fetchOperateData(result, ExpressUtil.getSimpleDataType(result.getClass())));
+            }
+            environment.programPointAddOne();
+        } catch (QLException e) {
+            throw new QLException(getExceptionPrefix(), e);
+        } catch (Throwable t) {
+            throw new QLBizException(getExceptionPrefix(), t);
+        }
+    }
+
+    private Object calculate(Object op1, Object op2) throws Exception {
+        boolean isPrecise = this.operator.isPrecise();
+        switch (this.opCode) {
+            case OP_ADD:
+                return OperatorOfNumber.add(op1, op2, isPrecise);
+            case OP_SUBTRACT:
+                return OperatorOfNumber.subtract(op1, op2, isPrecise);
+            case OP_MULTIPLY:
+                return OperatorOfNumber.multiply(op1, op2, isPrecise);
+            case OP_DIVIDE:
+                return OperatorOfNumber.divide(op1, op2, isPrecise);
+            case OP_MODULO:
+                return OperatorOfNumber.modulo(op1, op2);
+            default:
+                throw new QLException("不支持的运算:" + this.opCode);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (this.isConstRight) {
+            return "OP : " + this.operator.toString() + " CONST[" + this.constValue + "]";
+        }
+        return "OP : CONST[" + this.constValue + "] " + this.operator.toString();
+    }
+}
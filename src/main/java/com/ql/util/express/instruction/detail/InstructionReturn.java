@@ -11,6 +11,10 @@ public class InstructionReturn extends Instruction {
         this.haveReturnValue = haveReturnValue;
     }
 
+    public boolean isHaveReturnValue() {
+        return this.haveReturnValue;
+    }
+
     @Override
     public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
         //目前的模式，不需要执行任何操作
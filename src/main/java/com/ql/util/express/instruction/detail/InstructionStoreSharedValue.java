@@ -0,0 +1,44 @@
+package com.ql.util.express.instruction.detail;
+
+import java.util.List;
+
+import com.ql.util.express.InstructionSetContext;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.RunEnvironment;
+import com.ql.util.express.RuleSetContext;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+
+/**
+ * 规则集中公共子表达式的结束：保存栈顶的计算结果，同一次执行的后续规则不再重复计算
+ */
+public class InstructionStoreSharedValue extends Instruction {
+    private final int slot;
+
+    public InstructionStoreSharedValue(int slot) {
+        this.slot = slot;
+    }
+
+    public int getSlot() {
+        return this.slot;
+    }
+
+    @Override
+    public void execute(RunEnvironment environment, List<String> errorList) throws Exception {
+        InstructionSetContext context = environment.getContext();
+        RuleSetContext ruleSetContext = RuleSetContext.find(context);
+        if (ruleSetContext != null) {
+            // 替换成计算好的值，属性访问等引用类型的数据不再重复取值
+            OperateData operateData = environment.pop();
+            Object value = operateData.getObject(context);
+            Class<?> type = operateData.getType(context);
+            ruleSetContext.setValue(this.slot, value, type);
+            environment.push(OperateDataCacheManager.fetchOperateData(value, type));
+        }
+        environment.programPointAddOne();
+    }
+
+    @Override
+    public String toString() {
+        return "StoreSharedValue[" + this.slot + "]";
+    }
+}
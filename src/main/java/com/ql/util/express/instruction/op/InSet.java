@@ -0,0 +1,97 @@
+package com.ql.util.express.instruction.op;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ql.util.express.Operator;
+
+/**
+ * in 操作的候选值集合，判断结果和逐个使用 == 比较一致
+ * 字符串按照 equals 查找；Byte、Short、Integer、Long 和 Character 统一成 long 查找，
+ * 其它数字(Double、BigDecimal 等)和 long 之间的比较规则不是等价关系，保留在列表中逐个比较
+ */
+public class InSet {
+    private final Set<String> strings = new HashSet<>();
+    private final Set<Long> longs = new HashSet<>();
+    private final List<Object> others = new ArrayList<>();
+    /**
+     * 全部候选值，左操作数不是整数或字符串的时候逐个比较
+     */
+    private final List<Object> values;
+
+    public InSet(Collection<?> values) {
+        this.values = new ArrayList<>(values);
+        for (Object value : this.values) {
+            add(value);
+        }
+    }
+
+    public static InSet fromArray(Object array) {
+        int length = Array.getLength(array);
+        List<Object> values = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            values.add(Array.get(array, i));
+        }
+        return new InSet(values);
+    }
+
+    private void add(Object value) {
+        if (value instanceof String) {
+            this.strings.add((String)value);
+        } else if (isIntegral(value)) {
+            this.longs.add(((Number)value).longValue());
+        } else if (value instanceof Character) {
+            this.longs.add((long)(Character)value);
+        } else if (value instanceof Number) {
+            this.others.add(value);
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    public List<Object> getValues() {
+        return this.values;
+    }
+
+    public int size() {
+        return this.values.size();
+    }
+
+    /**
+     * @param obj 非空的数字或者字符串
+     * @return
+     */
+    public boolean contains(Object obj) {
+        if (obj instanceof String) {
+            return this.strings.contains(obj);
+        }
+        if (isIntegral(obj)) {
+            if (this.longs.contains(((Number)obj).longValue())) {
+                return true;
+            }
+            for (Object other : this.others) {
+                if (Operator.objectEquals(obj, other)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (Object value : this.values) {
+            if (Operator.objectEquals(obj, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return this.values.toString();
+    }
+}
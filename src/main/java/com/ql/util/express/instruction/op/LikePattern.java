@@ -0,0 +1,190 @@
+package com.ql.util.express.instruction.op;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预编译的 like 模式，只支持 % 通配符
+ * 只有前缀(abc%)、后缀(%abc)、包含(%abc%)、完全相等(abc)的模式直接使用 String 的方法匹配，其它模式逐字符匹配
+ * 编译结果按照模式字符串缓存，常量模式在指令集优化时绑定，不再查询缓存
+ */
+public abstract class LikePattern {
+    /**
+     * 缓存的模式数量上限，超过之后新的模式不再缓存，避免动态拼接的模式占满内存
+     */
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    private static final Map<String, LikePattern> PATTERN_CACHE = new ConcurrentHashMap<>();
+
+    private static final LongAdder HIT_COUNT = new LongAdder();
+
+    private static final LongAdder MISS_COUNT = new LongAdder();
+
+    private static final char WILDCARD = '%';
+
+    protected final String pattern;
+
+    protected LikePattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * 从缓存中获取编译好的模式，没有的时候编译并加入缓存
+     *
+     * @param pattern
+     * @return
+     */
+    public static LikePattern getPattern(String pattern) {
+        LikePattern result = PATTERN_CACHE.get(pattern);
+        if (result != null) {
+            HIT_COUNT.increment();
+            return result;
+        }
+        MISS_COUNT.increment();
+        result = compile(pattern);
+        if (PATTERN_CACHE.size() < MAX_CACHE_SIZE) {
+            PATTERN_CACHE.put(pattern, result);
+        }
+        return result;
+    }
+
+    /**
+     * 编译模式，不使用缓存
+     *
+     * @param pattern
+     * @return
+     */
+    public static LikePattern compile(String pattern) {
+        int first = pattern.indexOf(WILDCARD);
+        if (first < 0) {
+            return new EqualsPattern(pattern);
+        }
+        int start = 0;
+        int end = pattern.length();
+        while (start < end && pattern.charAt(start) == WILDCARD) {
+            start++;
+        }
+        while (end > start && pattern.charAt(end - 1) == WILDCARD) {
+            end--;
+        }
+        String literal = pattern.substring(start, end);
+        if (literal.indexOf(WILDCARD) >= 0) {
+            return new GeneralPattern(pattern);
+        }
+        boolean isAnyPrefix = start > 0;
+        boolean isAnySuffix = end < pattern.length();
+        if (isAnyPrefix && isAnySuffix) {
+            return new ContainsPattern(pattern, literal);
+        } else if (isAnyPrefix) {
+            return new SuffixPattern(pattern, literal);
+        } else {
+            return new PrefixPattern(pattern, literal);
+        }
+    }
+
+    public static long getCacheHitCount() {
+        return HIT_COUNT.sum();
+    }
+
+    public static long getCacheMissCount() {
+        return MISS_COUNT.sum();
+    }
+
+    /**
+     * @return 缓存命中率，没有查询过缓存的时候返回0
+     */
+    public static double getCacheHitRate() {
+        long hitCount = HIT_COUNT.sum();
+        long total = hitCount + MISS_COUNT.sum();
+        return total == 0 ? 0 : (double)hitCount / total;
+    }
+
+    public static int getCacheSize() {
+        return PATTERN_CACHE.size();
+    }
+
+    /**
+     * 清空缓存和命中统计
+     */
+    public static void clearCache() {
+        PATTERN_CACHE.clear();
+        HIT_COUNT.reset();
+        MISS_COUNT.reset();
+    }
+
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    public abstract boolean matches(String s);
+
+    @Override
+    public String toString() {
+        return this.pattern;
+    }
+
+    private static class EqualsPattern extends LikePattern {
+        private EqualsPattern(String pattern) {
+            super(pattern);
+        }
+
+        @Override
+        public boolean matches(String s) {
+            return this.pattern.equals(s);
+        }
+    }
+
+    private static class PrefixPattern extends LikePattern {
+        private final String literal;
+
+        private PrefixPattern(String pattern, String literal) {
+            super(pattern);
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean matches(String s) {
+            return s.startsWith(this.literal);
+        }
+    }
+
+    private static class SuffixPattern extends LikePattern {
+        private final String literal;
+
+        private SuffixPattern(String pattern, String literal) {
+            super(pattern);
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean matches(String s) {
+            return s.endsWith(this.literal);
+        }
+    }
+
+    private static class ContainsPattern extends LikePattern {
+        private final String literal;
+
+        private ContainsPattern(String pattern, String literal) {
+            super(pattern);
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean matches(String s) {
+            return s.contains(this.literal);
+        }
+    }
+
+    private static class GeneralPattern extends LikePattern {
+        private GeneralPattern(String pattern) {
+            super(pattern);
+        }
+
+        @Override
+        public boolean matches(String s) {
+            return OperatorLike.matchPattern(s, this.pattern);
+        }
+    }
+}
@@ -21,6 +21,7 @@ public class OperatorAnonymousNewArray extends OperatorBase {
 
     @Override
     public OperateData executeInner(InstructionSetContext parent, ArraySwap list) throws Exception {
+        parent.checkCollectionSize(list.length);
         Class<?> type = this.findArrayClassType(parent, list);
         type = ExpressUtil.getSimpleDataType(type);
         int[] dims = new int[1];
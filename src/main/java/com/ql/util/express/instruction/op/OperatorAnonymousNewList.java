@@ -21,6 +21,7 @@ public class OperatorAnonymousNewList extends OperatorBase {
 
     @Override
     public OperateData executeInner(InstructionSetContext parent, ArraySwap list) throws Exception {
+        parent.checkCollectionSize(list.length);
         List<Object> result = new ArrayList<>();
         for (int i = 0; i < list.length; i++) {
             result.add(list.get(i).getObject(parent));
@@ -22,6 +22,7 @@ public class OperatorAnonymousNewMap extends OperatorBase {
 
     @Override
     public OperateData executeInner(InstructionSetContext parent, ArraySwap list) throws Exception {
+        parent.checkCollectionSize(list.length);
         Map<Object, Object> result = new HashMap<>();
         for (int i = 0; i < list.length; i++) {
             Object key = ((OperateDataKeyValue)list.get(i)).getKey().getObject(parent);
@@ -1,5 +1,7 @@
 package com.ql.util.express.instruction.op;
 
+import java.math.BigDecimal;
+
 import com.ql.util.express.Operator;
 import com.ql.util.express.exception.QLException;
 
@@ -7,51 +9,153 @@ import static com.ql.util.express.config.QLExpressRunStrategy.isCompareNullLessM
 
 /**
  * 处理比较操作符号
+ * 比较的种类在创建操作符(修改名称)的时候确定，执行时不再逐个比较操作符字符串
  */
 public class OperatorEqualsLessMore extends Operator {
+    /**
+     * 比较的种类
+     */
+    public enum CompareKind {
+        EQUALS, NOT_EQUALS, LESS, MORE, LESS_EQUALS, MORE_EQUALS;
+
+        /**
+         * @param opStr 操作符
+         * @return 不是比较操作符的时候返回 null
+         */
+        public static CompareKind of(String opStr) {
+            if (opStr == null) {
+                return null;
+            }
+            switch (opStr) {
+                case "==":
+                    return EQUALS;
+                case "!=":
+                case "<>":
+                    return NOT_EQUALS;
+                case "<":
+                    return LESS;
+                case ">":
+                    return MORE;
+                case "<=":
+                    return LESS_EQUALS;
+                case ">=":
+                    return MORE_EQUALS;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @param i compareData 的结果
+         */
+        public boolean test(int i) {
+            switch (this) {
+                case EQUALS:
+                    return i == 0;
+                case NOT_EQUALS:
+                    return i != 0;
+                case LESS:
+                    return i < 0;
+                case MORE:
+                    return i > 0;
+                case LESS_EQUALS:
+                    return i <= 0;
+                default:
+                    return i >= 0;
+            }
+        }
+    }
+
+    private CompareKind compareKind;
+
     public OperatorEqualsLessMore(String name) {
-        this.name = name;
+        this.setName(name);
     }
 
     public OperatorEqualsLessMore(String aliasName, String name, String errorInfo) {
-        this.name = name;
+        this.setName(name);
         this.aliasName = aliasName;
         this.errorInfo = errorInfo;
     }
 
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        this.compareKind = CompareKind.of(name);
+    }
+
+    public CompareKind getCompareKind() {
+        return compareKind;
+    }
+
     @Override
     public Object executeInner(Object[] list) throws Exception {
         return executeInner(list[0], list[1]);
     }
 
     public Object executeInner(Object op1, Object op2) throws Exception {
+        if (this.compareKind != null) {
+            return executeInner(this.compareKind, op1, op2);
+        }
         return executeInner(this.name, op1, op2);
     }
 
     public static boolean executeInner(String opStr, Object obj1, Object obj2) throws Exception {
-        if ("==".equals(opStr)) {
+        CompareKind kind = CompareKind.of(opStr);
+        if (kind != null) {
+            return executeInner(kind, obj1, obj2);
+        }
+        // 其它名称(例如"=")保持原来的处理：只有相等的时候可能为 true
+        checkNotNull(obj1, obj2);
+        if (obj1 == null || obj2 == null) {
+            return false;
+        }
+        int i = Operator.compareData(obj1, obj2);
+        return i == 0 && "=".equals(opStr);
+    }
+
+    public static boolean executeInner(CompareKind kind, Object obj1, Object obj2) throws Exception {
+        // 两边类型相同的常见类型直接比较，结果和 objectEquals、compareData 一致
+        if (obj1 != null && obj2 != null) {
+            Class<?> type = obj1.getClass();
+            if (type == obj2.getClass()) {
+                if (type == Integer.class) {
+                    return kind.test(Integer.compare((Integer)obj1, (Integer)obj2));
+                } else if (type == Long.class) {
+                    return kind.test(Long.compare((Long)obj1, (Long)obj2));
+                } else if (type == Double.class) {
+                    return kind.test(Double.compare((Double)obj1, (Double)obj2));
+                } else if (type == String.class) {
+                    if (kind == CompareKind.EQUALS) {
+                        return obj1.equals(obj2);
+                    } else if (kind == CompareKind.NOT_EQUALS) {
+                        return !obj1.equals(obj2);
+                    }
+                    return kind.test(((String)obj1).compareTo((String)obj2));
+                } else if (type == BigDecimal.class) {
+                    return kind.test(((BigDecimal)obj1).compareTo((BigDecimal)obj2));
+                }
+            }
+        }
+
+        if (kind == CompareKind.EQUALS) {
             return Operator.objectEquals(obj1, obj2);
         }
-        if ("!=".equals(opStr) || "<>".equals(opStr)) {
+        if (kind == CompareKind.NOT_EQUALS) {
             return !Operator.objectEquals(obj1, obj2);
         }
 
         // 进行其他大小比较操作
+        checkNotNull(obj1, obj2);
         if (obj1 == null || obj2 == null) {
-            if (isCompareNullLessMoreAsFalse()) {
-                return false;
-            }
+            return false;
+        }
+        return kind.test(Operator.compareData(obj1, obj2));
+    }
+
+    private static void checkNotNull(Object obj1, Object obj2) throws QLException {
+        if ((obj1 == null || obj2 == null) && !isCompareNullLessMoreAsFalse()) {
             throw new QLException("空操作数无法进行数字比较操作：left = " + obj1 + ",right = " + obj2);
         }
-        int i = Operator.compareData(obj1, obj2);
-        boolean result = false;
-        if (i > 0) {
-            result = ">".equals(opStr) || ">=".equals(opStr) || "!=".equals(opStr) || "<>".equals(opStr);
-        } else if (i == 0) {
-            result = "=".equals(opStr) || "==".equals(opStr) || ">=".equals(opStr) || "<=".equals(opStr);
-        } else if (i < 0) {
-            result = "<".equals(opStr) || "<=".equals(opStr) || "!=".equals(opStr) || "<>".equals(opStr);
-        }
-        return result;
     }
 }
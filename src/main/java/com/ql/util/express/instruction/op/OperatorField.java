@@ -5,10 +5,18 @@ import com.ql.util.express.InstructionSetContext;
 import com.ql.util.express.OperateData;
 import com.ql.util.express.config.QLExpressRunStrategy;
 import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.opdata.OperateDataField;
+import com.ql.util.express.instruction.opdata.OperateDataVirClass;
+import com.ql.util.express.util.PropertyAccessor;
 
 public class OperatorField extends OperatorBase {
     private String filedName;
 
+    /**
+     * 当前调用点最近一次使用的属性访问器，对象类型不变的时候直接复用
+     */
+    private volatile PropertyAccessor propertyAccessor;
+
     public OperatorField() {
         this.name = "FieldCall";
     }
@@ -25,7 +33,25 @@ public class OperatorField extends OperatorBase {
             return null;
         }
         Object obj = operateData.getObject(parent);
-        return OperateDataCacheManager.fetchOperateDataField(obj, this.filedName);
+        OperateDataField result = OperateDataCacheManager.fetchOperateDataField(obj, this.filedName);
+        if (PropertyAccessor.isBeanObject(obj) && !(obj instanceof OperateDataVirClass)
+            && !parent.isSupportDynamicFieldName()) {
+            result.setPropertyAccessor(bindPropertyAccessor(obj.getClass()));
+        }
+        return result;
+    }
+
+    private PropertyAccessor bindPropertyAccessor(Class<?> beanClass) {
+        PropertyAccessor accessor = this.propertyAccessor;
+        if (accessor == null || accessor.getBeanClass() != beanClass) {
+            accessor = PropertyAccessor.getPropertyAccessor(beanClass, this.filedName);
+            this.propertyAccessor = accessor;
+        }
+        return accessor;
+    }
+
+    public String getFieldName() {
+        return this.filedName;
     }
 
     @Override
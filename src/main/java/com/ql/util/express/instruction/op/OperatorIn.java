@@ -6,8 +6,21 @@ import java.util.List;
 import com.ql.util.express.Operator;
 import com.ql.util.express.config.QLExpressRunStrategy;
 import com.ql.util.express.exception.QLException;
+import com.ql.util.express.instruction.op.OperatorEqualsLessMore.CompareKind;
 
 public class OperatorIn extends Operator {
+    /**
+     * 元素数量达到这个值的集合才缓存哈希集合，元素较少的时候逐个比较更快
+     */
+    private static final int MIN_CACHE_SIZE = 8;
+
+    private static final int CACHE_SLOT_COUNT = 8;
+
+    /**
+     * 按照集合的对象地址缓存构建好的 InSet，槽位冲突的时候直接覆盖
+     */
+    private final CachedInSet[] inSetCache = new CachedInSet[CACHE_SLOT_COUNT];
+
     public OperatorIn(String name) {
         this.name = name;
     }
@@ -21,22 +34,17 @@ public class OperatorIn extends Operator {
     @Override
     public Object executeInner(Object[] list) throws Exception {
         Object obj = list[0];
-        if (obj == null) {
-            if (QLExpressRunStrategy.isAvoidNullPointer()) {
-                //避免空指针策略异常则返回false
-                return false;
-            }
-            // 对象为空，不能执行方法
-            String msg = "对象为空，不能执行方法:";
-            throw new QLException(msg + this.name);
-        } else if (!((obj instanceof Number) || (obj instanceof String))) {
-            String msg = "对象类型不匹配，只有数字和字符串类型才才能执行 in 操作,当前数据类型是:";
-            throw new QLException(msg + obj.getClass().getName());
+        if (!checkObject(obj)) {
+            return false;
         } else if (list.length == 2 && (list[1].getClass().isArray() || list[1] instanceof List)) {
+            InSet inSet = getCachedInSet(list[1]);
+            if (inSet != null) {
+                return inSet.contains(obj);
+            }
             if (list[1].getClass().isArray()) {
                 int len = Array.getLength(list[1]);
                 for (int i = 0; i < len; i++) {
-                    boolean f = OperatorEqualsLessMore.executeInner("==", obj, Array.get(list[1], i));
+                    boolean f = OperatorEqualsLessMore.executeInner(CompareKind.EQUALS, obj, Array.get(list[1], i));
                     if (f) {
                         return Boolean.TRUE;
                     }
@@ -45,7 +53,7 @@ public class OperatorIn extends Operator {
                 @SuppressWarnings("unchecked")
                 List<Object> array = (List<Object>)list[1];
                 for (Object o : array) {
-                    boolean f = OperatorEqualsLessMore.executeInner("==", obj, o);
+                    boolean f = OperatorEqualsLessMore.executeInner(CompareKind.EQUALS, obj, o);
                     if (f) {
                         return Boolean.TRUE;
                     }
@@ -54,7 +62,7 @@ public class OperatorIn extends Operator {
             return false;
         } else {
             for (int i = 1; i < list.length; i++) {
-                boolean f = OperatorEqualsLessMore.executeInner("==", obj, list[i]);
+                boolean f = OperatorEqualsLessMore.executeInner(CompareKind.EQUALS, obj, list[i]);
                 if (f) {
                     return Boolean.TRUE;
                 }
@@ -62,4 +70,68 @@ public class OperatorIn extends Operator {
             return Boolean.FALSE;
         }
     }
+
+    /**
+     * 候选值全部是常量的时候使用，由指令集优化预先构建 InSet
+     *
+     * @param obj
+     * @param inSet
+     * @return
+     * @throws Exception
+     */
+    public Object executeInner(Object obj, InSet inSet) throws Exception {
+        if (!checkObject(obj)) {
+            return false;
+        }
+        return inSet.contains(obj);
+    }
+
+    /**
+     * @param obj
+     * @return 对象为空并且设置了避免空指针的时候返回false
+     * @throws Exception
+     */
+    private boolean checkObject(Object obj) throws Exception {
+        if (obj == null) {
+            if (QLExpressRunStrategy.isAvoidNullPointer()) {
+                //避免空指针策略异常则返回false
+                return false;
+            }
+            // 对象为空，不能执行方法
+            String msg = "对象为空，不能执行方法:";
+            throw new QLException(msg + this.name);
+        } else if (!((obj instanceof Number) || (obj instanceof String))) {
+            String msg = "对象类型不匹配，只有数字和字符串类型才才能执行 in 操作,当前数据类型是:";
+            throw new QLException(msg + obj.getClass().getName());
+        }
+        return true;
+    }
+
+    private InSet getCachedInSet(Object collection) {
+        if (!QLExpressRunStrategy.isCacheInCollection()) {
+            return null;
+        }
+        int size = collection instanceof List ? ((List<?>)collection).size() : Array.getLength(collection);
+        if (size < MIN_CACHE_SIZE) {
+            return null;
+        }
+        int slot = System.identityHashCode(collection) & (CACHE_SLOT_COUNT - 1);
+        CachedInSet cachedInSet = this.inSetCache[slot];
+        if (cachedInSet != null && cachedInSet.collection == collection && cachedInSet.inSet.size() == size) {
+            return cachedInSet.inSet;
+        }
+        InSet inSet = collection instanceof List ? new InSet((List<?>)collection) : InSet.fromArray(collection);
+        this.inSetCache[slot] = new CachedInSet(collection, inSet);
+        return inSet;
+    }
+
+    private static class CachedInSet {
+        private final Object collection;
+        private final InSet inSet;
+
+        private CachedInSet(Object collection, InSet inSet) {
+            this.collection = collection;
+            this.inSet = inSet;
+        }
+    }
 }
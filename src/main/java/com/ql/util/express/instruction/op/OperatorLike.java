@@ -19,10 +19,24 @@ public class OperatorLike extends Operator {
         if (op1 == null || op2 == null) {
             return false;
         }
-        String s = op1.toString();
-        String pattern = op2.toString();
+        String s = op1 instanceof String ? (String)op1 : op1.toString();
+        String pattern = op2 instanceof String ? (String)op2 : op2.toString();
 
-        return matchPattern(s, pattern);
+        return LikePattern.getPattern(pattern).matches(s);
+    }
+
+    /**
+     * 模式是常量的时候使用，由指令集优化绑定编译好的模式
+     *
+     * @param op1
+     * @param likePattern
+     * @return
+     */
+    public Object executeInner(Object op1, LikePattern likePattern) {
+        if (op1 == null) {
+            return false;
+        }
+        return likePattern.matches(op1 instanceof String ? (String)op1 : op1.toString());
     }
 
     protected static boolean matchPattern(String s, String pattern) {
@@ -30,13 +44,14 @@ public class OperatorLike extends Operator {
         int sLen = s.length(), pLen = pattern.length();
         int sRecall = -1, pRecall = -1;
         while (sPointer < sLen) {
-            if (pPointer < pLen && (s.charAt(sPointer) == pattern.charAt(pPointer))) {
-                sPointer++;
-                pPointer++;
-            } else if (pPointer < pLen && pattern.charAt(pPointer) == '%') {
+            // 模式中的 % 总是作为通配符，即使字符串中对应位置也是 %
+            if (pPointer < pLen && pattern.charAt(pPointer) == '%') {
                 sRecall = sPointer;
                 pRecall = pPointer;
                 pPointer++;
+            } else if (pPointer < pLen && (s.charAt(sPointer) == pattern.charAt(pPointer))) {
+                sPointer++;
+                pPointer++;
             } else if (sRecall >= 0) {
                 sPointer = ++sRecall;
                 pPointer = pRecall + 1;
@@ -1,6 +1,11 @@
 package com.ql.util.express.instruction.op;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 import com.ql.util.express.ArraySwap;
 import com.ql.util.express.ExpressUtil;
@@ -18,6 +23,13 @@ public class OperatorMethod extends OperatorBase {
 
     private static final Class<?> ARRAY_CLASS = Object[].class;
 
+    /**
+     * 每个调用点最多缓存的接收者和参数类型组合
+     */
+    private static final int MAX_METHOD_CACHE_DEPTH = 4;
+
+    private volatile MethodCacheEntry[] methodCache = new MethodCacheEntry[0];
+
     public OperatorMethod() {
         this.name = "MethodCall";
     }
@@ -27,6 +39,10 @@ public class OperatorMethod extends OperatorBase {
         this.methodName = methodName;
     }
 
+    public String getMethodName() {
+        return this.methodName;
+    }
+
     @Override
     public OperateData executeInner(InstructionSetContext parent, ArraySwap list) throws Exception {
         OperateData p0 = list.get(0);
@@ -74,67 +90,181 @@ public class OperatorMethod extends OperatorBase {
             if (QLExpressRunStrategy.isSandboxMode()) {
                 throw new QLException("没有找到方法:" + this.methodName);
             }
-            Method method = null;
             // 调用静态方法
-            if (p0 instanceof OperateClass) {
-                method = ExpressUtil.findMethodWithCache((Class<?>)obj, this.methodName, types, true, true);
-            } else {
-                if (obj instanceof Class) {
-                    method = ExpressUtil.findMethodWithCache((Class<?>)obj, this.methodName, types, true, true);
-                }
-                if (method == null) {
-                    method = ExpressUtil.findMethodWithCache(obj.getClass(), this.methodName, types, true, false);
-                }
-            }
-            if (method == null) {
-                types = new Class[] {ARRAY_CLASS};
-                // 调用静态方法
-                if (p0 instanceof OperateClass) {
-                    method = ExpressUtil.findMethodWithCache((Class<?>)obj, methodName, types, true, true);
-                } else {
-                    method = ExpressUtil.findMethodWithCache(obj.getClass(), methodName, types, true, false);
-                }
-                objs = new Object[] {objs};
-            }
-            if (method == null) {
-                StringBuilder stringBuilder = new StringBuilder();
-                stringBuilder.append("没有找到").append(obj.getClass().getName()).append("的方法：").append(methodName).append(
-                    "(");
-                for (int i = 0; i < originalTypes.length; i++) {
-                    if (i > 0) {
-                        stringBuilder.append(",");
-                    }
-                    if (originalTypes[i] == null) {
-                        stringBuilder.append("null");
-                    } else {
-                        stringBuilder.append(originalTypes[i].getName());
-                    }
-                }
-                stringBuilder.append(")");
-                throw new QLException(stringBuilder.toString());
+            boolean isStaticCall = p0 instanceof OperateClass;
+            Object receiverKey = isStaticCall || obj instanceof Class ? obj : obj.getClass();
+            MethodCacheEntry cacheEntry = this.findCacheEntry(receiverKey, isStaticCall, types);
+            if (cacheEntry == null) {
+                cacheEntry = this.createCacheEntry(obj, receiverKey, isStaticCall, types, originalTypes);
             }
+            Method method = cacheEntry.method;
 
             //阻止调用不安全的方法
             QLExpressRunStrategy.assertSecurityRiskMethod(method);
 
+            if (cacheEntry.isArrayParameter) {
+                objs = new Object[] {objs};
+            }
+            tmpObj = cacheEntry.invoke(isStaticCall ? null : obj,
+                ExpressUtil.transferArray(objs, cacheEntry.parameterTypes));
+            return OperateDataCacheManager.fetchOperateData(tmpObj, method.getReturnType());
+        }
+    }
+
+    private MethodCacheEntry findCacheEntry(Object receiverKey, boolean isStaticCall, Class<?>[] types) {
+        for (MethodCacheEntry cacheEntry : this.methodCache) {
+            if (cacheEntry.isMatch(receiverKey, isStaticCall, types)) {
+                return cacheEntry;
+            }
+        }
+        return null;
+    }
+
+    private MethodCacheEntry createCacheEntry(Object obj, Object receiverKey, boolean isStaticCall,
+        Class<?>[] types, Class<?>[] originalTypes) throws Exception {
+        Method method = null;
+        boolean isArrayParameter = false;
+        if (isStaticCall) {
+            method = ExpressUtil.findMethodWithCache((Class<?>)obj, this.methodName, types, true, true);
+        } else {
+            if (obj instanceof Class) {
+                method = ExpressUtil.findMethodWithCache((Class<?>)obj, this.methodName, types, true, true);
+            }
+            if (method == null) {
+                method = ExpressUtil.findMethodWithCache(obj.getClass(), this.methodName, types, true, false);
+            }
+        }
+        if (method == null) {
+            Class<?>[] arrayTypes = new Class[] {ARRAY_CLASS};
             // 调用静态方法
-            if (p0 instanceof OperateClass) {
-                boolean oldA = method.isAccessible();
-                method.setAccessible(true);
-                tmpObj = method.invoke(null, ExpressUtil.transferArray(objs, method.getParameterTypes()));
-                method.setAccessible(oldA);
+            if (isStaticCall) {
+                method = ExpressUtil.findMethodWithCache((Class<?>)obj, methodName, arrayTypes, true, true);
             } else {
-                boolean oldA = method.isAccessible();
-                method.setAccessible(true);
-                tmpObj = method.invoke(obj, ExpressUtil.transferArray(objs, method.getParameterTypes()));
-                method.setAccessible(oldA);
+                method = ExpressUtil.findMethodWithCache(obj.getClass(), methodName, arrayTypes, true, false);
             }
-            return OperateDataCacheManager.fetchOperateData(tmpObj, method.getReturnType());
+            isArrayParameter = true;
         }
+        if (method == null) {
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("没有找到").append(obj.getClass().getName()).append("的方法：").append(methodName).append(
+                "(");
+            for (int i = 0; i < originalTypes.length; i++) {
+                if (i > 0) {
+                    stringBuilder.append(",");
+                }
+                if (originalTypes[i] == null) {
+                    stringBuilder.append("null");
+                } else {
+                    stringBuilder.append(originalTypes[i].getName());
+                }
+            }
+            stringBuilder.append(")");
+            throw new QLException(stringBuilder.toString());
+        }
+
+        MethodCacheEntry cacheEntry = new MethodCacheEntry(receiverKey, isStaticCall, types.clone(), method,
+            isArrayParameter);
+        MethodCacheEntry[] oldCache = this.methodCache;
+        if (oldCache.length < MAX_METHOD_CACHE_DEPTH) {
+            // 写时复制，并发调用时最多丢失一个缓存项，不影响正确性
+            MethodCacheEntry[] newCache = new MethodCacheEntry[oldCache.length + 1];
+            System.arraycopy(oldCache, 0, newCache, 0, oldCache.length);
+            newCache[oldCache.length] = cacheEntry;
+            this.methodCache = newCache;
+        }
+        return cacheEntry;
     }
 
     @Override
     public String toString() {
         return this.name + ":" + this.methodName;
     }
+
+    /**
+     * 调用点的方法缓存项，接收者和参数类型都相同的时候直接使用已经找到的方法
+     */
+    private static final class MethodCacheEntry {
+        private static final int INVOKER_THRESHOLD = 16;
+
+        private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class,
+            Object[].class);
+
+        /**
+         * 静态调用是类本身，其它是对象的类型
+         */
+        final Object receiverKey;
+        final boolean isStaticCall;
+        final Class<?>[] types;
+        final Method method;
+        final Class<?>[] parameterTypes;
+
+        /**
+         * 是否把全部参数作为一个 Object[] 传入
+         */
+        final boolean isArrayParameter;
+
+        /**
+         * 统一成 (Object receiver, Object[] args)Object 的 MethodHandle，调用次数超过阈值之后才创建，
+         * 避免只调用几次的方法承担创建的开销；无法创建的时候一直使用反射调用
+         */
+        private volatile MethodHandle invoker;
+        private volatile boolean isInvokerFailed = false;
+        private int invokeCount = 0;
+
+        MethodCacheEntry(Object receiverKey, boolean isStaticCall, Class<?>[] types, Method method,
+            boolean isArrayParameter) {
+            this.receiverKey = receiverKey;
+            this.isStaticCall = isStaticCall;
+            this.types = types;
+            this.method = method;
+            this.parameterTypes = method.getParameterTypes();
+            this.isArrayParameter = isArrayParameter;
+        }
+
+        boolean isMatch(Object receiverKey, boolean isStaticCall, Class<?>[] types) {
+            if (this.receiverKey != receiverKey || this.isStaticCall != isStaticCall
+                || this.types.length != types.length) {
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (this.types[i] != types[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Object invoke(Object target, Object[] args) throws Exception {
+            MethodHandle methodHandle = this.invoker;
+            if (methodHandle == null) {
+                if (this.isInvokerFailed || ++this.invokeCount < INVOKER_THRESHOLD) {
+                    return this.method.invoke(target, args);
+                }
+                methodHandle = createInvoker(this.method);
+                if (methodHandle == null) {
+                    this.isInvokerFailed = true;
+                    return this.method.invoke(target, args);
+                }
+                this.invoker = methodHandle;
+            }
+            try {
+                return methodHandle.invokeExact(target, args);
+            } catch (Throwable t) {
+                // 和反射调用保持一致的异常类型
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        private static MethodHandle createInvoker(Method method) {
+            try {
+                MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+                if (Modifier.isStatic(method.getModifiers())) {
+                    handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                }
+                return handle.asSpreader(Object[].class, method.getParameterTypes().length).asType(INVOKER_TYPE);
+            } catch (Exception | LinkageError e) {
+                return null;
+            }
+        }
+    }
 }
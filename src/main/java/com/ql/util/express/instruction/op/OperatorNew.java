@@ -36,6 +36,11 @@ public class OperatorNew extends OperatorBase {
                     throw new QLException("超过了最大的数组申请限制");
                 }
             }
+            long size = 1;
+            for (int length : dimLength) {
+                size = size * Math.max(length, 0);
+            }
+            parent.checkCollectionSize(size);
             return OperateDataCacheManager.fetchOperateData(Array.newInstance(tmpClass, dimLength), obj);
         }
         Class<?>[] types = new Class[list.length - 1];
@@ -0,0 +1,71 @@
+package com.ql.util.express.instruction.opdata;
+
+import com.ql.util.express.InstructionSetContext;
+import com.ql.util.express.OperateData;
+
+/**
+ * 脚本中的常量，编译的时候创建，在所有的执行和线程之间共享，创建之后不能修改
+ * 值和类型在创建的时候确定，运算时通过 {@link #getObject(OperateData, InstructionSetContext)} 直接读取，
+ * 不需要经过 getObject/getType 的虚方法调用
+ */
+public final class OperateDataConst extends OperateData {
+    private final Object value;
+    private final Class<?> valueType;
+
+    public OperateDataConst(Object value, Class<?> type) {
+        super(value, type);
+        this.value = value;
+        this.valueType = type != null ? type : value == null ? null : value.getClass();
+    }
+
+    public Object getValue() {
+        return this.value;
+    }
+
+    @Override
+    public Class<?> getType(InstructionSetContext parent) {
+        return this.valueType;
+    }
+
+    @Override
+    public Object getObjectInner(InstructionSetContext context) {
+        return this.value;
+    }
+
+    @Override
+    public void initial(Object obj, Class<?> type) {
+        throw new UnsupportedOperationException("常量不能修改");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("常量不能修改");
+    }
+
+    @Override
+    public String toJavaCode() {
+        return toJavaCode(OperateDataConst.class);
+    }
+
+    /**
+     * 读取操作数的值，常量直接返回
+     *
+     * @param operateData
+     * @param context
+     * @return
+     * @throws Exception
+     */
+    public static Object getObject(OperateData operateData, InstructionSetContext context) throws Exception {
+        if (operateData.getClass() == OperateDataConst.class) {
+            return ((OperateDataConst)operateData).value;
+        }
+        return operateData.getObject(context);
+    }
+
+    /**
+     * @return 是否是普通的常量值，不包括类名等其它的常量
+     */
+    public static boolean isConstValue(OperateData operateData) {
+        return operateData.getClass() == OperateDataConst.class || operateData.getClass() == OperateData.class;
+    }
+}
@@ -4,11 +4,17 @@ import com.ql.util.express.ExpressUtil;
 import com.ql.util.express.InstructionSetContext;
 import com.ql.util.express.config.QLExpressRunStrategy;
 import com.ql.util.express.parse.AppendingClassFieldManager;
+import com.ql.util.express.util.PropertyAccessor;
 
 public class OperateDataField extends OperateDataAttr {
     private Object fieldObject;
     private String originalFieldName;
 
+    /**
+     * 调用点绑定的属性访问器，为null的时候按照属性名称查找
+     */
+    private PropertyAccessor propertyAccessor;
+
     public OperateDataField(Object fieldObject, String fieldName) {
         super(null, null);
         if (fieldObject == null) {
@@ -29,6 +35,7 @@ public class OperateDataField extends OperateDataAttr {
         }
         this.fieldObject = fieldObject;
         this.originalFieldName = fieldName;
+        this.propertyAccessor = null;
     }
 
     public void clearDataField() {
@@ -36,6 +43,11 @@ public class OperateDataField extends OperateDataAttr {
         this.name = null;
         this.fieldObject = null;
         this.originalFieldName = null;
+        this.propertyAccessor = null;
+    }
+
+    public void setPropertyAccessor(PropertyAccessor propertyAccessor) {
+        this.propertyAccessor = propertyAccessor;
     }
 
     @Override
@@ -84,6 +96,8 @@ public class OperateDataField extends OperateDataAttr {
         //如果能找到aFieldName的定义,则再次运算
         if (this.fieldObject instanceof OperateDataVirClass) {
             return ((OperateDataVirClass)this.fieldObject).getValue(transferFieldName(context, this.originalFieldName));
+        } else if (this.propertyAccessor != null && !QLExpressRunStrategy.isSandboxMode()) {
+            return this.propertyAccessor.getProperty(this.fieldObject);
         } else {
             return ExpressUtil.getProperty(this.fieldObject, transferFieldName(context, this.originalFieldName));
         }
@@ -108,6 +122,9 @@ public class OperateDataField extends OperateDataAttr {
             if (this.fieldObject == null && QLExpressRunStrategy.isAvoidNullPointer()) {
                 return Void.class;
             }
+            if (this.propertyAccessor != null) {
+                return this.propertyAccessor.getPropertyType(this.fieldObject);
+            }
             return ExpressUtil.getPropertyClass(this.fieldObject, transferFieldName(context, this.originalFieldName));
         }
     }
@@ -117,6 +134,8 @@ public class OperateDataField extends OperateDataAttr {
         if (this.fieldObject instanceof OperateDataVirClass) {
             ((OperateDataVirClass)this.fieldObject).setValue(
                 transferFieldName(context, this.originalFieldName).toString(), value);
+        } else if (this.propertyAccessor != null) {
+            this.propertyAccessor.setProperty(this.fieldObject, value);
         } else {
             ExpressUtil.setProperty(fieldObject, transferFieldName(context, this.originalFieldName), value);
         }
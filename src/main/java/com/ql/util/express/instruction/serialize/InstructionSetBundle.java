@@ -0,0 +1,154 @@
+package com.ql.util.express.instruction.serialize;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.exception.QLException;
+
+/**
+ * 多个预编译指令集打包在一个文件中，按照表达式名称索引
+ * 文件格式: BUNDLE_MAGIC(4字节) + VERSION(1字节) + 数量 + 目录(名称, 偏移, 长度) + 各个指令集的二进制数据
+ * 打开文件的时候使用内存映射，只读取目录；每个指令集在第一次使用的时候才从映射的内存中解码
+ */
+public class InstructionSetBundle {
+    private final Map<String, ByteBuffer> entries;
+
+    private InstructionSetBundle(Map<String, ByteBuffer> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * 把指令集打包写入文件
+     *
+     * @param instructionSets 表达式名称 -> 指令集，一般是 ExpressRunner.parseInstructionSet 或者
+     * ExpressLoader.parseInstructionSet 的结果
+     */
+    public static void write(File file, Map<String, InstructionSet> instructionSets, ExpressRunner expressRunner)
+        throws Exception {
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(outputStream, instructionSets, expressRunner);
+        }
+    }
+
+    public static void write(OutputStream outputStream, Map<String, InstructionSet> instructionSets,
+        ExpressRunner expressRunner) throws Exception {
+        InstructionSetWriter writer = new InstructionSetWriter(expressRunner);
+        List<byte[]> names = new ArrayList<>(instructionSets.size());
+        List<byte[]> blobs = new ArrayList<>(instructionSets.size());
+        int headerLength = 4 + 1 + 4;
+        for (Map.Entry<String, InstructionSet> entry : instructionSets.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            blobs.add(writer.write(entry.getValue()));
+            headerLength += 4 + name.length + 4 + 4;
+        }
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(InstructionSetFormat.BUNDLE_MAGIC);
+        output.writeByte(InstructionSetFormat.VERSION);
+        output.writeInt(names.size());
+        int offset = headerLength;
+        for (int i = 0; i < names.size(); i++) {
+            output.writeInt(names.get(i).length);
+            output.write(names.get(i));
+            output.writeInt(offset);
+            output.writeInt(blobs.get(i).length);
+            offset += blobs.get(i).length;
+        }
+        for (byte[] blob : blobs) {
+            output.write(blob);
+        }
+        output.flush();
+    }
+
+    public static byte[] toByteArray(Map<String, InstructionSet> instructionSets, ExpressRunner expressRunner)
+        throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        write(outputStream, instructionSets, expressRunner);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 以只读方式内存映射打开文件，关闭文件之后映射的内存仍然有效
+     */
+    public static InstructionSetBundle open(File file) throws IOException, QLException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static InstructionSetBundle wrap(byte[] bytes) throws QLException {
+        return wrap(ByteBuffer.wrap(bytes));
+    }
+
+    public static InstructionSetBundle wrap(ByteBuffer buffer) throws QLException {
+        ByteBuffer header = buffer.duplicate();
+        if (header.remaining() < 9 || header.getInt() != InstructionSetFormat.BUNDLE_MAGIC) {
+            throw new QLException("不是预编译的指令集文件");
+        }
+        byte version = header.get();
+        if (version != InstructionSetFormat.VERSION) {
+            throw new QLException("不支持的预编译指令集版本：" + version + "，当前版本：" + InstructionSetFormat.VERSION);
+        }
+        int count = header.getInt();
+        Map<String, ByteBuffer> entries = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[header.getInt()];
+            header.get(name);
+            int offset = header.getInt();
+            int length = header.getInt();
+            ByteBuffer blob = buffer.duplicate();
+            ((Buffer)blob).position(buffer.position() + offset);
+            ((Buffer)blob).limit(buffer.position() + offset + length);
+            entries.put(new String(name, StandardCharsets.UTF_8), blob.slice());
+        }
+        return new InstructionSetBundle(Collections.unmodifiableMap(entries));
+    }
+
+    public Set<String> getNames() {
+        return this.entries.keySet();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public boolean contains(String name) {
+        return this.entries.containsKey(name);
+    }
+
+    /**
+     * @return 指令集的二进制数据，和文件共享同一块内存
+     */
+    public ByteBuffer getBuffer(String name) {
+        ByteBuffer buffer = this.entries.get(name);
+        return buffer == null ? null : buffer.duplicate();
+    }
+
+    public InstructionSet read(String name, ExpressRunner expressRunner) throws Exception {
+        ByteBuffer buffer = this.entries.get(name);
+        if (buffer == null) {
+            throw new QLException("预编译指令集文件中没有表达式：" + name);
+        }
+        return new InstructionSetReader(expressRunner).read(buffer);
+    }
+}
@@ -0,0 +1,74 @@
+package com.ql.util.express.instruction.serialize;
+
+/**
+ * 预编译指令集二进制格式的常量定义
+ * 单个指令集: MAGIC(4字节) + VERSION(1字节) + 指令集；整数使用变长编码，字符串在同一个指令集内第二次出现时只写序号
+ * 指令集: 类型、名称、全局名称、局部变量数、参数、导出定义、函数和宏定义(递归)、指令(操作码 + 行号 + 操作数)
+ * 修改格式的时候需要增加 VERSION，旧版本的文件会被拒绝加载，需要重新预编译
+ */
+final class InstructionSetFormat {
+    /**
+     * "QLIS"
+     */
+    static final int MAGIC = 0x514C4953;
+
+    /**
+     * "QLEB"，多个指令集打包的文件
+     */
+    static final int BUNDLE_MAGIC = 0x514C4542;
+
+    static final byte VERSION = 2;
+
+    static final byte OP_CONST_DATA = 1;
+    static final byte OP_LOAD_ATTR = 2;
+    static final byte OP_LOAD_LOCAL_VAR = 3;
+    static final byte OP_OPERATOR = 4;
+    static final byte OP_DEFINE_LOCAL_VAR = 5;
+    static final byte OP_OPERATOR_WITH_CONST = 6;
+    static final byte OP_LIKE_WITH_PATTERN = 7;
+    static final byte OP_IN_CONST_SET = 8;
+    static final byte OP_GOTO = 9;
+    static final byte OP_GOTO_WITH_CONDITION = 10;
+    static final byte OP_GOTO_WITH_NOT_NULL = 11;
+    static final byte OP_RETURN = 12;
+    static final byte OP_CALL_MACRO = 13;
+    static final byte OP_CALL_SELF_DEFINE_FUNCTION = 14;
+    static final byte OP_NEW_VIR_CLASS = 15;
+    static final byte OP_LOAD_LAMBDA = 16;
+    static final byte OP_CLEAR_DATA_STACK = 17;
+    static final byte OP_OPEN_NEW_AREA = 18;
+    static final byte OP_CLOSE_NEW_AREA = 19;
+    static final byte OP_LOAD_SHARED_VALUE = 20;
+    static final byte OP_STORE_SHARED_VALUE = 21;
+
+    /**
+     * 运算符：在 OperatorFactory 中注册的共享实例、属性访问、方法调用
+     */
+    static final byte OPERATOR_FACTORY = 0;
+    static final byte OPERATOR_FIELD = 1;
+    static final byte OPERATOR_METHOD = 2;
+
+    /**
+     * 常量数据：普通常量、类型常量
+     */
+    static final byte DATA_VALUE = 0;
+    static final byte DATA_CLASS = 1;
+
+    static final byte VALUE_NULL = 0;
+    static final byte VALUE_STRING = 1;
+    static final byte VALUE_INTEGER = 2;
+    static final byte VALUE_LONG = 3;
+    static final byte VALUE_DOUBLE = 4;
+    static final byte VALUE_FLOAT = 5;
+    static final byte VALUE_SHORT = 6;
+    static final byte VALUE_BYTE = 7;
+    static final byte VALUE_BOOLEAN = 8;
+    static final byte VALUE_CHARACTER = 9;
+    static final byte VALUE_BIG_DECIMAL = 10;
+    static final byte VALUE_BIG_INTEGER = 11;
+    static final byte VALUE_CLASS = 12;
+
+    private InstructionSetFormat() {
+        throw new IllegalStateException("Utility class");
+    }
+}
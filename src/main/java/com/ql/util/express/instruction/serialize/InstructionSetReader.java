@@ -0,0 +1,414 @@
+package com.ql.util.express.instruction.serialize;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ql.util.express.ExportItem;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.ExpressUtil;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.config.QLExpressRunStrategy;
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.exception.QLSecurityRiskException;
+import com.ql.util.express.instruction.FunctionInstructionSet;
+import com.ql.util.express.instruction.compile.InstructionSetCompiler;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionCallMacro;
+import com.ql.util.express.instruction.detail.InstructionCallSelfDefineFunction;
+import com.ql.util.express.instruction.detail.InstructionClearDataStack;
+import com.ql.util.express.instruction.detail.InstructionCloseNewArea;
+import com.ql.util.express.instruction.detail.InstructionConstData;
+import com.ql.util.express.instruction.detail.InstructionDefineLocalVar;
+import com.ql.util.express.instruction.detail.InstructionGoTo;
+import com.ql.util.express.instruction.detail.InstructionGoToWithCondition;
+import com.ql.util.express.instruction.detail.InstructionGoToWithNotNull;
+import com.ql.util.express.instruction.detail.InstructionInConstSet;
+import com.ql.util.express.instruction.detail.InstructionLikeWithPattern;
+import com.ql.util.express.instruction.detail.InstructionLoadAttr;
+import com.ql.util.express.instruction.detail.InstructionLoadLambda;
+import com.ql.util.express.instruction.detail.InstructionLoadLocalVar;
+import com.ql.util.express.instruction.detail.InstructionLoadSharedValue;
+import com.ql.util.express.instruction.detail.InstructionNewVirClass;
+import com.ql.util.express.instruction.detail.InstructionOpenNewArea;
+import com.ql.util.express.instruction.detail.InstructionOperator;
+import com.ql.util.express.instruction.detail.InstructionOperatorWithConst;
+import com.ql.util.express.instruction.detail.InstructionReturn;
+import com.ql.util.express.instruction.detail.InstructionStoreSharedValue;
+import com.ql.util.express.instruction.op.InSet;
+import com.ql.util.express.instruction.op.LikePattern;
+import com.ql.util.express.instruction.op.OperatorBase;
+import com.ql.util.express.instruction.op.OperatorField;
+import com.ql.util.express.instruction.op.OperatorIn;
+import com.ql.util.express.instruction.op.OperatorLike;
+import com.ql.util.express.instruction.op.OperatorMethod;
+import com.ql.util.express.instruction.opdata.OperateClass;
+import com.ql.util.express.instruction.opdata.OperateDataConst;
+import com.ql.util.express.instruction.opdata.OperateDataLocalVar;
+
+/**
+ * 从二进制格式读取指令集，不经过词法分析和语法解析
+ * 运算符从 ExpressRunner 的 OperatorFactory 中按名称查找；ExpressRunner 设置了编译指令集的时候，读取之后编译成JVM类
+ */
+public class InstructionSetReader {
+    private static final Map<String, Class<?>> PRIMITIVE_CLASSES = new HashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[] {boolean.class, byte.class, char.class, short.class, int.class,
+            long.class, float.class, double.class, void.class}) {
+            PRIMITIVE_CLASSES.put(type.getName(), type);
+        }
+    }
+
+    private final ExpressRunner expressRunner;
+
+    public InstructionSetReader(ExpressRunner expressRunner) {
+        this.expressRunner = expressRunner;
+    }
+
+    public InstructionSet read(byte[] bytes) throws Exception {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * 直接从缓冲区(例如内存映射的文件)中读取，不复制整段数据
+     *
+     * @param buffer 从 position 开始读取，不修改传入缓冲区的 position
+     */
+    public InstructionSet read(ByteBuffer buffer) throws Exception {
+        Input input = new Input(buffer.duplicate());
+        if (input.readInt32() != InstructionSetFormat.MAGIC) {
+            throw new QLException("不是预编译的指令集数据");
+        }
+        byte version = input.readByte();
+        if (version != InstructionSetFormat.VERSION) {
+            throw new QLException("不支持的预编译指令集版本：" + version + "，当前版本：" + InstructionSetFormat.VERSION);
+        }
+        InstructionSet result = readInstructionSet(input);
+        if (this.expressRunner.isCompileInstructionSet()) {
+            InstructionSetCompiler.compile(result);
+        }
+        return result;
+    }
+
+    private InstructionSet readInstructionSet(Input input) throws Exception {
+        InstructionSet instructionSet = new InstructionSet(input.readString());
+        instructionSet.setName(input.readString());
+        instructionSet.setGlobeName(input.readString());
+        instructionSet.setLocalVarCount(input.readUnsignedInt());
+
+        int parameterCount = input.readUnsignedInt();
+        for (int i = 0; i < parameterCount; i++) {
+            String name = input.readString();
+            instructionSet.addParameter(new OperateDataLocalVar(name, readClass(input, false)));
+        }
+
+        int exportCount = input.readUnsignedInt();
+        for (int i = 0; i < exportCount; i++) {
+            String globeName = input.readString();
+            String name = input.readString();
+            String type = input.readString();
+            String desc = input.readString();
+            instructionSet.addExportDef(new ExportItem(globeName, name, type, desc));
+        }
+
+        int functionCount = input.readUnsignedInt();
+        for (int i = 0; i < functionCount; i++) {
+            String name = input.readString();
+            String type = input.readString();
+            InstructionSet functionSet = readInstructionSet(input);
+            instructionSet.addMacroDefine(name, new FunctionInstructionSet(name, type, functionSet));
+        }
+
+        int length = input.readUnsignedInt();
+        Instruction[] instructions = new Instruction[length];
+        for (int i = 0; i < length; i++) {
+            instructions[i] = readInstruction(input);
+        }
+        instructionSet.replaceInstructions(instructions);
+        return instructionSet;
+    }
+
+    private Instruction readInstruction(Input input) throws Exception {
+        byte opCode = input.readByte();
+        int line = input.readUnsignedInt();
+        Instruction instruction;
+        switch (opCode) {
+            case InstructionSetFormat.OP_CONST_DATA:
+                instruction = new InstructionConstData(readOperateData(input));
+                break;
+            case InstructionSetFormat.OP_LOAD_ATTR:
+                instruction = new InstructionLoadAttr(input.readString());
+                break;
+            case InstructionSetFormat.OP_LOAD_LOCAL_VAR: {
+                String name = input.readString();
+                instruction = new InstructionLoadLocalVar(name, input.readUnsignedInt());
+                break;
+            }
+            case InstructionSetFormat.OP_OPERATOR: {
+                OperatorBase operator = readOperator(input);
+                instruction = new InstructionOperator(operator, input.readUnsignedInt());
+                break;
+            }
+            case InstructionSetFormat.OP_DEFINE_LOCAL_VAR: {
+                OperatorBase operator = readOperator(input);
+                int opDataNumber = input.readUnsignedInt();
+                instruction = new InstructionDefineLocalVar(operator, opDataNumber, input.readUnsignedInt());
+                break;
+            }
+            case InstructionSetFormat.OP_OPERATOR_WITH_CONST: {
+                OperatorBase operator = readOperator(input);
+                char code = (char)input.readUnsignedInt();
+                Object constValue = readValue(input);
+                instruction = new InstructionOperatorWithConst(operator, code, constValue, input.readBoolean());
+                break;
+            }
+            case InstructionSetFormat.OP_LIKE_WITH_PATTERN: {
+                OperatorLike operator = (OperatorLike)readOperator(input);
+                instruction = new InstructionLikeWithPattern(operator, LikePattern.getPattern(input.readString()));
+                break;
+            }
+            case InstructionSetFormat.OP_IN_CONST_SET: {
+                OperatorIn operator = (OperatorIn)readOperator(input);
+                int size = input.readUnsignedInt();
+                List<Object> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readValue(input));
+                }
+                instruction = new InstructionInConstSet(operator, new InSet(values));
+                break;
+            }
+            case InstructionSetFormat.OP_GOTO: {
+                InstructionGoTo goTo = new InstructionGoTo(input.readSignedInt());
+                goTo.setName(input.readString());
+                instruction = goTo;
+                break;
+            }
+            case InstructionSetFormat.OP_GOTO_WITH_CONDITION: {
+                boolean condition = input.readBoolean();
+                int offset = input.readSignedInt();
+                instruction = new InstructionGoToWithCondition(condition, offset, input.readBoolean());
+                break;
+            }
+            case InstructionSetFormat.OP_GOTO_WITH_NOT_NULL: {
+                int offset = input.readSignedInt();
+                instruction = new InstructionGoToWithNotNull(offset, input.readBoolean());
+                break;
+            }
+            case InstructionSetFormat.OP_RETURN:
+                instruction = new InstructionReturn(input.readBoolean());
+                break;
+            case InstructionSetFormat.OP_CALL_MACRO:
+                instruction = new InstructionCallMacro(input.readString());
+                break;
+            case InstructionSetFormat.OP_CALL_SELF_DEFINE_FUNCTION: {
+                String name = input.readString();
+                instruction = new InstructionCallSelfDefineFunction(name, input.readUnsignedInt());
+                break;
+            }
+            case InstructionSetFormat.OP_NEW_VIR_CLASS: {
+                String name = input.readString();
+                instruction = new InstructionNewVirClass(name, input.readUnsignedInt());
+                break;
+            }
+            case InstructionSetFormat.OP_LOAD_LAMBDA:
+                instruction = new InstructionLoadLambda(readInstructionSet(input));
+                break;
+            case InstructionSetFormat.OP_CLEAR_DATA_STACK:
+                instruction = new InstructionClearDataStack();
+                break;
+            case InstructionSetFormat.OP_OPEN_NEW_AREA: {
+                InstructionOpenNewArea openNewArea = new InstructionOpenNewArea();
+                int localVarStart = input.readUnsignedInt();
+                openNewArea.setLocalVarRange(localVarStart, input.readUnsignedInt());
+                openNewArea.setDepth(input.readUnsignedInt());
+                openNewArea.setReuseContext(input.readBoolean());
+                instruction = openNewArea;
+                break;
+            }
+            case InstructionSetFormat.OP_CLOSE_NEW_AREA: {
+                InstructionCloseNewArea closeNewArea = new InstructionCloseNewArea();
+                closeNewArea.setDepth(input.readUnsignedInt());
+                instruction = closeNewArea;
+                break;
+            }
+            case InstructionSetFormat.OP_LOAD_SHARED_VALUE: {
+                InstructionLoadSharedValue loadSharedValue = new InstructionLoadSharedValue(input.readUnsignedInt());
+                loadSharedValue.setOffset(input.readSignedInt());
+                instruction = loadSharedValue;
+                break;
+            }
+            case InstructionSetFormat.OP_STORE_SHARED_VALUE:
+                instruction = new InstructionStoreSharedValue(input.readUnsignedInt());
+                break;
+            default:
+                throw new QLException("无法识别的指令：" + opCode);
+        }
+        return instruction.setLine(line == 0 ? null : line - 1);
+    }
+
+    private OperatorBase readOperator(Input input) throws Exception {
+        byte kind = input.readByte();
+        String name = input.readString();
+        switch (kind) {
+            case InstructionSetFormat.OPERATOR_FIELD:
+                return new OperatorField(name);
+            case InstructionSetFormat.OPERATOR_METHOD:
+                return new OperatorMethod(name);
+            case InstructionSetFormat.OPERATOR_FACTORY: {
+                OperatorBase operator = this.expressRunner.getOperatorFactory().getOperator(name);
+                if (operator == null) {
+                    throw new QLException("ExpressRunner 中没有注册运算符：" + name);
+                }
+                return operator;
+            }
+            default:
+                throw new QLException("无法识别的运算符类型：" + kind);
+        }
+    }
+
+    private static OperateData readOperateData(Input input) throws Exception {
+        byte kind = input.readByte();
+        if (kind == InstructionSetFormat.DATA_CLASS) {
+            String name = input.readString();
+            return new OperateClass(name, readClass(input, true));
+        } else if (kind == InstructionSetFormat.DATA_VALUE) {
+            Object value = readValue(input);
+            return new OperateDataConst(value, readClass(input, false));
+        }
+        throw new QLException("无法识别的常量类型：" + kind);
+    }
+
+    private static Object readValue(Input input) throws Exception {
+        byte tag = input.readByte();
+        switch (tag) {
+            case InstructionSetFormat.VALUE_NULL:
+                return null;
+            case InstructionSetFormat.VALUE_STRING:
+                return input.readString();
+            case InstructionSetFormat.VALUE_INTEGER:
+                return input.readSignedInt();
+            case InstructionSetFormat.VALUE_LONG:
+                return input.readSignedLong();
+            case InstructionSetFormat.VALUE_DOUBLE:
+                return Double.longBitsToDouble(input.readInt64());
+            case InstructionSetFormat.VALUE_FLOAT:
+                return Float.intBitsToFloat(input.readInt32());
+            case InstructionSetFormat.VALUE_SHORT:
+                return (short)input.readSignedInt();
+            case InstructionSetFormat.VALUE_BYTE:
+                return input.readByte();
+            case InstructionSetFormat.VALUE_BOOLEAN:
+                return input.readBoolean();
+            case InstructionSetFormat.VALUE_CHARACTER:
+                return (char)input.readUnsignedInt();
+            case InstructionSetFormat.VALUE_BIG_DECIMAL:
+                return new BigDecimal(input.readString());
+            case InstructionSetFormat.VALUE_BIG_INTEGER:
+                return new BigInteger(input.readString());
+            case InstructionSetFormat.VALUE_CLASS:
+                return readClass(input, true);
+            default:
+                throw new QLException("无法识别的常量类型：" + tag);
+        }
+    }
+
+    /**
+     * @param checkWhiteList 脚本中直接引用的类，和解析的时候一样做编译期白名单校验
+     */
+    private static Class<?> readClass(Input input, boolean checkWhiteList) throws Exception {
+        String name = input.readString();
+        if (name == null) {
+            return null;
+        }
+        Class<?> type = PRIMITIVE_CLASSES.get(name);
+        if (type != null) {
+            return type;
+        }
+        type = ExpressUtil.loadClass(name);
+        if (checkWhiteList && !QLExpressRunStrategy.checkWhiteClassList(type)) {
+            throw new QLSecurityRiskException("脚本中引用了不安全的类： " + type.getCanonicalName());
+        }
+        return type;
+    }
+
+    private static final class Input {
+        private final ByteBuffer buffer;
+        private final List<String> strings = new ArrayList<>();
+
+        private Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return this.buffer.get();
+        }
+
+        boolean readBoolean() {
+            return this.buffer.get() != 0;
+        }
+
+        int readInt32() {
+            return this.buffer.getInt();
+        }
+
+        long readInt64() {
+            return this.buffer.getLong();
+        }
+
+        long readUnsignedLong() throws QLException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = this.buffer.get();
+                result |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new QLException("预编译指令集数据已损坏");
+        }
+
+        int readUnsignedInt() throws QLException {
+            return (int)readUnsignedLong();
+        }
+
+        long readSignedLong() throws QLException {
+            long value = readUnsignedLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readSignedInt() throws QLException {
+            return (int)readSignedLong();
+        }
+
+        String readString() throws QLException {
+            int index = readUnsignedInt();
+            if (index == 0) {
+                return null;
+            }
+            if (index > 1) {
+                return this.strings.get(index - 2);
+            }
+            int length = readUnsignedInt();
+            String value;
+            if (this.buffer.hasArray()) {
+                value = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length,
+                    StandardCharsets.UTF_8);
+                ((Buffer)this.buffer).position(this.buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                this.buffer.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            this.strings.add(value);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.ql.util.express.instruction.serialize;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ql.util.express.ExportItem;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.instruction.FunctionInstructionSet;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionCallMacro;
+import com.ql.util.express.instruction.detail.InstructionCallSelfDefineFunction;
+import com.ql.util.express.instruction.detail.InstructionClearDataStack;
+import com.ql.util.express.instruction.detail.InstructionCloseNewArea;
+import com.ql.util.express.instruction.detail.InstructionConstData;
+import com.ql.util.express.instruction.detail.InstructionDefineLocalVar;
+import com.ql.util.express.instruction.detail.InstructionGoTo;
+import com.ql.util.express.instruction.detail.InstructionGoToWithCondition;
+import com.ql.util.express.instruction.detail.InstructionGoToWithNotNull;
+import com.ql.util.express.instruction.detail.InstructionInConstSet;
+import com.ql.util.express.instruction.detail.InstructionLikeWithPattern;
+import com.ql.util.express.instruction.detail.InstructionLoadAttr;
+import com.ql.util.express.instruction.detail.InstructionLoadLambda;
+import com.ql.util.express.instruction.detail.InstructionLoadLocalVar;
+import com.ql.util.express.instruction.detail.InstructionLoadSharedValue;
+import com.ql.util.express.instruction.detail.InstructionNewVirClass;
+import com.ql.util.express.instruction.detail.InstructionOpenNewArea;
+import com.ql.util.express.instruction.detail.InstructionOperator;
+import com.ql.util.express.instruction.detail.InstructionOperatorWithConst;
+import com.ql.util.express.instruction.detail.InstructionReturn;
+import com.ql.util.express.instruction.detail.InstructionStoreSharedValue;
+import com.ql.util.express.instruction.op.OperatorBase;
+import com.ql.util.express.instruction.op.OperatorField;
+import com.ql.util.express.instruction.op.OperatorMethod;
+import com.ql.util.express.instruction.opdata.OperateClass;
+import com.ql.util.express.instruction.opdata.OperateDataConst;
+import com.ql.util.express.instruction.opdata.OperateDataLocalVar;
+
+/**
+ * 把解析好的指令集写成二进制格式，格式见 InstructionSetFormat
+ * 运算符只记录注册名称，读取的时候从同样配置的 ExpressRunner 中查找，所以自定义的函数和操作符需要在两边同样注册
+ */
+public class InstructionSetWriter {
+    private final ExpressRunner expressRunner;
+
+    public InstructionSetWriter(ExpressRunner expressRunner) {
+        this.expressRunner = expressRunner;
+    }
+
+    public byte[] write(InstructionSet instructionSet) throws Exception {
+        Output output = new Output();
+        output.writeInt32(InstructionSetFormat.MAGIC);
+        output.write(InstructionSetFormat.VERSION);
+        writeInstructionSet(output, instructionSet);
+        return output.toByteArray();
+    }
+
+    private void writeInstructionSet(Output output, InstructionSet instructionSet) throws Exception {
+        output.writeString(instructionSet.getType());
+        output.writeString(instructionSet.getName());
+        output.writeString(instructionSet.getGlobeName());
+        output.writeUnsigned(instructionSet.getLocalVarCount());
+
+        OperateDataLocalVar[] parameters = instructionSet.getParameters();
+        output.writeUnsigned(parameters.length);
+        for (OperateDataLocalVar parameter : parameters) {
+            output.writeString(parameter.getName());
+            output.writeClass(parameter.getOriginalType());
+        }
+
+        List<ExportItem> exportItems = instructionSet.getExportDef();
+        output.writeUnsigned(exportItems.size());
+        for (ExportItem exportItem : exportItems) {
+            output.writeString(exportItem.getGlobeName());
+            output.writeString(exportItem.getName());
+            output.writeString(exportItem.getType());
+            output.writeString(exportItem.getDesc());
+        }
+
+        FunctionInstructionSet[] functionSets = instructionSet.getFunctionInstructionSets();
+        output.writeUnsigned(functionSets.length);
+        for (FunctionInstructionSet functionSet : functionSets) {
+            output.writeString(functionSet.name);
+            output.writeString(functionSet.type);
+            writeInstructionSet(output, functionSet.instructionSet);
+        }
+
+        int length = instructionSet.getInstructionLength();
+        output.writeUnsigned(length);
+        for (int i = 0; i < length; i++) {
+            writeInstruction(output, instructionSet.getInstruction(i));
+        }
+    }
+
+    private void writeInstruction(Output output, Instruction instruction) throws Exception {
+        if (instruction instanceof InstructionConstData) {
+            writeHead(output, InstructionSetFormat.OP_CONST_DATA, instruction);
+            writeOperateData(output, ((InstructionConstData)instruction).getOperateData());
+        } else if (instruction instanceof InstructionLoadLocalVar) {
+            InstructionLoadLocalVar loadLocalVar = (InstructionLoadLocalVar)instruction;
+            writeHead(output, InstructionSetFormat.OP_LOAD_LOCAL_VAR, instruction);
+            output.writeString(loadLocalVar.getAttrName());
+            output.writeUnsigned(loadLocalVar.getSlot());
+        } else if (instruction instanceof InstructionLoadAttr) {
+            writeHead(output, InstructionSetFormat.OP_LOAD_ATTR, instruction);
+            output.writeString(((InstructionLoadAttr)instruction).getAttrName());
+        } else if (instruction instanceof InstructionDefineLocalVar) {
+            InstructionDefineLocalVar defineLocalVar = (InstructionDefineLocalVar)instruction;
+            writeHead(output, InstructionSetFormat.OP_DEFINE_LOCAL_VAR, instruction);
+            writeOperator(output, defineLocalVar.getOperator());
+            output.writeUnsigned(defineLocalVar.getOpDataNumber());
+            output.writeUnsigned(defineLocalVar.getSlot());
+        } else if (instruction instanceof InstructionOperator) {
+            InstructionOperator operator = (InstructionOperator)instruction;
+            writeHead(output, InstructionSetFormat.OP_OPERATOR, instruction);
+            writeOperator(output, operator.getOperator());
+            output.writeUnsigned(operator.getOpDataNumber());
+        } else if (instruction instanceof InstructionOperatorWithConst) {
+            InstructionOperatorWithConst withConst = (InstructionOperatorWithConst)instruction;
+            writeHead(output, InstructionSetFormat.OP_OPERATOR_WITH_CONST, instruction);
+            writeOperator(output, withConst.getOperator());
+            output.writeUnsigned(withConst.getOpCode());
+            writeValue(output, withConst.getConstValue());
+            output.writeBoolean(withConst.isConstRight());
+        } else if (instruction instanceof InstructionLikeWithPattern) {
+            InstructionLikeWithPattern likeWithPattern = (InstructionLikeWithPattern)instruction;
+            writeHead(output, InstructionSetFormat.OP_LIKE_WITH_PATTERN, instruction);
+            writeOperator(output, likeWithPattern.getOperator());
+            output.writeString(likeWithPattern.getLikePattern().getPattern());
+        } else if (instruction instanceof InstructionInConstSet) {
+            InstructionInConstSet inConstSet = (InstructionInConstSet)instruction;
+            writeHead(output, InstructionSetFormat.OP_IN_CONST_SET, instruction);
+            writeOperator(output, inConstSet.getOperator());
+            List<Object> values = inConstSet.getInSet().getValues();
+            output.writeUnsigned(values.size());
+            for (Object value : values) {
+                writeValue(output, value);
+            }
+        } else if (instruction instanceof InstructionGoTo) {
+            InstructionGoTo goTo = (InstructionGoTo)instruction;
+            writeHead(output, InstructionSetFormat.OP_GOTO, instruction);
+            output.writeSigned(goTo.getOffset());
+            output.writeString(goTo.getName());
+        } else if (instruction instanceof InstructionGoToWithCondition) {
+            InstructionGoToWithCondition goTo = (InstructionGoToWithCondition)instruction;
+            writeHead(output, InstructionSetFormat.OP_GOTO_WITH_CONDITION, instruction);
+            output.writeBoolean(goTo.isCondition());
+            output.writeSigned(goTo.getOffset());
+            output.writeBoolean(goTo.isPopStackData());
+        } else if (instruction instanceof InstructionGoToWithNotNull) {
+            InstructionGoToWithNotNull goTo = (InstructionGoToWithNotNull)instruction;
+            writeHead(output, InstructionSetFormat.OP_GOTO_WITH_NOT_NULL, instruction);
+            output.writeSigned(goTo.getOffset());
+            output.writeBoolean(goTo.isPopStackData());
+        } else if (instruction instanceof InstructionReturn) {
+            writeHead(output, InstructionSetFormat.OP_RETURN, instruction);
+            output.writeBoolean(((InstructionReturn)instruction).isHaveReturnValue());
+        } else if (instruction instanceof InstructionCallMacro) {
+            writeHead(output, InstructionSetFormat.OP_CALL_MACRO, instruction);
+            output.writeString(((InstructionCallMacro)instruction).getName());
+        } else if (instruction instanceof InstructionCallSelfDefineFunction) {
+            InstructionCallSelfDefineFunction callFunction = (InstructionCallSelfDefineFunction)instruction;
+            writeHead(output, InstructionSetFormat.OP_CALL_SELF_DEFINE_FUNCTION, instruction);
+            output.writeString(callFunction.getFunctionName());
+            output.writeUnsigned(callFunction.getOpDataNumber());
+        } else if (instruction instanceof InstructionNewVirClass) {
+            InstructionNewVirClass newVirClass = (InstructionNewVirClass)instruction;
+            writeHead(output, InstructionSetFormat.OP_NEW_VIR_CLASS, instruction);
+            output.writeString(newVirClass.getClassName());
+            output.writeUnsigned(newVirClass.getOpDataNumber());
+        } else if (instruction instanceof InstructionLoadLambda) {
+            writeHead(output, InstructionSetFormat.OP_LOAD_LAMBDA, instruction);
+            writeInstructionSet(output, ((InstructionLoadLambda)instruction).getLambdaSet());
+        } else if (instruction instanceof InstructionClearDataStack) {
+            writeHead(output, InstructionSetFormat.OP_CLEAR_DATA_STACK, instruction);
+        } else if (instruction instanceof InstructionOpenNewArea) {
+            InstructionOpenNewArea openNewArea = (InstructionOpenNewArea)instruction;
+            writeHead(output, InstructionSetFormat.OP_OPEN_NEW_AREA, instruction);
+            output.writeUnsigned(openNewArea.getLocalVarStart());
+            output.writeUnsigned(openNewArea.getLocalVarEnd());
+            output.writeUnsigned(openNewArea.getDepth());
+            output.writeBoolean(openNewArea.isReuseContext());
+        } else if (instruction instanceof InstructionCloseNewArea) {
+            writeHead(output, InstructionSetFormat.OP_CLOSE_NEW_AREA, instruction);
+            output.writeUnsigned(((InstructionCloseNewArea)instruction).getDepth());
+        } else if (instruction instanceof InstructionLoadSharedValue) {
+            InstructionLoadSharedValue loadSharedValue = (InstructionLoadSharedValue)instruction;
+            writeHead(output, InstructionSetFormat.OP_LOAD_SHARED_VALUE, instruction);
+            output.writeUnsigned(loadSharedValue.getSlot());
+            output.writeSigned(loadSharedValue.getOffset());
+        } else if (instruction instanceof InstructionStoreSharedValue) {
+            writeHead(output, InstructionSetFormat.OP_STORE_SHARED_VALUE, instruction);
+            output.writeUnsigned(((InstructionStoreSharedValue)instruction).getSlot());
+        } else {
+            throw new QLException("不支持序列化的指令：" + instruction.getClass().getName());
+        }
+    }
+
+    private static void writeHead(Output output, byte opCode, Instruction instruction) {
+        output.write(opCode);
+        Integer line = instruction.getLine();
+        output.writeUnsigned(line == null ? 0 : line + 1);
+    }
+
+    private void writeOperator(Output output, OperatorBase operator) throws Exception {
+        if (operator instanceof OperatorField) {
+            output.write(InstructionSetFormat.OPERATOR_FIELD);
+            output.writeString(((OperatorField)operator).getFieldName());
+        } else if (operator instanceof OperatorMethod) {
+            output.write(InstructionSetFormat.OPERATOR_METHOD);
+            output.writeString(((OperatorMethod)operator).getMethodName());
+        } else {
+            String name = operator.getAliasName();
+            if (this.expressRunner.getOperatorFactory().getOperator(name) != operator) {
+                throw new QLException("运算符没有在 ExpressRunner 中注册，不能序列化：" + name);
+            }
+            output.write(InstructionSetFormat.OPERATOR_FACTORY);
+            output.writeString(name);
+        }
+    }
+
+    private static void writeOperateData(Output output, OperateData operateData) throws Exception {
+        if (operateData instanceof OperateClass) {
+            output.write(InstructionSetFormat.DATA_CLASS);
+            output.writeString(((OperateClass)operateData).getName());
+            output.writeClass((Class<?>)operateData.getObjectInner(null));
+        } else if (OperateDataConst.isConstValue(operateData)) {
+            output.write(InstructionSetFormat.DATA_VALUE);
+            writeValue(output, operateData.getObjectInner(null));
+            output.writeClass(operateData.getOriginalType());
+        } else {
+            throw new QLException("不支持序列化的常量：" + operateData.getClass().getName());
+        }
+    }
+
+    private static void writeValue(Output output, Object value) throws Exception {
+        if (value == null) {
+            output.write(InstructionSetFormat.VALUE_NULL);
+        } else if (value instanceof String) {
+            output.write(InstructionSetFormat.VALUE_STRING);
+            output.writeString((String)value);
+        } else if (value instanceof Integer) {
+            output.write(InstructionSetFormat.VALUE_INTEGER);
+            output.writeSigned((Integer)value);
+        } else if (value instanceof Long) {
+            output.write(InstructionSetFormat.VALUE_LONG);
+            output.writeSigned((Long)value);
+        } else if (value instanceof Double) {
+            output.write(InstructionSetFormat.VALUE_DOUBLE);
+            output.writeInt64(Double.doubleToRawLongBits((Double)value));
+        } else if (value instanceof Float) {
+            output.write(InstructionSetFormat.VALUE_FLOAT);
+            output.writeInt32(Float.floatToRawIntBits((Float)value));
+        } else if (value instanceof Short) {
+            output.write(InstructionSetFormat.VALUE_SHORT);
+            output.writeSigned((Short)value);
+        } else if (value instanceof Byte) {
+            output.write(InstructionSetFormat.VALUE_BYTE);
+            output.write((Byte)value);
+        } else if (value instanceof Boolean) {
+            output.write(InstructionSetFormat.VALUE_BOOLEAN);
+            output.writeBoolean((Boolean)value);
+        } else if (value instanceof Character) {
+            output.write(InstructionSetFormat.VALUE_CHARACTER);
+            output.writeUnsigned((Character)value);
+        } else if (value instanceof BigDecimal) {
+            output.write(InstructionSetFormat.VALUE_BIG_DECIMAL);
+            output.writeString(value.toString());
+        } else if (value instanceof BigInteger) {
+            output.write(InstructionSetFormat.VALUE_BIG_INTEGER);
+            output.writeString(value.toString());
+        } else if (value instanceof Class) {
+            output.write(InstructionSetFormat.VALUE_CLASS);
+            output.writeClass((Class<?>)value);
+        } else {
+            throw new QLException("不支持序列化的常量类型：" + value.getClass().getName());
+        }
+    }
+
+    /**
+     * 变长整数和字符串表，同一个指令集(包括其中的函数和lambda)共用一张字符串表
+     */
+    private static final class Output extends ByteArrayOutputStream {
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private Output() {
+            super(256);
+        }
+
+        void writeBoolean(boolean value) {
+            write(value ? 1 : 0);
+        }
+
+        void writeInt32(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeInt64(long value) {
+            writeInt32((int)(value >>> 32));
+            writeInt32((int)value);
+        }
+
+        void writeUnsigned(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int)((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int)value);
+        }
+
+        void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * 0 表示null，1 表示新的字符串(后面是UTF-8编码)，n + 2 表示字符串表中的第n个
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeUnsigned(0);
+                return;
+            }
+            Integer index = this.strings.get(value);
+            if (index != null) {
+                writeUnsigned(index + 2L);
+                return;
+            }
+            this.strings.put(value, this.strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(1);
+            writeUnsigned(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeClass(Class<?> type) {
+            writeString(type == null ? null : type.getName());
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package com.ql.util.express.match;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.ql.util.express.exception.QLCompileException;
 
 public class QLPattern {
+    /**
+     * 语法定义的版本号，创建新的匹配模式(包括增加操作符)的时候增加，使已经计算的FIRST集合失效
+     */
+    private static final AtomicLong GRAMMAR_VERSION = new AtomicLong();
 
     private QLPattern() {
         throw new IllegalStateException("Utility class");
@@ -14,7 +23,9 @@ public class QLPattern {
 
     public static QLPatternNode createPattern(INodeTypeManager nodeTypeManager, String name, String pattern)
         throws Exception {
-        return new QLPatternNode(nodeTypeManager, name, pattern);
+        QLPatternNode result = new QLPatternNode(nodeTypeManager, name, pattern);
+        GRAMMAR_VERSION.incrementAndGet();
+        return result;
     }
 
     public static QLMatchResult findMatchStatement(INodeTypeManager iNodeTypeManager, QLPatternNode pattern,
@@ -38,8 +49,15 @@ public class QLPattern {
     private static QLMatchResult findMatchStatementWithAddRootOptimizeStack(MatchParamsPack staticParams,
         QLPatternNode pattern, int point, int deep) throws Exception {
 
-        INodeTypeManager iNodeTypeManager = staticParams.iNodeTypeManager;
         List<? extends IDataNode> nodes = staticParams.nodes;
+        // 第一个节点不在FIRST集合中，或者同一个位置已经匹配失败过，不需要再次尝试
+        if (point < nodes.size() && !staticParams.getFirstSet(pattern).mayMatch(nodes.get(point))) {
+            return null;
+        }
+        if (staticParams.isFailed(pattern, point)) {
+            return null;
+        }
+
         AtomicLong maxMatchPoint = staticParams.maxMatchPoint;
         AtomicLong maxDeep = staticParams.maxDeep;
 
@@ -60,9 +78,9 @@ public class QLPattern {
 
                 int pointDetail = lastPoint;
                 QLMatchResult resultDetail = null;
-                if (pattern.nodeType == iNodeTypeManager.findNodeType("EOF") && pointDetail == nodes.size()) {
+                if (pattern.nodeType == staticParams.eofNodeType && pointDetail == nodes.size()) {
                     resultDetail = staticParams.resultCache.fetch().setMatchLastIndex(pointDetail + 1);
-                } else if (pattern.nodeType == iNodeTypeManager.findNodeType("EOF") && pointDetail < nodes.size()
+                } else if (pattern.nodeType == staticParams.eofNodeType && pointDetail < nodes.size()
                     && "}".equals(nodes.get(pointDetail).getValue())) {
                     resultDetail = staticParams.resultCache.fetch().setMatchLastIndex(pointDetail);
                 } else if (pointDetail == nodes.size() && pattern.nodeType.getPatternNode() != null) {
@@ -257,6 +275,9 @@ public class QLPattern {
         if (tempList != null) {
             staticParams.arrayListCache.sendBack(tempList);
         }
+        if (result == null) {
+            staticParams.setFailed(pattern, point);
+        }
         return result;
     }
 
@@ -267,6 +288,14 @@ public class QLPattern {
         final AtomicLong maxMatchPoint;
         final QLMatchResultCache resultCache;
         final ArrayListCache arrayListCache;
+        final INodeType eofNodeType;
+
+        /**
+         * 匹配失败的(模式, 位置)，匹配结果只和这两者有关，失败之后不需要再次尝试
+         */
+        private final Map<QLPatternNode, BitSet> failedPoints = new IdentityHashMap<>();
+        private final long grammarVersion = GRAMMAR_VERSION.get();
+        private final Set<QLPatternNode> computingFirstSets = Collections.newSetFromMap(new IdentityHashMap<>());
 
         public MatchParamsPack(INodeTypeManager iNodeTypeManager, List<? extends IDataNode> nodes, AtomicLong maxDeep,
             AtomicLong maxMatchPoint, QLMatchResultCache qlMatchResultCache, ArrayListCache arrayListCache) {
@@ -276,6 +305,20 @@ public class QLPattern {
             this.maxMatchPoint = maxMatchPoint;
             this.resultCache = qlMatchResultCache;
             this.arrayListCache = arrayListCache;
+            this.eofNodeType = iNodeTypeManager.findNodeType("EOF");
+        }
+
+        QLPatternFirstSet getFirstSet(QLPatternNode pattern) {
+            return QLPatternFirstSet.get(pattern, this.grammarVersion, this.computingFirstSets);
+        }
+
+        boolean isFailed(QLPatternNode pattern, int point) {
+            BitSet points = this.failedPoints.get(pattern);
+            return points != null && points.get(point);
+        }
+
+        void setFailed(QLPatternNode pattern, int point) {
+            this.failedPoints.computeIfAbsent(pattern, key -> new BitSet(this.nodes.size() + 2)).set(point);
         }
     }
 
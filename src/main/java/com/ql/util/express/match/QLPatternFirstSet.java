@@ -0,0 +1,97 @@
+package com.ql.util.express.match;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 匹配模式的FIRST集合：匹配成功的时候第一个节点可能的类型，用于在匹配之前排除不可能成功的分支
+ * 1、nullable 表示可能不消耗任何节点就匹配成功(例如 X*)，这种模式不能剪枝
+ * 2、types 为null表示不能确定(取反匹配、EOF、递归定义)，也不能剪枝
+ * 3、语法定义改变(增加操作符等)之后 QLPattern 的版本号增加，旧的FIRST集合失效后重新计算
+ */
+final class QLPatternFirstSet {
+    static final QLPatternFirstSet ANY = new QLPatternFirstSet(null, true, -1);
+
+    private final Set<INodeType> types;
+    private final boolean nullable;
+    final long version;
+
+    private QLPatternFirstSet(Set<INodeType> types, boolean nullable, long version) {
+        this.types = types;
+        this.nullable = nullable;
+        this.version = version;
+    }
+
+    /**
+     * @return 从 node 开始匹配是否可能成功
+     */
+    boolean mayMatch(IDataNode node) {
+        return this.types == null || this.nullable || this.types.contains(node.getTreeType()) || this.types.contains(
+            node.getNodeType());
+    }
+
+    static QLPatternFirstSet get(QLPatternNode pattern, long version, Set<QLPatternNode> computing) {
+        QLPatternFirstSet result = pattern.firstSet;
+        if (result != null && result.version == version) {
+            return result;
+        }
+        if (!computing.add(pattern)) {
+            // 递归定义，不能确定
+            return ANY;
+        }
+        result = compute(pattern, version, computing);
+        computing.remove(pattern);
+        pattern.firstSet = result;
+        return result;
+    }
+
+    private static QLPatternFirstSet compute(QLPatternNode pattern, long version, Set<QLPatternNode> computing) {
+        Set<INodeType> types = new HashSet<>();
+        boolean nullable;
+        if (pattern.matchMode == MatchMode.DETAIL) {
+            if (pattern.blame || "EOF".equals(pattern.nodeType.getName())) {
+                return new QLPatternFirstSet(null, true, version);
+            }
+            types.add(pattern.nodeType);
+            nullable = false;
+            QLPatternNode subPattern = pattern.nodeType.getPatternNode();
+            if (subPattern != null) {
+                QLPatternFirstSet sub = get(subPattern, version, computing);
+                if (sub.types == null) {
+                    return new QLPatternFirstSet(null, true, version);
+                }
+                types.addAll(sub.types);
+                nullable = sub.nullable;
+            }
+        } else if (pattern.matchMode == MatchMode.AND) {
+            nullable = true;
+            for (QLPatternNode child : pattern.getChildren()) {
+                QLPatternFirstSet sub = get(child, version, computing);
+                if (sub.types == null) {
+                    return new QLPatternFirstSet(null, true, version);
+                }
+                types.addAll(sub.types);
+                if (!sub.nullable) {
+                    nullable = false;
+                    break;
+                }
+            }
+        } else if (pattern.matchMode == MatchMode.OR) {
+            nullable = false;
+            for (QLPatternNode child : pattern.getChildren()) {
+                QLPatternFirstSet sub = get(child, version, computing);
+                if (sub.types == null) {
+                    return new QLPatternFirstSet(null, true, version);
+                }
+                types.addAll(sub.types);
+                nullable = nullable || sub.nullable;
+            }
+        } else {
+            return new QLPatternFirstSet(null, true, version);
+        }
+        if (pattern.minMatchNum == 0) {
+            nullable = true;
+        }
+        return new QLPatternFirstSet(types, nullable, version);
+    }
+}
@@ -84,6 +84,11 @@ public class QLPatternNode {
      */
     private final List<QLPatternNode> children = new ArrayList<>();
 
+    /**
+     * FIRST集合，第一次匹配的时候计算
+     */
+    volatile QLPatternFirstSet firstSet;
+
     public boolean canMergeDetail() {
         return this.matchMode == MatchMode.DETAIL && "ANONY_PATTERN".equals(this.name)
             && this.nodeType.getPatternNode() != null
@@ -1,29 +1,21 @@
 package com.ql.util.express.parse;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.ql.util.express.Operator;
 
 /**
  * Created by tianqiao on 16/10/16.
  */
 public class AppendingClassFieldManager {
-    private final List<AppendingField> appendingFields = new ArrayList<>();
+    private final AppendingIndex<AppendingField> fieldIndex = new AppendingIndex<>(
+        appendingField -> appendingField.bindingClass);
 
     public void addAppendingField(String name, Class<?> bindingClass, Class<?> returnType, Operator operator) {
-        appendingFields.add(new AppendingField(name, bindingClass, returnType, operator));
+        fieldIndex.add(name, new AppendingField(name, bindingClass, returnType, operator));
     }
 
     public AppendingField getAppendingClassField(Object object, String fieldName) {
-        for (AppendingField appendingField : appendingFields) {
-            //object是定义类型的子类
-            if (fieldName.equals(appendingField.name) && (object.getClass() == appendingField.bindingClass
-                || appendingField.bindingClass.isAssignableFrom(object.getClass()))) {
-                return appendingField;
-            }
-        }
-        return null;
+        //object是定义类型或者其子类
+        return fieldIndex.get(object, fieldName);
     }
 
     public Object invoke(AppendingField appendingField, Object fieldObject) throws Exception {
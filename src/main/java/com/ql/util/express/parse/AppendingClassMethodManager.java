@@ -1,6 +1,5 @@
 package com.ql.util.express.parse;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import com.ql.util.express.ArraySwap;
@@ -12,21 +11,16 @@ import com.ql.util.express.instruction.op.OperatorBase;
  * Created by tianqiao on 16/10/16.
  */
 public class AppendingClassMethodManager {
-    private final List<AppendingMethod> methods = new ArrayList<>();
+    private final AppendingIndex<AppendingMethod> methodIndex = new AppendingIndex<>(
+        method -> method.bindingClass);
 
     public void addAppendingMethod(String name, Class<?> bindingClass, OperatorBase op) {
-        methods.add(new AppendingMethod(name, bindingClass, op));
+        methodIndex.add(name, new AppendingMethod(name, bindingClass, op));
     }
 
     public AppendingMethod getAppendingClassMethod(Object object, String methodName) {
-        for (AppendingMethod method : methods) {
-            //object是定义类型的子类
-            if (methodName.equals(method.name) && (object.getClass() == method.bindingClass
-                || method.bindingClass.isAssignableFrom(object.getClass()))) {
-                return method;
-            }
-        }
-        return null;
+        //object是定义类型或者其子类
+        return methodIndex.get(object, methodName);
     }
 
     public OperateData invoke(AppendingMethod method, InstructionSetContext context, ArraySwap list,
@@ -0,0 +1,76 @@
+package com.ql.util.express.parse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 按照 (名称, 对象类型) 索引追加到类上的方法和属性
+ * 同名的定义按照添加顺序排列，第一个绑定类型是对象类型本身或者父类(接口)的定义生效，和逐个遍历的结果一致
+ * 每个对象类型的查找结果(包括没有找到)都会缓存，没有追加过的名称只需要一次哈希查找
+ *
+ * @param <T>
+ */
+class AppendingIndex<T> {
+    private final Map<String, Entry<T>> entryMap = new ConcurrentHashMap<>();
+
+    private final Function<T, Class<?>> bindingClassGetter;
+
+    AppendingIndex(Function<T, Class<?>> bindingClassGetter) {
+        this.bindingClassGetter = bindingClassGetter;
+    }
+
+    /**
+     * 添加之后替换整个名称的索引，已经缓存的查找结果随之失效
+     */
+    synchronized void add(String name, T item) {
+        Entry<T> entry = this.entryMap.get(name);
+        List<T> items = entry == null ? new ArrayList<>() : new ArrayList<>(entry.items);
+        items.add(item);
+        this.entryMap.put(name, new Entry<>(Collections.unmodifiableList(items)));
+    }
+
+    T get(Object object, String name) {
+        Entry<T> entry = this.entryMap.get(name);
+        if (entry == null) {
+            return null;
+        }
+        Class<?> objectClass = object.getClass();
+        Object result = entry.dispatchCache.get(objectClass);
+        if (result == null) {
+            result = Entry.NOT_FOUND;
+            for (T item : entry.items) {
+                Class<?> bindingClass = this.bindingClassGetter.apply(item);
+                if (objectClass == bindingClass || bindingClass.isAssignableFrom(objectClass)) {
+                    result = item;
+                    break;
+                }
+            }
+            entry.dispatchCache.put(objectClass, result);
+        }
+        if (result == Entry.NOT_FOUND) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        T item = (T)result;
+        return item;
+    }
+
+    private static class Entry<T> {
+        private static final Object NOT_FOUND = new Object();
+
+        private final List<T> items;
+
+        /**
+         * 对象类型 -> 生效的定义，没有找到的时候是 NOT_FOUND
+         */
+        private final Map<Class<?>, Object> dispatchCache = new ConcurrentHashMap<>();
+
+        private Entry(List<T> items) {
+            this.items = items;
+        }
+    }
+}
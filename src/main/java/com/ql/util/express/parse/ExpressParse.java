@@ -47,10 +47,14 @@ public class ExpressParse {
 
     protected Word[] getExpressByName(String expressFileName) throws Exception {
         String express = this.expressResourceLoader.loadExpress(expressFileName);
-        return WordSplit.parse(nodeTypeManager.splitWord, express);
+        return WordSplit.parse(nodeTypeManager.splitWordTrie, express);
     }
 
     protected Word[] dealInclude(Word[] wordObjects) throws Exception {
+        if (!containsWord(wordObjects, "include")) {
+            // 没有include的时候不需要复制
+            return wordObjects;
+        }
         boolean isInclude = false;
         StringBuilder includeFileName = new StringBuilder();
         int point = 0;
@@ -74,6 +78,15 @@ public class ExpressParse {
         return result.toArray(new Word[0]);
     }
 
+    private static boolean containsWord(Word[] wordObjects, String word) {
+        for (Word wordObject : wordObjects) {
+            if (word.equals(wordObject.word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 进行单词类型分析
      *
@@ -126,7 +139,7 @@ public class ExpressParse {
             tempWord = wordObjects[point].word;
 
             char firstChar = tempWord.charAt(0);
-            char lastChar = tempWord.substring(tempWord.length() - 1).toLowerCase().charAt(0);
+            char lastChar = Character.toLowerCase(tempWord.charAt(tempWord.length() - 1));
             if (firstChar >= '0' && firstChar <= '9') {
                 if (!result.isEmpty()) {
                     // 对负号进行特殊处理
@@ -341,7 +354,7 @@ public class ExpressParse {
     }
 
     public Word[] splitWords(String express, boolean isTrace, Map<String, String> selfDefineClass) throws Exception {
-        Word[] words = WordSplit.parse(this.nodeTypeManager.splitWord, express);
+        Word[] words = WordSplit.parse(this.nodeTypeManager.splitWordTrie, express);
         if (isTrace) {
             System.out.println("执行的表达式:" + express);
             System.out.println("单词分解结果:" + WordSplit.getPrintInfo(words, ","));
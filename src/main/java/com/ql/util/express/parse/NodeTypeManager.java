@@ -10,6 +10,7 @@ import com.ql.util.express.match.INodeTypeManager;
 public class NodeTypeManager implements INodeTypeManager {
 
     public final String[] splitWord;
+    public final SplitWordTrie splitWordTrie;
     private final String[] keyWords;
     private final String[] nodeTypeDefines;
     protected final String[][] instructionFactoryMapping;
@@ -27,6 +28,7 @@ public class NodeTypeManager implements INodeTypeManager {
     public NodeTypeManager(KeyWordDefine4Java keyWordDefine) {
         this.splitWord = keyWordDefine.splitWord;
         WordSplit.sortSplitWord(this.splitWord);
+        this.splitWordTrie = new SplitWordTrie(this.splitWord);
         this.keyWords = keyWordDefine.keyWords;
         this.nodeTypeDefines = keyWordDefine.nodeTypeDefines;
         this.instructionFactoryMapping = keyWordDefine.instructionFactoryMapping;
@@ -0,0 +1,262 @@
+package com.ql.util.express.parse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ql.util.express.InstructionSet;
+
+/**
+ * 按照最外层的 function、macro、class 定义切分脚本源码，增量重新装载的时候逐个比较每个定义的源码是否有变化
+ * 只做字符级别的扫描：跳过字符串常量和注释，按照大括号匹配定义的结束位置；
+ * 开头的 import 单独保留，切分出来的每一部分都需要加上 import 才能单独解析
+ */
+public class ScriptSourceSplitter {
+    private ScriptSourceSplitter() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static final Map<String, String> DEFINE_TYPES = new HashMap<>();
+
+    static {
+        DEFINE_TYPES.put("function", InstructionSet.TYPE_FUNCTION);
+        DEFINE_TYPES.put("macro", InstructionSet.TYPE_MACRO);
+        DEFINE_TYPES.put("class", InstructionSet.TYPE_CLASS);
+    }
+
+    public static final class Part {
+        private final String name;
+        private final String type;
+        private final String source;
+
+        private Part(String name, String type, String source) {
+            this.name = name;
+            this.type = type;
+            this.source = source;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getSource() {
+            return source;
+        }
+    }
+
+    public static final class SplitResult {
+        private final String importSource;
+        private final List<Part> parts;
+        private final String mainSource;
+
+        private SplitResult(String importSource, List<Part> parts, String mainSource) {
+            this.importSource = importSource;
+            this.parts = parts;
+            this.mainSource = mainSource;
+        }
+
+        public String getImportSource() {
+            return importSource;
+        }
+
+        public List<Part> getParts() {
+            return parts;
+        }
+
+        /**
+         * 去掉定义之后剩下的脚本主体，各段之间用换行连接，只有空白的时候是空字符串
+         */
+        public String getMainSource() {
+            return mainSource;
+        }
+    }
+
+    /**
+     * @param text 脚本
+     * @return 字符串或者注释没有关闭、大括号不匹配、定义重名等无法切分的时候返回null，由完整解析报告错误
+     */
+    public static SplitResult split(String text) {
+        int length = text.length();
+        int point = skipImports(text);
+        String importSource = text.substring(0, point);
+        List<Part> parts = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        StringBuilder mainSource = new StringBuilder();
+        int mainStart = point;
+        int depth = 0;
+        while (point < length) {
+            char c = text.charAt(point);
+            if (c == '"' || c == '\'') {
+                point = skipString(text, point);
+            } else if (text.startsWith("/**", point)) {
+                point = skipComment(text, point);
+            } else if (c == '{') {
+                depth++;
+                point++;
+            } else if (c == '}') {
+                if (--depth < 0) {
+                    return null;
+                }
+                point++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int wordEnd = identifierEnd(text, point);
+                // 排除 String.class 这种属性访问
+                String type = depth == 0 && (point == 0 || text.charAt(point - 1) != '.') ?
+                    DEFINE_TYPES.get(text.substring(point, wordEnd)) : null;
+                if (type == null) {
+                    point = wordEnd;
+                    continue;
+                }
+                int nameStart = skipWhitespace(text, wordEnd);
+                int nameEnd = identifierEnd(text, nameStart);
+                int defineEnd = findDefineEnd(text, nameEnd);
+                if (nameEnd == nameStart || defineEnd < 0 || !names.add(text.substring(nameStart, nameEnd))) {
+                    return null;
+                }
+                appendMain(mainSource, text.substring(mainStart, point));
+                parts.add(new Part(text.substring(nameStart, nameEnd), type, text.substring(point, defineEnd)));
+                point = defineEnd;
+                mainStart = defineEnd;
+            } else {
+                point++;
+            }
+            if (point < 0) {
+                return null;
+            }
+        }
+        if (depth != 0) {
+            return null;
+        }
+        appendMain(mainSource, text.substring(mainStart));
+        return new SplitResult(importSource, parts, mainSource.toString());
+    }
+
+    private static void appendMain(StringBuilder mainSource, String piece) {
+        String trimmed = piece.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+        if (mainSource.length() > 0) {
+            mainSource.append('\n');
+        }
+        mainSource.append(trimmed);
+    }
+
+    /**
+     * import 必须放在脚本的最开始，以;结束，见 ExpressParse.transferWord2ExpressNode
+     */
+    private static int skipImports(String text) {
+        int importEnd = 0;
+        int point = 0;
+        while (true) {
+            point = skipWhitespace(text, point);
+            if (text.startsWith("/**", point)) {
+                point = skipComment(text, point);
+                if (point < 0) {
+                    return importEnd;
+                }
+                continue;
+            }
+            if (!text.startsWith("import", point) || identifierEnd(text, point) != point + "import".length()) {
+                return importEnd;
+            }
+            int semicolon = text.indexOf(';', point);
+            if (semicolon < 0) {
+                return importEnd;
+            }
+            point = semicolon + 1;
+            importEnd = point;
+        }
+    }
+
+    /**
+     * @return 定义的大括号结束之后(包括后面的;)的位置，没有找到返回-1
+     */
+    private static int findDefineEnd(String text, int from) {
+        int length = text.length();
+        int depth = 0;
+        int point = from;
+        while (point >= 0 && point < length) {
+            char c = text.charAt(point);
+            if (c == '"' || c == '\'') {
+                point = skipString(text, point);
+            } else if (text.startsWith("/**", point)) {
+                point = skipComment(text, point);
+            } else if (c == '{') {
+                depth++;
+                point++;
+            } else if (c == '}') {
+                if (--depth < 0) {
+                    return -1;
+                }
+                point++;
+                if (depth == 0) {
+                    return skipSemicolons(text, point);
+                }
+            } else {
+                point++;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSemicolons(String text, int from) {
+        int end = from;
+        int point = skipWhitespace(text, from);
+        while (point < text.length() && text.charAt(point) == ';') {
+            end = point + 1;
+            point = skipWhitespace(text, end);
+        }
+        return end;
+    }
+
+    /**
+     * @return 字符串结束之后的位置，没有关闭返回-1
+     */
+    private static int skipString(String text, int start) {
+        char quote = text.charAt(start);
+        int point = start + 1;
+        while (point < text.length()) {
+            char c = text.charAt(point);
+            if (c == '\\') {
+                point = point + 2;
+            } else if (c == quote) {
+                return point + 1;
+            } else {
+                point++;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipComment(String text, int start) {
+        int end = text.indexOf("**/", start + 3);
+        return end < 0 ? -1 : end + 3;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int point = from;
+        while (point < text.length() && Character.isWhitespace(text.charAt(point))) {
+            point++;
+        }
+        return point;
+    }
+
+    private static int identifierEnd(String text, int from) {
+        int point = from;
+        if (point < text.length() && Character.isJavaIdentifierStart(text.charAt(point))) {
+            point++;
+            while (point < text.length() && Character.isJavaIdentifierPart(text.charAt(point))) {
+                point++;
+            }
+        }
+        return point;
+    }
+}
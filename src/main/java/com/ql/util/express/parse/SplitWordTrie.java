@@ -0,0 +1,80 @@
+package com.ql.util.express.parse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分隔符的前缀树，单词分解的时候在每个位置上逐个字符查找最长的分隔符
+ * 代替按长度倒序逐个尝试 splitWord 并截取子串比较，查找的代价只和分隔符的长度有关
+ */
+public class SplitWordTrie {
+    private static final int ASCII_SIZE = 128;
+
+    private final Node root = new Node();
+
+    public SplitWordTrie(String[] splitWords) {
+        for (String splitWord : splitWords) {
+            if (splitWord == null || splitWord.isEmpty()) {
+                continue;
+            }
+            Node node = this.root;
+            for (int i = 0; i < splitWord.length(); i++) {
+                node = node.getOrCreate(splitWord.charAt(i));
+            }
+            node.word = splitWord;
+        }
+    }
+
+    /**
+     * 查找从 start 开始的最长分隔符
+     *
+     * @return 匹配到的分隔符，返回的是定义中的同一个字符串实例；没有匹配返回null
+     */
+    public String match(String str, int start) {
+        String result = null;
+        Node node = this.root;
+        for (int i = start; i < str.length(); i++) {
+            node = node.get(str.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.word != null) {
+                result = node.word;
+            }
+        }
+        return result;
+    }
+
+    private static class Node {
+        private Node[] asciiChildren;
+        private Map<Character, Node> otherChildren;
+        private String word;
+
+        Node get(char c) {
+            if (c < ASCII_SIZE) {
+                return this.asciiChildren == null ? null : this.asciiChildren[c];
+            }
+            return this.otherChildren == null ? null : this.otherChildren.get(c);
+        }
+
+        Node getOrCreate(char c) {
+            Node child = this.get(c);
+            if (child != null) {
+                return child;
+            }
+            child = new Node();
+            if (c < ASCII_SIZE) {
+                if (this.asciiChildren == null) {
+                    this.asciiChildren = new Node[ASCII_SIZE];
+                }
+                this.asciiChildren[c] = child;
+            } else {
+                if (this.otherChildren == null) {
+                    this.otherChildren = new HashMap<>();
+                }
+                this.otherChildren.put(c, child);
+            }
+            return child;
+        }
+    }
+}
@@ -13,12 +13,6 @@ import com.ql.util.express.exception.QLCompileException;
  * @author xuannan
  */
 public class WordSplit {
-    enum EscapeState {
-        CHARS,
-        MAYBE_ESCAPE,
-        END
-    }
-
     private WordSplit() {
         throw new IllegalStateException("Utility class");
     }
@@ -31,65 +25,62 @@ public class WordSplit {
      * @throws Exception
      */
     public static Word[] parse(String[] splitWord, String str) throws Exception {
+        return parse(new SplitWordTrie(splitWord), str);
+    }
+
+    /**
+     * 文本分析函数，使用预先构建的分隔符前缀树
+     * 分隔符直接使用定义中的字符串实例，没有转义字符的字符串常量直接截取，不再逐个字符复制
+     */
+    public static Word[] parse(SplitWordTrie splitWordTrie, String str) throws Exception {
         if (str == null) {
             return new Word[0];
         }
         char c;
         int line = 1;
+        int length = str.length();
         List<Word> list = new ArrayList<>();
         int i = 0;
         int point = 0;
         // 当前行第一个字符相对脚本起点的偏移量offset
         int currentLineOffset = 0;
-        while (i < str.length()) {
+        while (i < length) {
             c = str.charAt(i);
             //字符串处理
             if (c == '"' || c == '\'') {
-                StringBuilder escapedStr = new StringBuilder().append(c);
-                EscapeState state = EscapeState.CHARS;
+                // 遇到第一个转义字符的时候才创建
+                StringBuilder escapedStr = null;
+                boolean isClosed = false;
                 int current = i;
-
-                forward:
-                while (++current < str.length()) {
+                while (++current < length) {
                     char curChar = str.charAt(current);
-                    switch (state) {
-                        case CHARS:
-                            if (curChar == '\\') {
-                                state = EscapeState.MAYBE_ESCAPE;
-                                continue;
-                            }
-                            escapedStr.append(curChar);
-                            if (curChar == c) {
-                                state = EscapeState.END;
-                                break forward;
-                            }
-
+                    if (curChar == '\\') {
+                        if (escapedStr == null) {
+                            escapedStr = new StringBuilder().append(str, i, current);
+                        }
+                        if (++current >= length) {
                             break;
-                        case MAYBE_ESCAPE:
-                            switch (curChar) {
-                                case 'n':
-                                    escapedStr.append('\n');
-                                    break;
-                                case 't':
-                                    escapedStr.append('\t');
-                                    break;
-                                case 'r':
-                                    escapedStr.append('\r');
-                                    break;
-                                default:
-                                    escapedStr.append(curChar);
-                            }
-                            state = EscapeState.CHARS;
+                        }
+                        escapedStr.append(unescape(str.charAt(current)));
+                        continue;
+                    }
+                    if (escapedStr != null) {
+                        escapedStr.append(curChar);
+                    }
+                    if (curChar == c) {
+                        isClosed = true;
+                        break;
                     }
                 }
 
-                if (state != EscapeState.END) {
+                if (!isClosed) {
                     throw new QLCompileException("字符串没有关闭");
                 }
-                list.add(new Word(escapedStr.toString(), line, i - currentLineOffset + 1));
+                String word = escapedStr == null ? str.substring(i, current + 1) : escapedStr.toString();
+                list.add(new Word(word, line, i - currentLineOffset + 1));
                 i = current + 1;
                 point = i;
-            } else if (c == '.' && point < i && isNumber(str.substring(point, i))) {
+            } else if (c == '.' && point < i && isDigit(str.charAt(point))) {
                 //小数点的特殊处理
                 i = i + 1;
             } else if (c == ' ' || c == '\r' || c == '\n' || c == '\t' || c == '\u000C') {
@@ -103,21 +94,15 @@ public class WordSplit {
                 i = i + 1;
                 point = i;
             } else {
-                boolean isFind = false;
-                for (String s : splitWord) {
-                    int length = s.length();
-                    if (i + length <= str.length() && str.substring(i, i + length).equals(s)) {
-                        if (point < i) {
-                            list.add(new Word(str.substring(point, i), line, point - currentLineOffset + 1));
-                        }
-                        list.add(new Word(str.substring(i, i + length), line, i - currentLineOffset + 1));
-                        i = i + length;
-                        point = i;
-                        isFind = true;
-                        break;
+                String splitWord = splitWordTrie.match(str, i);
+                if (splitWord != null) {
+                    if (point < i) {
+                        list.add(new Word(str.substring(point, i), line, point - currentLineOffset + 1));
                     }
-                }
-                if (!isFind) {
+                    list.add(new Word(splitWord, line, i - currentLineOffset + 1));
+                    i = i + splitWord.length();
+                    point = i;
+                } else {
                     i = i + 1;
                 }
             }
@@ -131,6 +116,19 @@ public class WordSplit {
         return result;
     }
 
+    private static char unescape(char c) {
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            default:
+                return c;
+        }
+    }
+
     public static void sortSplitWord(String[] splitWord) {
         Arrays.sort(splitWord, (o1, o2) -> Integer.compare(o2.length(), o1.length()));
     }
@@ -139,8 +137,10 @@ public class WordSplit {
         if (str == null || "".equals(str)) {
             return false;
         }
-        char c = str.charAt(0);
-        // 数字
+        return isDigit(str.charAt(0));
+    }
+
+    private static boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
 
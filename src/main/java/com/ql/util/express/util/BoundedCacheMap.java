@@ -0,0 +1,374 @@
+package com.ql.util.express.util;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有容量上限的线程安全缓存，可以作为 ExpressRunner 的指令集缓存使用，例如:
+ * <pre>
+ * new ExpressRunner(false, false, new BoundedCacheMap&lt;String, Future&lt;InstructionSet&gt;&gt;(10000));
+ * </pre>
+ * 1、按照条目数量和权重限制容量，超过上限时淘汰最久没有访问的条目(LRU)
+ * 2、可以设置访问后的过期时间
+ * 3、统计命中、未命中和淘汰的次数
+ * 读操作只在拿到锁的时候调整LRU顺序，高并发下是近似的LRU，但是读操作不会因为锁而阻塞
+ */
+public class BoundedCacheMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    /**
+     * 不限制
+     */
+    public static final long UNLIMITED = -1;
+
+    /**
+     * 计算条目的权重
+     */
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+    /**
+     * 保护LRU链表和总权重
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * LRU链表，head 是最久没有访问的条目
+     */
+    private final Node<K, V> head = new Node<>(null, null, 0);
+
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long expireAfterAccessNanos;
+
+    private long totalWeight = 0;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param maximumSize 最大条目数量
+     */
+    public BoundedCacheMap(long maximumSize) {
+        this(maximumSize, UNLIMITED, null, UNLIMITED, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maximumSize     最大条目数量, -1 表示不限制
+     * @param maximumWeight   最大总权重, -1 表示不限制
+     * @param weigher         权重计算, 为null的时候每个条目的权重都是1
+     * @param expireAfterAccess 最后一次访问之后的过期时间, -1 表示不过期
+     * @param unit            过期时间的单位
+     */
+    public BoundedCacheMap(long maximumSize, long maximumWeight, Weigher<? super K, ? super V> weigher,
+        long expireAfterAccess, TimeUnit unit) {
+        if (maximumSize == 0 || maximumSize < UNLIMITED || maximumWeight == 0 || maximumWeight < UNLIMITED) {
+            throw new IllegalArgumentException("缓存的容量上限必须大于0, 或者为-1表示不限制");
+        }
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.expireAfterAccessNanos = expireAfterAccess == UNLIMITED ? UNLIMITED : unit.toNanos(expireAfterAccess);
+        head.before = head;
+        head.after = head;
+    }
+
+    /**
+     * 按照 key 字符串的长度计算权重，适合按照脚本文本的总长度限制指令集缓存
+     */
+    public static <V> Weigher<String, V> stringLengthWeigher() {
+        return (key, value) -> key.length();
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        long now = System.nanoTime();
+        if (isExpired(node, now)) {
+            removeNode(node);
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        node.accessTime = now;
+        if (evictionLock.tryLock()) {
+            try {
+                moveToTail(node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Node<K, V> node = data.get(key);
+        return node != null && !isExpired(node, System.nanoTime());
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Node<K, V> node = newNode(key, value);
+        Node<K, V> old = data.put(key, node);
+        afterWrite(old, node);
+        return old == null ? null : old.value;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Node<K, V> node = newNode(key, value);
+        while (true) {
+            Node<K, V> old = data.putIfAbsent(key, node);
+            if (old == null) {
+                afterWrite(null, node);
+                return null;
+            }
+            if (!isExpired(old, System.nanoTime())) {
+                return old.value;
+            }
+            if (data.replace(key, old, node)) {
+                afterWrite(old, node);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> old = data.remove(key);
+        if (old == null) {
+            return null;
+        }
+        unlinkWithLock(old);
+        return old.value;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Node<K, V> old = data.get(key);
+        if (old == null || !old.value.equals(value) || !data.remove(key, old)) {
+            return false;
+        }
+        unlinkWithLock(old);
+        return true;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Node<K, V> old = data.get(key);
+        if (old == null || !old.value.equals(oldValue)) {
+            return false;
+        }
+        Node<K, V> node = newNode(key, newValue);
+        if (!data.replace(key, old, node)) {
+            return false;
+        }
+        afterWrite(old, node);
+        return true;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Node<K, V> old = data.get(key);
+        if (old == null) {
+            return null;
+        }
+        Node<K, V> node = newNode(key, value);
+        if (!data.replace(key, old, node)) {
+            return null;
+        }
+        afterWrite(old, node);
+        return old.value;
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            data.clear();
+            head.before = head;
+            head.after = head;
+            totalWeight = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 当前内容的快照，对它的修改不会影响缓存
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Map<K, V> snapshot = new HashMap<>();
+        long now = System.nanoTime();
+        for (Node<K, V> node : data.values()) {
+            if (!isExpired(node, now)) {
+                snapshot.put(node.key, node.value);
+            }
+        }
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public double getHitRate() {
+        long hit = getHitCount();
+        long total = hit + getMissCount();
+        return total == 0 ? 1.0 : (double)hit / total;
+    }
+
+    public long getWeight() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedCacheMap[size=" + size() + ",hit=" + getHitCount() + ",miss=" + getMissCount()
+            + ",eviction=" + getEvictionCount() + "]";
+    }
+
+    private Node<K, V> newNode(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int weight = weigher == null ? 1 : weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("权重不能为负数:" + weight);
+        }
+        return new Node<>(key, value, weight);
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return expireAfterAccessNanos != UNLIMITED && now - node.accessTime > expireAfterAccessNanos;
+    }
+
+    private void removeNode(Node<K, V> node) {
+        if (data.remove(node.key, node)) {
+            unlinkWithLock(node);
+        }
+    }
+
+    private void afterWrite(Node<K, V> old, Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            if (old != null) {
+                unlink(old);
+            }
+            // 写入和链接之间可能已经被其它线程替换或者删除
+            if (data.get(node.key) == node) {
+                linkLast(node);
+            }
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        while (head.after != head) {
+            Node<K, V> eldest = head.after;
+            boolean overflow = (maximumSize != UNLIMITED && data.size() > maximumSize)
+                || (maximumWeight != UNLIMITED && totalWeight > maximumWeight);
+            if (!overflow && !isExpired(eldest, now)) {
+                break;
+            }
+            unlink(eldest);
+            if (data.remove(eldest.key, eldest)) {
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private void unlinkWithLock(Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            unlink(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void linkLast(Node<K, V> node) {
+        node.before = head.before;
+        node.after = head;
+        head.before.after = node;
+        head.before = node;
+        totalWeight = totalWeight + node.weight;
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (node.after == null) {
+            return;
+        }
+        node.before.after = node.after;
+        node.after.before = node.before;
+        node.before = null;
+        node.after = null;
+        totalWeight = totalWeight - node.weight;
+    }
+
+    private void moveToTail(Node<K, V> node) {
+        if (node.after == null || node.after == head) {
+            return;
+        }
+        node.before.after = node.after;
+        node.after.before = node.before;
+        node.before = head.before;
+        node.after = head;
+        head.before.after = node;
+        head.before = node;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int weight;
+        volatile long accessTime = System.nanoTime();
+
+        Node<K, V> before;
+        Node<K, V> after;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.ql.util.express.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法和构造函数的查找缓存，键是 (类型, 方法名, 参数类型数组, 查找选项)，按照对象地址比较类型，不拼接字符串
+ * 1、缓存挂在类型上(ClassValue)，类型卸载之后缓存随之回收，热部署的插件类加载器不会因为缓存泄漏
+ * 2、每一项挂在 "能看到其它所有类型" 的那个类型上，例如 ArrayList.add(插件类) 挂在插件类上，
+ * 避免父加载器的类通过缓存引用子加载器的类；找不到这样的类型时不缓存
+ * 3、读操作不加锁；设置了容量上限时使用 BoundedCacheMap，按照 LRU 淘汰
+ */
+public class MethodCache {
+    /**
+     * 没有找到的结果
+     */
+    public static final Object NOT_FOUND = new Object();
+
+    private final long maximumSizePerClass;
+
+    private final ClassValue<Map<Key, Object>> tables = new ClassValue<Map<Key, Object>>() {
+        @Override
+        protected Map<Key, Object> computeValue(Class<?> type) {
+            if (maximumSizePerClass == BoundedCacheMap.UNLIMITED) {
+                return new ConcurrentHashMap<>();
+            }
+            return new BoundedCacheMap<>(maximumSizePerClass);
+        }
+    };
+
+    public MethodCache() {
+        this(BoundedCacheMap.UNLIMITED);
+    }
+
+    /**
+     * @param maximumSizePerClass 每个类型上缓存的最大数量，-1 表示不限制
+     */
+    public MethodCache(long maximumSizePerClass) {
+        if (maximumSizePerClass == 0 || maximumSizePerClass < BoundedCacheMap.UNLIMITED) {
+            throw new IllegalArgumentException("缓存的容量上限必须大于0, 或者为-1表示不限制");
+        }
+        this.maximumSizePerClass = maximumSizePerClass;
+    }
+
+    /**
+     * @return 缓存的结果，没有找到的结果是 NOT_FOUND，没有缓存的时候返回null
+     */
+    public Object get(Class<?> baseClass, String name, Class<?>[] types, boolean publicOnly, boolean isStatic) {
+        Class<?> owner = findOwner(baseClass, types);
+        if (owner == null) {
+            return null;
+        }
+        return this.tables.get(owner).get(new Key(baseClass, name, types, publicOnly, isStatic));
+    }
+
+    /**
+     * @param value 查找的结果，没有找到的时候使用 NOT_FOUND
+     */
+    public void put(Class<?> baseClass, String name, Class<?>[] types, boolean publicOnly, boolean isStatic,
+        Object value) {
+        Class<?> owner = findOwner(baseClass, types);
+        if (owner == null) {
+            return;
+        }
+        Class<?>[] copyTypes = types == null ? null : types.clone();
+        this.tables.get(owner).put(new Key(baseClass, name, copyTypes, publicOnly, isStatic), value);
+    }
+
+    /**
+     * 找到类加载器最 "年轻" 的类型，其它类型的加载器都是它的加载器或者其祖先
+     */
+    private static Class<?> findOwner(Class<?> baseClass, Class<?>[] types) {
+        Class<?> owner = baseClass;
+        ClassLoader ownerLoader = baseClass.getClassLoader();
+        if (types == null) {
+            return owner;
+        }
+        for (Class<?> type : types) {
+            if (type == null) {
+                continue;
+            }
+            ClassLoader loader = type.getClassLoader();
+            if (loader == ownerLoader || isAncestor(loader, ownerLoader)) {
+                continue;
+            }
+            if (isAncestor(ownerLoader, loader)) {
+                owner = type;
+                ownerLoader = loader;
+            } else {
+                return null;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * @return ancestor 是否是 loader 的祖先，null 表示启动类加载器
+     */
+    private static boolean isAncestor(ClassLoader ancestor, ClassLoader loader) {
+        if (ancestor == null) {
+            return true;
+        }
+        for (ClassLoader parent = loader; parent != null; parent = parent.getParent()) {
+            if (parent == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Key {
+        private final Class<?> baseClass;
+        private final String name;
+        private final Class<?>[] types;
+        private final boolean publicOnly;
+        private final boolean isStatic;
+        private final int hash;
+
+        private Key(Class<?> baseClass, String name, Class<?>[] types, boolean publicOnly, boolean isStatic) {
+            this.baseClass = baseClass;
+            this.name = name;
+            this.types = types;
+            this.publicOnly = publicOnly;
+            this.isStatic = isStatic;
+            int h = System.identityHashCode(baseClass) * 31 + name.hashCode();
+            if (types != null) {
+                for (Class<?> type : types) {
+                    h = h * 31 + System.identityHashCode(type);
+                }
+            }
+            this.hash = (h * 31 + (publicOnly ? 1 : 0)) * 31 + (isStatic ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            if (this.hash != other.hash || this.baseClass != other.baseClass || this.publicOnly != other.publicOnly
+                || this.isStatic != other.isStatic || !this.name.equals(other.name)) {
+                return false;
+            }
+            if (this.types == other.types) {
+                return true;
+            }
+            if (this.types == null || other.types == null || this.types.length != other.types.length) {
+                return false;
+            }
+            for (int i = 0; i < this.types.length; i++) {
+                if (this.types[i] != other.types[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return this.baseClass.getName() + "." + this.name + Arrays.toString(this.types);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.ql.util.express.util;
+
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ql.util.express.ExpressUtil;
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.beanutils.expression.DefaultResolver;
+
+/**
+ * 对象属性的访问器，按照 (class, 属性名/别名) 缓存
+ * 创建时完成 QLAlias 别名解析和 getter/setter 查找，并绑定为 MethodHandle，运行期不再做描述符查找；
+ * 嵌套属性、DynaBean、索引和 mapped 属性等无法直接绑定的情况仍然交给 PropertyUtils 处理
+ * 缓存挂在类型上(ClassValue)，和 MethodCache 一样，类型卸载之后访问器随之回收，不会引用住类加载器
+ */
+public abstract class PropertyAccessor {
+    private static final ClassValue<Map<String, PropertyAccessor>> ACCESSOR_CACHE =
+        new ClassValue<Map<String, PropertyAccessor>>() {
+            @Override
+            protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final DefaultResolver RESOLVER = new DefaultResolver();
+
+    protected final Class<?> beanClass;
+    protected final String propertyName;
+
+    protected PropertyAccessor(Class<?> beanClass, String propertyName) {
+        this.beanClass = beanClass;
+        this.propertyName = propertyName;
+    }
+
+    public static PropertyAccessor getPropertyAccessor(Class<?> beanClass, String name) {
+        Map<String, PropertyAccessor> accessorMap = ACCESSOR_CACHE.get(beanClass);
+        PropertyAccessor accessor = accessorMap.get(name);
+        if (accessor == null) {
+            accessor = createPropertyAccessor(beanClass, name);
+            accessorMap.put(name, accessor);
+        }
+        return accessor;
+    }
+
+    /**
+     * 是否是可以通过属性访问器访问的普通 java 对象，Map、数组、Class 等在 ExpressUtil 中单独处理
+     *
+     * @param bean
+     * @return
+     */
+    public static boolean isBeanObject(Object bean) {
+        return bean != null && !(bean instanceof Map) && !(bean instanceof Class) && !bean.getClass().isArray();
+    }
+
+    private static PropertyAccessor createPropertyAccessor(Class<?> beanClass, String name) {
+        String propertyName = name;
+        Field field = QLAliasUtils.findQLAliasFields(beanClass, name);
+        if (field != null) {
+            propertyName = field.getName();
+        }
+        if (DynaBean.class.isAssignableFrom(beanClass) || RESOLVER.hasNested(propertyName)
+            || RESOLVER.isIndexed(propertyName) || RESOLVER.isMapped(propertyName)) {
+            return new BeanUtilsPropertyAccessor(beanClass, propertyName);
+        }
+
+        PropertyDescriptor descriptor = null;
+        for (PropertyDescriptor item : PropertyUtils.getPropertyDescriptors(beanClass)) {
+            if (propertyName.equals(item.getName())) {
+                descriptor = item;
+                break;
+            }
+        }
+        if (descriptor == null || descriptor instanceof IndexedPropertyDescriptor
+            || descriptor.getClass() != PropertyDescriptor.class) {
+            return new BeanUtilsPropertyAccessor(beanClass, propertyName);
+        }
+
+        try {
+            return new MethodHandlePropertyAccessor(beanClass, propertyName, descriptor.getPropertyType(),
+                unreflect(beanClass, descriptor.getReadMethod(), GETTER_TYPE),
+                unreflect(beanClass, descriptor.getWriteMethod(), SETTER_TYPE));
+        } catch (IllegalAccessException e) {
+            return new BeanUtilsPropertyAccessor(beanClass, propertyName);
+        }
+    }
+
+    private static MethodHandle unreflect(Class<?> beanClass, Method method, MethodType methodType)
+        throws IllegalAccessException {
+        // 和 PropertyUtils 一样，非 public 类的方法需要找到接口或者父类中可以访问的方法
+        Method accessibleMethod = MethodUtils.getAccessibleMethod(beanClass, method);
+        if (accessibleMethod == null) {
+            return null;
+        }
+        return MethodHandles.publicLookup().unreflect(accessibleMethod).asType(methodType);
+    }
+
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    /**
+     * @param bean
+     * @return 属性类型，属性不存在的时候返回null
+     */
+    public abstract Class<?> getPropertyType(Object bean);
+
+    /**
+     * @param bean
+     * @return 属性值，属性不存在或者读取异常的时候返回null
+     */
+    public abstract Object getProperty(Object bean);
+
+    /**
+     * 设置属性值，赋值前按照属性类型转换，属性不存在或者赋值异常的时候忽略
+     *
+     * @param bean
+     * @param value
+     */
+    public abstract void setProperty(Object bean, Object value);
+
+    @Override
+    public String toString() {
+        return beanClass.getName() + "." + propertyName;
+    }
+
+    private static class MethodHandlePropertyAccessor extends PropertyAccessor {
+        private final Class<?> propertyType;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        MethodHandlePropertyAccessor(Class<?> beanClass, String propertyName, Class<?> propertyType,
+            MethodHandle getter, MethodHandle setter) {
+            super(beanClass, propertyName);
+            this.propertyType = propertyType;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public Class<?> getPropertyType(Object bean) {
+            return propertyType;
+        }
+
+        @Override
+        public Object getProperty(Object bean) {
+            if (getter == null) {
+                return null;
+            }
+            try {
+                return getter.invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void setProperty(Object bean, Object value) {
+            if (setter == null) {
+                return;
+            }
+            try {
+                setter.invokeExact(bean, ExpressUtil.castObject(value, propertyType, false));
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable ignore) {
+            }
+        }
+    }
+
+    private static class BeanUtilsPropertyAccessor extends PropertyAccessor {
+        BeanUtilsPropertyAccessor(Class<?> beanClass, String propertyName) {
+            super(beanClass, propertyName);
+        }
+
+        @Override
+        public Class<?> getPropertyType(Object bean) {
+            try {
+                return PropertyUtils.getPropertyDescriptor(bean, propertyName).getPropertyType();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        @Override
+        public Object getProperty(Object bean) {
+            try {
+                return PropertyUtils.getProperty(bean, propertyName);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void setProperty(Object bean, Object value) {
+            try {
+                Class<?> filedClass = PropertyUtils.getPropertyType(bean, propertyName);
+                PropertyUtils.setProperty(bean, propertyName, ExpressUtil.castObject(value, filedClass, false));
+            } catch (Exception ignore) {
+            }
+        }
+    }
+}
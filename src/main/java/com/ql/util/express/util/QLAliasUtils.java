@@ -1,74 +1,28 @@
 package com.ql.util.express.util;
 
 import java.lang.reflect.Field;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
-import com.ql.util.express.ExpressUtil;
 import com.ql.util.express.annotation.QLAlias;
-import org.apache.commons.beanutils.PropertyUtils;
 
 /**
  * @author tianqiao@come-future.com
  * 2021-11-15 6:31 下午
  */
 public class QLAliasUtils {
-    private static final Map<String, Object> FIELD_CACHE = new ConcurrentHashMap<>();
-
     private QLAliasUtils() {
         throw new IllegalStateException("Utility class");
     }
 
     public static Class<?> getPropertyClass(Object bean, String name) {
-        Field field = findQLAliasFieldsWithCache(bean.getClass(), name);
-        if (field != null) {
-            name = field.getName();
-        }
-        try {
-            return PropertyUtils.getPropertyDescriptor(bean, name).getPropertyType();
-        } catch (Exception e) {
-            return null;
-        }
+        return PropertyAccessor.getPropertyAccessor(bean.getClass(), name).getPropertyType(bean);
     }
 
     public static Object getProperty(Object bean, String name) {
-        try {
-            Field field = findQLAliasFieldsWithCache(bean.getClass(), name);
-            if (field != null) {
-                name = field.getName();
-            }
-            return PropertyUtils.getProperty(bean, name);
-        } catch (Exception e) {
-            return null;
-        }
+        return PropertyAccessor.getPropertyAccessor(bean.getClass(), name).getProperty(bean);
     }
 
     public static void setProperty(Object bean, Object name, Object value) {
-        try {
-            Field field = findQLAliasFieldsWithCache(bean.getClass(), name.toString());
-            if (field != null) {
-                name = field.getName();
-            }
-            Class<?> filedClass = PropertyUtils.getPropertyType(bean, name.toString());
-            PropertyUtils.setProperty(bean, name.toString(), ExpressUtil.castObject(value, filedClass, false));
-        } catch (Exception ignore) {
-        }
-    }
-
-    private static Field findQLAliasFieldsWithCache(Class<?> baseClass, String propertyName) {
-        String key = baseClass + "#" + propertyName;
-        Object result = FIELD_CACHE.get(key);
-        if (result == null) {
-            result = findQLAliasFields(baseClass, propertyName);
-            if (result == null) {
-                FIELD_CACHE.put(key, void.class);
-            } else {
-                FIELD_CACHE.put(key, result);
-            }
-        } else if (result == void.class) {
-            result = null;
-        }
-        return (Field)result;
+        PropertyAccessor.getPropertyAccessor(bean.getClass(), name.toString()).setProperty(bean, value);
     }
 
     public static Field findQLAliasFields(Class<?> baseClass, String propertyName) {
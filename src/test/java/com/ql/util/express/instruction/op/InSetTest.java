@@ -0,0 +1,76 @@
+package com.ql.util.express.instruction.op;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.Operator;
+import com.ql.util.express.config.QLExpressRunStrategy;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InSetTest {
+    private static final List<Object> VALUES = Arrays.asList("A01", "1", 1, 2L, (short)3, (byte)4, 'a', 5.0d,
+        6.5f, new BigDecimal("7.00"), true, null);
+
+    private static final Object[] PROBES = new Object[] {"A01", "A02", "1", "a", 1, 1L, 2, 3L, 4, 5, 5L, 5.0d, 6.5d,
+        6.5f, 7, new BigDecimal("7"), 97, 97L, 98, 0, 1.0d, (short)2, (byte)3};
+
+    @Test
+    public void testSameAsEquals() {
+        InSet inSet = new InSet(VALUES);
+        for (Object probe : PROBES) {
+            boolean expect = false;
+            for (Object value : VALUES) {
+                expect = expect || Operator.objectEquals(probe, value);
+            }
+            Assert.assertEquals(String.valueOf(probe), expect, inSet.contains(probe));
+        }
+    }
+
+    @Test
+    public void testConstCandidates() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        ExpressRunner original = new ExpressRunner();
+        original.setOptimizeInstructionSet(false);
+        String express = "code in ('A01', 'A02', 'B07', 100, 200)";
+        InstructionSet instructionSet = runner.parseInstructionSet(express);
+        Assert.assertTrue(instructionSet.toString().contains("CONST[A01, A02, B07, 100, 200]"));
+        Assert.assertFalse(instructionSet.toString().contains("LoadData A02"));
+
+        for (Object code : new Object[] {"A02", "A03", 100, 200L, 300, 100.0d}) {
+            DefaultContext<String, Object> context = new DefaultContext<>();
+            context.put("code", code);
+            Assert.assertEquals(String.valueOf(code), original.execute(express, context, null, false, false),
+                runner.execute(instructionSet, context, null, false, false));
+        }
+    }
+
+    @Test
+    public void testCollectionCache() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            list.add("C" + i);
+        }
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("list", list);
+        context.put("codeArray", list.toArray());
+        QLExpressRunStrategy.setCacheInCollection(true);
+        try {
+            context.put("code", "C50");
+            Assert.assertEquals(true, runner.execute("code in list && code in codeArray", context, null, true, false));
+            context.put("code", "C500");
+            Assert.assertEquals(false, runner.execute("code in list || code in codeArray", context, null, true, false));
+            // 集合大小变化之后重新构建
+            list.add("C500");
+            Assert.assertEquals(true, runner.execute("code in list", context, null, true, false));
+        } finally {
+            QLExpressRunStrategy.setCacheInCollection(false);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.ql.util.express.instruction.op;
+
+import java.util.Random;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LikePatternTest {
+    private static final String[] PATTERNS = new String[] {
+        "", "%", "%%", "abc", "ab%", "ab%%", "%bc", "%%bc", "%b%", "%%b%%", "a%c", "%a%c%", "a%b%c", "%ab",
+        "b%", "%c%a%",
+    };
+
+    /**
+     * 字符串中也包含 %，检查不同形状的模式对 % 的处理一致
+     */
+    private static final char[] SUBJECT_CHARS = new char[] {'a', 'b', 'c', '%'};
+
+    @Test
+    public void testSameAsMatchPattern() {
+        Random random = new Random(1);
+        for (String pattern : PATTERNS) {
+            LikePattern likePattern = LikePattern.compile(pattern);
+            for (int i = 0; i < 200; i++) {
+                StringBuilder s = new StringBuilder();
+                int length = random.nextInt(6);
+                for (int j = 0; j < length; j++) {
+                    s.append(SUBJECT_CHARS[random.nextInt(SUBJECT_CHARS.length)]);
+                }
+                Assert.assertEquals(pattern + " " + s, OperatorLike.matchPattern(s.toString(), pattern),
+                    likePattern.matches(s.toString()));
+            }
+        }
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        LikePattern.clearCache();
+        OperatorLike operatorLike = new OperatorLike("like");
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(true, operatorLike.executeInner("abc", "a%"));
+            Assert.assertEquals(false, operatorLike.executeInner("abc", "%b"));
+        }
+        Assert.assertEquals(2, LikePattern.getCacheSize());
+        Assert.assertEquals(2, LikePattern.getCacheMissCount());
+        Assert.assertEquals(18, LikePattern.getCacheHitCount());
+        Assert.assertEquals(0.9d, LikePattern.getCacheHitRate(), 0.0001d);
+    }
+
+    @Test
+    public void testPercentInSubject() throws Exception {
+        OperatorLike operatorLike = new OperatorLike("like");
+        Assert.assertEquals(true, operatorLike.executeInner("a%xc", "a%"));
+        Assert.assertEquals(true, operatorLike.executeInner("a%xc", "a%c"));
+        Assert.assertEquals(true, operatorLike.executeInner("%xb", "%b%"));
+        Assert.assertEquals(true, operatorLike.executeInner("a%", "a%"));
+        Assert.assertEquals(false, operatorLike.executeInner("a%xc", "a%b"));
+    }
+
+    @Test
+    public void testBindConstPattern() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet("name like 'ab%' && code like pattern");
+        String instructions = instructionSet.toString();
+        Assert.assertTrue(instructions.contains("PATTERN[ab%]"));
+        Assert.assertFalse(instructions.contains("LoadData ab%"));
+
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("name", "abc");
+        context.put("code", 1006);
+        context.put("pattern", "%6");
+        Assert.assertEquals(true, runner.execute(instructionSet, context, null, false, false));
+        context.put("name", null);
+        Assert.assertEquals(false, runner.execute(instructionSet, context, null, false, false));
+    }
+}
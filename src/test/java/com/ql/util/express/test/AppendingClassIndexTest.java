@@ -0,0 +1,77 @@
+package com.ql.util.express.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.Operator;
+import com.ql.util.express.parse.AppendingClassFieldManager;
+import com.ql.util.express.parse.AppendingClassMethodManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AppendingClassIndexTest {
+    private static Operator constOperator(Object value) {
+        return new Operator() {
+            @Override
+            public Object executeInner(Object[] list) {
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void testMethodDispatch() {
+        AppendingClassMethodManager manager = new AppendingClassMethodManager();
+        Assert.assertNull(manager.getAppendingClassMethod(1, "describe"));
+
+        manager.addAppendingMethod("describe", Number.class, constOperator("number"));
+        manager.addAppendingMethod("describe", Integer.class, constOperator("integer"));
+        manager.addAppendingMethod("describe", Object.class, constOperator("object"));
+        for (int i = 0; i < 200; i++) {
+            manager.addAppendingMethod("method" + i, List.class, constOperator(i));
+        }
+
+        // 按照添加顺序，第一个匹配的定义生效
+        Assert.assertEquals(Number.class, manager.getAppendingClassMethod(1, "describe").bindingClass);
+        Assert.assertEquals(Number.class, manager.getAppendingClassMethod(1L, "describe").bindingClass);
+        Assert.assertEquals(Object.class, manager.getAppendingClassMethod("s", "describe").bindingClass);
+        Assert.assertEquals(List.class, manager.getAppendingClassMethod(new ArrayList<>(), "method99").bindingClass);
+        Assert.assertNull(manager.getAppendingClassMethod("s", "method99"));
+        Assert.assertNull(manager.getAppendingClassMethod("s", "method99"));
+        Assert.assertNull(manager.getAppendingClassMethod("s", "other"));
+
+        // 缓存了没有找到的结果之后添加新的定义
+        manager.addAppendingMethod("method99", String.class, constOperator("string"));
+        Assert.assertEquals(String.class, manager.getAppendingClassMethod("s", "method99").bindingClass);
+    }
+
+    @Test
+    public void testFieldDispatch() throws Exception {
+        AppendingClassFieldManager manager = new AppendingClassFieldManager();
+        manager.addAppendingField("half", Number.class, Double.class, constOperator(0.5d));
+        Assert.assertNotNull(manager.getAppendingClassField(1, "half"));
+        Assert.assertNull(manager.getAppendingClassField("s", "half"));
+        Assert.assertNull(manager.getAppendingClassField(1, "double"));
+
+        ExpressRunner runner = new ExpressRunner();
+        runner.addClassField("half", Number.class, new Operator() {
+            @Override
+            public Object executeInner(Object[] list) {
+                return ((Number)list[0]).doubleValue() / 2;
+            }
+        });
+        runner.addClassMethod("twice", Number.class, new Operator() {
+            @Override
+            public Object executeInner(Object[] list) {
+                return ((Number)list[0]).intValue() * 2;
+            }
+        });
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("a", 5);
+        Assert.assertEquals(2.5d, runner.execute("a.half", context, null, false, false));
+        Assert.assertEquals(10, runner.execute("a.twice()", context, null, false, false));
+        Assert.assertEquals(2, runner.execute("'st'.length()", context, null, false, false));
+    }
+}
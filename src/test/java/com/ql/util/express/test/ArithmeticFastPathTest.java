@@ -0,0 +1,96 @@
+package com.ql.util.express.test;
+
+import java.math.BigDecimal;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArithmeticFastPathTest {
+    private static final String[] EXPRESS_LIST = new String[] {
+        "a + 1", "1 - a", "a * 100", "a / 3", "a % 7", "100 mod a",
+        "a + b", "a - b", "a * b", "b / a", "l + a", "l - 1", "l * l", "l * 2 + a",
+        "i + 1", "i * i", "1 - i", "i - l", "0 - i - i",
+        "d + 1", "d * a", "a / d", "d - l", "1 + d * 2",
+        "s + 1", "1 + s", "s + a", "n + 1", "n + 'x'",
+        "bd + 1", "bd * a", "a - bd", "1 / bd",
+        "sh + by", "by * 3", "f + 1", "f * d",
+        "a == 10", "a > l", "i < l", "d >= a", "d == 2.5", "a != b",
+        "sum = 0; for (k = 0; k < 10; k++) { sum = sum + k * 2; } return sum;",
+    };
+
+    private DefaultContext<String, Object> createContext() {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("a", 10);
+        context.put("b", -3);
+        context.put("l", 3000000000L);
+        context.put("i", Integer.MAX_VALUE);
+        context.put("d", 2.5d);
+        context.put("s", "str");
+        context.put("n", null);
+        context.put("bd", new BigDecimal("1.25"));
+        context.put("sh", (short)7);
+        context.put("by", (byte)5);
+        context.put("f", 1.5f);
+        return context;
+    }
+
+    @Test
+    public void testSameResult() throws Exception {
+        for (boolean isPrecise : new boolean[] {false, true}) {
+            ExpressRunner original = new ExpressRunner(isPrecise, false);
+            original.setOptimizeInstructionSet(false);
+            ExpressRunner optimized = new ExpressRunner(isPrecise, false);
+            for (String express : EXPRESS_LIST) {
+                Object expect = original.execute(express, createContext(), null, false, false);
+                Object actual = optimized.execute(express, createContext(), null, false, false);
+                Assert.assertEquals(express, expect, actual);
+                if (expect != null) {
+                    Assert.assertEquals(express, expect.getClass(), actual.getClass());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        Assert.assertEquals(Integer.MIN_VALUE, runner.execute("i + 1", createContext(), null, false, false));
+
+        ExpressRunner preciseRunner = new ExpressRunner(true, false);
+        Assert.assertEquals((long)Integer.MAX_VALUE + 1, preciseRunner.execute("i + 1", createContext(), null,
+            false, false));
+        Assert.assertEquals(new BigDecimal(Long.MAX_VALUE).add(BigDecimal.ONE),
+            preciseRunner.execute("lm + 1", createLongMaxContext(), null, false, false));
+        Assert.assertEquals(new BigDecimal(Long.MAX_VALUE).multiply(new BigDecimal(2)),
+            preciseRunner.execute("lm * 2", createLongMaxContext(), null, false, false));
+        Assert.assertEquals(5, preciseRunner.execute("l - 2999999995", createContext(), null, false, false));
+    }
+
+    private DefaultContext<String, Object> createLongMaxContext() {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("lm", Long.MAX_VALUE);
+        return context;
+    }
+
+    @Test
+    public void testFuseConstOperand() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet("score = base * 100 + 1 - rate; return score;");
+        String instructions = instructionSet.toString();
+        Assert.assertTrue(instructions.contains("OP : * CONST[100]"));
+        Assert.assertTrue(instructions.contains("OP : + CONST[1]"));
+        Assert.assertFalse(instructions.contains("LoadData 100"));
+
+        instructionSet = runner.parseInstructionSet("1 - rate");
+        Assert.assertTrue(instructionSet.toString().contains("OP : CONST[1] -"));
+
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("base", 3);
+        context.put("rate", 0.5d);
+        Assert.assertEquals(300.5d, runner.execute("score = base * 100 + 1 - rate; return score;", context, null,
+            false, false));
+    }
+}
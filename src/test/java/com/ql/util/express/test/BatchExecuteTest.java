@@ -0,0 +1,84 @@
+package com.ql.util.express.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.ql.util.express.BatchResult;
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchExecuteTest {
+    private List<DefaultContext<String, Object>> createContextList(int size) {
+        List<DefaultContext<String, Object>> contextList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            DefaultContext<String, Object> context = new DefaultContext<>();
+            context.put("a", i);
+            contextList.add(context);
+        }
+        return contextList;
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.addOperatorWithAlias("小于", "<", "$1 < $2 不符合");
+        InstructionSet instructionSet = runner.parseInstructionSet("b = a * 2; a 小于 5");
+        List<DefaultContext<String, Object>> contextList = createContextList(10);
+        BatchResult batchResult = runner.executeBatch(instructionSet, contextList);
+        Assert.assertEquals(10, batchResult.size());
+        Assert.assertEquals(0, batchResult.getFailedCount());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(batchResult.isSuccess(i));
+            Assert.assertEquals(i < 5, batchResult.getResult(i));
+            Assert.assertEquals(i * 2, contextList.get(i).get("b"));
+            Assert.assertEquals(i < 5 ? 0 : 1, batchResult.getErrorList(i).size());
+        }
+        Assert.assertTrue(batchResult.getErrorList(7).get(0).contains("a:7"));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet("10 / (a - 3)");
+        List<DefaultContext<String, Object>> contextList = createContextList(6);
+
+        BatchResult batchResult = runner.executeBatch(instructionSet, contextList);
+        Assert.assertEquals(1, batchResult.getFailedCount());
+        Assert.assertFalse(batchResult.isStopped());
+        Assert.assertNotNull(batchResult.getException(3));
+        Assert.assertEquals(10, batchResult.getResult(4));
+        Assert.assertEquals(5, batchResult.getResult(5));
+
+        batchResult = runner.executeBatch(instructionSet, contextList, true, null, 100);
+        Assert.assertTrue(batchResult.isStopped());
+        Assert.assertTrue(batchResult.isExecuted(2));
+        Assert.assertFalse(batchResult.isSuccess(3));
+        Assert.assertFalse(batchResult.isExecuted(4));
+
+        // 批量执行之后单条执行不受影响
+        Assert.assertEquals(-5, runner.execute(instructionSet, contextList.get(1), null, false, false));
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet(
+            "sum = 0; for (i = 0; i < a % 10; i++) { sum = sum + i; } return sum;");
+        List<DefaultContext<String, Object>> contextList = createContextList(10000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BatchResult batchResult = runner.executeBatch(instructionSet, contextList, false, executor, 500);
+            for (int i = 0; i < contextList.size(); i++) {
+                int n = i % 10;
+                Assert.assertEquals(n * (n - 1) / 2, batchResult.getResult(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
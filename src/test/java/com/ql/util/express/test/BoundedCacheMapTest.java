@@ -0,0 +1,109 @@
+package com.ql.util.express.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.util.BoundedCacheMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedCacheMapTest {
+    @Test
+    public void testLruEviction() {
+        BoundedCacheMap<String, Integer> cache = new BoundedCacheMap<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+        Assert.assertEquals(3, cache.size());
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testWeightEviction() {
+        BoundedCacheMap<String, Integer> cache = new BoundedCacheMap<>(BoundedCacheMap.UNLIMITED, 10,
+            BoundedCacheMap.stringLengthWeigher(), BoundedCacheMap.UNLIMITED, TimeUnit.MILLISECONDS);
+        cache.put("aaaa", 1);
+        cache.put("bbbb", 2);
+        Assert.assertEquals(8, cache.getWeight());
+        cache.put("cccc", 3);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertFalse(cache.containsKey("aaaa"));
+        Assert.assertEquals(8, cache.getWeight());
+        cache.remove("bbbb");
+        Assert.assertEquals(4, cache.getWeight());
+        cache.clear();
+        Assert.assertEquals(0, cache.getWeight());
+        Assert.assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testExpireAfterAccess() throws Exception {
+        BoundedCacheMap<String, Integer> cache = new BoundedCacheMap<>(BoundedCacheMap.UNLIMITED,
+            BoundedCacheMap.UNLIMITED, null, 50, TimeUnit.MILLISECONDS);
+        cache.put("a", 1);
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        Thread.sleep(100);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNull(cache.putIfAbsent("a", 2));
+        Assert.assertEquals(Integer.valueOf(2), cache.get("a"));
+    }
+
+    @Test
+    public void testExpressRunnerCache() throws Exception {
+        BoundedCacheMap<String, Future<InstructionSet>> cache = new BoundedCacheMap<>(2);
+        ExpressRunner runner = new ExpressRunner(false, false, cache);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(i + 1, runner.execute(i + " + 1", new DefaultContext<>(), null, true, false));
+        }
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(8, cache.getEvictionCount());
+        runner.execute("9 + 1", new DefaultContext<>(), null, true, false);
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final AtomicInteger parseCount = new AtomicInteger();
+        BoundedCacheMap<String, Future<InstructionSet>> cache = new BoundedCacheMap<>(100);
+        final ExpressRunner runner = new ExpressRunner(false, false, cache) {
+            @Override
+            public InstructionSet parseInstructionSet(String text) throws Exception {
+                parseCount.incrementAndGet();
+                Thread.sleep(50);
+                return super.parseInstructionSet(text);
+            }
+        };
+        int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            Future<?>[] futures = new Future<?>[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                futures[i] = executorService.submit(() -> {
+                    start.await();
+                    return runner.execute("1 + 2 + 3", new DefaultContext<>(), null, true, false);
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                Assert.assertEquals(6, future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        Assert.assertEquals(1, parseCount.get());
+    }
+}
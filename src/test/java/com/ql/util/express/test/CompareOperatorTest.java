@@ -0,0 +1,106 @@
+package com.ql.util.express.test;
+
+import java.math.BigDecimal;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.Operator;
+import com.ql.util.express.instruction.op.OperatorEqualsLessMore;
+import com.ql.util.express.instruction.op.OperatorEqualsLessMore.CompareKind;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompareOperatorTest {
+    private static final String[] OPERATORS = new String[] {"==", "!=", "<>", "<", ">", "<=", ">="};
+
+    private static final Object[] VALUES = new Object[] {
+        1, 2, -1, 1L, 3000000000L, 1.0d, 2.5d, -0.0d, 0.0d, 1.5f,
+        "a", "b", "ab", new BigDecimal("1.0"), new BigDecimal("1.00"), new BigDecimal("2.5"),
+    };
+
+    /**
+     * 不走快速路径的参照结果
+     */
+    private static boolean expected(String op, Object obj1, Object obj2) throws Exception {
+        if ("==".equals(op)) {
+            return Operator.objectEquals(obj1, obj2);
+        }
+        if ("!=".equals(op) || "<>".equals(op)) {
+            return !Operator.objectEquals(obj1, obj2);
+        }
+        int i = Operator.compareData(obj1, obj2);
+        switch (op) {
+            case "<":
+                return i < 0;
+            case ">":
+                return i > 0;
+            case "<=":
+                return i <= 0;
+            default:
+                return i >= 0;
+        }
+    }
+
+    private static boolean isComparable(Object obj1, Object obj2) {
+        return obj1 instanceof String == obj2 instanceof String;
+    }
+
+    @Test
+    public void testFastPathConsistent() throws Exception {
+        for (String op : OPERATORS) {
+            OperatorEqualsLessMore operator = new OperatorEqualsLessMore(op);
+            Assert.assertNotNull(operator.getCompareKind());
+            for (Object obj1 : VALUES) {
+                for (Object obj2 : VALUES) {
+                    if (!isComparable(obj1, obj2)) {
+                        continue;
+                    }
+                    String message = obj1 + " " + op + " " + obj2;
+                    boolean result = expected(op, obj1, obj2);
+                    Assert.assertEquals(message, result, operator.executeInner(obj1, obj2));
+                    Assert.assertEquals(message, result, OperatorEqualsLessMore.executeInner(op, obj1, obj2));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        Assert.assertTrue(OperatorEqualsLessMore.executeInner(CompareKind.EQUALS, null, null));
+        Assert.assertTrue(OperatorEqualsLessMore.executeInner(CompareKind.NOT_EQUALS, null, 1));
+        try {
+            OperatorEqualsLessMore.executeInner(CompareKind.LESS, null, 1);
+            Assert.fail();
+        } catch (Exception e) {
+            // 空操作数不能比较大小
+        }
+    }
+
+    @Test
+    public void testRename() throws Exception {
+        OperatorEqualsLessMore operator = new OperatorEqualsLessMore("<");
+        Assert.assertEquals(true, operator.executeInner(1, 2));
+        operator.setName(">");
+        Assert.assertEquals(CompareKind.MORE, operator.getCompareKind());
+        Assert.assertEquals(false, operator.executeInner(1, 2));
+        operator.setName("=");
+        Assert.assertNull(operator.getCompareKind());
+        Assert.assertEquals(true, operator.executeInner(2, 2));
+    }
+
+    @Test
+    public void testExpress() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.addOperatorWithAlias("大于", ">", null);
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("a", 10);
+        context.put("bd", new BigDecimal("10.00"));
+        context.put("s", "abc");
+        Assert.assertEquals(true, runner.execute("a 大于 5", context, null, true, false));
+        Assert.assertEquals(true, runner.execute("bd == a", context, null, true, false));
+        Assert.assertEquals(true, runner.execute("bd >= 10.0", context, null, true, false));
+        Assert.assertEquals(true, runner.execute("s < \"abd\" && s <> \"ab\"", context, null, true, false));
+        Assert.assertEquals(true, runner.execute("a in (1, 10)", context, null, true, false));
+        Assert.assertEquals(false, runner.execute("s in (\"x\", \"y\")", context, null, true, false));
+    }
+}
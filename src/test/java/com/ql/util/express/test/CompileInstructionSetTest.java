@@ -0,0 +1,78 @@
+package com.ql.util.express.test;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.exception.QLTimeoutException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompileInstructionSetTest {
+    private static final String[] EXPRESS_LIST = new String[] {
+        "1 + 2 * 3",
+        "a = 10; b = a > 5 ? a * 2 : a; return b;",
+        "sum = 0; for (i = 0; i < 100; i++) { if (i % 3 == 0) { continue; } if (i > 90) { break; } sum = sum + i; }"
+            + " return sum;",
+        "function add(int x, int y) { return x + y; } return add(3, add(4, 5));",
+        "if (1 > 2) then { return 'a'; } else { return 'b'; }",
+        "list = [1, 2, 3]; c = 0; for (i = 0; i < list.length; i++) { c = c + list[i]; } return c;",
+        "x = null; return x == null || x > 1;",
+        "return 2 in (1, 2, 3) && 'abc' like 'a%';",
+        "macro 加倍 { x * 2 }; x = 7; return 加倍;",
+    };
+
+    @Test
+    public void testSameResultAsInterpreter() throws Exception {
+        ExpressRunner interpreter = new ExpressRunner();
+        ExpressRunner compiler = new ExpressRunner();
+        compiler.setCompileInstructionSet(true);
+        for (String express : EXPRESS_LIST) {
+            Assert.assertTrue(express, compiler.parseInstructionSet(express).isCompiled());
+            Object expect = interpreter.execute(express, new DefaultContext<>(), null, false, false);
+            Object actual = compiler.execute(express, new DefaultContext<>(), null, true, false);
+            Assert.assertEquals(express, expect, actual);
+        }
+    }
+
+    @Test
+    public void testCompiled() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.setCompileInstructionSet(true);
+        InstructionSet instructionSet = runner.parseInstructionSet(
+            "function f(int a) { return a + 1; } return f(1);");
+        Assert.assertTrue(instructionSet.isCompiled());
+        Assert.assertTrue(instructionSet.getFunctionInstructionSets()[0].instructionSet.isCompiled());
+        Assert.assertEquals(2, runner.execute(instructionSet, new DefaultContext<>(), null, false, false));
+
+        runner.setCompileInstructionSet(false);
+        Assert.assertFalse(runner.parseInstructionSet("1 + 1").isCompiled());
+    }
+
+    @Test
+    public void testSameErrorAsInterpreter() throws Exception {
+        ExpressRunner interpreter = new ExpressRunner();
+        ExpressRunner compiler = new ExpressRunner();
+        compiler.setCompileInstructionSet(true);
+        String[] errorList = new String[] {"if (1) then { return 1; }", "return notExist(1);", "return 1 / 0;"};
+        for (String express : errorList) {
+            Assert.assertEquals(express, errorMessage(interpreter, express), errorMessage(compiler, express));
+        }
+    }
+
+    private static String errorMessage(ExpressRunner runner, String express) {
+        try {
+            runner.execute(express, new DefaultContext<>(), null, false, false);
+        } catch (Exception e) {
+            return e.getClass().getName() + ":" + e.getMessage();
+        }
+        throw new AssertionError(express);
+    }
+
+    @Test(expected = QLTimeoutException.class)
+    public void testTimeout() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.setCompileInstructionSet(true);
+        runner.execute("sum = 0; for (i = 0; i < 1000000000; i++) { sum = sum + i; } return sum;",
+            new DefaultContext<>(), null, true, false, 200);
+    }
+}
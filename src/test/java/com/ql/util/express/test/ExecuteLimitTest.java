@@ -0,0 +1,106 @@
+package com.ql.util.express.test;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExecuteLimit;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.exception.QLExecuteLimitException;
+import com.ql.util.express.exception.QLExecuteLimitException.LimitType;
+import com.ql.util.express.exception.QLTimeoutException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExecuteLimitTest {
+    private static final String LOOP_EXPRESS = "sum = 0; for (i = 0; i < n; i++) { sum = sum + i; } return sum;";
+
+    private static QLExecuteLimitException findLimitException(Throwable t) {
+        while (t != null) {
+            if (t instanceof QLExecuteLimitException) {
+                return (QLExecuteLimitException)t;
+            }
+            t = t.getCause();
+        }
+        return null;
+    }
+
+    private static QLExecuteLimitException executeWithLimit(ExpressRunner runner, String express,
+        ExecuteLimit executeLimit) {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("n", 1000);
+        try {
+            runner.execute(express, context, null, true, false, executeLimit);
+        } catch (Exception e) {
+            QLExecuteLimitException limitException = findLimitException(e);
+            Assert.assertNotNull(limitException);
+            return limitException;
+        }
+        return null;
+    }
+
+    @Test
+    public void testLoopAndInstructionLimit() throws Exception {
+        for (boolean isCompile : new boolean[] {false, true}) {
+            ExpressRunner runner = new ExpressRunner();
+            runner.setCompileInstructionSet(isCompile);
+            Assert.assertNull(executeWithLimit(runner, LOOP_EXPRESS, new ExecuteLimit(-1, -1, 1000, -1)));
+
+            QLExecuteLimitException e = executeWithLimit(runner, LOOP_EXPRESS, new ExecuteLimit(-1, -1, 999, -1));
+            Assert.assertNotNull(e);
+            Assert.assertEquals(LimitType.LOOP_COUNT, e.getLimitType());
+            Assert.assertEquals(999, e.getLimit());
+
+            e = executeWithLimit(runner, LOOP_EXPRESS, new ExecuteLimit(-1, 5000, -1, -1));
+            Assert.assertNotNull(e);
+            Assert.assertEquals(LimitType.INSTRUCTION_COUNT, e.getLimitType());
+
+            // 函数中执行的指令也计算在内
+            e = executeWithLimit(runner,
+                "function f(int x) { s = 0; for (j = 0; j < x; j++) { s = s + j; } return s; } return f(n) + f(n);",
+                new ExecuteLimit(-1, -1, 1500, -1));
+            Assert.assertNotNull(e);
+            Assert.assertEquals(LimitType.LOOP_COUNT, e.getLimitType());
+        }
+    }
+
+    @Test
+    public void testCollectionSize() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        ExecuteLimit executeLimit = new ExecuteLimit(-1, -1, -1, 100);
+        Assert.assertNull(executeWithLimit(runner, "a = new int[10][10]; return a.length;", executeLimit));
+        QLExecuteLimitException e = executeWithLimit(runner, "new int[n]", executeLimit);
+        Assert.assertNotNull(e);
+        Assert.assertEquals(LimitType.COLLECTION_SIZE, e.getLimitType());
+        Assert.assertNotNull(executeWithLimit(runner, "new int[20][20]", executeLimit));
+        Assert.assertNotNull(executeWithLimit(runner, "[1, 2, 3]", new ExecuteLimit(-1, -1, -1, 2)));
+        Assert.assertNull(executeWithLimit(runner, "[1, 2, 3]", new ExecuteLimit(-1, -1, -1, 3)));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("n", Integer.MAX_VALUE);
+        long start = System.currentTimeMillis();
+        try {
+            runner.execute(LOOP_EXPRESS, context, null, true, false, new ExecuteLimit(100));
+            Assert.fail();
+        } catch (QLTimeoutException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+        try {
+            runner.execute("Thread.sleep(30); a = 1;", context, null, true, false,
+                new ExecuteLimit(20, 1000, 1000, 1000));
+            Assert.fail();
+        } catch (QLTimeoutException e) {
+            // 采样间隔在遇到慢指令之后不会跳过超时检查
+        }
+    }
+
+    @Test
+    public void testNoLimit() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("n", 10000);
+        Assert.assertEquals(49995000L, ((Number)runner.execute(LOOP_EXPRESS, context, null, true, false,
+            ExecuteLimit.NO_LIMIT)).longValue());
+    }
+}
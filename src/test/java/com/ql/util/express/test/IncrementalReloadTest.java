@@ -0,0 +1,140 @@
+package com.ql.util.express.test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.ql.util.express.ArraySwap;
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSetContext;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.instruction.op.OperatorBase;
+import com.ql.util.express.parse.ScriptSourceSplitter;
+import com.ql.util.express.parse.ScriptSourceSplitter.SplitResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IncrementalReloadTest {
+    private static final String LIBRARY = "import java.math.BigDecimal;\n"
+        + "/** 加法 **/\n"
+        + "function add(int a, int b) { return a + b; }\n"
+        + "function mul(int a, int b) { s = \"}\"; return a * b; };\n"
+        + "macro twice { x * 2 }\n"
+        + "class Point(int px, int py) { function sum() { return px + py; } }\n"
+        + "base = new BigDecimal(\"100\");\n"
+        + "return base.add(new BigDecimal(add(x, 1)));";
+
+    private static Set<String> names(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private static Object execute(ExpressRunner runner, String express) throws Exception {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("x", 5);
+        return runner.execute(express, context, null, false, false);
+    }
+
+    @Test
+    public void testSplit() {
+        SplitResult result = ScriptSourceSplitter.split(LIBRARY);
+        Assert.assertNotNull(result);
+        Assert.assertEquals("import java.math.BigDecimal;", result.getImportSource());
+        Assert.assertEquals(4, result.getParts().size());
+        Assert.assertEquals("mul", result.getParts().get(1).getName());
+        Assert.assertEquals("function mul(int a, int b) { s = \"}\"; return a * b; };",
+            result.getParts().get(1).getSource());
+        Assert.assertEquals("Point", result.getParts().get(3).getName());
+        Assert.assertEquals("/** 加法 **/\nbase = new BigDecimal(\"100\");\n"
+            + "return base.add(new BigDecimal(add(x, 1)));", result.getMainSource());
+        Assert.assertNull(ScriptSourceSplitter.split("function f() { return 1;"));
+        Assert.assertNull(ScriptSourceSplitter.split("function f() {} function f() {}"));
+    }
+
+    @Test
+    public void testReloadChangedPart() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        Assert.assertEquals(names("add", "mul", "twice", "Point", "lib"), runner.reloadMultiExpress("lib", LIBRARY));
+        Assert.assertEquals("106", runner.executeByExpressName("lib", contextOf(5), null, false, false).toString());
+        Assert.assertEquals(12, execute(runner, "mul(3, 4)"));
+
+        // 第一次是完整解析，主体中包含旧的函数定义，需要单独重新解析一次
+        String changed = LIBRARY.replace("return a * b;", "return a * b + 1;");
+        Assert.assertEquals(names("mul", "lib"), runner.reloadMultiExpress("lib", changed));
+        Assert.assertEquals(13, execute(runner, "mul(3, 4)"));
+
+        changed = changed.replace("return a + b;", "return a + b + 10;");
+        Assert.assertEquals(names("add"), runner.reloadMultiExpress("lib", changed));
+        Assert.assertEquals("116", runner.executeByExpressName("lib", contextOf(5), null, false, false).toString());
+        Assert.assertEquals(10, execute(runner, "twice"));
+        Assert.assertEquals(3, execute(runner, "new Point(1, 2).sum()"));
+
+        // 只在定义之间增加空行，不需要重新解析
+        Assert.assertEquals(names(), runner.reloadMultiExpress("lib", changed.replace("};\n", "};\n\n\n")));
+
+        changed = changed.replace("{ x * 2 }", "{ x * 3 }").replace("px + py", "px * py");
+        Assert.assertEquals(names("twice", "Point"), runner.reloadMultiExpress("lib", changed));
+        Assert.assertEquals(15, execute(runner, "twice"));
+        Assert.assertEquals(6, execute(runner, "new Point(2, 3).sum()"));
+    }
+
+    @Test
+    public void testRemoveAndFailure() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.reloadMultiExpress("lib", "function f() { return 1; } function g() { return 2; }");
+        runner.reloadMultiExpress("lib", "function f() { return 1; }");
+        Assert.assertEquals(1, execute(runner, "f()"));
+        try {
+            execute(runner, "g()");
+            Assert.fail();
+        } catch (Exception e) {
+            // g 已经删除
+        }
+
+        // 解析失败的时候保留原来的版本
+        try {
+            runner.reloadMultiExpress("lib", "function f() { return 1 +; } function g() { return 3; }");
+            Assert.fail();
+        } catch (Exception e) {
+            // 语法错误
+        }
+        Assert.assertEquals(1, execute(runner, "f()"));
+
+        // 和其它表达式重名的时候不修改
+        runner.loadMultiExpress("other", "function h() { return 4; }");
+        try {
+            runner.reloadMultiExpress("lib", "function f() { return 5; } function h() { return 6; }");
+            Assert.fail();
+        } catch (Exception e) {
+            // 重复定义
+        }
+        Assert.assertEquals(1, execute(runner, "f()"));
+        Assert.assertEquals(4, execute(runner, "h()"));
+
+        // 通过 loadMultiExpress 装载的表达式也可以重新装载
+        runner.reloadMultiExpress("other", "function h() { return 7; }");
+        Assert.assertEquals(7, execute(runner, "h()"));
+    }
+
+    @Test
+    public void testInFlightKeepOldVersion() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.reloadMultiExpress("lib", "function version() { return 1; }");
+        runner.addFunction("reload", new OperatorBase() {
+            @Override
+            public OperateData executeInner(InstructionSetContext parent, ArraySwap list) throws Exception {
+                runner.reloadMultiExpress("lib", "function version() { return 2; }");
+                return new OperateData(null, null);
+            }
+        });
+        // 执行过程中重新装载，正在执行的脚本继续使用开始执行时的版本
+        Assert.assertEquals(11, execute(runner, "a = version(); reload(); b = version(); return a * 10 + b;"));
+        Assert.assertEquals(2, execute(runner, "version()"));
+    }
+
+    private static DefaultContext<String, Object> contextOf(int x) {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("x", x);
+        return context;
+    }
+}
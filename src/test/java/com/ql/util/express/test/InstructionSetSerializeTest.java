@@ -0,0 +1,135 @@
+package com.ql.util.express.test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRemoteCacheRunner;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.LocalExpressCacheRunner;
+import com.ql.util.express.exception.QLException;
+import com.ql.util.express.instruction.serialize.InstructionSetBundle;
+import com.ql.util.express.instruction.serialize.InstructionSetReader;
+import com.ql.util.express.instruction.serialize.InstructionSetWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InstructionSetSerializeTest {
+    private static final List<String> EXPRESSES = Arrays.asList(
+        "a * 100 + b - 1",
+        "1 - a / 3.0",
+        "if (a > b) then {return '大';} else {return '小';}",
+        "sum = 0; for (int i = 0; i < 10; i++) { if (i == 5) {continue;} sum = sum + i; } return sum;",
+        "name like 'ab%' && name like '%c'",
+        "a in (1, 2, 3) || name in ('x', 'y')",
+        "list = new ArrayList(); list.add(a); list.add(name); list.size()",
+        "Math.max(a, b) + 10000000000L + 0.5f",
+        "function add(int x, int y) { return x + y; }; add(a, b)",
+        "macro 加倍 {a * 2}; 加倍 + 1",
+        "la = (x, y) -> x + y; la.apply(a, b)",
+        "a == null ? 1 : (b != null ? 2 : 3)",
+        "class ABC() { int v = 200; } ABC abc = new ABC(); return a + abc.v;",
+        "x = 'abc'; x.length() + name.length");
+
+    private DefaultContext<String, Object> createContext() {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("a", 2);
+        context.put("b", 5);
+        context.put("name", "abc");
+        return context;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (boolean isCompile : new boolean[] {false, true}) {
+            ExpressRunner runner = new ExpressRunner();
+            runner.setCompileInstructionSet(isCompile);
+            InstructionSetWriter writer = new InstructionSetWriter(runner);
+            InstructionSetReader reader = new InstructionSetReader(runner);
+            for (String express : EXPRESSES) {
+                InstructionSet original = runner.parseInstructionSet(express);
+                InstructionSet loaded = reader.read(writer.write(original));
+                Assert.assertEquals(express, original.toString(), loaded.toString());
+                Object expect = runner.execute(original, createContext(), null, false, false);
+                Object actual = runner.execute(loaded, createContext(), null, false, false);
+                Assert.assertEquals(express, expect, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testBundle() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        Map<String, InstructionSet> instructionSets = new LinkedHashMap<>();
+        instructionSets.put("functions", runner.parseInstructionSet(
+            "function add(int x, int y) { return x + y; }; macro 加倍 {a * 2};"));
+        instructionSets.put("main", runner.parseInstructionSet("add(a, b) + 加倍"));
+        File file = File.createTempFile("rules", ".qlb");
+        file.deleteOnExit();
+        InstructionSetBundle.write(file, instructionSets, runner);
+
+        InstructionSetBundle bundle = InstructionSetBundle.open(file);
+        Assert.assertEquals(2, bundle.size());
+        Assert.assertTrue(bundle.contains("main"));
+
+        ExpressRunner loadRunner = new ExpressRunner();
+        loadRunner.loadPrecompiledExpress(bundle);
+        Assert.assertEquals(11, loadRunner.executeByExpressName("main", createContext(), null, false, false));
+        Assert.assertEquals(7, loadRunner.execute("add(a, b)", createContext(), null, false, false));
+
+        ExpressRemoteCacheRunner cacheRunner = new LocalExpressCacheRunner(new ExpressRunner());
+        cacheRunner.loadCache(InstructionSetBundle.wrap(InstructionSetBundle.toByteArray(instructionSets, runner)));
+        Assert.assertNotNull(cacheRunner.getCache("main"));
+        cacheRunner.loadCache("plus", new InstructionSetWriter(runner).write(runner.parseInstructionSet("a + b")));
+        Assert.assertEquals(7, cacheRunner.execute("plus", createContext(), null, false, false));
+    }
+
+    @Test
+    public void testBundleDuplicateName() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        Map<String, InstructionSet> instructionSets = new LinkedHashMap<>();
+        instructionSets.put("first", runner.parseInstructionSet("function f() { return 1; }; a + 1"));
+        instructionSets.put("second", runner.parseInstructionSet("function g() { return 2; }; function h() {}"));
+        InstructionSetBundle bundle = InstructionSetBundle.wrap(InstructionSetBundle.toByteArray(instructionSets,
+            runner));
+
+        ExpressRunner loadRunner = new ExpressRunner();
+        loadRunner.loadMultiExpress("other", "function h() { return 3; }");
+        try {
+            loadRunner.loadPrecompiledExpress(bundle);
+            Assert.fail();
+        } catch (QLException e) {
+            Assert.assertTrue(e.getMessage().contains("h"));
+        }
+        // 名称重复的时候整个文件都不注册
+        Assert.assertEquals(1, loadRunner.getExportInfo().length);
+        Assert.assertEquals(3, loadRunner.execute("h()", createContext(), null, false, false));
+    }
+
+    @Test
+    public void testOperatorNotRegistered() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.addFunctionOfClassMethod("取绝对值", Math.class.getName(), "abs", new String[] {"double"}, null);
+        byte[] data = new InstructionSetWriter(runner).write(runner.parseInstructionSet("取绝对值(-5.0)"));
+        InstructionSet loaded = new InstructionSetReader(runner).read(data);
+        Assert.assertEquals(5.0, runner.execute(loaded, createContext(), null, false, false));
+        try {
+            new InstructionSetReader(new ExpressRunner()).read(data);
+            Assert.fail();
+        } catch (QLException e) {
+            Assert.assertTrue(e.getMessage().contains("取绝对值"));
+        }
+
+        data[4] = 99;
+        try {
+            new InstructionSetReader(runner).read(data);
+            Assert.fail();
+        } catch (QLException e) {
+            Assert.assertTrue(e.getMessage().contains("版本"));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ql.util.express.test;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LocalVarSlotTest {
+    @Test
+    public void testResolveSlot() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet(
+            "int sum = 0; for (int i = 0; i < 10; i++) { sum = sum + i; } return sum + other;");
+        Assert.assertEquals(2, instructionSet.getLocalVarCount());
+        String instructions = instructionSet.toString();
+        Assert.assertTrue(instructions.contains("LoadLocalVar:sum"));
+        Assert.assertTrue(instructions.contains("LoadLocalVar:i"));
+        Assert.assertTrue(instructions.contains("LoadAttr:other"));
+        Assert.assertArrayEquals(new String[] {"other"}, instructionSet.getOutAttrNames());
+
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("other", 100);
+        Assert.assertEquals(145, runner.execute(instructionSet, context, null, false, false));
+    }
+
+    @Test
+    public void testFunctionParameter() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        String express = "function fib(int n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }"
+            + " return fib(15);";
+        InstructionSet instructionSet = runner.parseInstructionSet(express);
+        InstructionSet fib = instructionSet.getFunctionInstructionSets()[0].instructionSet;
+        Assert.assertEquals(1, fib.getLocalVarCount());
+        Assert.assertEquals(610, runner.execute(express, new DefaultContext<>(), null, true, false));
+
+        Assert.assertEquals(3, runner.execute("la = (a, b) -> a + b; la.apply(1, 2)", new DefaultContext<>(), null,
+            true, false));
+    }
+
+    @Test
+    public void testScope() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("x", 100);
+        Assert.assertEquals(1, runner.execute("int x = 1; { int x = 2; } return x;", new DefaultContext<>(), null,
+            false, false));
+        Assert.assertEquals(100, runner.execute("{ int x = 2; } return x;", context, null, false, false));
+
+        // 每次进入循环体都是新的变量
+        String express = "count = 0; for (int i = 0; i < 5; i++) { if (i % 2 == 0) { continue; } int y = i;"
+            + " count = count + y; } return count;";
+        Assert.assertEquals(4, runner.execute(express, new DefaultContext<>(), null, false, false));
+
+        // 变量定义没有执行的时候按照名称查找
+        Assert.assertEquals(100, runner.execute("if (x > 1000) int x = 1; return x;", context, null, false,
+            false));
+    }
+}
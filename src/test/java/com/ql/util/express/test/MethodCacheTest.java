@@ -0,0 +1,91 @@
+package com.ql.util.express.test;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.ExpressUtil;
+import com.ql.util.express.util.MethodCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MethodCacheTest {
+    public static class Plugin {
+        public int value() {
+            return 1;
+        }
+    }
+
+    @Test
+    public void testStructuredKey() throws Exception {
+        MethodCache methodCache = new MethodCache();
+        Method method = String.class.getMethod("indexOf", String.class);
+        Class<?>[] types = new Class[] {String.class};
+        Assert.assertNull(methodCache.get(String.class, "indexOf", types, true, false));
+        methodCache.put(String.class, "indexOf", types, true, false, method);
+        // 修改传入的数组不影响缓存
+        types[0] = Integer.class;
+        Assert.assertNull(methodCache.get(String.class, "indexOf", types, true, false));
+        Assert.assertSame(method, methodCache.get(String.class, new String("indexOf"), new Class[] {String.class},
+            true, false));
+        Assert.assertNull(methodCache.get(String.class, "indexOf", new Class[] {String.class}, true, true));
+        Assert.assertNull(methodCache.get(Object.class, "indexOf", new Class[] {String.class}, true, false));
+
+        methodCache.put(String.class, "valueOf", new Class[] {null}, true, true, MethodCache.NOT_FOUND);
+        Assert.assertSame(MethodCache.NOT_FOUND, methodCache.get(String.class, "valueOf", new Class[] {null}, true,
+            true));
+    }
+
+    @Test
+    public void testMaximumSize() {
+        MethodCache methodCache = new MethodCache(2);
+        for (int i = 0; i < 10; i++) {
+            methodCache.put(String.class, "m" + i, new Class[0], true, false, MethodCache.NOT_FOUND);
+        }
+        Assert.assertNull(methodCache.get(String.class, "m0", new Class[0], true, false));
+        Assert.assertSame(MethodCache.NOT_FOUND, methodCache.get(String.class, "m9", new Class[0], true, false));
+    }
+
+    @Test
+    public void testClassLoader() throws Exception {
+        URL classPath = Plugin.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader1 = new URLClassLoader(new URL[] {classPath}, null);
+             URLClassLoader loader2 = new URLClassLoader(new URL[] {classPath}, null)) {
+            Class<?> plugin1 = loader1.loadClass(Plugin.class.getName());
+            Class<?> plugin2 = loader2.loadClass(Plugin.class.getName());
+            MethodCache methodCache = new MethodCache();
+
+            // 挂在插件类上
+            methodCache.put(List.class, "add", new Class[] {plugin1}, true, false, MethodCache.NOT_FOUND);
+            Assert.assertSame(MethodCache.NOT_FOUND, methodCache.get(List.class, "add", new Class[] {plugin1}, true,
+                false));
+
+            // 两个互相看不到的类加载器，不缓存
+            methodCache.put(plugin1, "equals", new Class[] {plugin2}, true, false, MethodCache.NOT_FOUND);
+            Assert.assertNull(methodCache.get(plugin1, "equals", new Class[] {plugin2}, true, false));
+        }
+    }
+
+    @Test
+    public void testRunner() throws Exception {
+        ExpressUtil.setMethodCacheMaximumSize(16);
+        try {
+            ExpressRunner runner = new ExpressRunner();
+            DefaultContext<String, Object> context = new DefaultContext<>();
+            List<Object> list = new ArrayList<>();
+            context.put("list", list);
+            context.put("plugin", new Plugin());
+            Assert.assertEquals(3, runner.execute("list.add(plugin); list.add('a'); list.add(1); list.size()",
+                context, null, false, false));
+            Assert.assertEquals(1, runner.execute("plugin.value()", context, null, false, false));
+            Assert.assertEquals(5, runner.execute("Math.max(2, 5)", context, null, false, false));
+            Assert.assertNotNull(runner.execute("new java.util.ArrayList(4)", context, null, false, false));
+        } finally {
+            ExpressUtil.setMethodCacheMaximumSize(-1);
+        }
+    }
+}
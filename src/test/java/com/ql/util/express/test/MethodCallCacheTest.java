@@ -0,0 +1,96 @@
+package com.ql.util.express.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MethodCallCacheTest {
+    public static class Counter {
+        private int value = 0;
+
+        public int add(int delta) {
+            value = value + delta;
+            return value;
+        }
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+        public static String join(Object[] items) {
+            return Arrays.toString(items);
+        }
+    }
+
+    @Test
+    public void testMonomorphic() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        Counter counter = new Counter();
+        context.put("counter", counter);
+        Object result = runner.execute("for (i = 0; i < 100; i++) { counter.add(i); } return counter.add(0);",
+            context, null, true, false);
+        Assert.assertEquals(4950, result);
+    }
+
+    @Test
+    public void testPolymorphic() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet("list.size() + '' + list.contains(1)");
+        Object[] lists = new Object[] {new ArrayList<>(Arrays.asList(1, 2)), new LinkedList<>(Arrays.asList(3)),
+            new HashSet<>(Arrays.asList(1, 2, 3)), new ArrayList<>(Arrays.asList(4, 5, 6, 7)), new ArrayList<>(Arrays.asList(1))};
+        String[] expects = new String[] {"2true", "1false", "3true", "4false", "1true"};
+        for (int round = 0; round < 40; round++) {
+            for (int i = 0; i < lists.length; i++) {
+                DefaultContext<String, Object> context = new DefaultContext<>();
+                context.put("list", lists[i]);
+                Object result = runner.execute(instructionSet, context, null, false, false);
+                Assert.assertEquals(expects[i], result);
+            }
+        }
+    }
+
+    @Test
+    public void testStaticAndArrayParameter() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        String express = "r = ''; for (i = 0; i < 20; i++) { r = Math.max(i, 3) + ''; } return r;";
+        Assert.assertEquals("19", runner.execute(express, new DefaultContext<>(), null, true, false));
+
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("counter", new Counter());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("[a, 1]", runner.execute("counter.join('a', 1)", context, null, true, false));
+        }
+    }
+
+    @Test
+    public void testException() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("counter", new Counter());
+        InstructionSet instructionSet = runner.parseInstructionSet("counter.fail('error')");
+        for (int i = 0; i < 20; i++) {
+            try {
+                runner.execute(instructionSet, context, null, false, false);
+                Assert.fail();
+            } catch (Exception e) {
+                Throwable cause = e;
+                while (cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                Assert.assertTrue(cause instanceof IllegalStateException);
+                Assert.assertEquals("error", cause.getMessage());
+            }
+        }
+        List<String> errorList = new ArrayList<>();
+        Assert.assertEquals(1, runner.execute("counter.add(1)", context, errorList, true, false));
+    }
+}
@@ -0,0 +1,83 @@
+package com.ql.util.express.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ql.util.express.ArraySwap;
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSetContext;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.instruction.OperateDataCacheManager;
+import com.ql.util.express.instruction.op.OperatorBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OperateDataCachePoolTest {
+    @Test
+    public void testManyThreads() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.setOperateDataCachePoolSize(4);
+        String express = "sum = 0; for (i = 0; i < n; i++) { sum = sum + i * 2; } return sum;";
+        AtomicInteger errorCount = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        // 每个线程只执行一次，模拟用完即弃的线程
+        for (int i = 0; i < 200; i++) {
+            int n = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    DefaultContext<String, Object> context = new DefaultContext<>();
+                    context.put("n", n);
+                    Object result = runner.execute(express, context, null, true, false);
+                    if (((Number)result).intValue() != n * (n - 1)) {
+                        errorCount.incrementAndGet();
+                    }
+                    if (OperateDataCacheManager.getOperateDataCache() != null) {
+                        // 执行结束之后线程上不应该保留对象池
+                        errorCount.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    errorCount.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, errorCount.get());
+        Assert.assertTrue(runner.getOperateDataCachePool().getIdleCount() > 0);
+        Assert.assertTrue(runner.getOperateDataCachePool().getIdleCount() <= 4);
+    }
+
+    @Test
+    public void testReentrant() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.setOperateDataCachePoolSize(2);
+        ExpressRunner otherRunner = new ExpressRunner();
+        runner.addFunction("eval", new OperatorBase() {
+            @Override
+            public OperateData executeInner(InstructionSetContext parent, ArraySwap list) throws Exception {
+                Object result = runner.execute(list.get(0).toString(), parent, null, false, false);
+                return new OperateData(result, result.getClass());
+            }
+        });
+        runner.addFunction("otherEval", new OperatorBase() {
+            @Override
+            public OperateData executeInner(InstructionSetContext parent, ArraySwap list) throws Exception {
+                Object result = otherRunner.execute(list.get(0).toString(), parent, null, false, false);
+                return new OperateData(result, result.getClass());
+            }
+        });
+        Assert.assertEquals(2, runner.execute("eval('eval(\\'1+1\\')')", new DefaultContext<>(), null, false, false));
+        Assert.assertEquals(7, runner.execute("a = 3; otherEval('a + 4')", new DefaultContext<>(), null, false, false));
+        Assert.assertNull(OperateDataCacheManager.getOperateDataCache());
+
+        // 恢复为每个线程一份对象池
+        runner.setOperateDataCachePoolSize(0);
+        Assert.assertNull(runner.getOperateDataCachePool());
+        Assert.assertEquals(2, runner.execute("eval('1+1')", new DefaultContext<>(), null, false, false));
+    }
+}
@@ -0,0 +1,57 @@
+package com.ql.util.express.test;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.instruction.OperateDataCacheImpl;
+import com.ql.util.express.instruction.OperateDataCacheStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OperateDataCacheStatisticsTest {
+    private static final String EXPRESS = "sum = 0; for (i = 0; i < n; i++) { sum = sum + i; } return sum;";
+
+    private static Object execute(ExpressRunner runner, int n) throws Exception {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("n", n);
+        return runner.execute(EXPRESS, context, null, true, false);
+    }
+
+    @Test
+    public void testGrow() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.setOperateDataCacheLength(4, 100000);
+        OperateDataCacheStatistics statistics = runner.getOperateDataCacheStatistics();
+        Assert.assertEquals(4950, execute(runner, 100));
+        Assert.assertEquals(1, statistics.getResetCount());
+        Assert.assertTrue(statistics.getGrowCount() > 0);
+        Assert.assertEquals(0, statistics.getOverflowCount());
+        long peak = statistics.getPeakUsage();
+        Assert.assertTrue(peak > 100);
+        Assert.assertTrue(((OperateDataCacheImpl)runner.getOperateDataCache()).getCapacity() >= peak);
+
+        // 对象池增长到峰值之后，相同的执行全部重用
+        statistics.reset();
+        Assert.assertEquals(4950, execute(runner, 100));
+        Assert.assertEquals(0, statistics.getGrowCount());
+        Assert.assertEquals(0, statistics.getOverflowCount());
+        Assert.assertEquals(peak, statistics.getPeakUsage());
+        Assert.assertTrue(statistics.getHitCount() > 0);
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.setOperateDataCacheLength(4, 20);
+        OperateDataCacheStatistics statistics = runner.getOperateDataCacheStatistics();
+        Assert.assertEquals(4950, execute(runner, 100));
+        Assert.assertTrue(statistics.getOverflowCount() > 0);
+        Assert.assertTrue(((OperateDataCacheImpl)runner.getOperateDataCache()).getCapacity() <= 9 * 20);
+
+        // 共享对象池使用同样的设置
+        runner.setOperateDataCachePoolSize(2);
+        statistics.reset();
+        Assert.assertEquals(4950, execute(runner, 100));
+        Assert.assertTrue(statistics.getOverflowCount() > 0);
+        Assert.assertEquals(1, statistics.getResetCount());
+    }
+}
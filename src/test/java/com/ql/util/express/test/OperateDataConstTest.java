@@ -0,0 +1,83 @@
+package com.ql.util.express.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.instruction.detail.InstructionConstData;
+import com.ql.util.express.instruction.opdata.OperateDataConst;
+import com.ql.util.express.instruction.serialize.InstructionSetReader;
+import com.ql.util.express.instruction.serialize.InstructionSetWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OperateDataConstTest {
+    private static List<OperateData> getConstData(InstructionSet instructionSet) {
+        List<OperateData> result = new ArrayList<>();
+        for (int i = 0; i < instructionSet.getInstructionLength(); i++) {
+            if (instructionSet.getInstruction(i) instanceof InstructionConstData) {
+                result.add(((InstructionConstData)instructionSet.getInstruction(i)).getOperateData());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testConstData() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.setOptimizeInstructionSet(false);
+        InstructionSet instructionSet = runner.parseInstructionSet("\"x\" + a * 2 + \"y\" + 1.5");
+        List<OperateData> constData = getConstData(instructionSet);
+        Assert.assertEquals(4, constData.size());
+        for (OperateData operateData : constData) {
+            Assert.assertSame(OperateDataConst.class, operateData.getClass());
+        }
+        Assert.assertEquals(Integer.class, constData.get(1).getType(null));
+        Assert.assertEquals(2, OperateDataConst.getObject(constData.get(1), null));
+
+        // 常量在多次执行之间共享，执行结束清理对象池的时候不受影响
+        for (int i = 0; i < 3; i++) {
+            DefaultContext<String, Object> context = new DefaultContext<>();
+            context.put("a", i);
+            Assert.assertEquals("x" + i * 2 + "y1.5", runner.execute(instructionSet, context, null, false, false));
+        }
+        Assert.assertEquals(2, constData.get(1).getObject(null));
+
+        try {
+            constData.get(1).initial(3, Integer.class);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // 常量不能修改
+        }
+    }
+
+    @Test
+    public void testFoldAndSerialize() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet("return 1 + 2 * 3;");
+        List<OperateData> constData = getConstData(instructionSet);
+        Assert.assertEquals(1, constData.size());
+        Assert.assertSame(OperateDataConst.class, constData.get(0).getClass());
+        Assert.assertEquals(7, ((OperateDataConst)constData.get(0)).getValue());
+
+        InstructionSet loaded = new InstructionSetReader(runner).read(
+            new InstructionSetWriter(runner).write(instructionSet));
+        Assert.assertSame(OperateDataConst.class, getConstData(loaded).get(0).getClass());
+        Assert.assertEquals(7, runner.execute(loaded, new DefaultContext<>(), null, false, false));
+    }
+
+    @Test
+    public void testToJavaCode() {
+        Assert.assertEquals("new " + OperateDataConst.class.getName() + "(new java.lang.Integer(\"2\"),"
+            + "java.lang.Integer.class)", new OperateDataConst(2, Integer.class).toJavaCode());
+        Assert.assertEquals("new " + OperateDataConst.class.getName() + "(\"x\",java.lang.String.class)",
+            new OperateDataConst("x", String.class).toJavaCode());
+        Assert.assertEquals("new " + OperateDataConst.class.getName() + "(null,null)",
+            new OperateDataConst(null, null).toJavaCode());
+        Assert.assertEquals("new " + OperateData.class.getName() + "(\"x\",java.lang.String.class)",
+            new OperateData("x", String.class).toJavaCode());
+    }
+}
@@ -0,0 +1,95 @@
+package com.ql.util.express.test;
+
+import java.math.BigDecimal;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.instruction.InstructionSetOptimizer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OptimizeInstructionSetTest {
+    private static final String[] EXPRESS_LIST = new String[] {
+        "1000 * 60 * 60",
+        "\"A\" + \"B\" + 1",
+        "a = 3; return a + 1000 * 60;",
+        "if (true) { return 1; } else { return 2; }",
+        "if (1 > 2) then { return 'a'; } else { return 'b'; }",
+        "if (false) { x = 1; }",
+        "return false && notExist.call();",
+        "return true || notExist.call();",
+        "return true && 1 < 2;",
+        "a = 5; return (1 == 1) && a > 3;",
+        "return 1 / 3;",
+        "return 10 % 3 + 7 / 2;",
+        "return 2 in (1, 2, 3) && 'abc' like 'a%';",
+        "return !(1 > 2) ? 'yes' : 'no';",
+        "sum = 0; for (i = 0; i < 10; i++) { if (1 + 1 == 2) { continue; } sum = sum + i; } return sum;",
+        "sum = 0; for (i = 0; i < 10; i++) { if (i > 2 * 2) { break; } sum = sum + 2 * 3; } return sum;",
+        "function f(int x) { return x * (2 + 3); } return f(4);",
+        "return 1 << 3 | 1;",
+        "return 1 + 2 == 3 || 4 > 5;",
+    };
+
+    @Test
+    public void testSameResult() throws Exception {
+        for (boolean isPrecise : new boolean[] {false, true}) {
+            for (boolean isShortCircuit : new boolean[] {false, true}) {
+                ExpressRunner original = new ExpressRunner(isPrecise, false);
+                original.setShortCircuit(isShortCircuit);
+                original.setOptimizeInstructionSet(false);
+                ExpressRunner optimized = new ExpressRunner(isPrecise, false);
+                optimized.setShortCircuit(isShortCircuit);
+                for (String express : EXPRESS_LIST) {
+                    if (!isShortCircuit && express.contains("notExist")) {
+                        continue;
+                    }
+                    Object expect = original.execute(express, new DefaultContext<>(), null, false, false);
+                    Object actual = optimized.execute(express, new DefaultContext<>(), null, false, false);
+                    Assert.assertEquals(express, expect, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConstantFolding() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.setOptimizeInstructionSet(false);
+        InstructionSet instructionSet = runner.parseInstructionSet("1000 * 60 * 60");
+        Assert.assertEquals(5, instructionSet.getInstructionLength());
+        Assert.assertEquals(4, InstructionSetOptimizer.optimize(instructionSet));
+        Assert.assertEquals(1, instructionSet.getInstructionLength());
+        Assert.assertEquals(3600000, runner.execute(instructionSet, new DefaultContext<>(), null, false, false));
+
+        ExpressRunner preciseRunner = new ExpressRunner(true, false);
+        Object result = preciseRunner.execute("1 / 3", new DefaultContext<>(), null, false, false);
+        Assert.assertTrue(result instanceof BigDecimal);
+    }
+
+    @Test
+    public void testDeadBranch() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet("if (true) { a = 1; } else { a = 2; b = 3; }");
+        runner.setOptimizeInstructionSet(false);
+        InstructionSet original = runner.parseInstructionSet("if (true) { a = 1; } else { a = 2; b = 3; }");
+        Assert.assertTrue(instructionSet.getInstructionLength() < original.getInstructionLength());
+        Assert.assertFalse(instructionSet.toString().contains("GoTo"));
+
+        Assert.assertTrue(runner.parseInstructionSet("if (false) { a = 1; }").hasMain());
+    }
+
+    @Test
+    public void testRuntimeException() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet("if (false) { return 1 / 0; } return 1;");
+        Assert.assertEquals(1, runner.execute(instructionSet, new DefaultContext<>(), null, false, false));
+        try {
+            runner.execute("return 1 / 0;", new DefaultContext<>(), null, false, false);
+            Assert.fail();
+        } catch (Exception e) {
+            // 编译期不计算会抛出异常的表达式
+        }
+    }
+}
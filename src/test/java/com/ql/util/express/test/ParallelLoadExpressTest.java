@@ -0,0 +1,71 @@
+package com.ql.util.express.test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ql.util.express.BatchResult;
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelLoadExpressTest {
+    @Test
+    public void testParallelLoad() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        runner.loadMultiExpress("exist", "function existFunction(int a) { return a; };");
+
+        Map<String, String> expresses = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            expresses.put("express" + i, "function add" + i + "(int a) { return a + " + i + "; }; add" + i + "(x)");
+        }
+        // 语法错误
+        expresses.put("error", "a + (b");
+        // 函数名称和已经装载的重复
+        expresses.put("duplicateExist", "function existFunction(int a) { return a; }; 1");
+        // 函数名称和同一批中前面的重复
+        expresses.put("duplicateInBatch", "function add3(int a) { return a; }; 1");
+
+        AtomicInteger parsedCount = new AtomicInteger();
+        AtomicInteger failedCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        BatchResult batchResult;
+        try {
+            batchResult = runner.loadMultiExpress(expresses, executor, (expressName, exception, parsed, total) -> {
+                parsedCount.incrementAndGet();
+                if (exception != null) {
+                    failedCount.incrementAndGet();
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(expresses.size(), parsedCount.get());
+        Assert.assertEquals(1, failedCount.get());
+        Assert.assertEquals(3, batchResult.getFailedCount());
+        Assert.assertFalse(batchResult.isSuccess(200));
+        Assert.assertFalse(batchResult.isSuccess(201));
+        Assert.assertFalse(batchResult.isSuccess(202));
+
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("x", 10);
+        Assert.assertEquals(17, runner.executeByExpressName("express7", context, null, false, false));
+        Assert.assertEquals(209, runner.execute("add199(x)", context, null, false, false));
+        Assert.assertEquals(13, runner.execute("add3(x)", context, null, false, false));
+    }
+
+    @Test
+    public void testDefaultExecutor() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        Map<String, String> expresses = new LinkedHashMap<>();
+        expresses.put("a", "function f1(int a) { return a * 2; };");
+        expresses.put("b", "f1(3) + 1");
+        BatchResult batchResult = runner.loadMultiExpress(expresses, null, null);
+        Assert.assertEquals(0, batchResult.getFailedCount());
+        Assert.assertEquals(7, runner.executeByExpressName("b", new DefaultContext<>(), null, false, false));
+    }
+}
@@ -0,0 +1,76 @@
+package com.ql.util.express.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.exception.QLCompileException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PatternMatchTest {
+    @Test
+    public void testLongScript() throws Exception {
+        StringBuilder express = new StringBuilder("sum = 0;\n");
+        for (int i = 0; i < 3000; i++) {
+            switch (i % 3) {
+                case 0:
+                    express.append("sum = sum + (a * ").append(i).append(" - b) / 2;\n");
+                    break;
+                case 1:
+                    express.append("if (a > ").append(i).append(" && b < 3 || name == \"x\") { sum = sum + 1; }\n");
+                    break;
+                default:
+                    express.append("for (int i = 0; i < 2; i++) { sum = sum + list.get(i); }\n");
+            }
+        }
+        express.append("return sum;");
+
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("a", 4);
+        context.put("b", 2);
+        context.put("name", "x");
+        context.put("list", new ArrayList<>(Arrays.asList(1, 2)));
+        long expect = 0;
+        for (int i = 0; i < 3000; i++) {
+            if (i % 3 == 0) {
+                expect = expect + (4L * i - 2) / 2;
+            } else if (i % 3 == 1) {
+                expect = expect + 1;
+            } else {
+                expect = expect + 3;
+            }
+        }
+        ExpressRunner runner = new ExpressRunner();
+        Object result = runner.execute(express.toString(), context, null, false, false);
+        Assert.assertEquals(expect, ((Number)result).longValue());
+    }
+
+    @Test
+    public void testGrammarChanged() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        Assert.assertEquals(3, runner.execute("1 + 2", new DefaultContext<>(), null, false, false));
+        try {
+            runner.execute("1 合计 2", new DefaultContext<>(), null, false, false);
+            Assert.fail();
+        } catch (QLCompileException e) {
+            // 还没有定义操作符
+        }
+
+        // 增加操作符之后语法定义改变，之前计算的匹配信息不能再使用
+        runner.addOperator("合计", new GroupOperator("合计"));
+        Assert.assertEquals(6, runner.execute("1 合计 2 合计 3", new DefaultContext<>(), null, false, false));
+    }
+
+    @Test
+    public void testSyntaxError() {
+        ExpressRunner runner = new ExpressRunner();
+        try {
+            runner.execute("a = (1 + 2; b = 3;", new DefaultContext<>(), null, false, false);
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof QLCompileException);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ql.util.express.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.annotation.QLAlias;
+import com.ql.util.express.util.PropertyAccessor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyAccessorTest {
+    public interface Named {
+        String getName();
+    }
+
+    public static class Account {
+        @QLAlias("余额")
+        private long balance;
+
+        private Account owner;
+
+        public long getBalance() {
+            return balance;
+        }
+
+        public void setBalance(long balance) {
+            this.balance = balance;
+        }
+
+        public Account getOwner() {
+            return owner;
+        }
+
+        public void setOwner(Account owner) {
+            this.owner = owner;
+        }
+
+        public String getError() {
+            throw new IllegalStateException("error");
+        }
+    }
+
+    public static class VipAccount extends Account {
+        public int getLevel() {
+            return 3;
+        }
+    }
+
+    private static class HiddenNamed implements Named {
+        @Override
+        public String getName() {
+            return "hidden";
+        }
+    }
+
+    @Test
+    public void testAccessor() throws Exception {
+        Account account = new Account();
+        account.setBalance(10);
+        PropertyAccessor accessor = PropertyAccessor.getPropertyAccessor(Account.class, "余额");
+        Assert.assertSame(accessor, PropertyAccessor.getPropertyAccessor(Account.class, "余额"));
+        Assert.assertEquals("balance", accessor.getPropertyName());
+        Assert.assertEquals(long.class, accessor.getPropertyType(account));
+        Assert.assertEquals(10L, accessor.getProperty(account));
+        accessor.setProperty(account, 20);
+        Assert.assertEquals(20, account.getBalance());
+
+        PropertyAccessor missing = PropertyAccessor.getPropertyAccessor(Account.class, "notExist");
+        Assert.assertNull(missing.getProperty(account));
+        Assert.assertNull(missing.getPropertyType(account));
+        missing.setProperty(account, 1);
+
+        Assert.assertNull(PropertyAccessor.getPropertyAccessor(Account.class, "error").getProperty(account));
+        Assert.assertNull(PropertyAccessor.getPropertyAccessor(Account.class, "class").getProperty(account));
+
+        // 非 public 类通过接口上的方法访问
+        Assert.assertEquals("hidden",
+            PropertyAccessor.getPropertyAccessor(HiddenNamed.class, "name").getProperty(new HiddenNamed()));
+
+        // 嵌套属性交给 PropertyUtils 处理
+        Account owner = new Account();
+        owner.setBalance(5);
+        account.setOwner(owner);
+        Assert.assertEquals(5L,
+            PropertyAccessor.getPropertyAccessor(Account.class, "owner.balance").getProperty(account));
+    }
+
+    @Test
+    public void testFieldCallSite() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        InstructionSet instructionSet = runner.parseInstructionSet("account.余额 = account.余额 + 1; return account.余额;");
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Account account = i % 2 == 0 ? new Account() : new VipAccount();
+            account.setBalance(i);
+            accounts.add(account);
+        }
+        for (int i = 0; i < accounts.size(); i++) {
+            DefaultContext<String, Object> context = new DefaultContext<>();
+            context.put("account", accounts.get(i));
+            Assert.assertEquals(i + 1L, runner.execute(instructionSet, context, null, false, false));
+            Assert.assertEquals(i + 1, accounts.get(i).getBalance());
+        }
+
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("account", new VipAccount());
+        context.put("named", new HiddenNamed());
+        Assert.assertEquals("hidden3", runner.execute("named.name + account.level", context, null, false, false));
+        Assert.assertNull(runner.execute("account.notExist", context, null, false, false));
+    }
+}
@@ -0,0 +1,120 @@
+package com.ql.util.express.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.ql.util.express.BatchResult;
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.RuleSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RuleSetTest {
+    public static class CountUser {
+        private final int age;
+        private int count = 0;
+
+        public CountUser(int age) {
+            this.age = age;
+        }
+
+        public int getAge() {
+            this.count++;
+            return this.age;
+        }
+
+        public int getCount() {
+            return this.count;
+        }
+    }
+
+    private static final List<String> RULES = Arrays.asList(
+        "user.age > 18 && amount * rate > 100",
+        "user.age < 60",
+        "amount * rate + 1",
+        "level == 'A' && user.age > 18",
+        "if (a + b > 3) then {return a + b;} else {return 0;}",
+        "sum = 0; for (i = 0; i < 3; i++) { sum = sum + a + b; } return sum;");
+
+    private DefaultContext<String, Object> createContext(CountUser user) {
+        DefaultContext<String, Object> context = new DefaultContext<>();
+        context.put("user", user);
+        context.put("amount", 300);
+        context.put("rate", 0.5d);
+        context.put("level", "A");
+        context.put("a", 2);
+        context.put("b", 5);
+        return context;
+    }
+
+    @Test
+    public void testSameResult() throws Exception {
+        for (boolean isCompile : new boolean[] {false, true}) {
+            ExpressRunner runner = new ExpressRunner();
+            runner.setCompileInstructionSet(isCompile);
+            RuleSet ruleSet = runner.compileRuleSet(RULES);
+            Assert.assertEquals(RULES.size(), ruleSet.size());
+            Assert.assertTrue(ruleSet.getSharedValueCount() >= 3);
+
+            for (int age : new int[] {10, 30, 70}) {
+                BatchResult batchResult = ruleSet.execute(createContext(new CountUser(age)));
+                Assert.assertEquals(0, batchResult.getFailedCount());
+                for (int i = 0; i < RULES.size(); i++) {
+                    Object expect = runner.execute(RULES.get(i), createContext(new CountUser(age)), null, false,
+                        false);
+                    Assert.assertEquals(RULES.get(i), expect, batchResult.getResult(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEvaluateOnce() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        RuleSet ruleSet = runner.compileRuleSet(RULES);
+        Assert.assertTrue(ruleSet.getInstructionSet(1).toString().contains("LoadSharedValue"));
+
+        CountUser user = new CountUser(30);
+        ruleSet.execute(createContext(user));
+        Assert.assertEquals(1, user.getCount());
+
+        // 每次执行重新计算
+        ruleSet.execute(createContext(user));
+        Assert.assertEquals(2, user.getCount());
+    }
+
+    @Test
+    public void testWrittenNotShared() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        RuleSet ruleSet = runner.compileRuleSet(Arrays.asList("a = a + 1", "a + b", "a + b"));
+        Assert.assertEquals(0, ruleSet.getSharedValueCount());
+        DefaultContext<String, Object> context = createContext(new CountUser(30));
+        BatchResult batchResult = ruleSet.execute(context);
+        Assert.assertEquals(8, batchResult.getResult(1));
+        Assert.assertEquals(3, context.get("a"));
+
+        ruleSet = runner.compileRuleSet(Arrays.asList("user.age + 1", "user.age = 3", "user.age + 1"));
+        Assert.assertEquals(0, ruleSet.getSharedValueCount());
+
+        ruleSet = runner.compileRuleSet(Arrays.asList("x = a + b; return x;", "a + b", "x + 1", "x + 1"));
+        Assert.assertEquals(1, ruleSet.getSharedValueCount());
+        batchResult = ruleSet.execute(createContext(new CountUser(30)));
+        Assert.assertEquals(7, batchResult.getResult(1));
+        Assert.assertEquals(8, batchResult.getResult(3));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        RuleSet ruleSet = runner.compileRuleSet(Arrays.asList("10 / (a - 2)", "a - 2", "a + b"));
+        BatchResult batchResult = ruleSet.execute(createContext(new CountUser(30)));
+        Assert.assertEquals(1, batchResult.getFailedCount());
+        Assert.assertEquals(0, batchResult.getResult(1));
+        Assert.assertEquals(7, batchResult.getResult(2));
+
+        batchResult = ruleSet.execute(createContext(new CountUser(30)), true);
+        Assert.assertTrue(batchResult.isStopped());
+        Assert.assertFalse(batchResult.isExecuted(1));
+    }
+}
@@ -0,0 +1,84 @@
+package com.ql.util.express.test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import com.ql.util.express.ArraySwap;
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.InstructionSet;
+import com.ql.util.express.InstructionSetContext;
+import com.ql.util.express.OperateData;
+import com.ql.util.express.instruction.detail.Instruction;
+import com.ql.util.express.instruction.detail.InstructionOpenNewArea;
+import com.ql.util.express.instruction.op.OperatorBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScopeResolverTest {
+    private static int countOpenNewArea(InstructionSet instructionSet) {
+        int count = 0;
+        for (int i = 0; i < instructionSet.getInstructionLength(); i++) {
+            if (instructionSet.getInstruction(i) instanceof InstructionOpenNewArea) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testElideScope() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        String express = "sum = 0; for (i = 0; i < 10; i++) { for (j = 0; j < i; j++) { sum = sum + j; } }"
+            + " return sum;";
+        InstructionSet instructionSet = runner.parseInstructionSet(express);
+        Assert.assertEquals(0, countOpenNewArea(instructionSet));
+        Assert.assertEquals(120, runner.execute(express, new DefaultContext<>(), null, true, false));
+
+        // 只保留定义了变量的作用域
+        instructionSet = runner.parseInstructionSet(
+            "for (i = 0; i < 10; i++) { int x = i; if (x > 5) { y = x; } }");
+        Assert.assertEquals(1, countOpenNewArea(instructionSet));
+        Assert.assertEquals(1, runner.parseInstructionSet("{ }").getInstructionLength());
+    }
+
+    @Test
+    public void testReuseContext() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        Set<InstructionSetContext> contexts = Collections.newSetFromMap(new IdentityHashMap<>());
+        runner.addFunction("record", new OperatorBase() {
+            @Override
+            public OperateData executeInner(InstructionSetContext parent, ArraySwap list) {
+                contexts.add(parent);
+                return null;
+            }
+        });
+        String express = "sum = 0; for (i = 0; i < 100; i++) { int x = i * 2; record(); sum = sum + x; }"
+            + " return sum;";
+        Assert.assertEquals(9900, runner.execute(express, new DefaultContext<>(), null, true, false));
+        Assert.assertEquals(1, contexts.size());
+
+        // 作用域内有 lambda 的时候不重用
+        InstructionSet instructionSet = runner.parseInstructionSet(
+            "for (i = 0; i < 3; i++) { int x = i; f = y -> x + y; }");
+        for (int i = 0; i < instructionSet.getInstructionLength(); i++) {
+            Instruction instruction = instructionSet.getInstruction(i);
+            if (instruction instanceof InstructionOpenNewArea) {
+                Assert.assertFalse(((InstructionOpenNewArea)instruction).isReuseContext());
+            }
+        }
+    }
+
+    @Test
+    public void testJumpOutOfScope() throws Exception {
+        ExpressRunner runner = new ExpressRunner();
+        // break 跳过了循环体的结束指令，循环之后仍然回到外层的上下文
+        String express = "for (i = 0; i < 10; i++) { int x = i; if (x > 3) { break; } } int x = 100; return x;";
+        Assert.assertEquals(100, runner.execute(express, new DefaultContext<>(), null, true, false));
+
+        express = "count = 0; for (i = 0; i < 10; i++) { int y = i; if (y % 2 == 0) { continue; }"
+            + " count = count + y; } int y = 1; return count + y;";
+        Assert.assertEquals(26, runner.execute(express, new DefaultContext<>(), null, true, false));
+    }
+}
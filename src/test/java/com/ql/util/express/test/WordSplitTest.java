@@ -0,0 +1,75 @@
+package com.ql.util.express.test;
+
+import com.ql.util.express.DefaultContext;
+import com.ql.util.express.ExpressRunner;
+import com.ql.util.express.exception.QLCompileException;
+import com.ql.util.express.parse.NodeTypeManager;
+import com.ql.util.express.parse.Word;
+import com.ql.util.express.parse.WordSplit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WordSplitTest {
+    private static String[] words(Word[] words) {
+        String[] result = new String[words.length];
+        for (int i = 0; i < words.length; i++) {
+            result[i] = words[i].word;
+        }
+        return result;
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        NodeTypeManager manager = new NodeTypeManager();
+        Assert.assertArrayEquals(new String[] {"a", "<=", "b", "&&", "c", "!=", "1.5d", "||", "x", "->", "y", "--"},
+            words(WordSplit.parse(manager.splitWordTrie, "a<=b&&c!=1.5d||x->y--")));
+        Assert.assertArrayEquals(new String[] {"/**", "注释", "**/", "obj", ".", "name", "=", "'a\\'b'"},
+            words(WordSplit.parse(manager.splitWordTrie, "/** 注释 **/obj.name='a\\\\\\'b'")));
+        Assert.assertArrayEquals(new String[] {"\"x\ny\"", "+", "'\t'"},
+            words(WordSplit.parse(manager.splitWordTrie, "\"x\\ny\"+'\\t'")));
+
+        // 分隔符使用定义中的字符串实例
+        Word[] result = WordSplit.parse(manager.splitWordTrie, "a >= b");
+        boolean isFound = false;
+        for (String splitWord : manager.splitWord) {
+            if (splitWord.equals(">=")) {
+                Assert.assertSame(splitWord, result[1].word);
+                isFound = true;
+            }
+        }
+        Assert.assertTrue(isFound);
+    }
+
+    @Test
+    public void testPosition() throws Exception {
+        Word[] result = WordSplit.parse(new NodeTypeManager().splitWordTrie, "a = 1;\n  b = 'x y';");
+        Assert.assertEquals(8, result.length);
+        Assert.assertEquals(2, result[4].line);
+        Assert.assertEquals(3, result[4].col);
+        Assert.assertEquals("'x y'", result[6].word);
+        Assert.assertEquals(7, result[6].col);
+    }
+
+    @Test
+    public void testCustomSplitWord() throws Exception {
+        String[] splitWord = {"+", "加", "加上"};
+        WordSplit.sortSplitWord(splitWord);
+        Assert.assertArrayEquals(new String[] {"a", "加上", "b", "加", "c", "+", "d"},
+            words(WordSplit.parse(splitWord, "a加上b加c+d")));
+    }
+
+    @Test
+    public void testUnclosedString() throws Exception {
+        NodeTypeManager manager = new NodeTypeManager();
+        for (String express : new String[] {"'abc", "\"abc\\\"", "'abc\\"}) {
+            try {
+                WordSplit.parse(manager.splitWordTrie, express);
+                Assert.fail(express);
+            } catch (QLCompileException e) {
+                Assert.assertEquals("字符串没有关闭", e.getMessage());
+            }
+        }
+        ExpressRunner runner = new ExpressRunner();
+        Assert.assertEquals("a'b", runner.execute("'a\\'b'", new DefaultContext<>(), null, false, false));
+    }
+}